@@ -0,0 +1,90 @@
+package com.drivingschool.config;
+
+import com.drivingschool.repository.Branches;
+import com.drivingschool.service.CustomUserDetailsService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpSession;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.web.authentication.SimpleUrlAuthenticationSuccessHandler;
+import org.springframework.security.web.authentication.rememberme.TokenBasedRememberMeServices;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+
+/**
+ * Branch Login Handler - sends users of other branches to their own branch's nodes
+ *
+ * A node only serves its home branch (see Branches). When someone of another branch logs in
+ * here, their password has been checked against their branch's account; they get a short-lived
+ * remember-me cookie, signed with the shared security.remember-me.key, and are redirected to
+ * their branch's base-url, whose nodes accept it as a normal login. The local session is dropped.
+ * The cookie only reaches the other nodes if they share a host or branches.cookie-domain.
+ *
+ * Metric: branches.hand-offs{branch}
+ */
+
+@Component
+public class BranchLoginHandler extends SimpleUrlAuthenticationSuccessHandler {
+
+    private final Branches branches;
+    private final TokenBasedRememberMeServices handOff;
+    private final MeterRegistry meterRegistry;
+
+    public BranchLoginHandler(Branches branches, CustomUserDetailsService userDetailsService,
+                              MeterRegistry meterRegistry,
+                              @Value("${security.remember-me.key:}") String rememberMeKey,
+                              @Value("${branches.hand-off-seconds:60}") int handOffSeconds,
+                              @Value("${branches.cookie-domain:}") String cookieDomain) {
+        super("/dashboard");
+        setAlwaysUseDefaultTargetUrl(true);
+        this.branches = branches;
+        this.meterRegistry = meterRegistry;
+
+        this.handOff = new TokenBasedRememberMeServices(
+                SecurityConfig.requireRememberMeKey(rememberMeKey), userDetailsService);
+        handOff.setAlwaysRemember(true);
+        handOff.setTokenValiditySeconds(handOffSeconds);
+        if (!cookieDomain.isEmpty()) {
+            handOff.setCookieDomain(cookieDomain);
+        }
+    }
+
+    @Override
+    public void onAuthenticationSuccess(HttpServletRequest request, HttpServletResponse response,
+                                        Authentication authentication) throws IOException, ServletException {
+        Branches.Branch branch = branchOf(authentication);
+        if (branch == null) {
+            super.onAuthenticationSuccess(request, response, authentication);
+            return;
+        }
+
+        handOff.loginSuccess(request, response, authentication);
+
+        HttpSession session = request.getSession(false);
+        if (session != null) {
+            session.invalidate();
+        }
+        SecurityContextHolder.clearContext();
+
+        meterRegistry.counter("branches.hand-offs", "branch", branch.id()).increment();
+        getRedirectStrategy().sendRedirect(request, response, branch.baseUrl() + "/dashboard");
+    }
+
+    // The other branch the user belongs to, null for users of this branch
+    private Branches.Branch branchOf(Authentication authentication) {
+        for (GrantedAuthority authority : authentication.getAuthorities()) {
+            String name = authority.getAuthority();
+            if (name.startsWith(CustomUserDetailsService.BRANCH_AUTHORITY_PREFIX)) {
+                return branches.get(name.substring(CustomUserDetailsService.BRANCH_AUTHORITY_PREFIX.length()));
+            }
+        }
+        return null;
+    }
+}
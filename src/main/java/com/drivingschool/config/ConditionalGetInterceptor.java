@@ -0,0 +1,120 @@
+package com.drivingschool.config;
+
+import com.drivingschool.controller.ReadsTables;
+import com.drivingschool.repository.Branches;
+import com.drivingschool.repository.ReplicaRouting;
+import com.drivingschool.repository.TableVersions;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpSession;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.support.RequestContextUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+/**
+ * Conditional GET support for handlers annotated with @ReadsTables
+ *
+ * The weak ETag is derived from:
+ *  - the request URL (path + query string)
+ *  - the logged-in user and HTTP session (pages show the username and carry a CSRF token)
+ *  - the versions of every table the handler reads
+ *  - an optional time bucket for pages that depend on "now"
+ *  - a branches.cache-seconds time bucket for pages that read other branches, whose
+ *    changes the table versions do not track
+ *  - a datasource.replica.pin-seconds time bucket for pages read from the replica, which may
+ *    still show rows older than the table versions; such a page is kept at most that long
+ *
+ * A matching If-None-Match returns 304 without calling the controller,
+ * so no query runs and no template is rendered.
+ */
+
+@Component
+public class ConditionalGetInterceptor implements HandlerInterceptor {
+
+    private final TableVersions tableVersions;
+    private final Branches branches;
+    private final long replicaLagSeconds;
+    private final long branchCacheSeconds;
+
+    public ConditionalGetInterceptor(TableVersions tableVersions, Branches branches,
+                                     @Value("${datasource.replica.pin-seconds:5}") long replicaLagSeconds,
+                                     @Value("${branches.cache-seconds:60}") long branchCacheSeconds) {
+        // both are ETag time buckets, so they divide the clock
+        if (replicaLagSeconds <= 0) {
+            throw new IllegalArgumentException("datasource.replica.pin-seconds must be positive");
+        }
+        if (branchCacheSeconds <= 0) {
+            throw new IllegalArgumentException("branches.cache-seconds must be positive");
+        }
+
+        this.tableVersions = tableVersions;
+        this.branches = branches;
+        this.replicaLagSeconds = replicaLagSeconds;
+        this.branchCacheSeconds = branchCacheSeconds;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (!(handler instanceof HandlerMethod handlerMethod)) {
+            return true;
+        }
+
+        ReadsTables readsTables = handlerMethod.getMethodAnnotation(ReadsTables.class);
+        if (readsTables == null || !"GET".equals(request.getMethod())) {
+            return true;
+        }
+
+        // pages showing a flash message (after a redirect) must always be rendered and never cached
+        Map<String, ?> flash = RequestContextUtils.getInputFlashMap(request);
+        if (flash != null && !flash.isEmpty()) {
+            return true;
+        }
+
+        String etag = buildEtag(request, readsTables);
+
+        // private: the page is per user; no-cache: the browser must revalidate every time
+        response.setHeader("Cache-Control", "private, no-cache");
+
+        return !new ServletWebRequest(request, response).checkNotModified(etag);
+    }
+
+    private String buildEtag(HttpServletRequest request, ReadsTables readsTables) {
+        StringBuilder key = new StringBuilder(request.getRequestURI());
+
+        if (request.getQueryString() != null) {
+            key.append('?').append(request.getQueryString());
+        }
+
+        key.append('|').append(request.getRemoteUser());
+
+        HttpSession session = request.getSession(false);
+        if (session != null) {
+            key.append('|').append(session.getId());
+        }
+
+        for (String table : readsTables.value()) {
+            key.append('|').append(table).append('=').append(tableVersions.version(table));
+        }
+
+        if (readsTables.timeBucketSeconds() > 0) {
+            key.append("|t=").append(System.currentTimeMillis() / 1000 / readsTables.timeBucketSeconds());
+        }
+
+        if (readsTables.allBranches() && branches.isMultiBranch()) {
+            key.append("|b=").append(System.currentTimeMillis() / 1000 / branchCacheSeconds);
+        }
+
+        if (ReplicaRouting.isReadRequest()) {
+            key.append("|r=").append(System.currentTimeMillis() / 1000 / replicaLagSeconds);
+        }
+
+        return "W/\"" + DigestUtils.md5DigestAsHex(key.toString().getBytes(StandardCharsets.UTF_8)) + "\"";
+    }
+}
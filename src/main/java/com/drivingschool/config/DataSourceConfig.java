@@ -0,0 +1,68 @@
+package com.drivingschool.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+
+/**
+ * DataSource configuration - primary database and optional read replica
+ *
+ * Without datasource.replica.url every connection comes from the primary pool (spring.datasource.*).
+ * With it, the DataSource everything uses routes the reads of GET requests to the replica pool
+ * (see ReplicaRouting and ReplicaLagGuard). Both pools report Hikari metrics tagged with their name.
+ */
+
+@Configuration
+public class DataSourceConfig {
+
+    @Bean(destroyMethod = "close")
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("primary");
+        return dataSource;
+    }
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty("datasource.replica.url")
+    public HikariDataSource replicaDataSource(DataSourceProperties properties,
+                                              @Value("${datasource.replica.url}") String url,
+                                              @Value("${datasource.replica.username:sa}") String username,
+                                              @Value("${datasource.replica.password:}") String password,
+                                              @Value("${datasource.replica.pool-size:10}") int poolSize) {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setPoolName("replica");
+        dataSource.setDriverClassName(properties.determineDriverClassName());
+        dataSource.setJdbcUrl(url);
+        dataSource.setUsername(username);
+        dataSource.setPassword(password);
+        dataSource.setMaximumPoolSize(poolSize);
+        // lets databases that honor it (MySQL, PostgreSQL) reject a write sent here by mistake
+        dataSource.setReadOnly(true);
+        return dataSource;
+    }
+
+    @Bean(destroyMethod = "")
+    @Primary
+    public DataSource dataSource(@Qualifier("primaryDataSource") DataSource primary,
+                                 @Qualifier("replicaDataSource") ObjectProvider<DataSource> replica,
+                                 MeterRegistry meterRegistry) {
+        DataSource replicaDataSource = replica.getIfAvailable();
+        if (replicaDataSource == null) {
+            return primary;
+        }
+
+        return new LazyConnectionDataSourceProxy(new ReplicaRoutingDataSource(primary, replicaDataSource, meterRegistry));
+    }
+}
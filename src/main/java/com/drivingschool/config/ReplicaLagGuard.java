@@ -0,0 +1,79 @@
+package com.drivingschool.config;
+
+import com.drivingschool.repository.ReplicaRouting;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.WebUtils;
+
+import java.io.IOException;
+
+/**
+ * Replica Lag Guard - decides which requests may read from the read replica
+ *
+ * GET and HEAD requests read from the replica, unless the browser carries the PRIMARY_PIN
+ * cookie. The cookie is set for datasource.replica.pin-seconds by every other request and by
+ * a GET that turns out to write (e.g. the delete links), so users see their own changes
+ * while the replica catches up. Set it longer than the replica usually lags.
+ *
+ * Metric: datasource.replica.pins
+ */
+
+@Component
+@ConditionalOnProperty("datasource.replica.url")
+public class ReplicaLagGuard extends OncePerRequestFilter {
+
+    public static final String PIN_COOKIE = "PRIMARY_PIN";
+
+    private final int pinSeconds;
+    private final Counter pins;
+
+    public ReplicaLagGuard(MeterRegistry meterRegistry,
+                           @Value("${datasource.replica.pin-seconds:5}") int pinSeconds) {
+        this.pinSeconds = pinSeconds;
+        this.pins = Counter.builder("datasource.replica.pins")
+                .description("Requests that pinned their user to the primary").register(meterRegistry);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        boolean read = "GET".equals(request.getMethod()) || "HEAD".equals(request.getMethod());
+
+        if (!read) {
+            pin(response);
+            chain.doFilter(request, response);
+            return;
+        }
+
+        if (WebUtils.getCookie(request, PIN_COOKIE) != null) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        ReplicaRouting.beginReadRequest(() -> pin(response));
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            ReplicaRouting.endReadRequest();
+        }
+    }
+
+    // Send this user's requests to the primary for the next pinSeconds
+    private void pin(HttpServletResponse response) {
+        Cookie cookie = new Cookie(PIN_COOKIE, "1");
+        cookie.setPath("/");
+        cookie.setMaxAge(pinSeconds);
+        cookie.setHttpOnly(true);
+        response.addCookie(cookie);
+        pins.increment();
+    }
+}
@@ -0,0 +1,49 @@
+package com.drivingschool.config;
+
+import com.drivingschool.repository.ReplicaRouting;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.util.Map;
+
+/**
+ * Replica Routing DataSource - hands out primary or replica connections (see ReplicaRouting)
+ *
+ * The route is picked when a connection is actually needed, so it must sit behind a
+ * LazyConnectionDataSourceProxy: a transaction's read-only flag is only known after it began.
+ *
+ * Metric: datasource.route{target=primary|replica}
+ */
+
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+    private static final String PRIMARY = "primary";
+    private static final String REPLICA = "replica";
+
+    private final Counter primaryRoutes;
+    private final Counter replicaRoutes;
+
+    public ReplicaRoutingDataSource(DataSource primary, DataSource replica, MeterRegistry meterRegistry) {
+        setTargetDataSources(Map.of(PRIMARY, primary, REPLICA, replica));
+        setDefaultTargetDataSource(primary);
+        afterPropertiesSet();
+
+        this.primaryRoutes = Counter.builder("datasource.route")
+                .tag("target", PRIMARY).description("Connections handed out from the primary").register(meterRegistry);
+        this.replicaRoutes = Counter.builder("datasource.route")
+                .tag("target", REPLICA).description("Connections handed out from the replica").register(meterRegistry);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (ReplicaRouting.useReplica()) {
+            replicaRoutes.increment();
+            return REPLICA;
+        }
+
+        primaryRoutes.increment();
+        return PRIMARY;
+    }
+}
@@ -0,0 +1,140 @@
+package com.drivingschool.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Replica Stand-In - keeps a local H2 replica in step with the primary, for development only
+ *
+ * H2 has no replication, so with datasource.replica.stand-in.enabled=true the replica's schema
+ * is recreated from the primary at startup and every table is copied over, in one replica
+ * transaction, every datasource.replica.stand-in.lag-millis. The replica lags by up to that
+ * much, which is what ReplicaLagGuard has to hide. Writes bypass the read-only replica pool.
+ */
+
+@Component
+@ConditionalOnProperty("datasource.replica.stand-in.enabled")
+public class ReplicaStandIn {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicaStandIn.class);
+
+    private static final int BATCH_SIZE = 500;
+
+    private final JdbcTemplate primary;
+    private final JdbcTemplate replica;
+    private volatile boolean ready;
+
+    public ReplicaStandIn(@Qualifier("primaryDataSource") DataSource primaryDataSource,
+                          @Value("${datasource.replica.url}") String url,
+                          @Value("${datasource.replica.username:sa}") String username,
+                          @Value("${datasource.replica.password:}") String password) {
+        this.primary = new JdbcTemplate(primaryDataSource);
+        this.replica = new JdbcTemplate(new DriverManagerDataSource(url, username, password));
+    }
+
+    // Recreate the replica's schema from the primary's, then copy the data
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(0)
+    public synchronized void copySchema() {
+        List<String> ddl = primary.queryForList("SCRIPT NODATA NOPASSWORDS NOSETTINGS", String.class);
+
+        replica.execute("DROP ALL OBJECTS");
+        ddl.forEach(replica::execute);
+        // tables are copied one at a time, out of foreign key order
+        replica.execute("SET REFERENTIAL_INTEGRITY FALSE");
+
+        log.info("Replica stand-in created {} schema objects", ddl.size());
+        ready = true;
+        copyData();
+    }
+
+    // Replace the replica's rows with the primary's
+    @Scheduled(fixedDelayString = "${datasource.replica.stand-in.lag-millis:2000}")
+    public synchronized void copyData() {
+        if (!ready) {
+            return;
+        }
+
+        long started = System.currentTimeMillis();
+        List<String> tables = primary.queryForList(
+                "SELECT TABLE_NAME FROM INFORMATION_SCHEMA.TABLES WHERE TABLE_SCHEMA = 'PUBLIC' AND TABLE_TYPE = 'BASE TABLE'",
+                String.class);
+
+        // one snapshot of the primary, published to the replica in one commit
+        Integer rows = primary.execute((Connection source) -> {
+            source.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+            source.setAutoCommit(false);
+            try {
+                return replica.execute((Connection target) -> {
+                    target.setAutoCommit(false);
+                    try {
+                        int copied = 0;
+                        for (String table : tables) {
+                            copied += copyTable(source, target, table);
+                        }
+                        target.commit();
+                        return copied;
+                    } catch (SQLException e) {
+                        target.rollback();
+                        throw e;
+                    }
+                });
+            } finally {
+                source.rollback();
+                source.setAutoCommit(true);
+                source.setTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+            }
+        });
+
+        log.debug("Replica stand-in copied {} rows of {} tables in {} ms",
+                rows, tables.size(), System.currentTimeMillis() - started);
+    }
+
+    private static int copyTable(Connection source, Connection target, String table) throws SQLException {
+        String quoted = '"' + table + '"';
+        try (Statement delete = target.createStatement()) {
+            delete.executeUpdate("DELETE FROM " + quoted);
+        }
+
+        int copied = 0;
+        try (Statement select = source.createStatement();
+             ResultSet rs = select.executeQuery("SELECT * FROM " + quoted)) {
+            int columns = rs.getMetaData().getColumnCount();
+            String placeholders = String.join(", ", Collections.nCopies(columns, "?"));
+
+            try (PreparedStatement insert = target.prepareStatement(
+                    "INSERT INTO " + quoted + " VALUES (" + placeholders + ")")) {
+                while (rs.next()) {
+                    for (int i = 1; i <= columns; i++) {
+                        insert.setObject(i, rs.getObject(i));
+                    }
+                    insert.addBatch();
+                    if (++copied % BATCH_SIZE == 0) {
+                        insert.executeBatch();
+                    }
+                }
+                insert.executeBatch();
+            }
+        }
+        return copied;
+    }
+}
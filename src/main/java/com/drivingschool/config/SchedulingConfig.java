@@ -0,0 +1,14 @@
+package com.drivingschool.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Enables @Scheduled background jobs, which run on every node (e.g. the change log poll);
+ * jobs that must run on one node only use @LeaderJob (see LeaderJobScheduler)
+ */
+
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
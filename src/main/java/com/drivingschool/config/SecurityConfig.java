@@ -1,7 +1,9 @@
 package com.drivingschool.config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.security.config.Customizer;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
@@ -12,12 +14,37 @@ import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
 /**
  * Security configuration for the Driving School Management System
  * Handles authentication, authorization and password encryption
+ *
+ * HTTP sessions are kept in the database (see SharedSessionRepository) and the remember-me
+ * key comes from security.remember-me.key, so every node accepts every login. The key must be
+ * set (REMEMBER_ME_KEY, at least MIN_KEY_LENGTH characters): startup fails without it.
+ * Users of other branches are handed over to their branch's nodes (see BranchLoginHandler).
  */
 
 @Configuration
 @EnableWebSecurity
 public class SecurityConfig {
 
+    private static final int MIN_KEY_LENGTH = 16;
+
+    private final String rememberMeKey;
+    private final BranchLoginHandler branchLoginHandler;
+
+    public SecurityConfig(@Value("${security.remember-me.key:}") String rememberMeKey,
+                          BranchLoginHandler branchLoginHandler) {
+        this.rememberMeKey = requireRememberMeKey(rememberMeKey);
+        this.branchLoginHandler = branchLoginHandler;
+    }
+
+    // Remember-me and hand-off cookies signed with a known key can be forged for any user
+    static String requireRememberMeKey(String key) {
+        if (key.strip().length() < MIN_KEY_LENGTH) {
+            throw new IllegalStateException("security.remember-me.key (REMEMBER_ME_KEY) must be set to a secret of at least "
+                    + MIN_KEY_LENGTH + " characters");
+        }
+        return key;
+    }
+
     // Configure HTTP security - who can access what URLs
     @Bean
     public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
@@ -30,6 +57,12 @@ public class SecurityConfig {
                 // Admin pages
                     .requestMatchers("/admin/**").hasRole("ADMIN")
 
+                // REST API (front-desk tablet app)
+                    .requestMatchers("/api/**").hasRole("ADMIN")
+
+                // Metrics (Spring Boot Actuator)
+                    .requestMatchers("/actuator/**").hasRole("ADMIN")
+
                 // Instructor pages
                     .requestMatchers("/instructor/**").hasRole("INSTRUCTOR")
 
@@ -42,20 +75,22 @@ public class SecurityConfig {
                 .formLogin(form -> form
                     .loginPage("/login")
                     .loginProcessingUrl("/login")
-                    .defaultSuccessUrl("/dashboard", true)  // Redirect after successful login
+                    .successHandler(branchLoginHandler)     // Redirect after successful login (or to the user's branch)
                     .failureUrl("/login?error=true")        // Redirect on failure
                     .permitAll()
                 )
+                // HTTP Basic for API clients that cannot use the login form
+                .httpBasic(Customizer.withDefaults())
                 .logout(logout -> logout
                     .logoutUrl("/logout")
                     .logoutSuccessUrl("/login?logout=true")
                     .logoutRequestMatcher(new AntPathRequestMatcher("/logout", "GET"))
                     .invalidateHttpSession(true)
-                    .deleteCookies("JSESSIONID")
+                    .deleteCookies("SESSION")
                     .permitAll()
                 )
                 .rememberMe(remember -> remember
-                    .key("uniqueAndSecret")
+                    .key(rememberMeKey)
                     .tokenValiditySeconds(86400) // 24 hours
                 )
                 .exceptionHandling(exception -> exception
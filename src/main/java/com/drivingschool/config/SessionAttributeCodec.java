@@ -0,0 +1,207 @@
+package com.drivingschool.config;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.core.convert.support.GenericConversionService;
+import org.springframework.core.serializer.support.DeserializingConverter;
+import org.springframework.core.serializer.support.SerializingConverter;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextImpl;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.web.authentication.WebAuthenticationDetails;
+import org.springframework.security.web.csrf.DefaultCsrfToken;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Session Attribute Codec - how HTTP session attributes are stored in SPRING_SESSION_ATTRIBUTES
+ *
+ * The two attributes every logged-in session carries get a compact binary form instead of
+ * Java serialization (which writes the class descriptors of the whole object graph):
+ *  - the SecurityContext of a form or HTTP Basic login: username, account flags, authorities
+ *    and the login details, about 70 bytes instead of about 1.3 KB
+ *  - the CSRF token: header name, parameter name and value
+ *
+ * Anything else (remember-me logins, saved requests, flash attributes) falls back to Java
+ * serialization. The first byte of every value tells the formats apart.
+ *
+ * Registered under the name Spring Session looks the conversion service up by.
+ * Metric: http.session.attribute.bytes{format=compact|java}
+ */
+
+@Component("springSessionConversionService")
+public class SessionAttributeCodec extends GenericConversionService {
+
+    private static final byte JAVA = 0;
+    private static final byte SECURITY_CONTEXT = 1;
+    private static final byte CSRF_TOKEN = 2;
+
+    private static final int ENABLED = 1;
+    private static final int ACCOUNT_NON_EXPIRED = 2;
+    private static final int CREDENTIALS_NON_EXPIRED = 4;
+    private static final int ACCOUNT_NON_LOCKED = 8;
+    private static final int WEB_DETAILS = 16;
+
+    private final SerializingConverter javaSerializer = new SerializingConverter();
+    private final DeserializingConverter javaDeserializer = new DeserializingConverter(getClass().getClassLoader());
+
+    private final DistributionSummary compactBytes;
+    private final DistributionSummary javaBytes;
+
+    public SessionAttributeCodec(MeterRegistry meterRegistry) {
+        this.compactBytes = DistributionSummary.builder("http.session.attribute.bytes")
+                .tag("format", "compact").baseUnit("bytes")
+                .description("Size of session attributes written in the compact format").register(meterRegistry);
+        this.javaBytes = DistributionSummary.builder("http.session.attribute.bytes")
+                .tag("format", "java").baseUnit("bytes")
+                .description("Size of session attributes written with Java serialization").register(meterRegistry);
+
+        addConverter(Object.class, byte[].class, this::encode);
+        addConverter(byte[].class, Object.class, this::decode);
+    }
+
+    // Attribute value to bytes
+    public byte[] encode(Object value) {
+        byte[] bytes;
+        try {
+            bytes = compact(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        if (bytes != null) {
+            compactBytes.record(bytes.length);
+            return bytes;
+        }
+
+        byte[] serialized = javaSerializer.convert(value);
+        bytes = new byte[serialized.length + 1];
+        bytes[0] = JAVA;
+        System.arraycopy(serialized, 0, bytes, 1, serialized.length);
+        javaBytes.record(bytes.length);
+        return bytes;
+    }
+
+    // Bytes back to the attribute value
+    public Object decode(byte[] bytes) {
+        if (bytes[0] == JAVA) {
+            return javaDeserializer.convert(Arrays.copyOfRange(bytes, 1, bytes.length));
+        }
+
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes, 1, bytes.length - 1))) {
+            return switch (bytes[0]) {
+                case SECURITY_CONTEXT -> readSecurityContext(in);
+                case CSRF_TOKEN -> new DefaultCsrfToken(in.readUTF(), in.readUTF(), in.readUTF());
+                default -> throw new IllegalArgumentException("Unknown session attribute format " + bytes[0]);
+            };
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // The compact form, or null when the value has none
+    private byte[] compact(Object value) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        DataOutputStream out = new DataOutputStream(bytes);
+
+        if (value instanceof SecurityContext context && isCompact(context.getAuthentication())) {
+            out.writeByte(SECURITY_CONTEXT);
+            writeAuthentication(out, context.getAuthentication());
+        } else if (value instanceof DefaultCsrfToken token) {
+            out.writeByte(CSRF_TOKEN);
+            out.writeUTF(token.getHeaderName());
+            out.writeUTF(token.getParameterName());
+            out.writeUTF(token.getToken());
+        } else {
+            return null;
+        }
+
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    // A username / password login of a plain User whose credentials were erased
+    private static boolean isCompact(Authentication authentication) {
+        return authentication != null
+                && authentication.getClass() == UsernamePasswordAuthenticationToken.class
+                && authentication.isAuthenticated()
+                && authentication.getCredentials() == null
+                && authentication.getPrincipal() instanceof User user
+                && user.getClass() == User.class
+                && user.getPassword() == null
+                && (authentication.getDetails() == null
+                    || authentication.getDetails().getClass() == WebAuthenticationDetails.class)
+                && authentication.getAuthorities().size() <= Byte.MAX_VALUE
+                && authentication.getAuthorities().stream().allMatch(a -> a.getClass() == SimpleGrantedAuthority.class);
+    }
+
+    private static void writeAuthentication(DataOutputStream out, Authentication authentication) throws IOException {
+        User user = (User) authentication.getPrincipal();
+        WebAuthenticationDetails details = (WebAuthenticationDetails) authentication.getDetails();
+
+        int flags = (user.isEnabled() ? ENABLED : 0)
+                | (user.isAccountNonExpired() ? ACCOUNT_NON_EXPIRED : 0)
+                | (user.isCredentialsNonExpired() ? CREDENTIALS_NON_EXPIRED : 0)
+                | (user.isAccountNonLocked() ? ACCOUNT_NON_LOCKED : 0)
+                | (details != null ? WEB_DETAILS : 0);
+        out.writeByte(flags);
+        out.writeUTF(user.getUsername());
+
+        out.writeByte(user.getAuthorities().size());
+        for (GrantedAuthority authority : user.getAuthorities()) {
+            out.writeUTF(authority.getAuthority());
+        }
+
+        if (details != null) {
+            writeNullable(out, details.getRemoteAddress());
+            writeNullable(out, details.getSessionId());
+        }
+    }
+
+    private static SecurityContext readSecurityContext(DataInputStream in) throws IOException {
+        int flags = in.readByte();
+        String username = in.readUTF();
+
+        int count = in.readByte();
+        List<GrantedAuthority> authorities = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            authorities.add(new SimpleGrantedAuthority(in.readUTF()));
+        }
+
+        User user = new User(username, "", (flags & ENABLED) != 0, (flags & ACCOUNT_NON_EXPIRED) != 0,
+                (flags & CREDENTIALS_NON_EXPIRED) != 0, (flags & ACCOUNT_NON_LOCKED) != 0, authorities);
+        user.eraseCredentials();
+
+        UsernamePasswordAuthenticationToken authentication =
+                UsernamePasswordAuthenticationToken.authenticated(user, null, user.getAuthorities());
+        if ((flags & WEB_DETAILS) != 0) {
+            authentication.setDetails(new WebAuthenticationDetails(readNullable(in), readNullable(in)));
+        }
+
+        return new SecurityContextImpl(authentication);
+    }
+
+    private static void writeNullable(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readNullable(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
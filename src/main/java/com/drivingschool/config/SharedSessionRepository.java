@@ -0,0 +1,211 @@
+package com.drivingschool.config;
+
+import com.drivingschool.repository.HttpSessionStoreRepository;
+import com.drivingschool.service.LeaderJob;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Primary;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.session.FindByIndexNameSessionRepository;
+import org.springframework.session.Session;
+import org.springframework.session.jdbc.JdbcIndexedSessionRepository;
+import org.springframework.session.jdbc.config.annotation.web.http.EnableJdbcHttpSession;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Shared Session Repository - the HTTP session store every node reads and writes
+ *
+ * HTTP sessions live in the database (SPRING_SESSION / SPRING_SESSION_ATTRIBUTES, see
+ * Spring Session JDBC), so any node can serve any request and a restart logs nobody out.
+ * This wrapper keeps requests that change nothing from writing:
+ *  - attributes are only written when set (Spring Session's default save mode)
+ *  - the last access time is only written once it is http-sessions.touch-interval-seconds
+ *    old, so a session may expire up to that much before its timeout
+ *
+ * Expired sessions are deleted every minute by one node (see LeaderJobScheduler), in batches of
+ * http-sessions.cleanup-batch-size, each batch its own short statement (Spring Session's single
+ * unbounded DELETE is disabled).
+ *
+ * Being a SessionRepository bean itself, this turns Spring Boot's session auto-configuration
+ * off, so the JDBC repository it wraps is enabled here and its timeout set from
+ * http-sessions.timeout.
+ *
+ * Metrics: http.session.touches{result=written|deferred}, http.session.expired, http.session.stored
+ */
+
+@Primary
+@Component
+@EnableJdbcHttpSession(cleanupCron = Scheduled.CRON_DISABLED)
+public class SharedSessionRepository implements FindByIndexNameSessionRepository<SharedSessionRepository.SharedSession> {
+
+    private static final Logger log = LoggerFactory.getLogger(SharedSessionRepository.class);
+
+    // typed by the interface: Spring Session's JdbcSession class is not public
+    private final FindByIndexNameSessionRepository<Session> delegate;
+    private final HttpSessionStoreRepository httpSessionStoreRepository;
+    private final Duration touchInterval;
+    private final int cleanupBatchSize;
+
+    private final AtomicLong stored = new AtomicLong();
+    private final Counter touchesWritten;
+    private final Counter touchesDeferred;
+    private final Counter expired;
+
+    @SuppressWarnings("unchecked")
+    public SharedSessionRepository(JdbcIndexedSessionRepository jdbcIndexedSessionRepository,
+                                   HttpSessionStoreRepository httpSessionStoreRepository,
+                                   MeterRegistry meterRegistry,
+                                   @Value("${http-sessions.timeout:30m}") Duration timeout,
+                                   @Value("${http-sessions.touch-interval-seconds:60}") int touchIntervalSeconds,
+                                   @Value("${http-sessions.cleanup-batch-size:500}") int cleanupBatchSize) {
+        this.delegate = (FindByIndexNameSessionRepository<Session>)
+                (FindByIndexNameSessionRepository<?>) jdbcIndexedSessionRepository;
+        jdbcIndexedSessionRepository.setDefaultMaxInactiveInterval(timeout);
+        this.httpSessionStoreRepository = httpSessionStoreRepository;
+        this.touchInterval = Duration.ofSeconds(touchIntervalSeconds);
+        this.cleanupBatchSize = cleanupBatchSize;
+
+        this.touchesWritten = Counter.builder("http.session.touches")
+                .tag("result", "written").description("Last access times written").register(meterRegistry);
+        this.touchesDeferred = Counter.builder("http.session.touches")
+                .tag("result", "deferred").description("Last access times not written yet").register(meterRegistry);
+        this.expired = Counter.builder("http.session.expired")
+                .description("Expired sessions deleted").register(meterRegistry);
+        Gauge.builder("http.session.stored", stored, AtomicLong::get)
+                .description("Sessions in the store after the last cleanup").register(meterRegistry);
+    }
+
+    @Override
+    public SharedSession createSession() {
+        return new SharedSession(delegate.createSession());
+    }
+
+    @Override
+    public void save(SharedSession session) {
+        delegate.save(session.delegate);
+    }
+
+    @Override
+    public SharedSession findById(String id) {
+        Session session = delegate.findById(id);
+        return session == null ? null : new SharedSession(session);
+    }
+
+    @Override
+    public void deleteById(String id) {
+        delegate.deleteById(id);
+    }
+
+    @Override
+    public Map<String, SharedSession> findByIndexNameAndIndexValue(String indexName, String indexValue) {
+        Map<String, SharedSession> sessions = new LinkedHashMap<>();
+        delegate.findByIndexNameAndIndexValue(indexName, indexValue)
+                .forEach((id, session) -> sessions.put(id, new SharedSession(session)));
+        return sessions;
+    }
+
+    // Delete expired sessions in batches
+    @LeaderJob(value = "http-session-cleanup", cron = "0 * * * * *")
+    public void cleanUpExpiredSessions() {
+        long now = System.currentTimeMillis();
+
+        int deleted = 0;
+        int batch;
+        do {
+            batch = httpSessionStoreRepository.deleteExpired(now, cleanupBatchSize);
+            deleted += batch;
+        } while (batch == cleanupBatchSize);
+
+        expired.increment(deleted);
+        stored.set(httpSessionStoreRepository.count());
+
+        if (deleted > 0) {
+            log.debug("Deleted {} expired HTTP sessions", deleted);
+        }
+    }
+
+    // A stored session whose last access time is only written when it is old enough
+    public final class SharedSession implements Session {
+        private final Session delegate;
+
+        private SharedSession(Session delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void setLastAccessedTime(Instant lastAccessedTime) {
+            if (Duration.between(delegate.getLastAccessedTime(), lastAccessedTime).compareTo(touchInterval) >= 0) {
+                delegate.setLastAccessedTime(lastAccessedTime);
+                touchesWritten.increment();
+            } else {
+                touchesDeferred.increment();
+            }
+        }
+
+        @Override
+        public String getId() {
+            return delegate.getId();
+        }
+
+        @Override
+        public String changeSessionId() {
+            return delegate.changeSessionId();
+        }
+
+        @Override
+        public <T> T getAttribute(String attributeName) {
+            return delegate.getAttribute(attributeName);
+        }
+
+        @Override
+        public Set<String> getAttributeNames() {
+            return delegate.getAttributeNames();
+        }
+
+        @Override
+        public void setAttribute(String attributeName, Object attributeValue) {
+            delegate.setAttribute(attributeName, attributeValue);
+        }
+
+        @Override
+        public void removeAttribute(String attributeName) {
+            delegate.removeAttribute(attributeName);
+        }
+
+        @Override
+        public Instant getCreationTime() {
+            return delegate.getCreationTime();
+        }
+
+        @Override
+        public Instant getLastAccessedTime() {
+            return delegate.getLastAccessedTime();
+        }
+
+        @Override
+        public void setMaxInactiveInterval(Duration interval) {
+            delegate.setMaxInactiveInterval(interval);
+        }
+
+        @Override
+        public Duration getMaxInactiveInterval() {
+            return delegate.getMaxInactiveInterval();
+        }
+
+        @Override
+        public boolean isExpired() {
+            return delegate.isExpired();
+        }
+    }
+}
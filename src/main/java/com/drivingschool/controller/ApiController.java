@@ -0,0 +1,267 @@
+package com.drivingschool.controller;
+
+import com.drivingschool.repository.ApiRepository;
+import com.drivingschool.repository.ApiResource;
+import com.drivingschool.repository.TableVersions;
+import com.drivingschool.service.RevenueService;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * REST API v1 (read only, admin accounts)
+ *
+ * List endpoints accept:
+ *  - fields=a,b,c  only these columns are read from the database ("id" is always included)
+ *  - limit=N       page size (default 50, max 500)
+ *  - after=ID      keyset cursor: pass the "next" value of the previous page
+ *  - resource specific filters, e.g. /api/v1/sessions?status=Scheduled&instructorId=2
+ *
+ * Response: {"data": [...], "page": {"limit": 50, "next": 123}} - "next" is null on the last page.
+ * Rows are written to the response while they are read, the page is never built in memory.
+ *
+ * Sessions and payments only cover the years still in the database. Closed years moved to the
+ * columnar archive files are not returned, whatever the filters; they are read through
+ * /admin/reports/archive/export/sessions and /admin/reports/archive/export/payments.
+ */
+
+@RestController
+@RequestMapping("/api/v1")
+public class ApiController {
+
+    private static final int DEFAULT_LIMIT = 50;
+    private static final int MAX_LIMIT = 500;
+
+    private final ApiRepository apiRepository;
+    private final ObjectMapper objectMapper;
+    private final RevenueService revenueService;
+
+    public ApiController(ApiRepository apiRepository, ObjectMapper objectMapper, RevenueService revenueService) {
+        this.apiRepository = apiRepository;
+        this.objectMapper = objectMapper;
+        this.revenueService = revenueService;
+    }
+
+    /**
+     * Trainees (SSN is never exposed)
+     * URL: GET /api/v1/trainees, GET /api/v1/trainees/{id}
+     */
+    @GetMapping("/trainees")
+    @ReadsTables({TableVersions.TRAINEE, TableVersions.APP_USER, TableVersions.INSTRUCTOR})
+    public void listTrainees(@RequestParam Map<String, String> params, HttpServletResponse response) throws IOException {
+        writePage(ApiRepository.TRAINEES, params, response);
+    }
+
+    @GetMapping("/trainees/{id}")
+    @ReadsTables({TableVersions.TRAINEE, TableVersions.APP_USER, TableVersions.INSTRUCTOR})
+    public ResponseEntity<Map<String, Object>> getTrainee(@PathVariable Integer id,
+                                                          @RequestParam(required = false) String fields) {
+        return findOne(ApiRepository.TRAINEES, id, fields);
+    }
+
+    /**
+     * Sessions (Session and Session_Archive; archived=true|false selects one of the two)
+     * URL: GET /api/v1/sessions, GET /api/v1/sessions/{id}
+     */
+    @GetMapping("/sessions")
+    @ReadsTables({TableVersions.SESSION, TableVersions.TRAINEE_SESSION, TableVersions.INSTRUCTOR})
+    public void listSessions(@RequestParam Map<String, String> params, HttpServletResponse response) throws IOException {
+        writePage(ApiRepository.SESSIONS, params, response);
+    }
+
+    @GetMapping("/sessions/{id}")
+    @ReadsTables({TableVersions.SESSION, TableVersions.INSTRUCTOR})
+    public ResponseEntity<Map<String, Object>> getSession(@PathVariable Integer id,
+                                                          @RequestParam(required = false) String fields) {
+        return findOne(ApiRepository.SESSIONS, id, fields);
+    }
+
+    /**
+     * Payments (the Payment table only, archived years are not included)
+     * URL: GET /api/v1/payments, GET /api/v1/payments/{id}
+     */
+    @GetMapping("/payments")
+    @ReadsTables({TableVersions.PAYMENT, TableVersions.TRAINEE})
+    public void listPayments(@RequestParam Map<String, String> params, HttpServletResponse response) throws IOException {
+        writePage(ApiRepository.PAYMENTS, params, response);
+    }
+
+    @GetMapping("/payments/{id}")
+    @ReadsTables({TableVersions.PAYMENT, TableVersions.TRAINEE})
+    public ResponseEntity<Map<String, Object>> getPayment(@PathVariable Integer id,
+                                                          @RequestParam(required = false) String fields) {
+        return findOne(ApiRepository.PAYMENTS, id, fields);
+    }
+
+    /**
+     * Exams
+     * URL: GET /api/v1/exams, GET /api/v1/exams/{id}
+     */
+    @GetMapping("/exams")
+    @ReadsTables({TableVersions.EXAM, TableVersions.TRAINEE})
+    public void listExams(@RequestParam Map<String, String> params, HttpServletResponse response) throws IOException {
+        writePage(ApiRepository.EXAMS, params, response);
+    }
+
+    @GetMapping("/exams/{id}")
+    @ReadsTables({TableVersions.EXAM, TableVersions.TRAINEE})
+    public ResponseEntity<Map<String, Object>> getExam(@PathVariable Integer id,
+                                                       @RequestParam(required = false) String fields) {
+        return findOne(ApiRepository.EXAMS, id, fields);
+    }
+
+    /**
+     * Cars
+     * URL: GET /api/v1/cars, GET /api/v1/cars/{id}
+     */
+    @GetMapping("/cars")
+    @ReadsTables({TableVersions.CAR, TableVersions.INSTRUCTOR})
+    public void listCars(@RequestParam Map<String, String> params, HttpServletResponse response) throws IOException {
+        writePage(ApiRepository.CARS, params, response);
+    }
+
+    @GetMapping("/cars/{id}")
+    @ReadsTables({TableVersions.CAR, TableVersions.INSTRUCTOR})
+    public ResponseEntity<Map<String, Object>> getCar(@PathVariable Integer id,
+                                                      @RequestParam(required = false) String fields) {
+        return findOne(ApiRepository.CARS, id, fields);
+    }
+
+    /**
+     * Instructors
+     * URL: GET /api/v1/instructors, GET /api/v1/instructors/{id}
+     */
+    @GetMapping("/instructors")
+    @ReadsTables({TableVersions.INSTRUCTOR, TableVersions.APP_USER})
+    public void listInstructors(@RequestParam Map<String, String> params, HttpServletResponse response) throws IOException {
+        writePage(ApiRepository.INSTRUCTORS, params, response);
+    }
+
+    @GetMapping("/instructors/{id}")
+    @ReadsTables({TableVersions.INSTRUCTOR, TableVersions.APP_USER})
+    public ResponseEntity<Map<String, Object>> getInstructor(@PathVariable Integer id,
+                                                             @RequestParam(required = false) String fields) {
+        return findOne(ApiRepository.INSTRUCTORS, id, fields);
+    }
+
+    /**
+     * Revenue per day, month or year, by payment method (from the daily revenue rollup)
+     * URL: GET /api/v1/revenue?granularity=month&from=2025-01-01&to=2025-12-31&method=Card
+     */
+    @GetMapping("/revenue")
+    @ReadsTables({TableVersions.REVENUE_DAILY})
+    public List<RevenueService.RevenuePeriod> revenue(
+            @RequestParam(defaultValue = RevenueService.MONTH) String granularity,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) String method) {
+        return revenueService.getRevenue(granularity,
+                from != null ? from : revenueService.defaultFrom(granularity),
+                to != null ? to : LocalDate.now(),
+                method);
+    }
+
+    // Invalid fields, filters, limit or cursor -> 400 with a message
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<Map<String, String>> badRequest(IllegalArgumentException e) {
+        return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+    }
+
+    private void writePage(ApiResource resource, Map<String, String> params, HttpServletResponse response)
+            throws IOException {
+        // everything is validated before the first byte is written
+        Map<String, String> filterParams = new HashMap<>(params);
+        List<String> fields = resource.resolveFields(filterParams.remove("fields"));
+        int limit = parseLimit(filterParams.remove("limit"));
+        Integer after = parseAfter(filterParams.remove("after"));
+        Map<ApiResource.Filter, Object> filters = resource.resolveFilters(filterParams);
+
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding("UTF-8");
+
+        try (JsonGenerator json = objectMapper.createGenerator(response.getOutputStream())) {
+            json.writeStartObject();
+            json.writeArrayFieldStart("data");
+
+            // one extra row tells whether there is a next page
+            int[] written = {0};
+            Object[] lastWrittenId = {null};
+            int rows = apiRepository.streamPage(resource, fields, filters, after, limit + 1, row -> {
+                if (written[0] == limit) {
+                    return;
+                }
+                writeRow(json, fields, row);
+                lastWrittenId[0] = row[0];
+                written[0]++;
+            });
+
+            json.writeEndArray();
+
+            json.writeObjectFieldStart("page");
+            json.writeNumberField("limit", limit);
+            json.writeObjectField("next", rows > limit ? lastWrittenId[0] : null);
+            json.writeEndObject();
+
+            json.writeEndObject();
+        }
+    }
+
+    private ResponseEntity<Map<String, Object>> findOne(ApiResource resource, Integer id, String fieldsParam) {
+        Map<String, Object> row = apiRepository.findById(resource, resource.resolveFields(fieldsParam), id);
+
+        if (row == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+        }
+
+        return ResponseEntity.ok(row);
+    }
+
+    private void writeRow(JsonGenerator json, List<String> fields, Object[] row) {
+        try {
+            json.writeStartObject();
+            for (int i = 0; i < fields.size(); i++) {
+                json.writeObjectField(fields.get(i), row[i]);
+            }
+            json.writeEndObject();
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to write API response", e);
+        }
+    }
+
+    private int parseLimit(String value) {
+        if (value == null || value.isBlank()) {
+            return DEFAULT_LIMIT;
+        }
+
+        int limit = Integer.parseInt(value.trim());
+        if (limit < 1 || limit > MAX_LIMIT) {
+            throw new IllegalArgumentException("limit must be between 1 and " + MAX_LIMIT);
+        }
+
+        return limit;
+    }
+
+    private Integer parseAfter(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+
+        return Integer.valueOf(value.trim());
+    }
+}
@@ -0,0 +1,124 @@
+package com.drivingschool.controller;
+
+import com.drivingschool.repository.TableVersions;
+import com.drivingschool.service.ArchiveService;
+import com.drivingschool.service.SessionPartitionService;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.stereotype.Controller;
+import org.springframework.ui.Model;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.servlet.mvc.support.RedirectAttributes;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.time.LocalDate;
+
+/**
+ * Archive Controller
+ * Browses and exports the closed years that were moved to columnar archive files
+ */
+
+@Controller
+@RequestMapping("/admin/reports/archive")
+public class ArchiveController {
+
+    private final ArchiveService archiveService;
+    private final SessionPartitionService sessionPartitionService;
+
+    public ArchiveController(ArchiveService archiveService, SessionPartitionService sessionPartitionService) {
+        this.archiveService = archiveService;
+        this.sessionPartitionService = sessionPartitionService;
+    }
+
+    /**
+     * Archive files and archived activity per month
+     * URL: GET /admin/reports/archive?from=2023-01-01&to=2025-12-31
+     */
+    @GetMapping
+    @ReadsTables({TableVersions.ARCHIVE_FILE, TableVersions.SESSION})
+    public String archive(@RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                          @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                          Model model) {
+        if (to == null) {
+            to = LocalDate.now().withDayOfYear(1).minusDays(1);
+        }
+        if (from == null) {
+            from = to.minusYears(3).plusDays(1);
+        }
+
+        try {
+            model.addAttribute("history", archiveService.getHistory(from, to));
+        } catch (IllegalArgumentException e) {
+            model.addAttribute("errorMessage", e.getMessage());
+        }
+
+        model.addAttribute("files", archiveService.getFiles());
+        model.addAttribute("partitions", sessionPartitionService);
+        model.addAttribute("from", from);
+        model.addAttribute("to", to);
+
+        return "admin/archive";
+    }
+
+    /**
+     * Archive every closed year now instead of waiting for the monthly job
+     * URL: POST /admin/reports/archive/run
+     */
+    @PostMapping("/run")
+    public String run(RedirectAttributes redirectAttributes) {
+        try {
+            int rows = archiveService.archiveClosedYears();
+            sessionPartitionService.countRows();
+            redirectAttributes.addFlashAttribute("successMessage", rows + " rows of closed years archived");
+        } catch (IllegalStateException e) {
+            redirectAttributes.addFlashAttribute("errorMessage", e.getMessage());
+        }
+
+        return "redirect:/admin/reports/archive";
+    }
+
+    /**
+     * Move sessions completed before the hot window to Session_Archive now instead of waiting for the nightly job
+     * URL: POST /admin/reports/archive/move-sessions
+     */
+    @PostMapping("/move-sessions")
+    public String moveSessions(RedirectAttributes redirectAttributes) {
+        int moved = sessionPartitionService.moveColdSessions();
+        redirectAttributes.addFlashAttribute("successMessage", moved + " sessions moved to Session_Archive");
+
+        return "redirect:/admin/reports/archive";
+    }
+
+    /**
+     * Archived sessions as CSV
+     * URL: GET /admin/reports/archive/export/sessions?from=2024-01-01&to=2024-12-31
+     */
+    @GetMapping("/export/sessions")
+    public void exportSessions(@RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                               @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                               HttpServletResponse response) throws IOException {
+        archiveService.exportSessions(from, to, csvWriter(response, "archived-sessions.csv"));
+    }
+
+    /**
+     * Archived payments as CSV
+     * URL: GET /admin/reports/archive/export/payments?from=2024-01-01&to=2024-12-31
+     */
+    @GetMapping("/export/payments")
+    public void exportPayments(@RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                               @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                               HttpServletResponse response) throws IOException {
+        archiveService.exportPayments(from, to, csvWriter(response, "archived-payments.csv"));
+    }
+
+    private PrintWriter csvWriter(HttpServletResponse response, String fileName) throws IOException {
+        response.setContentType("text/csv");
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader("Content-Disposition", "attachment; filename=\"" + fileName + "\"");
+        return response.getWriter();
+    }
+}
@@ -0,0 +1,45 @@
+package com.drivingschool.controller;
+
+import com.drivingschool.model.AuditEvent;
+import com.drivingschool.service.AuditService;
+import org.springframework.stereotype.Controller;
+import org.springframework.ui.Model;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+
+/**
+ * Audit Controller
+ * Shows who changed a trainee, session, payment or exam, read from the audit journal
+ */
+
+@Controller
+@RequestMapping("/admin/reports/audit")
+public class AuditController {
+
+    private final AuditService auditService;
+
+    public AuditController(AuditService auditService) {
+        this.auditService = auditService;
+    }
+
+    /**
+     * Audit trail of one entity, newest first
+     * URL: GET /admin/reports/audit?entity=TRAINEE&id=5
+     */
+    @GetMapping
+    public String audit(@RequestParam(required = false) AuditEvent.Entity entity,
+                        @RequestParam(required = false) Integer id,
+                        Model model) {
+        if (entity != null && id != null) {
+            model.addAttribute("events", auditService.getHistory(entity, id));
+        }
+
+        model.addAttribute("entities", AuditEvent.Entity.values());
+        model.addAttribute("entity", entity == null ? AuditEvent.Entity.TRAINEE : entity);
+        model.addAttribute("id", id);
+        model.addAttribute("pending", auditService.getPendingCount());
+
+        return "admin/audit";
+    }
+}
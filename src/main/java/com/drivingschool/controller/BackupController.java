@@ -0,0 +1,107 @@
+package com.drivingschool.controller;
+
+import com.drivingschool.service.BackupService;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.stereotype.Controller;
+import org.springframework.ui.Model;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.servlet.mvc.support.RedirectAttributes;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+
+/**
+ * Backup Controller
+ * Takes, verifies, restores and downloads online backups of the database
+ */
+
+@Controller
+@RequestMapping("/admin/reports/backups")
+public class BackupController {
+
+    private final BackupService backupService;
+
+    public BackupController(BackupService backupService) {
+        this.backupService = backupService;
+    }
+
+    /**
+     * Backup files and the latest operations with their timings
+     * URL: GET /admin/reports/backups
+     */
+    @GetMapping
+    public String backups(Model model) {
+        model.addAttribute("backups", backupService.getBackups());
+        model.addAttribute("operations", backupService.getRecentOperations());
+        model.addAttribute("directory", backupService.getDirectory());
+        model.addAttribute("retain", backupService.getRetain());
+
+        return "admin/backups";
+    }
+
+    /**
+     * Back up the database now instead of waiting for the nightly job
+     * URL: POST /admin/reports/backups/run
+     */
+    @PostMapping("/run")
+    public String run(RedirectAttributes redirectAttributes) {
+        try {
+            BackupService.Operation backup = backupService.backup();
+            redirectAttributes.addFlashAttribute("successMessage",
+                    "Backup " + backup.getBackupName() + " written in " + backup.getDurationMillis() + " ms");
+        } catch (IllegalStateException e) {
+            redirectAttributes.addFlashAttribute("errorMessage", e.getMessage());
+        }
+
+        return "redirect:/admin/reports/backups";
+    }
+
+    /**
+     * Check every chunk of a backup
+     * URL: POST /admin/reports/backups/{name}/verify
+     */
+    @PostMapping("/{name}/verify")
+    public String verify(@PathVariable String name, RedirectAttributes redirectAttributes) {
+        try {
+            BackupService.Operation verify = backupService.verify(name);
+            redirectAttributes.addFlashAttribute("successMessage",
+                    "Backup " + name + " verified in " + verify.getDurationMillis() + " ms: " + verify.getMessage());
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            redirectAttributes.addFlashAttribute("errorMessage", e.getMessage());
+        }
+
+        return "redirect:/admin/reports/backups";
+    }
+
+    /**
+     * Restore a backup into a new database next to the backups (the live database is not touched)
+     * URL: POST /admin/reports/backups/{name}/restore
+     */
+    @PostMapping("/{name}/restore")
+    public String restore(@PathVariable String name, RedirectAttributes redirectAttributes) {
+        try {
+            BackupService.Operation restore = backupService.restore(name);
+            redirectAttributes.addFlashAttribute("successMessage",
+                    "Backup " + name + " restored in " + restore.getDurationMillis() + " ms: " + restore.getMessage());
+        } catch (IllegalArgumentException | IllegalStateException e) {
+            redirectAttributes.addFlashAttribute("errorMessage", e.getMessage());
+        }
+
+        return "redirect:/admin/reports/backups";
+    }
+
+    /**
+     * Download a backup file
+     * URL: GET /admin/reports/backups/{name}/download
+     */
+    @GetMapping("/{name}/download")
+    public void download(@PathVariable String name, HttpServletResponse response) throws IOException {
+        response.setContentType("application/octet-stream");
+        response.setContentLengthLong(backupService.getSize(name));
+        response.setHeader("Content-Disposition", "attachment; filename=\"" + name + "\"");
+        backupService.transferTo(name, Channels.newChannel(response.getOutputStream()));
+    }
+}
@@ -2,7 +2,7 @@ package com.drivingschool.controller;
 
 import com.drivingschool.model.Car;
 import com.drivingschool.model.Instructor;
-import com.drivingschool.repository.InstructorRepository;
+import com.drivingschool.repository.TableVersions;
 import com.drivingschool.service.CarService;
 import com.drivingschool.service.InstructorService;
 import org.springframework.stereotype.Controller;
@@ -28,11 +28,11 @@ import java.util.List;
 public class CarController {
 
     private final CarService carService;
-    private final InstructorRepository instructorRepository;
+    private final InstructorService instructorService;
 
-    public CarController(CarService carService, InstructorRepository instructorRepository) {
+    public CarController(CarService carService, InstructorService instructorService) {
         this.carService = carService;
-        this.instructorRepository = instructorRepository;
+        this.instructorService = instructorService;
     }
 
     /**
@@ -40,6 +40,7 @@ public class CarController {
      * URL: GET /admin/cars
      */
     @GetMapping
+    @ReadsTables({TableVersions.CAR, TableVersions.INSTRUCTOR})
     public String listCars(Model model) {
         List<Car> cars = carService.getAllCars();
         Integer totalCount = carService.getTotalCount();
@@ -57,7 +58,7 @@ public class CarController {
     @GetMapping("/add")
     public String showAddForm(Model model) {
         Car car = new Car();
-        List<Instructor> instructors = instructorRepository.findAll();
+        List<Instructor> instructors = instructorService.getAllInstructors();
 
         model.addAttribute("car", car);
         model.addAttribute("instructors", instructors);
@@ -99,7 +100,7 @@ public class CarController {
             return "redirect:/admin/cars";
         }
 
-        List<Instructor> instructors = instructorRepository.findAll();
+        List<Instructor> instructors = instructorService.getAllInstructors();
 
         model.addAttribute("car", car);
         model.addAttribute("instructors", instructors);
@@ -1,9 +1,9 @@
 package com.drivingschool.controller;
 
 import com.drivingschool.model.Exam;
-import com.drivingschool.model.Trainee;
-import com.drivingschool.repository.TraineeRepository;
+import com.drivingschool.repository.TableVersions;
 import com.drivingschool.service.ExamService;
+import com.drivingschool.service.TraineeSearchService;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
@@ -19,11 +19,11 @@ import java.util.List;
 @RequestMapping("/admin/exams")
 public class ExamController {
     private final ExamService examService;
-    private final TraineeRepository traineeRepository;
+    private final TraineeSearchService traineeSearchService;
 
-    public ExamController(ExamService examService, TraineeRepository traineeRepository) {
+    public ExamController(ExamService examService, TraineeSearchService traineeSearchService) {
         this.examService = examService;
-        this.traineeRepository = traineeRepository;
+        this.traineeSearchService = traineeSearchService;
     }
 
     /**
@@ -31,6 +31,7 @@ public class ExamController {
      * URL: GET /admin/exams
      */
     @GetMapping
+    @ReadsTables({TableVersions.EXAM, TableVersions.TRAINEE})
     public String listExams(
             @RequestParam(required = false) String type,
             @RequestParam(required = false) String status,
@@ -65,10 +66,8 @@ public class ExamController {
     @GetMapping("/add")
     public String showAddForm(Model model) {
         Exam exam = new Exam();
-        List<Trainee> trainees = traineeRepository.findAll();
 
         model.addAttribute("exam", exam);
-        model.addAttribute("trainees", trainees);
         model.addAttribute("formMode", "add");
 
         return "admin/exam-form";
@@ -106,10 +105,9 @@ public class ExamController {
             return "redirect:/admin/exams";
         }
 
-        List<Trainee> trainees = traineeRepository.findAll();
-
+        // the trainee is picked by search, only the selected one is rendered
         model.addAttribute("exam", exam);
-        model.addAttribute("trainees", trainees);
+        model.addAttribute("selectedTrainee", traineeSearchService.getMatch(exam.getTraineeId()));
         model.addAttribute("formMode", "edit");
 
         return "admin/exam-form";
@@ -159,17 +157,40 @@ public class ExamController {
     }
 
     /**
-     * Change exam status
-     * URL: /admin/exams/{id}/status/{newStatus}
+     * Record the result of an exam (marks it Completed)
+     * URL: POST /admin/exams/{id}/result
+     */
+    @PostMapping("/{id}/result")
+    public String recordResult(
+            @PathVariable Integer id,
+            @RequestParam String result,
+            @RequestParam(required = false) Integer score,
+            RedirectAttributes redirectAttributes) {
+
+        try {
+            examService.recordResult(id, result, score);
+            redirectAttributes.addFlashAttribute("successMessage",
+                    "Result recorded: " + result);
+        } catch (IllegalArgumentException e) {
+            redirectAttributes.addFlashAttribute("errorMessage", e.getMessage());
+        }
+
+        return "redirect:/admin/exams";
+    }
+
+    /**
+     * Change exam status (version: the version the page was rendered with, optional)
+     * URL: /admin/exams/{id}/status/{newStatus}?version=3
      */
     @GetMapping("/{id}/status/{newStatus}")
     public String changeStatus(
             @PathVariable Integer id,
             @PathVariable String newStatus,
+            @RequestParam(required = false) Integer version,
             RedirectAttributes redirectAttributes) {
 
         try {
-            examService.changeStatus(id, newStatus);
+            examService.changeStatus(id, newStatus, version);
             redirectAttributes.addFlashAttribute("successMessage",
                     "Status changed to: " + newStatus);
         } catch (Exception e) {
@@ -1,6 +1,7 @@
 package com.drivingschool.controller;
 
 import com.drivingschool.model.Instructor;
+import com.drivingschool.repository.TableVersions;
 import com.drivingschool.service.InstructorService;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
@@ -35,6 +36,7 @@ public class InstructorController {
      * URL: GET /admin/instructors
      */
     @GetMapping()
+    @ReadsTables(value = {TableVersions.INSTRUCTOR, TableVersions.APP_USER}, timeBucketSeconds = 86400)
     public String listInstructors(Model model) {
         List<Instructor> instructors = instructorService.getAllInstructors();
         Integer totalCount = instructorService.getTotalCount();
@@ -5,19 +5,29 @@ import com.drivingschool.model.Instructor;
 import com.drivingschool.model.Session;
 import com.drivingschool.model.Trainee;
 import com.drivingschool.repository.AppUserRepository;
-import com.drivingschool.repository.InstructorRepository;
 import com.drivingschool.repository.SessionRepository;
+import com.drivingschool.repository.TableVersions;
 import com.drivingschool.repository.TraineeRepository;
+import com.drivingschool.service.InstructorService;
+import com.drivingschool.service.SessionEventService;
+import com.drivingschool.service.UpcomingScheduleService;
 import org.springframework.boot.Banner;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
 
 /**
  * Instructor Dashboard Controller
@@ -28,19 +38,25 @@ import java.util.Map;
 @RequestMapping("/instructor")
 public class InstructorDashboardController {
 
-    private final InstructorRepository instructorRepository;
+    private final InstructorService instructorService;
     private final SessionRepository sessionRepository;
     private final TraineeRepository traineeRepository;
     private final AppUserRepository appUserRepository;
+    private final SessionEventService sessionEventService;
+    private final UpcomingScheduleService upcomingScheduleService;
 
-    public InstructorDashboardController(InstructorRepository instructorRepository,
+    public InstructorDashboardController(InstructorService instructorService,
                                          SessionRepository sessionRepository,
                                          TraineeRepository traineeRepository,
-                                         AppUserRepository appUserRepository) {
-        this.instructorRepository = instructorRepository;
+                                         AppUserRepository appUserRepository,
+                                         SessionEventService sessionEventService,
+                                         UpcomingScheduleService upcomingScheduleService) {
+        this.instructorService = instructorService;
         this.sessionRepository = sessionRepository;
         this.traineeRepository = traineeRepository;
         this.appUserRepository = appUserRepository;
+        this.sessionEventService = sessionEventService;
+        this.upcomingScheduleService = upcomingScheduleService;
     }
 
     /**
@@ -53,16 +69,8 @@ public class InstructorDashboardController {
             return null;
         }
 
-        // get user id
-        Integer userId = appUser.getUserId();
-
-        // find instructor by name
-        List<Instructor> allInstructors = instructorRepository.findAll();
-
-        return allInstructors.stream()
-                .filter(i -> i.getUserId() != null && i.getUserId().equals(userId))
-                .findFirst()
-                .orElse(null);
+        // find the instructor profile of the user (cached)
+        return instructorService.getInstructorByUserId(appUser.getUserId());
     }
 
     /**
@@ -70,6 +78,9 @@ public class InstructorDashboardController {
      * URL: GET /instructor/dashboard
      */
     @GetMapping("/dashboard")
+    @ReadsTables(value = {
+            TableVersions.APP_USER, TableVersions.INSTRUCTOR, TableVersions.TRAINEE, TableVersions.SESSION,
+            TableVersions.TRAINEE_SESSION}, timeBucketSeconds = 60)
     public String dashboard(Authentication authentication, Model model) {
         // get logged-in username
         String username = authentication.getName();
@@ -86,12 +97,13 @@ public class InstructorDashboardController {
         // get instructor sessions
         List<Session> allSessions = sessionRepository.findByInstructorId(instructor.getInstructorId());
 
-        // filter upcoming sessions
-        List<Session> upcomingSessions = allSessions.stream()
-                .filter(s -> s.isScheduled())
-                .filter(s -> s.isUpcoming())
-                .sorted((s1, s2) -> s1.getStartDateTime().compareTo(s2.getStartDateTime()))
-                .limit(5)
+        // next upcoming sessions (maintained by the upcoming schedule)
+        Map<Integer, Session> sessionsById = allSessions.stream()
+                .collect(Collectors.toMap(Session::getSessionId, s -> s));
+        List<Session> upcomingSessions = upcomingScheduleService
+                .getUpcomingSessionIdsForInstructor(instructor.getInstructorId(), 5).stream()
+                .map(sessionsById::get)
+                .filter(Objects::nonNull)
                 .toList();
 
         // filter completed sessions
@@ -133,6 +145,8 @@ public class InstructorDashboardController {
      * URL: GET /instructor/schedule
      */
     @GetMapping("/schedule")
+    @ReadsTables({TableVersions.APP_USER, TableVersions.INSTRUCTOR, TableVersions.TRAINEE, TableVersions.SESSION,
+            TableVersions.TRAINEE_SESSION})
     public String Schedule(Authentication authentication, Model model) {
         String username = authentication.getName();
         Instructor instructor = findInstructorByUsername(username);
@@ -152,11 +166,28 @@ public class InstructorDashboardController {
         return "instructor/schedule";
     }
 
+    /**
+     * Live schedule updates (Server-Sent Events)
+     * URL: GET /instructor/schedule/events
+     */
+    @GetMapping(value = "/schedule/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @ResponseBody
+    public SseEmitter scheduleEvents(Authentication authentication) {
+        Instructor instructor = findInstructorByUsername(authentication.getName());
+
+        if (instructor == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Instructor profile not found");
+        }
+
+        return sessionEventService.subscribeInstructor(instructor.getInstructorId());
+    }
+
     /**
      * My trainees - all assigned trainees
      * URL: GET /instructor/trainees
      */
     @GetMapping("/trainees")
+    @ReadsTables({TableVersions.APP_USER, TableVersions.INSTRUCTOR, TableVersions.TRAINEE})
     public String trainees(Authentication authentication, Model model) {
         String username = authentication.getName();
         Instructor instructor = findInstructorByUsername(username);
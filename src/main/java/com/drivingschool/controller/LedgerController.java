@@ -0,0 +1,72 @@
+package com.drivingschool.controller;
+
+import com.drivingschool.repository.TableVersions;
+import com.drivingschool.service.LedgerService;
+import org.springframework.stereotype.Controller;
+import org.springframework.ui.Model;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.support.RedirectAttributes;
+
+import java.math.BigDecimal;
+
+/**
+ * Ledger Controller - outstanding balances and tuition prices
+ */
+
+@Controller
+@RequestMapping("/admin/ledger")
+public class LedgerController {
+
+    private final LedgerService ledgerService;
+
+    public LedgerController(LedgerService ledgerService) {
+        this.ledgerService = ledgerService;
+    }
+
+    /**
+     * Trainees with an outstanding balance and the tuition price list
+     * URL: GET /admin/ledger
+     */
+    @GetMapping
+    @ReadsTables({TableVersions.TRAINEE_BALANCE, TableVersions.TUITION_PRICE, TableVersions.TRAINEE})
+    public String ledger(Model model) {
+        model.addAttribute("balances", ledgerService.getOutstandingBalances());
+        model.addAttribute("totalOutstanding", ledgerService.getTotalOutstanding());
+        model.addAttribute("prices", ledgerService.getTuitionPrices());
+
+        return "admin/ledger";
+    }
+
+    /**
+     * Change the course price of a license category
+     * URL: POST /admin/ledger/prices/{category}
+     */
+    @PostMapping("/prices/{category}")
+    public String updatePrice(@PathVariable String category,
+                              @RequestParam BigDecimal price,
+                              RedirectAttributes redirectAttributes) {
+        try {
+            int repriced = ledgerService.updateTuitionPrice(category, price);
+            redirectAttributes.addFlashAttribute("successMessage",
+                    "Price for category " + category + " updated (" + repriced + " balances adjusted)");
+        } catch (IllegalArgumentException e) {
+            redirectAttributes.addFlashAttribute("errorMessage", e.getMessage());
+        }
+
+        return "redirect:/admin/ledger";
+    }
+
+    /**
+     * Run the ledger reconciliation now
+     * URL: POST /admin/ledger/reconcile
+     */
+    @PostMapping("/reconcile")
+    public String reconcile(RedirectAttributes redirectAttributes) {
+        int repaired = ledgerService.reconcile();
+
+        redirectAttributes.addFlashAttribute("successMessage",
+                repaired == 0 ? "All balances match the payments" : repaired + " balances repaired");
+
+        return "redirect:/admin/ledger";
+    }
+}
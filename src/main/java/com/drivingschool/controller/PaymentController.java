@@ -1,9 +1,9 @@
 package com.drivingschool.controller;
 
 import com.drivingschool.model.Payment;
-import com.drivingschool.model.Trainee;
-import com.drivingschool.repository.TraineeRepository;
+import com.drivingschool.repository.TableVersions;
 import com.drivingschool.service.PaymentService;
+import com.drivingschool.service.TraineeSearchService;
 import com.drivingschool.service.TraineeService;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
@@ -22,11 +22,11 @@ import java.util.List;
 public class PaymentController {
 
     private final PaymentService paymentService;
-    private final TraineeRepository traineeRepository;
+    private final TraineeSearchService traineeSearchService;
 
-    public PaymentController(PaymentService paymentService, TraineeRepository traineeRepository) {
+    public PaymentController(PaymentService paymentService, TraineeSearchService traineeSearchService) {
         this.paymentService = paymentService;
-        this.traineeRepository = traineeRepository;
+        this.traineeSearchService = traineeSearchService;
     }
 
     /**
@@ -34,6 +34,7 @@ public class PaymentController {
      * URL: GET /admin/payments
      */
     @GetMapping
+    @ReadsTables({TableVersions.PAYMENT, TableVersions.TRAINEE})
     public String listPayments(@RequestParam(required = false) String method,
                                Model model) {
         List<Payment> payments;
@@ -61,10 +62,8 @@ public class PaymentController {
     @GetMapping("/add")
     public String showAddForm(Model model) {
         Payment payment = new Payment();
-        List<Trainee> trainees = traineeRepository.findAll();
 
         model.addAttribute("payment", payment);
-        model.addAttribute("trainees", trainees);
         model.addAttribute("formMode", "add");
 
         return "admin/payment-form";
@@ -100,10 +99,9 @@ public class PaymentController {
             return "redirect: /admin/payments";
         }
 
-        List<Trainee> trainees = traineeRepository.findAll();
-
+        // the trainee is picked by search, only the selected one is rendered
         model.addAttribute("payment", payment);
-        model.addAttribute("trainees", trainees);
+        model.addAttribute("selectedTrainee", traineeSearchService.getMatch(payment.getTraineeId()));
         model.addAttribute("formMode", "edit");
 
         return "admin/payment-form";
@@ -0,0 +1,79 @@
+package com.drivingschool.controller;
+
+import com.drivingschool.repository.TableVersions;
+import com.drivingschool.service.TraineeProgressService;
+import org.springframework.stereotype.Controller;
+import org.springframework.ui.Model;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.support.RedirectAttributes;
+
+/**
+ * Progress Controller - exam-ready trainees and required practical hours
+ */
+
+@Controller
+@RequestMapping("/admin/progress")
+public class ProgressController {
+
+    private final TraineeProgressService traineeProgressService;
+
+    public ProgressController(TraineeProgressService traineeProgressService) {
+        this.traineeProgressService = traineeProgressService;
+    }
+
+    /**
+     * Trainees that are exam-ready or within the given hours of it, and the requirement list
+     * URL: GET /admin/progress?hoursLeft=5
+     */
+    @GetMapping
+    @ReadsTables({TableVersions.TRAINEE_PROGRESS, TableVersions.LICENSE_REQUIREMENT,
+            TableVersions.TRAINEE, TableVersions.INSTRUCTOR})
+    public String progress(@RequestParam(defaultValue = "5") int hoursLeft,
+                           Model model) {
+        try {
+            model.addAttribute("trainees", traineeProgressService.getCloseToExamReady(hoursLeft));
+        } catch (IllegalArgumentException e) {
+            hoursLeft = 0;
+            model.addAttribute("trainees", traineeProgressService.getExamReady());
+            model.addAttribute("errorMessage", e.getMessage());
+        }
+
+        model.addAttribute("hoursLeft", hoursLeft);
+        model.addAttribute("requirements", traineeProgressService.getRequirements());
+
+        return "admin/progress";
+    }
+
+    /**
+     * Change the required practical hours of a license category
+     * URL: POST /admin/progress/requirements/{category}
+     */
+    @PostMapping("/requirements/{category}")
+    public String updateRequirement(@PathVariable String category,
+                                    @RequestParam Integer requiredHours,
+                                    RedirectAttributes redirectAttributes) {
+        try {
+            int updated = traineeProgressService.updateRequiredHours(category, requiredHours);
+            redirectAttributes.addFlashAttribute("successMessage",
+                    "Required hours for category " + category + " updated (" + updated + " trainees adjusted)");
+        } catch (IllegalArgumentException e) {
+            redirectAttributes.addFlashAttribute("errorMessage", e.getMessage());
+        }
+
+        return "redirect:/admin/progress";
+    }
+
+    /**
+     * Run the progress reconciliation now
+     * URL: POST /admin/progress/reconcile
+     */
+    @PostMapping("/reconcile")
+    public String reconcile(RedirectAttributes redirectAttributes) {
+        int repaired = traineeProgressService.reconcile();
+
+        redirectAttributes.addFlashAttribute("successMessage",
+                repaired == 0 ? "All trainees match their completed sessions" : repaired + " trainees repaired");
+
+        return "redirect:/admin/progress";
+    }
+}
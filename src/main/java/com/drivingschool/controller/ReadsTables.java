@@ -0,0 +1,29 @@
+package com.drivingschool.controller;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Declares which tables a GET handler reads
+ *
+ * The ConditionalGetInterceptor builds a weak ETag from the versions of these tables,
+ * so a request with a matching If-None-Match gets 304 before the handler runs.
+ * Table names are the constants in TableVersions.
+ */
+
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ReadsTables {
+
+    String[] value();
+
+    // For pages that depend on the current time (e.g. "upcoming sessions"), the ETag
+    // also changes every timeBucketSeconds. 0 means the page only depends on the tables.
+    long timeBucketSeconds() default 0;
+
+    // For pages that read every branch (see Branches): the versions only track the home branch,
+    // so with several branches the ETag also changes every branches.cache-seconds.
+    boolean allBranches() default false;
+}
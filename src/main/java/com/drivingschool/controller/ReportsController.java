@@ -1,11 +1,23 @@
 package com.drivingschool.controller;
 
 import com.drivingschool.repository.ReportsRepository;
+import com.drivingschool.repository.TableVersions;
+import com.drivingschool.service.ExamService;
+import com.drivingschool.service.RevenueService;
+import com.drivingschool.service.SessionAnalyticsService;
+import com.drivingschool.service.ScheduleWatchlistService;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
+import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.util.List;
 import java.util.Map;
 
@@ -19,9 +31,19 @@ import java.util.Map;
 public class ReportsController {
 
     private final ReportsRepository reportsRepository;
-
-    public ReportsController(ReportsRepository reportsRepository) {
+    private final RevenueService revenueService;
+    private final ScheduleWatchlistService scheduleWatchlistService;
+    private final ExamService examService;
+    private final SessionAnalyticsService sessionAnalyticsService;
+
+    public ReportsController(ReportsRepository reportsRepository, RevenueService revenueService,
+                             ScheduleWatchlistService scheduleWatchlistService, ExamService examService,
+                             SessionAnalyticsService sessionAnalyticsService) {
         this.reportsRepository = reportsRepository;
+        this.revenueService = revenueService;
+        this.scheduleWatchlistService = scheduleWatchlistService;
+        this.examService = examService;
+        this.sessionAnalyticsService = sessionAnalyticsService;
     }
 
     /**
@@ -34,10 +56,12 @@ public class ReportsController {
     }
 
     /**
-     * Report 1: Trainees with above-average completed sessions
+     * Report 1: Trainees with above-average completed sessions, over every branch
      * URL: GET /admin/reports/above-average-sessions
      */
     @GetMapping("/above-average-sessions")
+    @ReadsTables(value = {TableVersions.TRAINEE, TableVersions.APP_USER, TableVersions.SESSION, TableVersions.TRAINEE_SESSION,
+            TableVersions.ARCHIVED_TRAINEE_TOTALS}, allBranches = true)
     public String aboveAverageSessions(Model model) {
         List<Map<String, Object>> results = reportsRepository.findTraineesWithAboveAverageHours();
 
@@ -49,14 +73,17 @@ public class ReportsController {
     }
 
     /**
-     * Report 2: Top instructors by student pass rate
+     * Report 2: Top instructors by student pass rate (from the exam result counters), over every branch
      * URL: GET /admin/reports/top-instructors
      */
     @GetMapping("/top-instructors")
+    @ReadsTables(value = {TableVersions.INSTRUCTOR, TableVersions.INSTRUCTOR_EXAM_STATS, TableVersions.CATEGORY_EXAM_STATS},
+            allBranches = true)
     public String topInstructors(Model model) {
-        List<Map<String, Object>> results = reportsRepository.findTopInstructorsByPassRate();
+        List<Map<String, Object>> results = examService.getInstructorLeaderboard();
 
         model.addAttribute("results", results);
+        model.addAttribute("categoryResults", examService.getCategoryPassRates());
         model.addAttribute("reportTitle", "Top Instructors by Student Pass Rate");
         model.addAttribute("reportType", "top-instructors");
 
@@ -64,10 +91,12 @@ public class ReportsController {
     }
 
     /**
-     * Report 3: Most active instructors (by session count)
+     * Report 3: Most active instructors (by session count), over every branch
      * URL: GET /admin/reports/most-active-instructors
      */
     @GetMapping("/most-active-instructors")
+    @ReadsTables(value = {TableVersions.CAR, TableVersions.INSTRUCTOR, TableVersions.SESSION,
+            TableVersions.ARCHIVED_INSTRUCTOR_TOTALS}, allBranches = true)
     public String mostActiveInstructors(Model model) {
         List<Map<String, Object>> results = reportsRepository.findMostUtilizedCars();
 
@@ -79,17 +108,144 @@ public class ReportsController {
     }
 
     /**
-     * Report 4: Trainees behind schedule
+     * Report 4: Trainees behind schedule (read from the maintained watchlists), over every branch
      * URL: GET /admin/reports/behind-schedule
      */
     @GetMapping("/behind-schedule")
+    @ReadsTables(value = {TableVersions.SCHEDULE_WATCHLIST, TableVersions.TRAINEE}, timeBucketSeconds = 3600,
+            allBranches = true)
     public String behindSchedule(Model model) {
-        List<Map<String, Object>> results = reportsRepository.findTraineesBehindSchedule();
-
-        model.addAttribute("results", results);
+        model.addAttribute("results", scheduleWatchlistService.getAllWatchlists());
+        model.addAttribute("averageSessions", scheduleWatchlistService.getAverageSessions());
         model.addAttribute("reportTitle", "Trainees Behind Schedule");
         model.addAttribute("reportType", "behind-schedule");
 
         return "admin/reports-result";
     }
-}
\ No newline at end of file
+
+    /**
+     * Number of trainees behind schedule in every branch (polled by the admin dashboard badge)
+     * URL: GET /admin/reports/behind-schedule/count
+     */
+    @GetMapping("/behind-schedule/count")
+    @ReadsTables(value = {TableVersions.SCHEDULE_WATCHLIST}, allBranches = true)
+    @ResponseBody
+    public Map<String, Object> behindScheduleCount() {
+        return Map.of("count", scheduleWatchlistService.countAllWatchlists());
+    }
+
+    /**
+     * Report 5: Revenue per day, month or year (from the daily revenue rollup)
+     * URL: GET /admin/reports/revenue?granularity=month&from=2025-01-01&to=2025-12-31&method=Cash
+     */
+    @GetMapping("/revenue")
+    @ReadsTables({TableVersions.REVENUE_DAILY})
+    public String revenue(@RequestParam(defaultValue = RevenueService.MONTH) String granularity,
+                          @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                          @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                          @RequestParam(required = false) String method,
+                          Model model) {
+        if (from == null) {
+            from = revenueService.defaultFrom(granularity);
+        }
+
+        if (to == null) {
+            to = LocalDate.now();
+        }
+
+        if (method != null && method.isEmpty()) {
+            method = null;
+        }
+
+        List<RevenueService.RevenuePeriod> periods;
+        try {
+            periods = revenueService.getRevenue(granularity, from, to, method);
+        } catch (IllegalArgumentException e) {
+            model.addAttribute("errorMessage", e.getMessage());
+            periods = List.of();
+        }
+
+        BigDecimal total = periods.stream()
+                .map(RevenueService.RevenuePeriod::getTotalRevenue)
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+
+        model.addAttribute("periods", periods);
+        model.addAttribute("total", total);
+        model.addAttribute("granularity", granularity);
+        model.addAttribute("from", from);
+        model.addAttribute("to", to);
+        model.addAttribute("method", method);
+
+        return "admin/revenue-report";
+    }
+
+    /**
+     * Rebuild the revenue rollup from the Payment table
+     * URL: POST /admin/reports/revenue/rebuild
+     */
+    @PostMapping("/revenue/rebuild")
+    public String rebuildRevenue(RedirectAttributes redirectAttributes) {
+        revenueService.rebuild();
+        redirectAttributes.addFlashAttribute("successMessage", "Revenue rollup rebuilt from all payments");
+
+        return "redirect:/admin/reports/revenue";
+    }
+
+    /**
+     * Report 6: Sessions and hours per instructor, trainee, day or week (from the session snapshot)
+     * URL: GET /admin/reports/session-analytics?groupBy=week&from=2025-01-01&to=2025-12-31&type=Practical
+     */
+    @GetMapping("/session-analytics")
+    @ReadsTables({TableVersions.SESSION, TableVersions.TRAINEE_SESSION, TableVersions.INSTRUCTOR, TableVersions.TRAINEE})
+    public String sessionAnalytics(@RequestParam(defaultValue = SessionAnalyticsService.INSTRUCTOR) String groupBy,
+                                   @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                   @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                   @RequestParam(required = false) String type,
+                                   @RequestParam(required = false) String status,
+                                   @RequestParam(defaultValue = "50") int limit,
+                                   Model model) {
+        if (from == null) {
+            from = LocalDate.now().minusYears(1);
+        }
+
+        if (to == null) {
+            to = LocalDate.now();
+        }
+
+        if (type != null && type.isEmpty()) {
+            type = null;
+        }
+
+        if (status != null && status.isEmpty()) {
+            status = null;
+        }
+
+        try {
+            model.addAttribute("result",
+                    sessionAnalyticsService.aggregate(groupBy, from, to, type, status, Math.max(1, limit)));
+        } catch (IllegalArgumentException e) {
+            model.addAttribute("errorMessage", e.getMessage());
+        }
+
+        model.addAttribute("groupBy", groupBy);
+        model.addAttribute("from", from);
+        model.addAttribute("to", to);
+        model.addAttribute("type", type);
+        model.addAttribute("status", status);
+        model.addAttribute("limit", limit);
+
+        return "admin/session-analytics";
+    }
+
+    /**
+     * Reload the session snapshot from the database
+     * URL: POST /admin/reports/session-analytics/rebuild
+     */
+    @PostMapping("/session-analytics/rebuild")
+    public String rebuildSessionAnalytics(RedirectAttributes redirectAttributes) {
+        sessionAnalyticsService.rebuild();
+        redirectAttributes.addFlashAttribute("successMessage", "Session snapshot reloaded from the database");
+
+        return "redirect:/admin/reports/session-analytics";
+    }
+}
@@ -2,10 +2,11 @@ package com.drivingschool.controller;
 
 import com.drivingschool.model.Instructor;
 import com.drivingschool.model.Session;
-import com.drivingschool.model.Trainee;
-import com.drivingschool.repository.InstructorRepository;
-import com.drivingschool.repository.TraineeRepository;
+import com.drivingschool.repository.TableVersions;
+import com.drivingschool.service.FeedbackSearchService;
+import com.drivingschool.service.InstructorService;
 import com.drivingschool.service.SessionService;
+import com.drivingschool.service.TraineeSearchService;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
@@ -24,6 +25,7 @@ import java.util.Map;
  *  - POST /admin/sessions/edit/{id}    -> Process edit form
  *  - GET /admin/sessions/delete/{id}   -> Delete session
  *  - POST /admin/sessions/{id}/feedback    -> Add feedback
+ *  - GET /admin/sessions/feedback-search   -> Search instructor feedback
  */
 
 @Controller
@@ -31,28 +33,35 @@ import java.util.Map;
 public class SessionController {
 
     private final SessionService sessionService;
-    private final InstructorRepository instructorRepository;
-    private final TraineeRepository traineeRepository;
+    private final InstructorService instructorService;
+    private final TraineeSearchService traineeSearchService;
+    private final FeedbackSearchService feedbackSearchService;
 
-    public SessionController(SessionService sessionService, InstructorRepository instructorRepository, TraineeRepository traineeRepository) {
+    public SessionController(SessionService sessionService, InstructorService instructorService, TraineeSearchService traineeSearchService,
+                             FeedbackSearchService feedbackSearchService) {
         this.sessionService = sessionService;
-        this.instructorRepository = instructorRepository;
-        this.traineeRepository = traineeRepository;
+        this.instructorService = instructorService;
+        this.traineeSearchService = traineeSearchService;
+        this.feedbackSearchService = feedbackSearchService;
     }
 
     /**
-     * Display list of all sessions
+     * Display list of current sessions (history=true also lists the archived ones)
      * URL: GET /admin/sessions
      */
     @GetMapping
+    @ReadsTables({TableVersions.SESSION, TableVersions.TRAINEE_SESSION, TableVersions.INSTRUCTOR, TableVersions.TRAINEE})
     public String listSessions(@RequestParam(required = false) String type,
                                @RequestParam(required = false) String status,
+                               @RequestParam(defaultValue = "false") boolean history,
                                Model model) {
 
         List<Session> sessions;
 
         // Filter by type and/or status
-        if (type != null && !type.isEmpty()) {
+        if (history) {
+            sessions = sessionService.getSessionHistory();
+        } else if (type != null && !type.isEmpty()) {
             sessions = sessionService.getSessionsByType(type);
         } else if (status != null && !status.isEmpty()) {
             sessions = sessionService.getSessionsByStatus(status);
@@ -78,12 +87,10 @@ public class SessionController {
     @GetMapping("/add")
     public String showAddForm(Model model) {
         Session trainingSession = new Session();
-        List<Instructor> instructors = instructorRepository.findAll();
-        List<Trainee> trainees = traineeRepository.findAll();
+        List<Instructor> instructors = instructorService.getAllInstructors();
 
         model.addAttribute("trainingSession", trainingSession);
         model.addAttribute("instructors", instructors);
-        model.addAttribute("trainees", trainees);
         model.addAttribute("formMode", "add");
 
         return "admin/session-form";
@@ -120,8 +127,7 @@ public class SessionController {
             return "redirect:/admin/sessions";
         }
 
-        List<Instructor> instructors = instructorRepository.findAll();
-        List<Trainee> trainees = traineeRepository.findAll();
+        List<Instructor> instructors = instructorService.getAllInstructors();
 
         // Get enrolled trainees for theoretical sessions
         List<Integer> enrolledTraineeIds = null;
@@ -129,10 +135,11 @@ public class SessionController {
             enrolledTraineeIds = sessionService.getTraineesForSession(id);
         }
 
+        // trainees are picked by search, only the selected ones are rendered
         model.addAttribute("trainingSession", trainingSession);
         model.addAttribute("instructors", instructors);
-        model.addAttribute("trainees", trainees);
-        model.addAttribute("enrolledTraineeIds", enrolledTraineeIds);
+        model.addAttribute("selectedTrainee", traineeSearchService.getMatch(trainingSession.getTraineeId()));
+        model.addAttribute("enrolledTrainees", traineeSearchService.getMatches(enrolledTraineeIds));
         model.addAttribute("formMode", "edit");
 
         return "admin/session-form";
@@ -182,15 +189,16 @@ public class SessionController {
     }
 
     /**
-     * Change session status
-     * URL: GET /admin/sessions/{id}/status/{newStatus}
+     * Change session status (version: the version the list was rendered with, optional)
+     * URL: GET /admin/sessions/{id}/status/{newStatus}?version=3
      */
     @GetMapping("/{id}/status/{newStatus}")
     public String changeStatus(@PathVariable Integer id, @PathVariable String newStatus,
+                    @RequestParam(required = false) Integer version,
                     RedirectAttributes redirectAttributes) {
 
         try {
-            sessionService.changeStatus(id, newStatus);
+            sessionService.changeStatus(id, newStatus, version);
             redirectAttributes.addFlashAttribute("successMessage",
                     "Status changed to: " + newStatus);
             } catch (Exception e) {
@@ -221,16 +229,17 @@ public class SessionController {
     }
 
     /**
-     * Add feedback to session
+     * Add feedback to session (version: the version the form was rendered with, optional)
      * URL: POST /admin/sessions/{id}/feedback
      */
     @PostMapping("/{id}/feedback")
     public String addFeedback(@PathVariable Integer id,
                               @RequestParam String feedback,
+                              @RequestParam(required = false) Integer version,
                               RedirectAttributes redirectAttributes) {
 
         try {
-            sessionService.addFeedback(id, feedback);
+            sessionService.addFeedback(id, feedback, version);
             redirectAttributes.addFlashAttribute("successMessage",
                     "Feedback added successfully");
             } catch (Exception e) {
@@ -239,4 +248,23 @@ public class SessionController {
 
         return "redirect:/admin/sessions";
     }
+
+    /**
+     * Search instructor feedback of all sessions, including the archived ones
+     * URL: GET /admin/sessions/feedback-search?q=parcare laterala&limit=20
+     */
+    @GetMapping("/feedback-search")
+    public String searchFeedback(@RequestParam(required = false) String q,
+                                 @RequestParam(defaultValue = "20") int limit,
+                                 Model model) {
+
+        if (q != null && !q.isBlank()) {
+            model.addAttribute("result", feedbackSearchService.search(q, limit));
+        }
+
+        model.addAttribute("query", q);
+        model.addAttribute("limit", limit);
+
+        return "admin/feedback-search";
+    }
 }
@@ -2,13 +2,19 @@ package com.drivingschool.controller;
 
 import com.drivingschool.model.Instructor;
 import com.drivingschool.model.Trainee;
-import com.drivingschool.repository.InstructorRepository;
+import com.drivingschool.repository.TableVersions;
+import com.drivingschool.service.InstructorService;
+import com.drivingschool.service.TraineeImportService;
+import com.drivingschool.service.TraineeSearchService;
 import com.drivingschool.service.TraineeService;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
 
 /**
@@ -20,6 +26,9 @@ import java.util.List;
  *  - GET /admin/trainees/edit/{id}     -> Show edit form
  *  - POST /admin/trainees/edit/{id}    -> Process edit form
  *  - GET /admin/trainees/delete/{id}   -> Delete trainee
+ *  - GET /admin/trainees/import        -> Show CSV import form
+ *  - POST /admin/trainees/import       -> Process CSV import
+ *  - GET /admin/trainees/search        -> Typeahead matches (JSON)
  */
 
 @Controller
@@ -27,11 +36,27 @@ import java.util.List;
 public class TraineeController {
 
     private final TraineeService traineeService;
-    private final InstructorRepository instructorRepository;
+    private final TraineeImportService traineeImportService;
+    private final InstructorService instructorService;
+    private final TraineeSearchService traineeSearchService;
 
-    public TraineeController(TraineeService traineeService, InstructorRepository instructorRepository) {
+    public TraineeController(TraineeService traineeService, TraineeImportService traineeImportService,
+                             InstructorService instructorService, TraineeSearchService traineeSearchService) {
         this.traineeService = traineeService;
-        this.instructorRepository = instructorRepository;
+        this.traineeImportService = traineeImportService;
+        this.instructorService = instructorService;
+        this.traineeSearchService = traineeSearchService;
+    }
+
+    /**
+     * Trainees matching a typed name, username, phone or last SSN digits (used by the trainee pickers)
+     * URL: GET /admin/trainees/search?q=ion&limit=10
+     */
+    @GetMapping("/search")
+    @ResponseBody
+    public List<TraineeSearchService.TraineeMatch> search(@RequestParam(defaultValue = "") String q,
+                                                          @RequestParam(defaultValue = "10") int limit) {
+        return traineeSearchService.search(q, limit);
     }
 
     /**
@@ -39,6 +64,7 @@ public class TraineeController {
      * URL: GET /admin/trainees
      */
     @GetMapping
+    @ReadsTables({TableVersions.TRAINEE, TableVersions.APP_USER, TableVersions.INSTRUCTOR})
     public String listTrainees(@RequestParam(required = false) String status, Model model) {
         List<Trainee> trainees;
 
@@ -72,7 +98,7 @@ public class TraineeController {
     @GetMapping("/add")
     public String showAddForm(Model model) {
         Trainee trainee = new Trainee();
-        List<Instructor> instructors = instructorRepository.findAll();
+        List<Instructor> instructors = instructorService.getAllInstructors();
 
         model.addAttribute("trainee", trainee);
         model.addAttribute("instructors", instructors);
@@ -115,7 +141,7 @@ public class TraineeController {
             return "redirect:/admin/trainees";
         }
 
-        List<Instructor> instructors = instructorRepository.findAll();
+        List<Instructor> instructors = instructorService.getAllInstructors();
 
         model.addAttribute("trainee", trainee);
         model.addAttribute("instructors", instructors);
@@ -167,14 +193,15 @@ public class TraineeController {
     }
 
     /**
-     * Change trainee status
-     * URL: GET /admin/trainees/{id}/status/{newStatus}
+     * Change trainee status (version: the version the page was rendered with, optional)
+     * URL: GET /admin/trainees/{id}/status/{newStatus}?version=3
      */
     @GetMapping("/{id}/status/{newStatus}")
     public String changeStatus(@PathVariable Integer id, @PathVariable String newStatus,
+                               @RequestParam(required = false) Integer version,
                                RedirectAttributes redirectAttributes) {
         try {
-            traineeService.changeStatus(id, newStatus);
+            traineeService.changeStatus(id, newStatus, version);
 
             redirectAttributes.addFlashAttribute("successMessage",
                     "Status changed to " + newStatus);
@@ -184,4 +211,40 @@ public class TraineeController {
 
         return "redirect:/admin/trainees";
     }
+
+    /**
+     * Show CSV import form
+     * URL: GET /admin/trainees/import
+     */
+    @GetMapping("/import")
+    public String showImportForm(Model model) {
+        model.addAttribute("columns", TraineeImportService.REQUIRED_COLUMNS);
+        return "admin/trainee-import";
+    }
+
+    /**
+     * Process CSV import - rejected rows are listed with their line number
+     * URL: POST /admin/trainees/import
+     */
+    @PostMapping("/import")
+    public String importTrainees(@RequestParam("file") MultipartFile file, Model model) {
+        model.addAttribute("columns", TraineeImportService.REQUIRED_COLUMNS);
+
+        if (file.isEmpty()) {
+            model.addAttribute("errorMessage", "Please choose a CSV file to import");
+            return "admin/trainee-import";
+        }
+
+        try (InputStream input = file.getInputStream()) {
+            TraineeImportService.ImportResult result = traineeImportService.importCsv(input);
+
+            model.addAttribute("result", result);
+            model.addAttribute("successMessage",
+                    "Imported " + result.getImportedRows() + " of " + result.getTotalRows() + " trainees");
+        } catch (IllegalArgumentException | IOException e) {
+            model.addAttribute("errorMessage", e.getMessage());
+        }
+
+        return "admin/trainee-import";
+    }
 }
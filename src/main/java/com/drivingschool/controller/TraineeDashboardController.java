@@ -2,18 +2,28 @@ package com.drivingschool.controller;
 
 import com.drivingschool.model.*;
 import com.drivingschool.repository.*;
+import com.drivingschool.service.LedgerService;
+import com.drivingschool.service.SessionEventService;
+import com.drivingschool.service.TraineeProgressService;
+import com.drivingschool.service.UpcomingScheduleService;
 import org.springframework.boot.Banner;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.parameters.P;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
-import java.math.BigDecimal;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
 
 /**
  * Trainee dashboard controller
@@ -29,17 +39,29 @@ public class TraineeDashboardController {
     private final PaymentRepository paymentRepository;
     private final ExamRepository examRepository;
     private final AppUserRepository appUserRepository;
+    private final SessionEventService sessionEventService;
+    private final LedgerService ledgerService;
+    private final TraineeProgressService traineeProgressService;
+    private final UpcomingScheduleService upcomingScheduleService;
 
     public TraineeDashboardController(TraineeRepository traineeRepository,
                                       SessionRepository sessionRepository,
                                       PaymentRepository paymentRepository,
                                       ExamRepository examRepository,
-                                      AppUserRepository appUserRepository) {
+                                      AppUserRepository appUserRepository,
+                                      SessionEventService sessionEventService,
+                                      LedgerService ledgerService,
+                                      TraineeProgressService traineeProgressService,
+                                      UpcomingScheduleService upcomingScheduleService) {
         this.traineeRepository = traineeRepository;
         this.sessionRepository = sessionRepository;
         this.paymentRepository = paymentRepository;
         this.examRepository = examRepository;
         this.appUserRepository = appUserRepository;
+        this.sessionEventService = sessionEventService;
+        this.ledgerService = ledgerService;
+        this.traineeProgressService = traineeProgressService;
+        this.upcomingScheduleService = upcomingScheduleService;
     }
 
     /**
@@ -70,6 +92,10 @@ public class TraineeDashboardController {
      * URL: GET /trainee/dashboard
      */
     @GetMapping("/dashboard")
+    @ReadsTables(value = {
+            TableVersions.APP_USER, TableVersions.TRAINEE, TableVersions.INSTRUCTOR, TableVersions.SESSION,
+            TableVersions.TRAINEE_SESSION, TableVersions.PAYMENT, TableVersions.EXAM,
+            TableVersions.TRAINEE_BALANCE, TableVersions.TRAINEE_PROGRESS}, timeBucketSeconds = 60)
     public String dashboard(Authentication authentication, Model model) {
         // gat logged-in username
         String username = authentication.getName();
@@ -85,12 +111,13 @@ public class TraineeDashboardController {
         // get trainee's sessions
         List<Session> allSessions = sessionRepository.findByTraineeId(trainee.getTraineeId());
 
-        // filter upcoming sessions
-        List<Session> upcomingSessions = allSessions.stream()
-                .filter(s -> s.isScheduled())
-                .filter(s -> s.isUpcoming())
-                .sorted((s1, s2) -> s1.getStartDateTime().compareTo(s2.getStartDateTime()))
-                .limit(5)
+        // next upcoming sessions (maintained by the upcoming schedule)
+        Map<Integer, Session> sessionsById = allSessions.stream()
+                .collect(Collectors.toMap(Session::getSessionId, s -> s));
+        List<Session> upcomingSessions = upcomingScheduleService
+                .getUpcomingSessionIdsForTrainee(trainee.getTraineeId(), 5).stream()
+                .map(sessionsById::get)
+                .filter(Objects::nonNull)
                 .toList();
 
         // filter completed sessions with feedback
@@ -110,9 +137,11 @@ public class TraineeDashboardController {
 
         // get exams
         List<Exam> exams = examRepository.findByTraineeId(trainee.getTraineeId());
-        List<Exam> upcomingExams = exams.stream()
-                .filter(e -> e.isUpcoming())
-                .sorted((e1, e2) -> e1.getScheduledDate().compareTo(e2.getScheduledDate()))
+        Map<Integer, Exam> examsById = exams.stream()
+                .collect(Collectors.toMap(Exam::getExamId, e -> e));
+        List<Exam> upcomingExams = upcomingScheduleService.getUpcomingExamIdsForTrainee(trainee.getTraineeId()).stream()
+                .map(examsById::get)
+                .filter(Objects::nonNull)
                 .toList();
 
         // calculate stats
@@ -126,36 +155,22 @@ public class TraineeDashboardController {
         stats.put("completedSessions", (int) completedSessionsCount);
         stats.put("upcomingSessions", upcomingSessions.size());
 
-        // hours - count practical completed sessions
-        double hoursCompleted = allSessions.stream()
-                .filter(s -> s.isCompleted())
-                .filter(s -> s.isPractical())
-                .mapToDouble(Session::getDurationHours)
-                .sum();
-        stats.put("hoursCompleted", hoursCompleted);
-
-        // typical requirement is 30 hours for cat B
-        double requiredHours = 30.0;
-        double progressPercentage = Math.min((hoursCompleted / requiredHours) * 100, 100);
-        stats.put("requiredHours", requiredHours);
-        stats.put("progressPercentage", (int) progressPercentage);
-        stats.put("hoursRemaining", Math.max(requiredHours-hoursCompleted, 0));
-
-        // Payments
-        BigDecimal totalPaidBD = payments.stream()
-                .map(Payment::getAmount)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-        double totalPaid = totalPaidBD.doubleValue();
-
-        double totalCost = 4000.0; // typical driving school cost
-        double balance = totalCost - totalPaid;
-        stats.put("totalPaid", totalPaid);
-        stats.put("totalCost", totalCost);
-        stats.put("balance", Math.max(balance, 0));
+        // Practical hours - read from the trainee's progress row (required hours depend on the category)
+        TraineeProgress progress = traineeProgressService.getProgress(trainee.getTraineeId());
+        stats.put("hoursCompleted", progress.getPracticalHours());
+        stats.put("requiredHours", progress.getRequiredHours());
+        stats.put("progressPercentage", progress.getProgressPercentage());
+        stats.put("hoursRemaining", progress.getRemainingHours());
+
+        // Payments - read from the trainee's ledger row
+        TraineeBalance ledger = ledgerService.getBalance(trainee.getTraineeId());
+        stats.put("totalPaid", ledger.getTotalPaid().doubleValue());
+        stats.put("totalCost", ledger.getTotalCost().doubleValue());
+        stats.put("balance", ledger.getAmountDue().doubleValue());
 
         // Exams
         long passedExams = exams.stream()
-                .filter(e -> "Passed".equals(e.getStatus()))
+                .filter(Exam::isPassed)
                 .count();
         stats.put("totalExams", exams.size());
         stats.put("passedExams", (int) passedExams);
@@ -178,6 +193,8 @@ public class TraineeDashboardController {
      * URL: GET /trainee/sessions
      */
     @GetMapping("/sessions")
+    @ReadsTables({TableVersions.APP_USER, TableVersions.TRAINEE, TableVersions.INSTRUCTOR, TableVersions.SESSION,
+            TableVersions.TRAINEE_SESSION})
     public String sessions(Authentication authentication, Model model) {
         String username = authentication.getName();
         Trainee trainee = findTraineeByUsername(username);
@@ -197,11 +214,28 @@ public class TraineeDashboardController {
         return "trainee/sessions";
     }
 
+    /**
+     * Live session updates (Server-Sent Events)
+     * URL: GET /trainee/sessions/events
+     */
+    @GetMapping(value = "/sessions/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @ResponseBody
+    public SseEmitter sessionEvents(Authentication authentication) {
+        Trainee trainee = findTraineeByUsername(authentication.getName());
+
+        if (trainee == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Trainee profile not found");
+        }
+
+        return sessionEventService.subscribeTrainee(trainee.getTraineeId());
+    }
+
     /**
      * My payments - all payments for this trainee
      * URL: GET /trainee/payments
      */
     @GetMapping("/payments")
+    @ReadsTables({TableVersions.APP_USER, TableVersions.TRAINEE, TableVersions.PAYMENT, TableVersions.TRAINEE_BALANCE})
     public String payments(Authentication authentication, Model model) {
         String username = authentication.getName();
         Trainee trainee = findTraineeByUsername(username);
@@ -214,19 +248,14 @@ public class TraineeDashboardController {
 
         List<Payment> payments = paymentRepository.findByTraineeId(trainee.getTraineeId());
 
-        // calculate totals
-        BigDecimal totalPaidBD = payments.stream()
-                .map(Payment::getAmount)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-        double totalPaid = totalPaidBD.doubleValue();
-        double totalCost = 4000.0;
-        double balance = Math.max(totalCost - totalPaid, 0);
+        // totals come from the trainee's ledger row
+        TraineeBalance ledger = ledgerService.getBalance(trainee.getTraineeId());
 
         model.addAttribute("trainee", trainee);
         model.addAttribute("payments", payments);
-        model.addAttribute("totalPaid", totalPaid);
-        model.addAttribute("totalCost", totalCost);
-        model.addAttribute("balance", balance);
+        model.addAttribute("totalPaid", ledger.getTotalPaid().doubleValue());
+        model.addAttribute("totalCost", ledger.getTotalCost().doubleValue());
+        model.addAttribute("balance", ledger.getAmountDue().doubleValue());
         model.addAttribute("username", username);
 
         return "trainee/payments";
@@ -237,6 +266,7 @@ public class TraineeDashboardController {
      * URL: GET /trainee/exams
      */
     @GetMapping("/exams")
+    @ReadsTables({TableVersions.APP_USER, TableVersions.TRAINEE, TableVersions.EXAM})
     public String exams(Authentication authentication, Model model) {
         String username = authentication.getName();
         Trainee trainee = findTraineeByUsername(username);
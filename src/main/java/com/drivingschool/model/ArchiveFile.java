@@ -0,0 +1,29 @@
+package com.drivingschool.model;
+
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * ArchiveFile model class
+ * Corresponds to the ArchiveFile table in the database (columnar files holding archived rows of closed years)
+ */
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ArchiveFile {
+
+    private String fileName;
+    private String tableName;
+    private Integer archiveYear;
+    private Integer rowCount;
+    private BigDecimal totalAmount;
+    private Long sizeBytes;
+    private LocalDateTime createdAt;
+
+    public double getSizeKilobytes() {
+        return sizeBytes == null ? 0 : sizeBytes / 1024.0;
+    }
+}
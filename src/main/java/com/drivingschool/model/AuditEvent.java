@@ -0,0 +1,30 @@
+package com.drivingschool.model;
+
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * AuditEvent model class
+ * One entry of the audit journal (who changed which trainee, session, payment or exam); kept in
+ * journal files, not in the database
+ */
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AuditEvent {
+
+    public enum Entity { TRAINEE, SESSION, PAYMENT, EXAM }
+
+    public enum Action { CREATE, UPDATE, DELETE, STATUS, REASSIGN, RESULT, FEEDBACK }
+
+    private long sequence;
+    private LocalDateTime occurredAt;
+    private String username;
+    private Entity entity;
+    private Integer entityId;
+    private Action action;
+    private String detail;
+    private String nodeId;      // set when read: the node whose journal holds it
+}
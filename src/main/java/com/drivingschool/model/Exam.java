@@ -17,7 +17,13 @@ public class Exam {
     private String examType;
     private LocalDate scheduledDate;
     private String status;
+    private String result;              // Passed, Failed or null until recorded
+    private Integer score;
+    private Integer attemptNumber;      // per trainee and exam type, starting at 1
+    private Integer instructorId;       // trainee's instructor when the result was recorded
+    private String licenseCategory;     // trainee's category when the result was recorded
     private Integer traineeId;
+    private Integer version;            // incremented by every update
 
     // For joins - not in database
     private String traineeName;
@@ -27,6 +33,18 @@ public class Exam {
                 (scheduledDate.isAfter(LocalDate.now()) || scheduledDate.isEqual(LocalDate.now()));
     }
 
+    public boolean hasResult() {
+        return result != null;
+    }
+
+    public boolean isPassed() {
+        return "Passed".equals(result);
+    }
+
+    public boolean isFailed() {
+        return "Failed".equals(result);
+    }
+
     public boolean isPast() {
         return scheduledDate != null && scheduledDate.isBefore(LocalDate.now());
     }
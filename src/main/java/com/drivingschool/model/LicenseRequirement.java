@@ -0,0 +1,17 @@
+package com.drivingschool.model;
+
+import lombok.*;
+
+/**
+ * LicenseRequirement model class
+ * Corresponds to the LicenseRequirement table in the database (practical hours required per license category)
+ */
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LicenseRequirement {
+
+    private String licenseCategory;
+    private Integer requiredHours;
+}
@@ -23,4 +23,5 @@ public class Payment {
 
     // for joins - not in database
     private String traineeName;
+    private String branch;      // set by the cross-branch views (see Branches)
 }
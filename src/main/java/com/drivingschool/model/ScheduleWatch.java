@@ -0,0 +1,42 @@
+package com.drivingschool.model;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import lombok.*;
+
+/**
+ * ScheduleWatch model class
+ * Corresponds to the ScheduleWatchlist table in the database (trainees behind schedule)
+ */
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ScheduleWatch {
+
+    private Integer traineeId;
+    private Integer completedSessions;     // completed practical sessions
+    private LocalDateTime flaggedAt;       // null while the trainee is not on the watchlist
+
+    // for joins - not in database
+    private String firstName;
+    private String lastName;
+    private LocalDate enrollmentDate;
+    private String status;
+    private Integer flaggedSessions;       // completed sessions stored in ScheduleWatchlist, null while not on it
+    private String branch;                 // set by the cross-branch views (see Branches)
+
+    public String getTraineeName() {
+        return firstName + " " + lastName;
+    }
+
+    // Days since enrollment
+    public long getDaysEnrolled() {
+        return enrollmentDate == null ? 0 : ChronoUnit.DAYS.between(enrollmentDate, LocalDate.now());
+    }
+
+    public boolean isActive() {
+        return "Active".equals(status);
+    }
+}
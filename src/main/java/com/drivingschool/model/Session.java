@@ -25,11 +25,14 @@ public class Session {
     private String instructorFeedback;
     private Integer instructorId;
     private Integer traineeId;          // null for Theoretical group sessions
+    private Integer version;            // incremented by every update
 
    // for joins - not in database
    private String instructorName;
    private String traineeName;
    private Integer traineeCount;
+   private String branch;              // set by the cross-branch views (see Branches)
+   private boolean archived;           // read from Session_Archive (completed long ago, read only)
 
    // Check if this is a practical session
     public boolean isPractical() {
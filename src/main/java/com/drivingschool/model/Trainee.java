@@ -24,9 +24,11 @@ public class Trainee {
     private String licenseCategory;
     private String status;
     private Integer assignedInstructorId;
+    private Integer version;            // incremented by every update
 
     // for joins - not in database
     private String username;
     private String email;
     private String instructorName;
+    private String branch;      // set by the cross-branch views (see Branches)
 }
@@ -0,0 +1,31 @@
+package com.drivingschool.model;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import lombok.*;
+
+/**
+ * TraineeBalance model class
+ * Corresponds to the TraineeBalance table in the database (materialized payment ledger)
+ */
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TraineeBalance {
+
+    private Integer traineeId;
+    private BigDecimal totalCost;
+    private BigDecimal totalPaid;
+    private BigDecimal balance;     // totalCost - totalPaid (negative when overpaid)
+    private LocalDateTime updatedAt;
+
+    // for joins - not in database
+    private String traineeName;
+    private String licenseCategory;
+
+    // Amount still to pay (never negative)
+    public BigDecimal getAmountDue() {
+        return balance == null || balance.signum() < 0 ? BigDecimal.ZERO : balance;
+    }
+}
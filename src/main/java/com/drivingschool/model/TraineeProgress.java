@@ -0,0 +1,55 @@
+package com.drivingschool.model;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import lombok.*;
+
+/**
+ * TraineeProgress model class
+ * Corresponds to the TraineeProgress table in the database (materialized practical training progress)
+ */
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TraineeProgress {
+
+    private Integer traineeId;
+    private Integer practicalMinutes;
+    private Integer completedSessions;     // completed practical sessions
+    private LocalDate lastSessionDate;
+    private Integer requiredMinutes;
+    private Integer remainingMinutes;      // never negative
+    private LocalDateTime updatedAt;
+
+    // for joins - not in database
+    private String traineeName;
+    private String licenseCategory;
+    private String instructorName;
+
+    // Completed practical hours
+    public double getPracticalHours() {
+        return practicalMinutes == null ? 0 : practicalMinutes / 60.0;
+    }
+
+    public double getRequiredHours() {
+        return requiredMinutes == null ? 0 : requiredMinutes / 60.0;
+    }
+
+    public double getRemainingHours() {
+        return remainingMinutes == null ? 0 : remainingMinutes / 60.0;
+    }
+
+    // Percentage of the required hours already driven (0 - 100)
+    public int getProgressPercentage() {
+        if (requiredMinutes == null || requiredMinutes == 0) {
+            return 100;
+        }
+        return (int) Math.min(practicalMinutes * 100L / requiredMinutes, 100);
+    }
+
+    // Required practical hours are done
+    public boolean isExamReady() {
+        return remainingMinutes != null && remainingMinutes == 0;
+    }
+}
@@ -0,0 +1,18 @@
+package com.drivingschool.model;
+
+import java.math.BigDecimal;
+import lombok.*;
+
+/**
+ * TuitionPrice model class
+ * Corresponds to the TuitionPrice table in the database (full course price per license category)
+ */
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TuitionPrice {
+
+    private String licenseCategory;
+    private BigDecimal price;
+}
@@ -0,0 +1,253 @@
+package com.drivingschool.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * API Repository - keyset-paged, projected reads for the /api/v1 REST layer
+ *
+ * Pages are ordered by primary key: the next page starts after the last id
+ * of the previous one (WHERE id > ?), so deep pages cost the same as the first.
+ * SSN is deliberately not exposed. Sessions are read from Session and Session_Archive together
+ * (see SessionPartitionService), so moving them to Session_Archive does not take them out of the API.
+ *
+ * Closed years moved to the columnar archive files (see ArchiveService) are not in any table
+ * and are not served here: sessions and payments of those years are read through the archive
+ * export (/admin/reports/archive/export/sessions and /payments).
+ */
+
+@Repository
+public class ApiRepository {
+
+    public static final ApiResource TRAINEES = new ApiResource("trainees", "Trainee t", "t.TraineeID")
+            .field("id", "t.TraineeID")
+            .field("userId", "t.UserID")
+            .field("firstName", "t.FirstName")
+            .field("lastName", "t.LastName")
+            .field("address", "t.Address")
+            .field("phone", "t.Phone")
+            .field("enrollmentDate", "t.EnrollmentDate")
+            .field("licenseCategory", "t.LicenseCategory")
+            .field("status", "t.Status")
+            .field("instructorId", "t.AssignedInstructorID")
+            .field("instructorName", "CONCAT(i.FirstName, ' ', i.LastName)",
+                    "LEFT JOIN Instructor i ON t.AssignedInstructorID = i.InstructorID")
+            .field("username", "u.Username", "LEFT JOIN AppUser u ON t.UserID = u.UserID")
+            .field("email", "u.Email", "LEFT JOIN AppUser u ON t.UserID = u.UserID")
+            .filter("status", "t.Status = ?", ApiResource::text)
+            .filter("licenseCategory", "t.LicenseCategory = ?", ApiResource::text)
+            .filter("instructorId", "t.AssignedInstructorID = ?", ApiResource::number)
+            .filter("enrolledFrom", "t.EnrollmentDate >= ?", ApiResource::date)
+            .filter("enrolledTo", "t.EnrollmentDate <= ?", ApiResource::date);
+
+    // current and archived sessions; a session id is in one of the two tables only
+    private static final String ALL_SESSIONS = """
+            (SELECT SessionID, SessionType, StartDateTime, EndDateTime, Status, InstructorFeedback,
+                    InstructorID, TraineeID, FALSE AS Archived FROM Session
+             UNION ALL
+             SELECT SessionID, SessionType, StartDateTime, EndDateTime, Status, InstructorFeedback,
+                    InstructorID, TraineeID, TRUE AS Archived FROM Session_Archive) s""";
+
+    public static final ApiResource SESSIONS = new ApiResource("sessions", ALL_SESSIONS, "s.SessionID")
+            .field("id", "s.SessionID")
+            .field("type", "s.SessionType")
+            .field("start", "s.StartDateTime")
+            .field("end", "s.EndDateTime")
+            .field("status", "s.Status")
+            .field("feedback", "s.InstructorFeedback")
+            .field("instructorId", "s.InstructorID")
+            .field("traineeId", "s.TraineeID")
+            .field("archived", "s.Archived")
+            .field("instructorName", "CONCAT(i.FirstName, ' ', i.LastName)",
+                    "LEFT JOIN Instructor i ON s.InstructorID = i.InstructorID")
+            .filter("type", "s.SessionType = ?", ApiResource::text)
+            .filter("status", "s.Status = ?", ApiResource::text)
+            .filter("instructorId", "s.InstructorID = ?", ApiResource::number)
+            // archived=true: only Session_Archive, archived=false: only Session (never the columnar files)
+            .filter("archived", "s.Archived = ?", ApiResource::bool)
+            // practical sessions reference the trainee directly, theoretical ones through Trainee_Session(_Archive)
+            .filter("traineeId", "(s.TraineeID = ? OR EXISTS (SELECT 1 FROM Trainee_Session ts "
+                    + "WHERE ts.SessionID = s.SessionID AND ts.TraineeID = ?) OR EXISTS (SELECT 1 FROM "
+                    + "Trainee_Session_Archive tsa WHERE tsa.SessionID = s.SessionID AND tsa.TraineeID = ?))",
+                    ApiResource::number)
+            .filter("from", "s.StartDateTime >= ?", ApiResource::date)
+            .filter("to", "s.StartDateTime < ?", ApiResource::dayAfter);
+
+    public static final ApiResource PAYMENTS = new ApiResource("payments", "Payment p", "p.PaymentID")
+            .field("id", "p.PaymentID")
+            .field("amount", "p.Amount")
+            .field("date", "p.PaymentDate")
+            .field("method", "p.PaymentMethod")
+            .field("details", "p.Details")
+            .field("traineeId", "p.TraineeID")
+            .field("traineeName", "CONCAT(t.FirstName, ' ', t.LastName)",
+                    "LEFT JOIN Trainee t ON p.TraineeID = t.TraineeID")
+            .filter("method", "p.PaymentMethod = ?", ApiResource::text)
+            .filter("traineeId", "p.TraineeID = ?", ApiResource::number)
+            .filter("from", "p.PaymentDate >= ?", ApiResource::date)
+            .filter("to", "p.PaymentDate <= ?", ApiResource::date);
+
+    public static final ApiResource EXAMS = new ApiResource("exams", "Exam e", "e.ExamID")
+            .field("id", "e.ExamID")
+            .field("type", "e.ExamType")
+            .field("scheduledDate", "e.ScheduledDate")
+            .field("status", "e.Status")
+            .field("result", "e.Result")
+            .field("score", "e.Score")
+            .field("attempt", "e.AttemptNumber")
+            .field("traineeId", "e.TraineeID")
+            .field("traineeName", "CONCAT(t.FirstName, ' ', t.LastName)",
+                    "LEFT JOIN Trainee t ON e.TraineeID = t.TraineeID")
+            .filter("type", "e.ExamType = ?", ApiResource::text)
+            .filter("status", "e.Status = ?", ApiResource::text)
+            .filter("result", "e.Result = ?", ApiResource::text)
+            .filter("traineeId", "e.TraineeID = ?", ApiResource::number)
+            .filter("from", "e.ScheduledDate >= ?", ApiResource::date)
+            .filter("to", "e.ScheduledDate <= ?", ApiResource::date);
+
+    public static final ApiResource CARS = new ApiResource("cars", "Car c", "c.CarID")
+            .field("id", "c.CarID")
+            .field("licensePlate", "c.LicensePlate")
+            .field("brand", "c.Brand")
+            .field("model", "c.Model")
+            .field("transmission", "c.TransmissionType")
+            .field("instructorId", "c.AssignedInstructorID")
+            .field("instructorName", "CONCAT(i.FirstName, ' ', i.LastName)",
+                    "LEFT JOIN Instructor i ON c.AssignedInstructorID = i.InstructorID")
+            .filter("transmission", "c.TransmissionType = ?", ApiResource::text)
+            .filter("instructorId", "c.AssignedInstructorID = ?", ApiResource::number);
+
+    public static final ApiResource INSTRUCTORS = new ApiResource("instructors", "Instructor i", "i.InstructorID")
+            .field("id", "i.InstructorID")
+            .field("userId", "i.UserID")
+            .field("firstName", "i.FirstName")
+            .field("lastName", "i.LastName")
+            .field("phone", "i.Phone")
+            .field("hireDate", "i.HireDate")
+            .field("username", "u.Username", "LEFT JOIN AppUser u ON i.UserID = u.UserID")
+            .field("email", "u.Email", "LEFT JOIN AppUser u ON i.UserID = u.UserID")
+            .filter("hiredFrom", "i.HireDate >= ?", ApiResource::date)
+            .filter("hiredTo", "i.HireDate <= ?", ApiResource::date);
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public ApiRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Read one page and hand every row to the consumer while the result set is open
+     * (values are in the same order as the fields list)
+     * Returns the number of rows read
+     */
+    public int streamPage(ApiResource resource, List<String> fields, Map<ApiResource.Filter, Object> filters,
+                          Integer afterId, int limit, Consumer<Object[]> rowConsumer) {
+        List<Object> params = new ArrayList<>();
+        StringBuilder sql = selectFrom(resource, fields);
+
+        sql.append(" WHERE 1 = 1");
+
+        for (Map.Entry<ApiResource.Filter, Object> filter : filters.entrySet()) {
+            sql.append(" AND ").append(filter.getKey().condition());
+
+            // a condition may use its value more than once
+            long occurrences = filter.getKey().condition().chars().filter(c -> c == '?').count();
+            for (int i = 0; i < occurrences; i++) {
+                params.add(filter.getValue());
+            }
+        }
+
+        if (afterId != null) {
+            sql.append(" AND ").append(resource.getIdColumn()).append(" > ?");
+            params.add(afterId);
+        }
+
+        sql.append(" ORDER BY ").append(resource.getIdColumn()).append(" LIMIT ?");
+        params.add(limit);
+
+        int[] rows = {0};
+        jdbcTemplate.query(sql.toString(), rs -> {
+            rowConsumer.accept(readRow(rs, fields.size()));
+            rows[0]++;
+        }, params.toArray());
+
+        return rows[0];
+    }
+
+    // Find a single row by id, null if it does not exist
+    public Map<String, Object> findById(ApiResource resource, List<String> fields, Integer id) {
+        String sql = selectFrom(resource, fields)
+                .append(" WHERE ").append(resource.getIdColumn()).append(" = ?")
+                .toString();
+
+        List<Object[]> rows = jdbcTemplate.query(sql, (rs, rowNum) -> readRow(rs, fields.size()), id);
+
+        if (rows.isEmpty()) {
+            return null;
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        for (int i = 0; i < fields.size(); i++) {
+            result.put(fields.get(i), rows.getFirst()[i]);
+        }
+
+        return result;
+    }
+
+    // SELECT <only the requested columns> FROM <table> <only the joins they need>
+    private StringBuilder selectFrom(ApiResource resource, List<String> fields) {
+        StringBuilder sql = new StringBuilder("SELECT ");
+        Set<String> joins = new LinkedHashSet<>();
+
+        for (int i = 0; i < fields.size(); i++) {
+            ApiResource.Field field = resource.getFields().get(fields.get(i));
+
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append(field.sql());
+
+            if (field.join() != null) {
+                joins.add(field.join());
+            }
+        }
+
+        sql.append(" FROM ").append(resource.getFrom());
+        for (String join : joins) {
+            sql.append(' ').append(join);
+        }
+
+        return sql;
+    }
+
+    // SQL dates and timestamps are converted to java.time so they serialize as ISO-8601
+    private Object[] readRow(ResultSet rs, int columnCount) throws SQLException {
+        Object[] values = new Object[columnCount];
+
+        for (int i = 0; i < columnCount; i++) {
+            Object value = rs.getObject(i + 1);
+
+            if (value instanceof Date date) {
+                value = date.toLocalDate();
+            } else if (value instanceof Timestamp timestamp) {
+                value = timestamp.toLocalDateTime();
+            }
+
+            values[i] = value;
+        }
+
+        return values;
+    }
+}
@@ -0,0 +1,161 @@
+package com.drivingschool.repository;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Describes one table exposed through the /api/v1 REST layer
+ *
+ * - fields: JSON name -> SQL expression (plus the JOIN it needs, if any)
+ * - filters: request parameter -> WHERE condition
+ *
+ * Only the requested fields end up in the SELECT list, and a JOIN is added
+ * only when one of the requested fields needs it.
+ */
+
+public class ApiResource {
+
+    private final String name;
+    private final String from;
+    private final String idColumn;
+    private final Map<String, Field> fields = new LinkedHashMap<>();
+    private final Map<String, Filter> filters = new LinkedHashMap<>();
+
+    public ApiResource(String name, String from, String idColumn) {
+        this.name = name;
+        this.from = from;
+        this.idColumn = idColumn;
+    }
+
+    // Add a column of the base table
+    public ApiResource field(String fieldName, String sql) {
+        return field(fieldName, sql, null);
+    }
+
+    // Add a column that needs a JOIN (the same JOIN is only added once)
+    public ApiResource field(String fieldName, String sql, String join) {
+        fields.put(fieldName, new Field(sql, join));
+        return this;
+    }
+
+    // Add a filter; the condition uses one '?' per occurrence of the value
+    public ApiResource filter(String parameter, String condition, Function<String, Object> parser) {
+        filters.put(parameter, new Filter(condition, parser));
+        return this;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getFrom() {
+        return from;
+    }
+
+    public String getIdColumn() {
+        return idColumn;
+    }
+
+    public Map<String, Field> getFields() {
+        return Collections.unmodifiableMap(fields);
+    }
+
+    /**
+     * Parse the fields= parameter (comma separated)
+     * null or blank selects every field; "id" is always returned first
+     */
+    public List<String> resolveFields(String fieldsParam) {
+        List<String> selected = new ArrayList<>();
+        selected.add("id");
+
+        if (fieldsParam == null || fieldsParam.isBlank()) {
+            for (String fieldName : fields.keySet()) {
+                if (!selected.contains(fieldName)) {
+                    selected.add(fieldName);
+                }
+            }
+            return selected;
+        }
+
+        for (String fieldName : fieldsParam.split(",")) {
+            String trimmed = fieldName.trim();
+
+            if (trimmed.isEmpty() || selected.contains(trimmed)) {
+                continue;
+            }
+
+            if (!fields.containsKey(trimmed)) {
+                throw new IllegalArgumentException("Unknown field '" + trimmed + "' for " + name
+                        + ". Available fields: " + String.join(", ", fields.keySet()));
+            }
+
+            selected.add(trimmed);
+        }
+
+        return selected;
+    }
+
+    // Turn request parameters into WHERE conditions with their bound values
+    public Map<Filter, Object> resolveFilters(Map<String, String> parameters) {
+        Map<Filter, Object> resolved = new LinkedHashMap<>();
+
+        for (Map.Entry<String, String> parameter : parameters.entrySet()) {
+            Filter filter = filters.get(parameter.getKey());
+
+            if (filter == null) {
+                throw new IllegalArgumentException("Unknown filter '" + parameter.getKey() + "' for " + name
+                        + ". Available filters: " + String.join(", ", filters.keySet()));
+            }
+
+            if (parameter.getValue() == null || parameter.getValue().isBlank()) {
+                continue;
+            }
+
+            try {
+                resolved.put(filter, filter.parser().apply(parameter.getValue().trim()));
+            } catch (IllegalArgumentException | DateTimeParseException e) {
+                throw new IllegalArgumentException("Invalid value '" + parameter.getValue()
+                        + "' for filter '" + parameter.getKey() + "'");
+            }
+        }
+
+        return resolved;
+    }
+
+    // Parsers for filter values
+    public static Object text(String value) {
+        return value;
+    }
+
+    public static Object number(String value) {
+        return Integer.valueOf(value);
+    }
+
+    public static Object bool(String value) {
+        if (!"true".equalsIgnoreCase(value) && !"false".equalsIgnoreCase(value)) {
+            throw new IllegalArgumentException(value);
+        }
+        return Boolean.valueOf(value);
+    }
+
+    public static Object date(String value) {
+        return LocalDate.parse(value);
+    }
+
+    // the day after the given date (for "to" filters on TIMESTAMP columns)
+    public static Object dayAfter(String value) {
+        return LocalDate.parse(value).plusDays(1);
+    }
+
+    public record Field(String sql, String join) {
+    }
+
+    public record Filter(String condition, Function<String, Object> parser) {
+    }
+}
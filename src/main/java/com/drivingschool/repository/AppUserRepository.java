@@ -9,9 +9,8 @@ import org.springframework.stereotype.Repository;
 
 import java.sql.PreparedStatement;
 import java.sql.Statement;
-import java.util.List;
-import java.util.Map;
-import java.util.Objects;
+import java.util.*;
+import java.util.function.BiConsumer;
 
 /**
  * AppUser repository - Data Access Layer using raw SQL
@@ -21,9 +20,13 @@ import java.util.Objects;
 public class AppUserRepository {
 
     private final JdbcTemplate jdbcTemplate;
+    private final TableVersions tableVersions;
+    private final Branches branches;
 
-    public AppUserRepository(JdbcTemplate jdbcTemplate) {
+    public AppUserRepository(JdbcTemplate jdbcTemplate, TableVersions tableVersions, Branches branches) {
         this.jdbcTemplate = jdbcTemplate;
+        this.tableVersions = tableVersions;
+        this.branches = branches;
     }
 
     private final RowMapper<AppUser> userRowMapper = (rs, rowNum) -> {
@@ -67,7 +70,9 @@ public class AppUserRepository {
 
         Map<String, Object> keys = keyHolder.getKeys();
         if (keys != null && keys.containsKey("USERID")) {
-            return ((Number) keys.get("USERID")).intValue();
+            Integer userId = ((Number) keys.get("USERID")).intValue();
+            tableVersions.bump(TableVersions.APP_USER, userId);
+            return userId;
         }
 
         throw new IllegalArgumentException("Failed to retrieve generated user ID");
@@ -81,6 +86,23 @@ public class AppUserRepository {
         return users.isEmpty() ? null : users.getFirst();
     }
 
+    // Find a user of another branch by username (all branches queried in parallel), null if none has it
+    public BranchUser findByUsernameInOtherBranches(String username) {
+        if (!branches.isMultiBranch()) {
+            return null;
+        }
+
+        String sql = "SELECT * FROM AppUser WHERE Username = ?";
+
+        for (Branches.BranchResult<List<AppUser>> found :
+                branches.scatter(branches.others(), jdbc -> jdbc.query(sql, userRowMapper, username))) {
+            if (!found.result().isEmpty()) {
+                return new BranchUser(found.branch(), found.result().getFirst());
+            }
+        }
+        return null;
+    }
+
     // Find user by id
     public AppUser findById(Integer userId) {
         String sql = "SELECT * FROM AppUser WHERE UserID = ?";
@@ -89,6 +111,12 @@ public class AppUserRepository {
         return users.isEmpty() ? null : users.getFirst();
     }
 
+    // Count all user accounts
+    public Integer count() {
+        String sql = "SELECT COUNT(*) FROM AppUser";
+        return jdbcTemplate.queryForObject(sql, Integer.class);
+    }
+
     // Check if username already exists
     public boolean existsByUsername(String username) {
         String sql = "SELECT COUNT(*) FROM AppUser WHERE Username = ?";
@@ -105,6 +133,71 @@ public class AppUserRepository {
         return count != null && count > 0;
     }
 
+    // Find which of the given usernames already exist (set-based check for bulk import)
+    public Set<String> findExistingUsernames(Collection<String> usernames) {
+        return findExistingValues("Username", usernames);
+    }
+
+    // Find which of the given emails already exist (set-based check for bulk import)
+    public Set<String> findExistingEmails(Collection<String> emails) {
+        return findExistingValues("Email", emails);
+    }
+
+    // Insert many user accounts in one JDBC batch
+    public void saveAll(List<AppUser> users) {
+        String sql = """
+                INSERT INTO
+                    AppUser (UserName, Password, Email, Role, IsActive) VALUES
+                    (?, ?, ?, ?, ?)
+                """;
+
+        jdbcTemplate.batchUpdate(sql, users, users.size(), (ps, user) -> {
+            ps.setString(1, user.getUsername());
+            ps.setString(2, user.getPassword());
+            ps.setString(3, user.getEmail());
+            ps.setString(4, user.getRole());
+            ps.setBoolean(5, user.getIsActive() != null ? user.getIsActive() : true);
+        });
+        tableVersions.bump(TableVersions.APP_USER);
+    }
+
+    // Map usernames to their generated user ids (used after a batch insert)
+    public Map<String, Integer> findUserIdsByUsernames(Collection<String> usernames) {
+        Map<String, Integer> ids = new HashMap<>();
+
+        for (List<String> chunk : chunks(usernames)) {
+            String sql = "SELECT UserID, Username FROM AppUser WHERE Username IN (" + placeholders(chunk.size()) + ")";
+
+            jdbcTemplate.query(sql, rs -> {
+                ids.put(rs.getString("Username"), rs.getInt("UserID"));
+            }, chunk.toArray());
+        }
+
+        return ids;
+    }
+
+    // Check username, email and SSN in a single round trip, null values are skipped
+    // Returns the number of rows using each value, keyed USERNAMECOUNT / EMAILCOUNT / SSNCOUNT
+    public Map<String, Object> countIdentityConflicts(String username, String email, String ssn) {
+        String sql = """
+                SELECT
+                    (SELECT COUNT(*) FROM AppUser WHERE Username = ?) AS UsernameCount,
+                    (SELECT COUNT(*) FROM AppUser WHERE Email = ?) AS EmailCount,
+                    (SELECT COUNT(*) FROM Trainee WHERE SSN = ?) AS SsnCount
+                """;
+
+        return jdbcTemplate.queryForMap(sql, username, email, ssn);
+    }
+
+    // Stream every username and email (used to warm in-memory uniqueness filters)
+    public void forEachUsernameAndEmail(BiConsumer<String, String> consumer) {
+        String sql = "SELECT Username, Email FROM AppUser";
+
+        jdbcTemplate.query(sql, rs -> {
+            consumer.accept(rs.getString("Username"), rs.getString("Email"));
+        });
+    }
+
     // Update user information
     public void update(AppUser user) {
         String sql = """
@@ -122,11 +215,49 @@ public class AppUserRepository {
                 user.getRole(),
                 user.getIsActive(),
                 user.getUserId());
+        tableVersions.bump(TableVersions.APP_USER, user.getUserId());
     }
 
     // Delete user by id
     public void delete(Integer userId){
         String sql = "DELETE FROM AppUser WHERE UserID = ?";
         jdbcTemplate.update(sql, userId);
+        tableVersions.bump(TableVersions.APP_USER, userId);
+        tableVersions.bump(TableVersions.TRAINEE);
+        tableVersions.bump(TableVersions.INSTRUCTOR);
+        tableVersions.bump(TableVersions.TRAINEE_SESSION);
+    }
+
+    private Set<String> findExistingValues(String column, Collection<String> values) {
+        Set<String> existing = new HashSet<>();
+
+        for (List<String> chunk : chunks(values)) {
+            String sql = "SELECT " + column + " FROM AppUser WHERE " + column + " IN (" + placeholders(chunk.size()) + ")";
+            existing.addAll(jdbcTemplate.queryForList(sql, String.class, chunk.toArray()));
+        }
+
+        return existing;
+    }
+
+    // split large IN lists so a single statement never carries thousands of parameters
+    static <T> List<List<T>> chunks(Collection<T> values) {
+        List<T> all = new ArrayList<>(values);
+        List<List<T>> chunks = new ArrayList<>();
+
+        for (int i = 0; i < all.size(); i += IN_CLAUSE_CHUNK) {
+            chunks.add(all.subList(i, Math.min(i + IN_CLAUSE_CHUNK, all.size())));
+        }
+
+        return chunks;
+    }
+
+    static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+
+    static final int IN_CLAUSE_CHUNK = 500;
+
+    // A user account and the branch it belongs to
+    public record BranchUser(Branches.Branch branch, AppUser user) {
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,269 @@
+package com.drivingschool.repository;
+
+import com.drivingschool.model.ArchiveFile;
+import com.drivingschool.model.Payment;
+import com.drivingschool.model.Session;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Archive Repository - Data Access Layer using raw SQL
+ *
+ * Reads the rows of closed years that are moved to columnar archive files, removes them
+ * from Session / Payment, and keeps the ArchiveFile registry, ArchivedTraineeTotals and
+ * ArchivedInstructorTotals.
+ */
+
+@Repository
+public class ArchiveRepository {
+
+    public static final String SESSION = "Session";
+    public static final String TRAINEE_SESSION = "Trainee_Session";
+    public static final String PAYMENT = "Payment";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TableVersions tableVersions;
+
+    public ArchiveRepository(JdbcTemplate jdbcTemplate, TableVersions tableVersions) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.tableVersions = tableVersions;
+    }
+
+    // RowMapper to convert database rows to ArchiveFile objects
+    private final RowMapper<ArchiveFile> archiveFileRowMapper = (rs, rowNum) -> {
+        ArchiveFile file = new ArchiveFile();
+
+        file.setFileName(rs.getString("FileName"));
+        file.setTableName(rs.getString("TableName"));
+        file.setArchiveYear(rs.getInt("ArchiveYear"));
+        file.setRowCount(rs.getInt("RowCount"));
+        file.setTotalAmount(rs.getBigDecimal("TotalAmount"));
+        file.setSizeBytes(rs.getLong("SizeBytes"));
+        if (rs.getTimestamp("CreatedAt") != null) {
+            file.setCreatedAt(rs.getTimestamp("CreatedAt").toLocalDateTime());
+        }
+
+        return file;
+    };
+
+    // Years before the given day that still have completed sessions in Session or Session_Archive
+    public List<Integer> findClosedSessionYears(LocalDate before) {
+        String sql = """
+                SELECT YEAR(StartDateTime) AS SessionYear FROM %1$s
+                WHERE Status = 'Completed' AND StartDateTime < ?
+                """;
+
+        return jdbcTemplate.queryForList("SELECT DISTINCT SessionYear FROM (" + SessionRepository.bothTables(sql)
+                + ") years ORDER BY 1", Integer.class, before.atStartOfDay(), before.atStartOfDay());
+    }
+
+    // Years before the given day that still have payments in Payment
+    public List<Integer> findClosedPaymentYears(LocalDate before) {
+        String sql = """
+                SELECT DISTINCT YEAR(PaymentDate) FROM Payment
+                WHERE PaymentDate < ?
+                ORDER BY 1
+                """;
+
+        return jdbcTemplate.queryForList(sql, Integer.class, Date.valueOf(before));
+    }
+
+    // Up to limit completed sessions of a year, in start order
+    public List<Session> findCompletedSessions(int year, int limit) {
+        String sql = """
+                SELECT SessionID, SessionType, StartDateTime, EndDateTime, Status,
+                       InstructorFeedback, InstructorID, TraineeID
+                FROM %1$s
+                WHERE Status = 'Completed' AND StartDateTime >= ? AND StartDateTime < ?
+                """;
+        LocalDateTime from = LocalDate.of(year, 1, 1).atStartOfDay();
+        LocalDateTime to = LocalDate.of(year + 1, 1, 1).atStartOfDay();
+
+        String union = SessionRepository.bothTables(sql) + " ORDER BY StartDateTime, SessionID LIMIT ?";
+
+        return jdbcTemplate.query(union, (rs, rowNum) -> {
+            Session session = new Session();
+
+            session.setSessionId(rs.getInt("SessionID"));
+            session.setSessionType(rs.getString("SessionType"));
+            session.setStartDateTime(rs.getTimestamp("StartDateTime").toLocalDateTime());
+            session.setEndDateTime(rs.getTimestamp("EndDateTime").toLocalDateTime());
+            session.setStatus(rs.getString("Status"));
+            session.setInstructorFeedback(rs.getString("InstructorFeedback"));
+            session.setInstructorId(rs.getInt("InstructorID"));
+
+            int traineeId = rs.getInt("TraineeID");
+            if (!rs.wasNull()) {
+                session.setTraineeId(traineeId);
+            }
+
+            return session;
+        }, from, to, from, to, limit);
+    }
+
+    // (SessionID, TraineeID) pairs of the given sessions, ordered by session
+    public List<int[]> findAttendance(Collection<Integer> sessionIds) {
+        List<int[]> attendance = new ArrayList<>();
+
+        for (List<Integer> chunk : AppUserRepository.chunks(sessionIds)) {
+            String in = " WHERE SessionID IN (" + AppUserRepository.placeholders(chunk.size()) + ")";
+            String sql = "SELECT SessionID, TraineeID FROM Trainee_Session" + in
+                    + " UNION ALL SELECT SessionID, TraineeID FROM Trainee_Session_Archive" + in
+                    + " ORDER BY SessionID, TraineeID";
+            List<Integer> parameters = new ArrayList<>(chunk);
+            parameters.addAll(chunk);
+
+            jdbcTemplate.query(sql, rs -> {
+                attendance.add(new int[] {rs.getInt("SessionID"), rs.getInt("TraineeID")});
+            }, parameters.toArray());
+        }
+
+        return attendance;
+    }
+
+    // Up to limit payments of a year, in date order
+    public List<Payment> findPayments(int year, int limit) {
+        String sql = """
+                SELECT PaymentID, Amount, PaymentDate, PaymentMethod, Details, TraineeID
+                FROM Payment
+                WHERE PaymentDate >= ? AND PaymentDate < ?
+                ORDER BY PaymentDate, PaymentID
+                LIMIT ?
+                """;
+
+        return jdbcTemplate.query(sql, (rs, rowNum) -> new Payment(
+                rs.getInt("PaymentID"),
+                rs.getBigDecimal("Amount"),
+                rs.getDate("PaymentDate").toLocalDate(),
+                rs.getString("PaymentMethod"),
+                rs.getString("Details"),
+                rs.getInt("TraineeID"),
+                null,
+                null
+        ), Date.valueOf(LocalDate.of(year, 1, 1)), Date.valueOf(LocalDate.of(year + 1, 1, 1)), limit);
+    }
+
+    // Remove archived sessions that are still completed from both session tables (attendance rows cascade)
+    public int deleteSessions(Collection<Integer> sessionIds) {
+        int deleted = 0;
+
+        for (List<Integer> chunk : AppUserRepository.chunks(sessionIds)) {
+            String in = " WHERE Status = 'Completed' AND SessionID IN (" + AppUserRepository.placeholders(chunk.size()) + ")";
+
+            deleted += jdbcTemplate.update("DELETE FROM Session" + in, chunk.toArray());
+            deleted += jdbcTemplate.update("DELETE FROM Session_Archive" + in, chunk.toArray());
+        }
+        tableVersions.bump(TableVersions.SESSION);
+        tableVersions.bump(TableVersions.TRAINEE_SESSION);
+
+        return deleted;
+    }
+
+    // Remove archived payments
+    public int deletePayments(Collection<Integer> paymentIds) {
+        int deleted = 0;
+
+        for (List<Integer> chunk : AppUserRepository.chunks(paymentIds)) {
+            deleted += jdbcTemplate.update("DELETE FROM Payment WHERE PaymentID IN ("
+                    + AppUserRepository.placeholders(chunk.size()) + ")", chunk.toArray());
+        }
+        tableVersions.bump(TableVersions.PAYMENT);
+
+        return deleted;
+    }
+
+    // Add what archived rows contributed to a trainee (creates the row if missing)
+    public void addTraineeTotals(Integer traineeId, BigDecimal paidAmount, int practicalMinutes,
+                                 int completedSessions, LocalDate lastSessionDate) {
+        String update = """
+                UPDATE ArchivedTraineeTotals SET
+                    PaidAmount = PaidAmount + ?,
+                    PracticalMinutes = PracticalMinutes + ?,
+                    CompletedSessions = CompletedSessions + ?,
+                    LastSessionDate = CASE
+                        WHEN LastSessionDate IS NULL OR LastSessionDate < ? THEN ?
+                        ELSE LastSessionDate END
+                WHERE TraineeID = ?
+                """;
+
+        Date lastDate = lastSessionDate == null ? null : Date.valueOf(lastSessionDate);
+        int updated = jdbcTemplate.update(update, paidAmount, practicalMinutes, completedSessions,
+                lastDate, lastDate, traineeId);
+
+        if (updated == 0) {
+            jdbcTemplate.update("""
+                    INSERT INTO ArchivedTraineeTotals
+                        (TraineeID, PaidAmount, PracticalMinutes, CompletedSessions, LastSessionDate)
+                    VALUES (?, ?, ?, ?, ?)
+                    """, traineeId, paidAmount, practicalMinutes, completedSessions, lastDate);
+        }
+        tableVersions.bump(TableVersions.ARCHIVED_TRAINEE_TOTALS);
+    }
+
+    // Add archived sessions to an instructor's count (creates the row if missing)
+    public void addInstructorSessions(Integer instructorId, int sessions) {
+        int updated = jdbcTemplate.update("UPDATE ArchivedInstructorTotals SET Sessions = Sessions + ? WHERE InstructorID = ?",
+                sessions, instructorId);
+
+        if (updated == 0) {
+            jdbcTemplate.update("INSERT INTO ArchivedInstructorTotals (InstructorID, Sessions) VALUES (?, ?)",
+                    instructorId, sessions);
+        }
+        tableVersions.bump(TableVersions.ARCHIVED_INSTRUCTOR_TOTALS, instructorId);
+    }
+
+    // Register a written archive file
+    public void registerFile(ArchiveFile file) {
+        String sql = """
+                INSERT INTO ArchiveFile (FileName, TableName, ArchiveYear, RowCount, TotalAmount, SizeBytes)
+                VALUES (?, ?, ?, ?, ?, ?)
+                """;
+
+        jdbcTemplate.update(sql, file.getFileName(), file.getTableName(), file.getArchiveYear(),
+                file.getRowCount(), file.getTotalAmount(), file.getSizeBytes());
+        tableVersions.bump(TableVersions.ARCHIVE_FILE);
+    }
+
+    // All registered archive files
+    public List<ArchiveFile> findFiles() {
+        return jdbcTemplate.query("SELECT * FROM ArchiveFile ORDER BY TableName, ArchiveYear, FileName",
+                archiveFileRowMapper);
+    }
+
+    // Registered files of one table whose year is between two years (inclusive)
+    public List<ArchiveFile> findFiles(String tableName, int fromYear, int toYear) {
+        String sql = """
+                SELECT * FROM ArchiveFile
+                WHERE TableName = ? AND ArchiveYear BETWEEN ? AND ?
+                ORDER BY ArchiveYear, FileName
+                """;
+
+        return jdbcTemplate.query(sql, archiveFileRowMapper, tableName, fromYear, toYear);
+    }
+
+    // Number of files of a table and year (the next part number)
+    public int countFiles(String tableName, int year) {
+        Integer count = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM ArchiveFile WHERE TableName = ? AND ArchiveYear = ?",
+                Integer.class, tableName, year);
+        return count != null ? count : 0;
+    }
+
+    // Number and total amount of archived payments
+    public Map<String, Object> getArchivedPaymentTotals() {
+        return jdbcTemplate.queryForMap("""
+                SELECT COALESCE(SUM(RowCount), 0) AS Payments, COALESCE(SUM(TotalAmount), 0) AS Amount
+                FROM ArchiveFile WHERE TableName = 'Payment'
+                """);
+    }
+}
@@ -0,0 +1,337 @@
+package com.drivingschool.repository;
+
+import com.drivingschool.model.AuditEvent;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Audit Journal File - one append-only, memory-mapped segment of the audit journal
+ *
+ * Layout of a segment (<first sequence>.journal, created at its full size and filled in place):
+ *   header   magic, version, first sequence
+ *   records  length, CRC-32 of the payload, payload (sequence, time, entity, id, action, user, detail)
+ *   end      a zero length
+ *
+ * A record is complete once its length is written, which happens last; at startup the active
+ * segment is read up to the first missing length or wrong checksum (a record torn by a crash)
+ * and appended to from there. A full segment is sealed: its index (<first sequence>.index: last
+ * sequence, then entity key and record offset sorted by key) is written next to it, so the
+ * history of one entity is a binary search and a few reads. Sealed segments never change again.
+ *
+ * Not thread-safe: the owner synchronizes access.
+ */
+
+public final class AuditJournalFile {
+
+    public static final String SEGMENT_SUFFIX = ".journal";
+    public static final String INDEX_SUFFIX = ".index";
+
+    private static final int MAGIC = 0x44534155; // "DSAU"
+    private static final int INDEX_MAGIC = 0x44534149; // "DSAI"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 2 * Integer.BYTES + Long.BYTES;
+    private static final int RECORD_HEADER_BYTES = 2 * Integer.BYTES;
+    private static final int INDEX_HEADER_BYTES = 3 * Integer.BYTES + Long.BYTES;
+    private static final int INDEX_ENTRY_BYTES = Long.BYTES + Integer.BYTES;
+    private static final int MAX_TEXT_CHARS = 1000;
+
+    private AuditJournalFile() {
+    }
+
+    // Start a new, empty segment of the given size (fails if it already exists)
+    public static Segment create(Path directory, long firstSequence, int sizeBytes) throws IOException {
+        Path path = directory.resolve(segmentName(firstSequence));
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer data = channel.map(FileChannel.MapMode.READ_WRITE, 0, sizeBytes);
+            data.putInt(0, MAGIC).putInt(Integer.BYTES, VERSION).putLong(2 * Integer.BYTES, firstSequence);
+            data.force();
+            return new Segment(path, data, true);
+        }
+    }
+
+    // Map an existing segment; a writable one can be appended to after its last complete record
+    public static Segment open(Path path, boolean writable) throws IOException {
+        try (FileChannel channel = writable
+                ? FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)
+                : FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer data = channel.map(writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY,
+                    0, channel.size());
+            if (data.capacity() < HEADER_BYTES || data.getInt(0) != MAGIC) {
+                throw new IOException("Not an audit journal segment: " + path);
+            }
+            return new Segment(path, data, writable);
+        }
+    }
+
+    public static String segmentName(long firstSequence) {
+        return String.format("%020d%s", firstSequence, SEGMENT_SUFFIX);
+    }
+
+    // The index key of one entity
+    public static long key(AuditEvent.Entity entity, int entityId) {
+        return ((long) entity.ordinal() << 32) | (entityId & 0xFFFFFFFFL);
+    }
+
+    public static final class Segment {
+        private final Path path;
+        private final MappedByteBuffer data;
+        private final long firstSequence;
+        private long lastSequence;
+        private int position;
+
+        // while active: entity key -> record offsets; once sealed: the mapped index file
+        private Map<Long, List<Integer>> offsets = new HashMap<>();
+        private MappedByteBuffer index;
+
+        private Segment(Path path, MappedByteBuffer data, boolean writable) throws IOException {
+            this.path = path;
+            this.data = data;
+            this.firstSequence = data.getLong(2 * Integer.BYTES);
+            this.lastSequence = firstSequence - 1;
+
+            // a sealed segment is only read through its index
+            Path indexPath = indexPath();
+            if (Files.exists(indexPath)) {
+                loadIndex(indexPath);
+            } else {
+                position = HEADER_BYTES;
+                recover(writable);
+            }
+        }
+
+        public Path getPath() {
+            return path;
+        }
+
+        public long getFirstSequence() {
+            return firstSequence;
+        }
+
+        // Sequence of the last record, firstSequence - 1 while empty
+        public long getLastSequence() {
+            return lastSequence;
+        }
+
+        public boolean isSealed() {
+            return index != null;
+        }
+
+        /**
+         * Append one event (its sequence must be set); false if the segment has no room left
+         * The record is in the page cache afterwards, on disk only after force()
+         */
+        public boolean append(AuditEvent event) {
+            byte[] payload = encode(event);
+            int end = position + RECORD_HEADER_BYTES + payload.length;
+            if (end + Integer.BYTES > data.capacity()) {
+                return false;
+            }
+
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            data.put(position + RECORD_HEADER_BYTES, payload);
+            data.putInt(position + Integer.BYTES, (int) crc.getValue());
+            data.putInt(position, payload.length);
+
+            offsets.computeIfAbsent(key(event.getEntity(), event.getEntityId()), k -> new ArrayList<>()).add(position);
+            lastSequence = event.getSequence();
+            position = end;
+            return true;
+        }
+
+        // Write the appended records to disk
+        public void force() {
+            data.force();
+        }
+
+        // Force the records and write the index; the segment is read-only afterwards
+        public void seal() throws IOException {
+            force();
+
+            List<long[]> entries = new ArrayList<>();
+            offsets.forEach((key, list) -> list.forEach(offset -> entries.add(new long[]{key, offset})));
+            entries.sort((a, b) -> a[0] != b[0] ? Long.compare(a[0], b[0]) : Long.compare(a[1], b[1]));
+
+            ByteBuffer buffer = ByteBuffer.allocate(INDEX_HEADER_BYTES + entries.size() * INDEX_ENTRY_BYTES);
+            buffer.putInt(INDEX_MAGIC).putInt(VERSION).putLong(lastSequence).putInt(entries.size());
+            for (long[] entry : entries) {
+                buffer.putLong(entry[0]).putInt((int) entry[1]);
+            }
+            buffer.flip();
+
+            // written under a temporary name, so an index file is always complete
+            Path indexPath = indexPath();
+            Path temporary = indexPath.resolveSibling(indexPath.getFileName() + ".tmp");
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(true);
+            }
+            Files.move(temporary, indexPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+            loadIndex(indexPath);
+        }
+
+        /**
+         * Catch up with a segment that another node is writing (opened read-only): index the
+         * records appended since the last call, or switch to the index once the segment was sealed
+         */
+        public void refresh() throws IOException {
+            if (index != null) {
+                return;
+            }
+
+            Path indexPath = indexPath();
+            if (Files.exists(indexPath)) {
+                loadIndex(indexPath);
+            } else {
+                recover(false);
+            }
+        }
+
+        // Events of one entity in this segment, oldest first
+        public List<AuditEvent> find(AuditEvent.Entity entity, int entityId) {
+            long key = key(entity, entityId);
+            List<AuditEvent> events = new ArrayList<>();
+
+            if (index == null) {
+                for (int offset : offsets.getOrDefault(key, List.of())) {
+                    events.add(read(offset));
+                }
+                return events;
+            }
+
+            int count = index.getInt(INDEX_HEADER_BYTES - Integer.BYTES);
+            int low = 0;
+            int high = count;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (index.getLong(entryAt(middle)) < key) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            for (int i = low; i < count && index.getLong(entryAt(i)) == key; i++) {
+                events.add(read(index.getInt(entryAt(i) + Long.BYTES)));
+            }
+            return events;
+        }
+
+        // Find the end of the complete records from position on (and index them); a torn record is cleared if writable
+        private void recover(boolean writable) {
+            while (position + RECORD_HEADER_BYTES <= data.capacity()) {
+                int length = data.getInt(position);
+                if (length <= 0 || position + RECORD_HEADER_BYTES + length > data.capacity()) {
+                    break;
+                }
+
+                byte[] payload = new byte[length];
+                data.get(position + RECORD_HEADER_BYTES, payload);
+                CRC32 crc = new CRC32();
+                crc.update(payload);
+                if ((int) crc.getValue() != data.getInt(position + Integer.BYTES)) {
+                    if (writable) {
+                        data.put(position, new byte[RECORD_HEADER_BYTES + length]);
+                    }
+                    break;
+                }
+
+                AuditEvent event = decode(payload);
+                offsets.computeIfAbsent(key(event.getEntity(), event.getEntityId()), k -> new ArrayList<>()).add(position);
+                lastSequence = event.getSequence();
+                position += RECORD_HEADER_BYTES + length;
+            }
+        }
+
+        private void loadIndex(Path indexPath) throws IOException {
+            try (FileChannel channel = FileChannel.open(indexPath, StandardOpenOption.READ)) {
+                MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                if (mapped.capacity() < INDEX_HEADER_BYTES || mapped.getInt(0) != INDEX_MAGIC || mapped.capacity()
+                        != INDEX_HEADER_BYTES + (long) mapped.getInt(INDEX_HEADER_BYTES - Integer.BYTES) * INDEX_ENTRY_BYTES) {
+                    throw new IOException("Not a complete audit journal index: " + indexPath);
+                }
+                index = mapped;
+                lastSequence = mapped.getLong(2 * Integer.BYTES);
+                offsets = Map.of();
+            }
+        }
+
+        private Path indexPath() {
+            String name = path.getFileName().toString();
+            return path.resolveSibling(name.substring(0, name.length() - SEGMENT_SUFFIX.length()) + INDEX_SUFFIX);
+        }
+
+        private static int entryAt(int i) {
+            return INDEX_HEADER_BYTES + i * INDEX_ENTRY_BYTES;
+        }
+
+        private AuditEvent read(int offset) {
+            byte[] payload = new byte[data.getInt(offset)];
+            data.get(offset + RECORD_HEADER_BYTES, payload);
+            return decode(payload);
+        }
+    }
+
+    private static byte[] encode(AuditEvent event) {
+        byte[] username = text(event.getUsername());
+        byte[] detail = text(event.getDetail());
+        long millis = event.getOccurredAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+
+        ByteBuffer buffer = ByteBuffer.allocate(2 * Long.BYTES + 2 + Integer.BYTES
+                + 2 * Short.BYTES + username.length + detail.length);
+        buffer.putLong(event.getSequence()).putLong(millis)
+                .put((byte) event.getEntity().ordinal()).putInt(event.getEntityId())
+                .put((byte) event.getAction().ordinal())
+                .putShort((short) username.length).put(username)
+                .putShort((short) detail.length).put(detail);
+        return buffer.array();
+    }
+
+    private static AuditEvent decode(byte[] payload) {
+        ByteBuffer buffer = ByteBuffer.wrap(payload);
+        AuditEvent event = new AuditEvent();
+        event.setSequence(buffer.getLong());
+        event.setOccurredAt(LocalDateTime.ofInstant(Instant.ofEpochMilli(buffer.getLong()), ZoneId.systemDefault()));
+        event.setEntity(AuditEvent.Entity.values()[buffer.get()]);
+        event.setEntityId(buffer.getInt());
+        event.setAction(AuditEvent.Action.values()[buffer.get()]);
+
+        byte[] username = new byte[buffer.getShort()];
+        buffer.get(username);
+        event.setUsername(new String(username, StandardCharsets.UTF_8));
+
+        byte[] detail = new byte[buffer.getShort()];
+        buffer.get(detail);
+        event.setDetail(new String(detail, StandardCharsets.UTF_8));
+        return event;
+    }
+
+    // UTF-8 of a text cut to MAX_TEXT_CHARS (at most 4 bytes a character, so a short length fits)
+    private static byte[] text(String value) {
+        if (value == null) {
+            return new byte[0];
+        }
+        return (value.length() > MAX_TEXT_CHARS ? value.substring(0, MAX_TEXT_CHARS) : value)
+                .getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,425 @@
+package com.drivingschool.repository;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Backup File - compressed, checksummed SQL script of one database snapshot
+ *
+ * Layout:
+ *   header   magic, version, chunk size
+ *   chunks   raw length, stored length, CRC-32 of the raw bytes, deflated bytes
+ *            (the raw bytes are the statements, each as a length and its UTF-8 text; a statement
+ *            may continue in the next chunk)
+ *   end      a zero raw length
+ *   trailer  creation time, duration, statement count, raw bytes, then per table name and row
+ *            count, then the CRC-32 of the trailer
+ *   footer   trailer offset, magic
+ *
+ * Chunks are deflated from and written to direct buffers with one gathering write each, and read
+ * back with positional FileChannel reads into the inflater, so the bytes are not copied through
+ * streams. A file is complete only with its footer; every chunk is checked when it is read back.
+ * Files are written once, to a temporary name, and never modified afterwards.
+ */
+
+public final class BackupFile {
+
+    public static final String EXTENSION = ".dsbk";
+
+    // Rows a table had in the snapshot
+    public record TableRows(String table, long rows) {
+    }
+
+    // What a backup holds, read from its trailer without reading the chunks
+    public record Manifest(LocalDateTime createdAt, long durationMillis, long statements, long rawBytes,
+                           List<TableRows> tables) {
+    }
+
+    @FunctionalInterface
+    public interface StatementVisitor {
+        void visit(String statement) throws SQLException;
+    }
+
+    private static final int MAGIC = 0x4453424B; // "DSBK"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 3 * Integer.BYTES;
+    private static final int CHUNK_HEADER_BYTES = 3 * Integer.BYTES;
+    private static final int FOOTER_BYTES = Long.BYTES + Integer.BYTES;
+
+    private BackupFile() {
+    }
+
+    // Start writing a new file (fails if it already exists)
+    public static Writer create(Path path, int chunkBytes) throws IOException {
+        return new Writer(path, chunkBytes);
+    }
+
+    // Read the trailer of a complete file
+    public static Reader open(Path path) throws IOException {
+        return new Reader(path);
+    }
+
+    /**
+     * Writes statements chunk by chunk
+     * close() writes the last chunk, the trailer and the footer and forces the file to disk
+     */
+    public static final class Writer implements Closeable {
+        private final FileChannel channel;
+        private final long started = System.currentTimeMillis();
+
+        private final ByteBuffer raw;
+        private final ByteBuffer deflated;
+        private final ByteBuffer chunkHeader = ByteBuffer.allocateDirect(CHUNK_HEADER_BYTES);
+        private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        private final CRC32 crc = new CRC32();
+
+        private final List<TableRows> tables = new ArrayList<>();
+        private long statements;
+        private long rawBytes;
+        private long position;
+
+        private Writer(Path path, int chunkBytes) throws IOException {
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            this.raw = ByteBuffer.allocateDirect(chunkBytes);
+            // deflate never grows data by more than a few bytes per 16 KB block
+            this.deflated = ByteBuffer.allocateDirect(chunkBytes + chunkBytes / 64 + 64);
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            header.putInt(MAGIC).putInt(VERSION).putInt(chunkBytes).flip();
+            write(header);
+        }
+
+        public void writeStatement(String statement) throws IOException {
+            byte[] text = statement.getBytes(StandardCharsets.UTF_8);
+
+            put(ByteBuffer.allocate(Integer.BYTES).putInt(text.length).flip());
+            put(ByteBuffer.wrap(text));
+            statements++;
+        }
+
+        // Row counts of the snapshot, checked after a restore
+        public void addTable(String table, long rows) {
+            tables.add(new TableRows(table, rows));
+        }
+
+        public long getRawBytes() {
+            return rawBytes + raw.position();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                flushChunk();
+
+                ByteBuffer end = ByteBuffer.allocate(Integer.BYTES);
+                write(end.putInt(0).flip());
+
+                long trailerOffset = position;
+                ByteBuffer trailer = encodeTrailer(
+                        new Manifest(toDateTime(started), System.currentTimeMillis() - started, statements, rawBytes, tables));
+                crc.reset();
+                crc.update(trailer.duplicate());
+                write(trailer);
+
+                ByteBuffer footer = ByteBuffer.allocate(Integer.BYTES + FOOTER_BYTES);
+                footer.putInt((int) crc.getValue()).putLong(trailerOffset).putInt(MAGIC).flip();
+                write(footer);
+
+                channel.force(true);
+            } finally {
+                deflater.end();
+                channel.close();
+            }
+        }
+
+        private void put(ByteBuffer data) throws IOException {
+            while (data.hasRemaining()) {
+                int length = Math.min(data.remaining(), raw.remaining());
+                raw.put(raw.position(), data, data.position(), length);
+                raw.position(raw.position() + length);
+                data.position(data.position() + length);
+
+                if (!raw.hasRemaining()) {
+                    flushChunk();
+                }
+            }
+        }
+
+        private void flushChunk() throws IOException {
+            raw.flip();
+            int rawLength = raw.remaining();
+            if (rawLength == 0) {
+                raw.clear();
+                return;
+            }
+
+            crc.reset();
+            crc.update(raw.duplicate());
+
+            deflater.reset();
+            deflater.setInput(raw);
+            deflater.finish();
+            deflated.clear();
+            while (!deflater.finished()) {
+                if (deflater.deflate(deflated) == 0 && !deflated.hasRemaining()) {
+                    throw new IllegalStateException("Deflated backup chunk larger than its buffer");
+                }
+            }
+            deflated.flip();
+
+            chunkHeader.clear();
+            chunkHeader.putInt(rawLength).putInt(deflated.remaining()).putInt((int) crc.getValue()).flip();
+            ByteBuffer[] chunk = {chunkHeader, deflated};
+            while (deflated.hasRemaining()) {
+                position += channel.write(chunk);
+            }
+
+            rawBytes += rawLength;
+            raw.clear();
+        }
+
+        private void write(ByteBuffer data) throws IOException {
+            while (data.hasRemaining()) {
+                position += channel.write(data);
+            }
+        }
+    }
+
+    /**
+     * A complete backup file; replay() reads the chunks back, checking every one of them
+     */
+    public static final class Reader {
+        private final Path path;
+        private final long size;
+        private final int chunkBytes;
+        private final long trailerOffset;
+        private final Manifest manifest;
+
+        private Reader(Path path) throws IOException {
+            this.path = path;
+
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                size = channel.size();
+                if (size < HEADER_BYTES + Integer.BYTES + FOOTER_BYTES) {
+                    throw new IOException("Not a complete backup file: " + path);
+                }
+
+                ByteBuffer header = read(channel, 0, HEADER_BYTES);
+                ByteBuffer footer = read(channel, size - Integer.BYTES - FOOTER_BYTES, Integer.BYTES + FOOTER_BYTES);
+                int trailerCrc = footer.getInt();
+                trailerOffset = footer.getLong();
+                if (header.getInt() != MAGIC || footer.getInt() != MAGIC) {
+                    throw new IOException("Not a complete backup file: " + path);
+                }
+                if (header.getInt() != VERSION) {
+                    throw new IOException("Unsupported backup file version: " + path);
+                }
+                chunkBytes = header.getInt();
+
+                long trailerEnd = size - Integer.BYTES - FOOTER_BYTES;
+                if (trailerOffset < HEADER_BYTES || trailerOffset > trailerEnd) {
+                    throw new IOException("Damaged backup file (trailer offset): " + path);
+                }
+
+                ByteBuffer trailer = read(channel, trailerOffset, (int) (trailerEnd - trailerOffset));
+                CRC32 crc = new CRC32();
+                crc.update(trailer.duplicate());
+                if ((int) crc.getValue() != trailerCrc) {
+                    throw new IOException("Damaged backup file (trailer checksum): " + path);
+                }
+                manifest = decodeTrailer(trailer);
+            }
+        }
+
+        public Path getPath() {
+            return path;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public Manifest getManifest() {
+            return manifest;
+        }
+
+        /**
+         * Read every statement in order; throws IOException at the first chunk whose length or
+         * checksum is wrong, or if the file holds fewer or more statements than its trailer says
+         */
+        public void replay(StatementVisitor visitor) throws IOException, SQLException {
+            ByteBuffer stored = ByteBuffer.allocateDirect(chunkBytes + chunkBytes / 64 + 64);
+            // one byte more than a chunk, so the inflater reaches the end of the stream
+            ByteBuffer raw = ByteBuffer.allocateDirect(chunkBytes + 1);
+            StatementDecoder decoder = new StatementDecoder();
+            Inflater inflater = new Inflater();
+            CRC32 crc = new CRC32();
+
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                long position = HEADER_BYTES;
+                while (true) {
+                    int rawLength = read(channel, position, Integer.BYTES).getInt();
+                    position += Integer.BYTES;
+                    if (rawLength == 0) {
+                        break;
+                    }
+
+                    ByteBuffer chunkHeader = read(channel, position, CHUNK_HEADER_BYTES - Integer.BYTES);
+                    int storedLength = chunkHeader.getInt();
+                    int checksum = chunkHeader.getInt();
+                    position += CHUNK_HEADER_BYTES - Integer.BYTES;
+                    if (rawLength < 0 || rawLength > chunkBytes || storedLength < 0 || storedLength > stored.capacity()
+                            || position + storedLength > trailerOffset) {
+                        throw new IOException("Damaged backup file (chunk at " + position + "): " + path);
+                    }
+
+                    stored.clear().limit(storedLength);
+                    readFully(channel, position, stored);
+                    stored.flip();
+                    position += storedLength;
+
+                    raw.clear().limit(rawLength + 1);
+                    inflater.reset();
+                    inflater.setInput(stored);
+                    try {
+                        while (!inflater.finished() && raw.hasRemaining()) {
+                            if (inflater.inflate(raw) == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                                break;
+                            }
+                        }
+                    } catch (DataFormatException e) {
+                        throw new IOException("Damaged backup file (chunk at " + position + "): " + path, e);
+                    }
+                    raw.flip();
+
+                    crc.reset();
+                    crc.update(raw.duplicate());
+                    if (raw.remaining() != rawLength || !inflater.finished() || (int) crc.getValue() != checksum) {
+                        throw new IOException("Damaged backup file (chunk checksum at " + position + "): " + path);
+                    }
+
+                    decoder.feed(raw, visitor);
+                }
+
+                if (!decoder.isComplete() || decoder.statements != manifest.statements()) {
+                    throw new IOException("Incomplete backup file: " + decoder.statements + " of "
+                            + manifest.statements() + " statements in " + path);
+                }
+            } finally {
+                inflater.end();
+            }
+        }
+    }
+
+    // Splits the raw bytes of the chunks back into statements
+    private static final class StatementDecoder {
+        private final ByteBuffer length = ByteBuffer.allocate(Integer.BYTES);
+        private byte[] text;
+        private int filled;
+        private long statements;
+
+        void feed(ByteBuffer raw, StatementVisitor visitor) throws IOException, SQLException {
+            while (raw.hasRemaining()) {
+                if (text == null) {
+                    length.put(raw.get());
+                    if (length.hasRemaining()) {
+                        continue;
+                    }
+                    int bytes = length.flip().getInt();
+                    length.clear();
+                    if (bytes < 0) {
+                        throw new IOException("Damaged backup file (statement length)");
+                    }
+                    text = new byte[bytes];
+                    filled = 0;
+                }
+
+                int count = Math.min(raw.remaining(), text.length - filled);
+                raw.get(text, filled, count);
+                filled += count;
+
+                if (filled == text.length) {
+                    visitor.visit(new String(text, StandardCharsets.UTF_8));
+                    statements++;
+                    text = null;
+                }
+            }
+        }
+
+        boolean isComplete() {
+            return text == null && length.position() == 0;
+        }
+    }
+
+    private static ByteBuffer encodeTrailer(Manifest manifest) {
+        List<byte[]> names = new ArrayList<>();
+        int size = 4 * Long.BYTES + Integer.BYTES;
+        for (TableRows table : manifest.tables()) {
+            byte[] name = table.table().getBytes(StandardCharsets.UTF_8);
+            names.add(name);
+            size += Short.BYTES + name.length + Long.BYTES;
+        }
+
+        ByteBuffer trailer = ByteBuffer.allocate(size);
+        trailer.putLong(manifest.createdAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli())
+                .putLong(manifest.durationMillis())
+                .putLong(manifest.statements())
+                .putLong(manifest.rawBytes())
+                .putInt(manifest.tables().size());
+        for (int i = 0; i < names.size(); i++) {
+            trailer.putShort((short) names.get(i).length).put(names.get(i)).putLong(manifest.tables().get(i).rows());
+        }
+        return trailer.flip();
+    }
+
+    private static Manifest decodeTrailer(ByteBuffer trailer) {
+        LocalDateTime createdAt = toDateTime(trailer.getLong());
+        long durationMillis = trailer.getLong();
+        long statements = trailer.getLong();
+        long rawBytes = trailer.getLong();
+
+        int count = trailer.getInt();
+        List<TableRows> tables = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            byte[] name = new byte[trailer.getShort()];
+            trailer.get(name);
+            tables.add(new TableRows(new String(name, StandardCharsets.UTF_8), trailer.getLong()));
+        }
+        return new Manifest(createdAt, durationMillis, statements, rawBytes, List.copyOf(tables));
+    }
+
+    private static LocalDateTime toDateTime(long epochMillis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault());
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer data = ByteBuffer.allocate(length);
+        readFully(channel, position, data);
+        return data.flip();
+    }
+
+    private static void readFully(FileChannel channel, long position, ByteBuffer target) throws IOException {
+        while (target.hasRemaining()) {
+            int read = channel.read(target, position);
+            if (read < 0) {
+                throw new IOException("Unexpected end of backup file");
+            }
+            position += read;
+        }
+    }
+}
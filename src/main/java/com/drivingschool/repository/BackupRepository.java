@@ -0,0 +1,166 @@
+package com.drivingschool.repository;
+
+import com.drivingschool.model.ArchiveFile;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Backup Repository - Data Access Layer using raw SQL
+ *
+ * Reads snapshots of the primary database (never the replica, which may be behind) and replays
+ * them into new H2 databases. A snapshot is taken with BACKUP TO, H2's online copy of the
+ * MVStore file: it holds one committed state of every table and writers are not blocked while
+ * it is made. The row counts and the script are then read from that copy, opened read only, so
+ * they agree with each other. (A REPEATABLE READ transaction would not do: H2 fixes each table's
+ * snapshot only when that table is first read.) In-memory databases cannot be backed up this way.
+ * The archive files a snapshot or a restored database registers are read from its ArchiveFile
+ * table, so the files copied with it are the ones its rows refer to.
+ */
+
+@Repository
+public class BackupRepository {
+
+    private static final int FETCH_SIZE = 1000;
+    private static final String MV_STORE_SUFFIX = ".mv.db";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public BackupRepository(@Qualifier("primaryDataSource") DataSource primaryDataSource) {
+        this.jdbcTemplate = new JdbcTemplate(primaryDataSource);
+    }
+
+    /**
+     * Copy the database to copyZip (BACKUP TO, a consistent online copy), then write the row count
+     * of every table and the SQL script of the whole database, both read from that copy
+     * copyZip must be an absolute path on the database server's file system; the caller deletes it
+     * Returns the archive files the copy registers
+     */
+    public List<ArchiveFile> writeSnapshot(BackupFile.Writer writer, Path copyZip, String username, String password)
+            throws IOException, SQLException {
+        jdbcTemplate.execute("BACKUP TO '" + copyZip.toAbsolutePath().toString().replace("'", "''") + "'");
+
+        try (Connection connection = DriverManager.getConnection(
+                     "jdbc:h2:zip:" + copyZip.toAbsolutePath() + "!/" + databaseName(copyZip), username, password);
+             Statement statement = connection.createStatement()) {
+            // nothing writes to the copy, so the counts and the script describe the same state
+            for (String table : tableNames(statement)) {
+                writer.addTable(table, count(statement, table));
+            }
+
+            statement.setFetchSize(FETCH_SIZE);
+            try (ResultSet rs = statement.executeQuery("SCRIPT")) {
+                while (rs.next()) {
+                    String sql = rs.getString(1);
+                    // comments (the H2 version, row counts) are not statements
+                    if (!sql.startsWith("--")) {
+                        writer.writeStatement(sql);
+                    }
+                }
+            }
+
+            return archiveFiles(statement);
+        }
+    }
+
+    /**
+     * Run the statements of a backup in a new database and return the row count of every table
+     * The database is shut down afterwards, so its file can be copied or opened elsewhere
+     */
+    public Map<String, Long> restore(BackupFile.Reader reader, String url, String username, String password)
+            throws IOException, SQLException {
+        try (Connection connection = DriverManager.getConnection(url, username, password);
+             Statement statement = connection.createStatement()) {
+            reader.replay(statement::execute);
+
+            Map<String, Long> counts = new LinkedHashMap<>();
+            for (String table : tableNames(statement)) {
+                counts.put(table, count(statement, table));
+            }
+
+            statement.execute("SHUTDOWN");
+            return counts;
+        }
+    }
+
+    /**
+     * The archive files a restored database registers
+     * The database is shut down again afterwards, like after the restore
+     */
+    public List<ArchiveFile> findArchiveFiles(String url, String username, String password) throws SQLException {
+        try (Connection connection = DriverManager.getConnection(url, username, password);
+             Statement statement = connection.createStatement()) {
+            List<ArchiveFile> files = archiveFiles(statement);
+
+            statement.execute("SHUTDOWN");
+            return files;
+        }
+    }
+
+    // The database a BACKUP TO archive holds: its one .mv.db entry, without the extension
+    private static String databaseName(Path copyZip) throws IOException {
+        try (ZipFile zip = new ZipFile(copyZip.toFile())) {
+            return zip.stream()
+                    .map(ZipEntry::getName)
+                    .filter(name -> name.endsWith(MV_STORE_SUFFIX))
+                    .map(name -> name.substring(0, name.length() - MV_STORE_SUFFIX.length()))
+                    .findFirst()
+                    .orElseThrow(() -> new IOException("No database in " + copyZip));
+        }
+    }
+
+    private static List<String> tableNames(Statement statement) throws SQLException {
+        String sql = "SELECT TABLE_NAME FROM INFORMATION_SCHEMA.TABLES WHERE TABLE_SCHEMA = 'PUBLIC' AND TABLE_TYPE = 'BASE TABLE' ORDER BY TABLE_NAME";
+
+        try (ResultSet rs = statement.executeQuery(sql)) {
+            List<String> names = new ArrayList<>();
+            while (rs.next()) {
+                names.add(rs.getString(1));
+            }
+            return names;
+        }
+    }
+
+    // Name, size and row count of every registered archive file (none before the archive existed)
+    private static List<ArchiveFile> archiveFiles(Statement statement) throws SQLException {
+        List<ArchiveFile> files = new ArrayList<>();
+        if (tableNames(statement).stream().noneMatch(TableVersions.ARCHIVE_FILE::equalsIgnoreCase)) {
+            return files;
+        }
+
+        try (ResultSet rs = statement.executeQuery("SELECT FileName, TableName, ArchiveYear, RowCount, SizeBytes FROM ArchiveFile ORDER BY FileName")) {
+            while (rs.next()) {
+                ArchiveFile file = new ArchiveFile();
+                file.setFileName(rs.getString("FileName"));
+                file.setTableName(rs.getString("TableName"));
+                file.setArchiveYear(rs.getInt("ArchiveYear"));
+                file.setRowCount(rs.getInt("RowCount"));
+                file.setSizeBytes(rs.getLong("SizeBytes"));
+                files.add(file);
+            }
+        }
+        return files;
+    }
+
+    private static long count(Statement statement, String table) throws SQLException {
+        try (ResultSet rs = statement.executeQuery("SELECT COUNT(*) FROM \"" + table + "\"")) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.drivingschool.repository;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+
+/**
+ * Branches - the databases of every branch of the school
+ *
+ * Each branch keeps all its data (users included) in its own database with the full schema.
+ * A node serves the users of one branch, its home branch, whose database is spring.datasource:
+ * every page, write, in-memory copy and background job of the node works on it alone.
+ * Users of other branches are sent to their branch's nodes at login (see BranchLoginHandler).
+ *
+ * The other branches listed in branches.others are only read, by the cross-branch reports and
+ * the admin dashboard: scatter() runs one query on every branch in parallel (one virtual thread
+ * per branch) and returns the per-branch results for the caller to merge. Each of them needs
+ * branches.<id>.url (H2 file or server URL), optional username / password, and base-url, the
+ * address its nodes are reached at.
+ *
+ * Metric: branches.query{branch}
+ */
+
+@Component
+public class Branches implements AutoCloseable {
+
+    /**
+     * One branch; baseUrl may be empty for the home branch
+     */
+    public record Branch(String id, String baseUrl, JdbcTemplate jdbcTemplate, boolean home) {
+    }
+
+    // The result of one branch
+    public record BranchResult<T>(Branch branch, T result) {
+    }
+
+    private final Map<String, Branch> branches = new LinkedHashMap<>();
+    private final List<HikariDataSource> pools = new ArrayList<>();
+    private final Map<String, Timer> queryTimers = new LinkedHashMap<>();
+    private final long timeoutSeconds;
+
+    public Branches(JdbcTemplate jdbcTemplate, Environment environment, MeterRegistry meterRegistry,
+                    @Value("${branches.home:main}") String home,
+                    @Value("${branches.others:}") String others,
+                    @Value("${branches.query-timeout-seconds:30}") long timeoutSeconds,
+                    @Value("${branches.pool-size:4}") int poolSize) {
+        this.timeoutSeconds = timeoutSeconds;
+
+        add(new Branch(home, environment.getProperty("branches." + home + ".base-url", ""), jdbcTemplate, true),
+                meterRegistry);
+
+        Arrays.stream(others.split(","))
+                .map(String::trim)
+                .filter(id -> !id.isEmpty() && !id.equals(home))
+                .forEach(id -> add(new Branch(id,
+                        environment.getRequiredProperty("branches." + id + ".base-url"),
+                        new JdbcTemplate(pool(id, environment, poolSize)), false), meterRegistry));
+    }
+
+    // The branch this node serves
+    public Branch home() {
+        return branches.values().iterator().next();
+    }
+
+    // A branch by id, null if unknown
+    public Branch get(String id) {
+        return branches.get(id);
+    }
+
+    // Every branch, the home branch first
+    public List<Branch> all() {
+        return List.copyOf(branches.values());
+    }
+
+    // Branches other than the home branch
+    public List<Branch> others() {
+        return all().subList(1, branches.size());
+    }
+
+    public boolean isMultiBranch() {
+        return branches.size() > 1;
+    }
+
+    /**
+     * Run a query on every branch in parallel; results are in all() order
+     * Fails if any branch fails or takes longer than branches.query-timeout-seconds:
+     * a report missing a branch would be silently wrong.
+     */
+    public <T> List<BranchResult<T>> scatter(Function<JdbcTemplate, T> query) {
+        return scatter(all(), query);
+    }
+
+    // Run a query on the given branches in parallel
+    public <T> List<BranchResult<T>> scatter(List<Branch> targets, Function<JdbcTemplate, T> query) {
+        if (targets.size() == 1) {
+            Branch branch = targets.getFirst();
+            return List.of(new BranchResult<>(branch, timed(branch, query)));
+        }
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<T>> futures = new ArrayList<>(targets.size());
+            for (Branch branch : targets) {
+                futures.add(executor.submit(() -> timed(branch, query)));
+            }
+
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(timeoutSeconds);
+            List<BranchResult<T>> results = new ArrayList<>(targets.size());
+            for (int i = 0; i < targets.size(); i++) {
+                results.add(new BranchResult<>(targets.get(i), await(targets.get(i), futures, i, deadline)));
+            }
+            return results;
+        }
+    }
+
+    @Override
+    public void close() {
+        pools.forEach(HikariDataSource::close);
+    }
+
+    private <T> T await(Branch branch, List<Future<T>> futures, int index, long deadline) {
+        try {
+            return futures.get(index).get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (ExecutionException e) {
+            futures.forEach(future -> future.cancel(true));
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException("Query on branch " + branch.id() + " failed", e.getCause());
+        } catch (TimeoutException e) {
+            futures.forEach(future -> future.cancel(true));
+            throw new IllegalStateException("Branch " + branch.id() + " did not answer in " + timeoutSeconds + " s");
+        } catch (InterruptedException e) {
+            futures.forEach(future -> future.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while querying branch " + branch.id());
+        }
+    }
+
+    private <T> T timed(Branch branch, Function<JdbcTemplate, T> query) {
+        return queryTimers.get(branch.id()).record(() -> query.apply(branch.jdbcTemplate()));
+    }
+
+    private void add(Branch branch, MeterRegistry meterRegistry) {
+        branches.put(branch.id(), branch);
+        queryTimers.put(branch.id(), Timer.builder("branches.query")
+                .tag("branch", branch.id())
+                .description("Duration of one cross-branch query on a branch")
+                .register(meterRegistry));
+    }
+
+    // Read-only connection pool of another branch's database
+    private HikariDataSource pool(String id, Environment environment, int poolSize) {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setPoolName("branch-" + id);
+        dataSource.setJdbcUrl(environment.getRequiredProperty("branches." + id + ".url"));
+        dataSource.setUsername(environment.getProperty("branches." + id + ".username", "sa"));
+        dataSource.setPassword(environment.getProperty("branches." + id + ".password", ""));
+        dataSource.setMaximumPoolSize(poolSize);
+        dataSource.setReadOnly(true);
+        pools.add(dataSource);
+        return dataSource;
+    }
+}
@@ -19,9 +19,11 @@ import java.util.Map;
 public class CarRepository {
 
     private final JdbcTemplate jdbcTemplate;
+    private final TableVersions tableVersions;
 
-    public CarRepository(JdbcTemplate jdbcTemplate) {
+    public CarRepository(JdbcTemplate jdbcTemplate, TableVersions tableVersions) {
         this.jdbcTemplate = jdbcTemplate;
+        this.tableVersions = tableVersions;
     }
 
     private final RowMapper<Car> carRowMapper = (rs, rowNum) -> {
@@ -122,6 +124,7 @@ public class CarRepository {
 
             return ps;
         }, keyHolder);
+        tableVersions.bump(TableVersions.CAR);
 
         Map<String, Object> keys = keyHolder.getKeys();
         if (keys != null && keys.containsKey("CARID")) {
@@ -150,12 +153,14 @@ public class CarRepository {
                 car.getTransmissionType(),
                 car.getAssignedInstructorId(),
                 car.getCarId());
+        tableVersions.bump(TableVersions.CAR);
     }
 
     // Delete car by id
     public void delete(Integer carId) {
         String sql = "DELETE FROM Car WHERE CarID = ?";
         jdbcTemplate.update(sql, carId);
+        tableVersions.bump(TableVersions.CAR);
     }
 
     // Count total cars
@@ -0,0 +1,114 @@
+package com.drivingschool.repository;
+
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * ChangeLog Repository - Data Access Layer using raw SQL
+ *
+ * ChangeLog is written by TableVersions together with the changes it records and read by
+ * ChangeLogService with a keyset cursor on ChangeID. Its own writes bump no table version.
+ */
+
+@Repository
+public class ChangeLogRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public ChangeLogRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    // RowMapper to convert ChangeLog rows to Change records
+    private final RowMapper<Change> changeRowMapper = (rs, rowNum) -> new Change(
+            rs.getLong("ChangeID"),
+            rs.getString("TableName"),
+            (Integer) rs.getObject("RowID"),
+            rs.getString("NodeID"));
+
+    // Append the changes of one transaction, one row per row id (a null set of ids is one row for the whole table)
+    public void append(String nodeId, Map<String, Set<Integer>> rowIdsByTable) {
+        List<Object[]> rows = new ArrayList<>();
+        rowIdsByTable.forEach((table, rowIds) -> {
+            if (rowIds == null) {
+                rows.add(new Object[]{table, null, nodeId});
+            } else {
+                for (Integer rowId : rowIds) {
+                    rows.add(new Object[]{table, rowId, nodeId});
+                }
+            }
+        });
+
+        String sql = "INSERT INTO ChangeLog (TableName, RowID, NodeID) VALUES (?, ?, ?)";
+        jdbcTemplate.batchUpdate(sql, rows);
+    }
+
+    // Next changes after a ChangeID, oldest first
+    public List<Change> findAfter(long changeId, int limit) {
+        String sql = """
+                SELECT ChangeID, TableName, RowID, NodeID
+                FROM ChangeLog
+                WHERE ChangeID > ?
+                ORDER BY ChangeID
+                LIMIT ?
+                """;
+
+        return jdbcTemplate.query(sql, changeRowMapper, changeId, limit);
+    }
+
+    // Highest ChangeID written so far (0 when empty)
+    public long maxChangeId() {
+        return jdbcTemplate.queryForObject("SELECT COALESCE(MAX(ChangeID), 0) FROM ChangeLog", Long.class);
+    }
+
+    // Lowest ChangeID still kept (0 when empty)
+    public long minChangeId() {
+        return jdbcTemplate.queryForObject("SELECT COALESCE(MIN(ChangeID), 0) FROM ChangeLog", Long.class);
+    }
+
+    // Last ChangeID a node has applied, null if it never saved one
+    public Long findCursor(String nodeId) {
+        String sql = "SELECT LastChangeID FROM ChangeLogCursor WHERE NodeID = ?";
+        List<Long> cursors = jdbcTemplate.queryForList(sql, Long.class, nodeId);
+        return cursors.isEmpty() ? null : cursors.getFirst();
+    }
+
+    // Save the last ChangeID a node has applied
+    public void saveCursor(String nodeId, long changeId) {
+        String update = "UPDATE ChangeLogCursor SET LastChangeID = ?, UpdatedAt = CURRENT_TIMESTAMP WHERE NodeID = ?";
+
+        if (jdbcTemplate.update(update, changeId, nodeId) == 0) {
+            try {
+                jdbcTemplate.update("INSERT INTO ChangeLogCursor (LastChangeID, NodeID) VALUES (?, ?)", changeId, nodeId);
+            } catch (DuplicateKeyException e) {
+                // saved by another instance with the same node id in the meantime
+                jdbcTemplate.update(update, changeId, nodeId);
+            }
+        }
+    }
+
+    // Delete up to limit changes older than the cutoff; returns the number deleted
+    public int deleteOlderThan(LocalDateTime cutoff, int limit) {
+        String sql = "DELETE FROM ChangeLog WHERE ChangedAt < ? LIMIT ?";
+        return jdbcTemplate.update(sql, Timestamp.valueOf(cutoff), limit);
+    }
+
+    // Delete the cursors of nodes that have not polled since the cutoff
+    public int deleteCursorsOlderThan(LocalDateTime cutoff) {
+        String sql = "DELETE FROM ChangeLogCursor WHERE UpdatedAt < ?";
+        return jdbcTemplate.update(sql, Timestamp.valueOf(cutoff));
+    }
+
+    // One logged change: a row of a table, or the whole table when rowId is null
+    public record Change(long changeId, String tableName, Integer rowId, String nodeId) {
+    }
+}
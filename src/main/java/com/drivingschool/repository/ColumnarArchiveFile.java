@@ -0,0 +1,451 @@
+package com.drivingschool.repository;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Columnar Archive File - append-only, memory-mapped file of archived rows
+ *
+ * Layout:
+ *   header     magic, version
+ *   blocks     up to BLOCK_ROWS rows each; inside a block every column is stored contiguously
+ *              (BYTE 1, INT 4, LONG 8 bytes per value; STRING as n+1 offsets followed by UTF-8 bytes)
+ *   directory  column names and types, then per block: row count and per column offset, min, max
+ *   trailer    directory offset, block count, row count, magic
+ *
+ * The per-block min/max of every numeric column is a zone map: a scan with a range condition
+ * skips every block whose [min, max] cannot match, without touching its data.
+ * Files are written once, to a temporary name, and never modified afterwards.
+ */
+
+public final class ColumnarArchiveFile {
+
+    public enum ColumnType { BYTE, INT, LONG, STRING }
+
+    public record Column(String name, ColumnType type) {
+    }
+
+    // Rows whose column value is between min and max (inclusive)
+    public record Range(int column, long min, long max) {
+    }
+
+    // What a scan read and skipped
+    public record ScanStats(int blocksRead, int blocksSkipped, long rowsMatched) {
+        public ScanStats plus(ScanStats other) {
+            return new ScanStats(blocksRead + other.blocksRead, blocksSkipped + other.blocksSkipped,
+                    rowsMatched + other.rowsMatched);
+        }
+    }
+
+    @FunctionalInterface
+    public interface RowVisitor {
+        void visit(Reader.Cursor row);
+    }
+
+    public static final int BLOCK_ROWS = 8192;
+
+    private static final int MAGIC = 0x44534341; // "DSCA"
+    private static final int VERSION = 1;
+    private static final int TRAILER_BYTES = Long.BYTES + Integer.BYTES + Long.BYTES + Integer.BYTES;
+
+    private ColumnarArchiveFile() {
+    }
+
+    // Start writing a new file (fails if it already exists)
+    public static Writer create(Path path, List<Column> columns) throws IOException {
+        return new Writer(path, columns);
+    }
+
+    // Map an existing file for reading
+    public static Reader open(Path path) throws IOException {
+        return new Reader(path);
+    }
+
+    /**
+     * Writes rows block by block: set every column of a row, then call endRow()
+     * close() writes the directory and the trailer and forces the file to disk
+     */
+    public static final class Writer implements Closeable {
+        private final FileChannel channel;
+        private final List<Column> columns;
+
+        private final byte[][] bytes;
+        private final int[][] ints;
+        private final long[][] longs;
+        private final String[][] strings;
+        private int blockSize;
+
+        private final List<long[]> directory = new ArrayList<>();
+        private final List<Integer> blockRows = new ArrayList<>();
+        private long position;
+        private long rowCount;
+
+        private Writer(Path path, List<Column> columns) throws IOException {
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            this.columns = List.copyOf(columns);
+
+            int count = columns.size();
+            bytes = new byte[count][];
+            ints = new int[count][];
+            longs = new long[count][];
+            strings = new String[count][];
+
+            for (int c = 0; c < count; c++) {
+                switch (columns.get(c).type()) {
+                    case BYTE -> bytes[c] = new byte[BLOCK_ROWS];
+                    case INT -> ints[c] = new int[BLOCK_ROWS];
+                    case LONG -> longs[c] = new long[BLOCK_ROWS];
+                    case STRING -> strings[c] = new String[BLOCK_ROWS];
+                }
+            }
+
+            ByteBuffer header = buffer(2 * Integer.BYTES);
+            header.putInt(MAGIC).putInt(VERSION).flip();
+            write(header);
+        }
+
+        public Writer setByte(int column, byte value) {
+            bytes[column][blockSize] = value;
+            return this;
+        }
+
+        public Writer setInt(int column, int value) {
+            ints[column][blockSize] = value;
+            return this;
+        }
+
+        public Writer setLong(int column, long value) {
+            longs[column][blockSize] = value;
+            return this;
+        }
+
+        public Writer setString(int column, String value) {
+            strings[column][blockSize] = value;
+            return this;
+        }
+
+        public void endRow() throws IOException {
+            blockSize++;
+            rowCount++;
+
+            if (blockSize == BLOCK_ROWS) {
+                flushBlock();
+            }
+        }
+
+        public long getRowCount() {
+            return rowCount;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                if (blockSize > 0) {
+                    flushBlock();
+                }
+
+                long directoryOffset = position;
+                writeDirectory();
+
+                ByteBuffer trailer = buffer(TRAILER_BYTES);
+                trailer.putLong(directoryOffset).putInt(blockRows.size()).putLong(rowCount).putInt(MAGIC).flip();
+                write(trailer);
+
+                channel.force(true);
+            } finally {
+                channel.close();
+            }
+        }
+
+        private void flushBlock() throws IOException {
+            long[] entry = new long[columns.size() * 3];
+
+            for (int c = 0; c < columns.size(); c++) {
+                ByteBuffer data = encode(c);
+                entry[c * 3] = position;
+
+                long min = Long.MAX_VALUE;
+                long max = Long.MIN_VALUE;
+                for (int row = 0; row < blockSize; row++) {
+                    long value = switch (columns.get(c).type()) {
+                        case BYTE -> bytes[c][row];
+                        case INT -> ints[c][row];
+                        case LONG -> longs[c][row];
+                        case STRING -> 0;
+                    };
+                    min = Math.min(min, value);
+                    max = Math.max(max, value);
+                }
+                entry[c * 3 + 1] = min;
+                entry[c * 3 + 2] = max;
+
+                write(data);
+            }
+
+            directory.add(entry);
+            blockRows.add(blockSize);
+            blockSize = 0;
+            Arrays.stream(strings).filter(column -> column != null).forEach(column -> Arrays.fill(column, null));
+        }
+
+        private ByteBuffer encode(int c) {
+            return switch (columns.get(c).type()) {
+                case BYTE -> ByteBuffer.wrap(bytes[c], 0, blockSize);
+                case INT -> {
+                    ByteBuffer data = buffer(blockSize * Integer.BYTES);
+                    data.asIntBuffer().put(ints[c], 0, blockSize);
+                    yield data;
+                }
+                case LONG -> {
+                    ByteBuffer data = buffer(blockSize * Long.BYTES);
+                    data.asLongBuffer().put(longs[c], 0, blockSize);
+                    yield data;
+                }
+                case STRING -> {
+                    // NULL is stored as offset -1 (no bytes)
+                    byte[][] encoded = new byte[blockSize][];
+                    int total = 0;
+                    for (int row = 0; row < blockSize; row++) {
+                        if (strings[c][row] != null) {
+                            encoded[row] = strings[c][row].getBytes(StandardCharsets.UTF_8);
+                            total += encoded[row].length;
+                        }
+                    }
+
+                    ByteBuffer data = buffer((blockSize + 1) * Integer.BYTES + total);
+                    int offset = 0;
+                    for (int row = 0; row < blockSize; row++) {
+                        data.putInt(encoded[row] == null ? -1 : offset);
+                        offset += encoded[row] == null ? 0 : encoded[row].length;
+                    }
+                    data.putInt(offset);
+                    for (byte[] value : encoded) {
+                        if (value != null) {
+                            data.put(value);
+                        }
+                    }
+                    yield data.flip();
+                }
+            };
+        }
+
+        private void writeDirectory() throws IOException {
+            int size = Integer.BYTES;
+            List<byte[]> names = new ArrayList<>();
+            for (Column column : columns) {
+                byte[] name = column.name().getBytes(StandardCharsets.UTF_8);
+                names.add(name);
+                size += Short.BYTES + name.length + 1;
+            }
+            size += blockRows.size() * (Integer.BYTES + columns.size() * 3 * Long.BYTES);
+
+            ByteBuffer data = buffer(size);
+            data.putInt(columns.size());
+            for (int c = 0; c < columns.size(); c++) {
+                data.putShort((short) names.get(c).length).put(names.get(c)).put((byte) columns.get(c).type().ordinal());
+            }
+            for (int b = 0; b < blockRows.size(); b++) {
+                data.putInt(blockRows.get(b));
+                for (long value : directory.get(b)) {
+                    data.putLong(value);
+                }
+            }
+            write(data.flip());
+        }
+
+        private void write(ByteBuffer data) throws IOException {
+            while (data.hasRemaining()) {
+                position += channel.write(data);
+            }
+        }
+    }
+
+    /**
+     * A mapped archive file; scans read the columns straight from the mapping
+     * The mapping is released by the garbage collector once the reader is no longer used
+     */
+    public static final class Reader {
+        private final MappedByteBuffer data;
+        private final List<Column> columns = new ArrayList<>();
+        private final int[] blockRows;
+        private final long[][] directory;
+        private final long rowCount;
+
+        private Reader(Path path) throws IOException {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+            data.order(ByteOrder.BIG_ENDIAN);
+
+            if (data.capacity() < 2 * Integer.BYTES + TRAILER_BYTES || data.getInt(0) != MAGIC
+                    || data.getInt(data.capacity() - Integer.BYTES) != MAGIC) {
+                throw new IOException("Not a complete archive file: " + path);
+            }
+
+            int trailer = data.capacity() - TRAILER_BYTES;
+            long directoryOffset = data.getLong(trailer);
+            int blockCount = data.getInt(trailer + Long.BYTES);
+            rowCount = data.getLong(trailer + Long.BYTES + Integer.BYTES);
+
+            ByteBuffer dir = data.duplicate().position((int) directoryOffset);
+            int columnCount = dir.getInt();
+            for (int c = 0; c < columnCount; c++) {
+                byte[] name = new byte[dir.getShort()];
+                dir.get(name);
+                columns.add(new Column(new String(name, StandardCharsets.UTF_8), ColumnType.values()[dir.get()]));
+            }
+
+            blockRows = new int[blockCount];
+            directory = new long[blockCount][columnCount * 3];
+            for (int b = 0; b < blockCount; b++) {
+                blockRows[b] = dir.getInt();
+                for (int i = 0; i < columnCount * 3; i++) {
+                    directory[b][i] = dir.getLong();
+                }
+            }
+        }
+
+        public List<Column> getColumns() {
+            return columns;
+        }
+
+        public long getRowCount() {
+            return rowCount;
+        }
+
+        public int getBlockCount() {
+            return blockRows.length;
+        }
+
+        // Index of a column by name
+        public int column(String name) {
+            for (int c = 0; c < columns.size(); c++) {
+                if (columns.get(c).name().equals(name)) {
+                    return c;
+                }
+            }
+            throw new IllegalArgumentException("No column " + name);
+        }
+
+        /**
+         * Visit every row matching all ranges
+         * Blocks whose zone map excludes a range are skipped without reading their data
+         */
+        public ScanStats scan(List<Range> ranges, RowVisitor visitor) {
+            int read = 0;
+            int skipped = 0;
+            long matched = 0;
+            Cursor cursor = new Cursor();
+
+            for (int b = 0; b < blockRows.length; b++) {
+                if (!mayMatch(b, ranges)) {
+                    skipped++;
+                    continue;
+                }
+
+                read++;
+                cursor.block = b;
+                for (int row = 0; row < blockRows[b]; row++) {
+                    cursor.row = row;
+                    if (matches(cursor, ranges)) {
+                        matched++;
+                        visitor.visit(cursor);
+                    }
+                }
+            }
+
+            return new ScanStats(read, skipped, matched);
+        }
+
+        private boolean mayMatch(int block, List<Range> ranges) {
+            for (Range range : ranges) {
+                long min = directory[block][range.column() * 3 + 1];
+                long max = directory[block][range.column() * 3 + 2];
+                if (max < range.min() || min > range.max()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean matches(Cursor cursor, List<Range> ranges) {
+            for (Range range : ranges) {
+                long value = cursor.getNumber(range.column());
+                if (value < range.min() || value > range.max()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * The row being visited; only valid inside visit()
+         */
+        public final class Cursor {
+            private int block;
+            private int row;
+
+            private Cursor() {
+            }
+
+            public byte getByte(int column) {
+                return data.get(offset(column) + row);
+            }
+
+            public int getInt(int column) {
+                return data.getInt(offset(column) + row * Integer.BYTES);
+            }
+
+            public long getLong(int column) {
+                return data.getLong(offset(column) + row * Long.BYTES);
+            }
+
+            public String getString(int column) {
+                int base = offset(column);
+                int start = data.getInt(base + row * Integer.BYTES);
+                if (start < 0) {
+                    return null;
+                }
+
+                int end = start;
+                for (int next = row + 1; next <= blockRows[block]; next++) {
+                    end = data.getInt(base + next * Integer.BYTES);
+                    if (end >= 0) {
+                        break;
+                    }
+                }
+
+                byte[] value = new byte[end - start];
+                data.get(base + (blockRows[block] + 1) * Integer.BYTES + start, value);
+                return new String(value, StandardCharsets.UTF_8);
+            }
+
+            private long getNumber(int column) {
+                return switch (columns.get(column).type()) {
+                    case BYTE -> getByte(column);
+                    case INT -> getInt(column);
+                    case LONG -> getLong(column);
+                    case STRING -> throw new IllegalArgumentException("No ranges on text columns");
+                };
+            }
+
+            private int offset(int column) {
+                return (int) directory[block][column * 3];
+            }
+        }
+    }
+
+    private static ByteBuffer buffer(int size) {
+        return ByteBuffer.allocate(size).order(ByteOrder.BIG_ENDIAN);
+    }
+}
@@ -0,0 +1,172 @@
+package com.drivingschool.repository;
+
+import com.drivingschool.model.Payment;
+import com.drivingschool.model.Session;
+import com.drivingschool.model.Trainee;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Dashboard Repository - the admin dashboard figures of every branch
+ *
+ * Each branch answers one query of counts and sums and three short "latest / next" lists,
+ * all branches in parallel (see Branches). Counts and sums are added up; the lists are merged
+ * and cut to the requested length again, so they hold the overall latest or next rows.
+ * With more than one branch every row carries the branch it was read from.
+ */
+
+@Repository
+public class DashboardRepository {
+
+    private static final List<String> COUNTS = List.of(
+            "totalTrainees", "activeTrainees", "totalInstructors", "totalCars", "totalSessions",
+            "completedSessions", "upcomingSessions", "totalExams", "passedExams", "upcomingExams", "behindSchedule");
+    private static final List<String> SUMS = List.of("totalRevenue", "monthlyRevenue");
+
+    private final Branches branches;
+
+    public DashboardRepository(Branches branches) {
+        this.branches = branches;
+    }
+
+    /**
+     * Counts and revenue of every branch added up, keyed like the dashboard's stats
+     * Every branch flags behind-schedule trainees against the average of all branches (see
+     * ScheduleWatchlistService), so their watchlist sizes add up
+     */
+    public Map<String, Object> findStats(LocalDateTime now) {
+        String sql = """
+                SELECT
+                    (SELECT COUNT(*) FROM Trainee) AS totalTrainees,
+                    (SELECT COUNT(*) FROM Trainee WHERE Status = 'Active') AS activeTrainees,
+                    (SELECT COUNT(*) FROM Instructor) AS totalInstructors,
+                    (SELECT COUNT(*) FROM Car) AS totalCars,
+                    (SELECT COUNT(*) FROM Session) AS totalSessions,
+                    (SELECT COUNT(*) FROM Session WHERE Status = 'Completed') AS completedSessions,
+                    (SELECT COUNT(*) FROM Session WHERE Status = 'Scheduled' AND StartDateTime > ?) AS upcomingSessions,
+                    (SELECT COUNT(*) FROM Exam) AS totalExams,
+                    (SELECT COUNT(*) FROM Exam WHERE Result = 'Passed') AS passedExams,
+                    (SELECT COUNT(*) FROM Exam WHERE Status = 'Scheduled' AND ScheduledDate >= ?) AS upcomingExams,
+                    (SELECT COUNT(*) FROM ScheduleWatchlist) AS behindSchedule,
+                    (SELECT COALESCE(SUM(Amount), 0) FROM RevenueDaily) AS totalRevenue,
+                    (SELECT COALESCE(SUM(Amount), 0) FROM RevenueDaily WHERE RevenueDate >= ?) AS monthlyRevenue
+                """;
+
+        Timestamp start = Timestamp.valueOf(now);
+        Date today = Date.valueOf(now.toLocalDate());
+        Date monthStart = Date.valueOf(now.toLocalDate().withDayOfMonth(1));
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        COUNTS.forEach(name -> stats.put(name, 0));
+        SUMS.forEach(name -> stats.put(name, 0.0));
+
+        for (Branches.BranchResult<Map<String, Object>> branch :
+                branches.scatter(jdbc -> jdbc.queryForMap(sql, start, today, monthStart))) {
+            for (String name : COUNTS) {
+                stats.merge(name, ((Number) branch.result().get(name)).intValue(), (a, b) -> (int) a + (int) b);
+            }
+            for (String name : SUMS) {
+                stats.merge(name, ((BigDecimal) branch.result().get(name)).doubleValue(), (a, b) -> (double) a + (double) b);
+            }
+        }
+
+        return stats;
+    }
+
+    // Latest enrollments over all branches
+    public List<Trainee> findRecentTrainees(int limit) {
+        String sql = """
+                SELECT TraineeID, FirstName, LastName, EnrollmentDate, LicenseCategory
+                FROM Trainee
+                ORDER BY EnrollmentDate DESC, TraineeID DESC
+                LIMIT ?
+                """;
+
+        return gather(jdbc -> jdbc.query(sql, (rs, rowNum) -> {
+            Trainee trainee = new Trainee();
+            trainee.setTraineeId(rs.getInt("TraineeID"));
+            trainee.setFirstName(rs.getString("FirstName"));
+            trainee.setLastName(rs.getString("LastName"));
+            trainee.setEnrollmentDate(rs.getDate("EnrollmentDate").toLocalDate());
+            trainee.setLicenseCategory(rs.getString("LicenseCategory"));
+            return trainee;
+        }, limit), Trainee::setBranch, Comparator.comparing(Trainee::getEnrollmentDate).reversed(), limit);
+    }
+
+    // Latest payments over all branches
+    public List<Payment> findRecentPayments(int limit) {
+        String sql = """
+                SELECT p.PaymentID, p.Amount, p.PaymentDate, CONCAT(t.FirstName, ' ', t.LastName) AS TraineeName
+                FROM Payment p
+                LEFT JOIN Trainee t ON p.TraineeID = t.TraineeID
+                ORDER BY p.PaymentDate DESC, p.PaymentID DESC
+                LIMIT ?
+                """;
+
+        return gather(jdbc -> jdbc.query(sql, (rs, rowNum) -> {
+            Payment payment = new Payment();
+            payment.setPaymentId(rs.getInt("PaymentID"));
+            payment.setAmount(rs.getBigDecimal("Amount"));
+            payment.setPaymentDate(rs.getDate("PaymentDate").toLocalDate());
+            payment.setTraineeName(rs.getString("TraineeName"));
+            return payment;
+        }, limit), Payment::setBranch, Comparator.comparing(Payment::getPaymentDate).reversed(), limit);
+    }
+
+    // Next scheduled sessions over all branches
+    public List<Session> findUpcomingSessions(LocalDateTime now, int limit) {
+        String sql = """
+                SELECT
+                    s.SessionID, s.SessionType, s.StartDateTime,
+                    CONCAT(i.FirstName, ' ', i.LastName) AS InstructorName,
+                    CONCAT(t.FirstName, ' ', t.LastName) AS TraineeName,
+                    (SELECT COUNT(*) FROM Trainee_Session WHERE SessionID = s.SessionID) AS TraineeCount
+                FROM Session s
+                LEFT JOIN Instructor i ON s.InstructorID = i.InstructorID
+                LEFT JOIN Trainee t ON s.TraineeID = t.TraineeID
+                WHERE s.Status = 'Scheduled' AND s.StartDateTime > ?
+                ORDER BY s.StartDateTime, s.SessionID
+                LIMIT ?
+                """;
+
+        return gather(jdbc -> jdbc.query(sql, (rs, rowNum) -> {
+            Session session = new Session();
+            session.setSessionId(rs.getInt("SessionID"));
+            session.setSessionType(rs.getString("SessionType"));
+            session.setStartDateTime(rs.getTimestamp("StartDateTime").toLocalDateTime());
+            session.setInstructorName(rs.getString("InstructorName"));
+            session.setTraineeName(rs.getString("TraineeName"));
+            session.setTraineeCount(rs.getInt("TraineeCount"));
+            return session;
+        }, Timestamp.valueOf(now), limit), Session::setBranch, Comparator.comparing(Session::getStartDateTime), limit);
+    }
+
+    // Every branch's first rows, merged and cut to the limit again
+    private <T> List<T> gather(Function<JdbcTemplate, List<T>> query, BiConsumer<T, String> setBranch,
+                               Comparator<T> order, int limit) {
+        List<T> rows = new ArrayList<>();
+        for (Branches.BranchResult<List<T>> branch : branches.scatter(query)) {
+            for (T row : branch.result()) {
+                if (branches.isMultiBranch()) {
+                    setBranch.accept(row, branch.branch().id());
+                }
+                rows.add(row);
+            }
+        }
+
+        rows.sort(order);
+        return rows.size() > limit ? new ArrayList<>(rows.subList(0, limit)) : rows;
+    }
+}
@@ -9,6 +9,7 @@ import org.springframework.stereotype.Repository;
 
 import java.sql.PreparedStatement;
 import java.sql.Statement;
+import java.time.LocalDate;
 import java.util.List;
 import java.util.Map;
 
@@ -18,9 +19,11 @@ import java.util.Map;
 @Repository
 public class ExamRepository {
     private final JdbcTemplate jdbcTemplate;
+    private final TableVersions tableVersions;
 
-    public ExamRepository(JdbcTemplate jdbcTemplate) {
+    public ExamRepository(JdbcTemplate jdbcTemplate, TableVersions tableVersions) {
         this.jdbcTemplate = jdbcTemplate;
+        this.tableVersions = tableVersions;
     }
 
     private final RowMapper<Exam> examRowMapper = (rs, rowNum) -> {
@@ -29,9 +32,20 @@ public class ExamRepository {
         exam.setExamType(rs.getString("ExamType"));
         exam.setScheduledDate(rs.getDate("ScheduledDate").toLocalDate());
         exam.setStatus(rs.getString("Status"));
+        exam.setResult(rs.getString("Result"));
+        exam.setScore(rs.getObject("Score", Integer.class));
+        exam.setAttemptNumber(rs.getInt("AttemptNumber"));
+        exam.setInstructorId(rs.getObject("InstructorID", Integer.class));
+        exam.setLicenseCategory(rs.getString("LicenseCategory"));
         exam.setTraineeId(rs.getInt("TraineeID"));
 
-        // trainee name might not exist in all queries
+        // version and trainee name might not exist in all queries
+        try {
+            exam.setVersion(rs.getInt("Version"));
+        } catch (Exception e) {
+            // ignore if column doesn't exist
+        }
+
         try {
             exam.setTraineeName(rs.getString("TraineeName"));
         } catch (Exception e) {
@@ -45,7 +59,8 @@ public class ExamRepository {
     public List<Exam> findAll() {
         String sql = """
             SELECT
-                e.ExamID, e.ExamType, e.ScheduledDate, e.Status, e.TraineeID,
+                e.ExamID, e.ExamType, e.ScheduledDate, e.Status, e.Result, e.Score, e.AttemptNumber,
+                e.InstructorID, e.LicenseCategory, e.TraineeID, e.Version,
                 CONCAT(t.FirstName, ' ', t.LastName) AS TraineeName
             FROM Exam e
             LEFT JOIN Trainee t ON e.TraineeID = t.TraineeID
@@ -59,7 +74,8 @@ public class ExamRepository {
     public Exam findById(Integer examId) {
         String sql = """
             SELECT
-                e.ExamID, e.ExamType, e.ScheduledDate, e.Status, e.TraineeID,
+                e.ExamID, e.ExamType, e.ScheduledDate, e.Status, e.Result, e.Score, e.AttemptNumber,
+                e.InstructorID, e.LicenseCategory, e.TraineeID, e.Version,
                 CONCAT(t.FirstName, ' ', t.LastName) AS TraineeName
             FROM Exam e
             LEFT JOIN Trainee t ON e.TraineeID = t.TraineeID
@@ -70,11 +86,30 @@ public class ExamRepository {
         return exams.isEmpty() ? null : exams.getFirst();
     }
 
+    /**
+     * Find exam by id and lock its row until the transaction ends
+     * Used before taking a recorded result back from the counters, so two concurrent
+     * corrections cannot both take back the same result
+     */
+    public Exam findByIdForUpdate(Integer examId) {
+        String sql = """
+            SELECT ExamID, ExamType, ScheduledDate, Status, Result, Score, AttemptNumber,
+                   InstructorID, LicenseCategory, TraineeID, Version
+            FROM Exam
+            WHERE ExamID = ?
+            FOR UPDATE
+            """;
+
+        List<Exam> exams = jdbcTemplate.query(sql, examRowMapper, examId);
+        return exams.isEmpty() ? null : exams.getFirst();
+    }
+
     // Find all exams for a specific trainee
     public List<Exam> findByTraineeId(Integer traineeId) {
         String sql = """
             SELECT
-                e.ExamID, e.ExamType, e.ScheduledDate, e.Status, e.TraineeID
+                e.ExamID, e.ExamType, e.ScheduledDate, e.Status, e.Result, e.Score, e.AttemptNumber,
+                e.InstructorID, e.LicenseCategory, e.TraineeID
             FROM Exam e
             WHERE e.TraineeID = ?
             ORDER BY e.ScheduledDate DESC
@@ -87,7 +122,8 @@ public class ExamRepository {
     public List<Exam> findByExamType(String examType) {
         String sql = """
             SELECT
-                e.ExamID, e.ExamType, e.ScheduledDate, e.Status, e.TraineeID,
+                e.ExamID, e.ExamType, e.ScheduledDate, e.Status, e.Result, e.Score, e.AttemptNumber,
+                e.InstructorID, e.LicenseCategory, e.TraineeID, e.Version,
                 CONCAT(t.FirstName, ' ', t.LastName) AS TraineeName
             FROM Exam e
             LEFT JOIN Trainee t ON e.TraineeID = t.TraineeID
@@ -102,7 +138,8 @@ public class ExamRepository {
     public List<Exam> findByStatus(String status) {
         String sql = """
             SELECT
-                e.ExamID, e.ExamType, e.ScheduledDate, e.Status, e.TraineeID,
+                e.ExamID, e.ExamType, e.ScheduledDate, e.Status, e.Result, e.Score, e.AttemptNumber,
+                e.InstructorID, e.LicenseCategory, e.TraineeID, e.Version,
                 CONCAT(t.FirstName, ' ', t.LastName) AS TraineeName
             FROM Exam e
             LEFT JOIN Trainee t ON e.TraineeID = t.TraineeID
@@ -113,11 +150,23 @@ public class ExamRepository {
         return jdbcTemplate.query(sql, examRowMapper, status);
     }
 
+    // Find scheduled exams on or after a date (no joins - loads the upcoming schedule)
+    public List<Exam> findScheduledFrom(LocalDate date) {
+        String sql = """
+            SELECT ExamID, ExamType, ScheduledDate, Status, Result, Score, AttemptNumber,
+                   InstructorID, LicenseCategory, TraineeID, Version
+            FROM Exam
+            WHERE Status = 'Scheduled' AND ScheduledDate >= ?
+            """;
+
+        return jdbcTemplate.query(sql, examRowMapper, java.sql.Date.valueOf(date));
+    }
+
     // Save new exam (INSERT)
     public Integer save(Exam exam) {
         String sql = """
-            INSERT INTO Exam (ExamType, ScheduledDate, Status, TraineeID)
-            VALUES (?, ?, ?, ?)
+            INSERT INTO Exam (ExamType, ScheduledDate, Status, AttemptNumber, TraineeID)
+            VALUES (?, ?, ?, ?, ?)
             """;
 
         KeyHolder keyHolder = new GeneratedKeyHolder();
@@ -127,43 +176,126 @@ public class ExamRepository {
             ps.setString(1, exam.getExamType());
             ps.setDate(2, java.sql.Date.valueOf(exam.getScheduledDate()));
             ps.setString(3, exam.getStatus());
-            ps.setInt(4, exam.getTraineeId());
+            ps.setInt(4, exam.getAttemptNumber());
+            ps.setInt(5, exam.getTraineeId());
             return ps;
         }, keyHolder);
 
 
         Map<String, Object> keys = keyHolder.getKeys();
         if (keys != null && keys.containsKey("EXAMID")) {
-            return ((Number) keys.get("EXAMID")).intValue();
+            Integer examId = ((Number) keys.get("EXAMID")).intValue();
+            tableVersions.bump(TableVersions.EXAM, examId);
+            return examId;
         }
 
         throw new IllegalStateException("Failed to retrieve generated exam ID");
     }
 
-    // Update existing exam
-    public void update(Exam exam) {
+    /**
+     * Update an existing exam if it is still at exam.getVersion()
+     * Status and result are only changed through transitionStatus / saveResult; returns false when nothing was changed
+     */
+    public boolean update(Exam exam) {
         String sql = """
             UPDATE Exam SET
                 ExamType = ?,
                 ScheduledDate = ?,
-                Status = ?,
-                TraineeID = ?
-            WHERE ExamID = ?
+                TraineeID = ?,
+                Version = Version + 1
+            WHERE ExamID = ? AND Version = ?
             """;
 
-        jdbcTemplate.update(sql,
+        int rows = jdbcTemplate.update(sql,
                 exam.getExamType(),
                 exam.getScheduledDate(),
-                exam.getStatus(),
                 exam.getTraineeId(),
-                exam.getExamId()
+                exam.getExamId(),
+                exam.getVersion()
         );
+
+        if (rows == 0) {
+            return false;
+        }
+
+        tableVersions.bump(TableVersions.EXAM, exam.getExamId());
+        return true;
+    }
+
+    // Next attempt number of a trainee for an exam type
+    public Integer nextAttemptNumber(Integer traineeId, String examType) {
+        String sql = "SELECT COALESCE(MAX(AttemptNumber), 0) + 1 FROM Exam WHERE TraineeID = ? AND ExamType = ?";
+        return jdbcTemplate.queryForObject(sql, Integer.class, traineeId, examType);
+    }
+
+    // Record the result of an exam (marks it Completed) together with who it is credited to
+    public void saveResult(Integer examId, String result, Integer score, Integer instructorId, String licenseCategory) {
+        String sql = """
+            UPDATE Exam SET
+                Status = 'Completed',
+                Result = ?,
+                Score = ?,
+                InstructorID = ?,
+                LicenseCategory = ?,
+                Version = Version + 1
+            WHERE ExamID = ?
+            """;
+
+        jdbcTemplate.update(sql, result, score, instructorId, licenseCategory, examId);
+        tableVersions.bump(TableVersions.EXAM, examId);
+    }
+
+    // Remove the result of an exam
+    public void clearResult(Integer examId) {
+        String sql = """
+            UPDATE Exam SET
+                Result = NULL,
+                Score = NULL,
+                InstructorID = NULL,
+                LicenseCategory = NULL,
+                Version = Version + 1
+            WHERE ExamID = ?
+            """;
+
+        jdbcTemplate.update(sql, examId);
+        tableVersions.bump(TableVersions.EXAM, examId);
+    }
+
+    /**
+     * Change the status in one conditional UPDATE: only when the exam is still in fromStatus
+     * (and, if expectedVersion is given, still at that version); clearResult also removes the recorded result
+     * Returns the exam as it was before the change, or null when nothing was changed
+     */
+    public Exam transitionStatus(Integer examId, String fromStatus, String toStatus, Integer expectedVersion,
+                                 boolean clearResult) {
+        String sql = """
+            SELECT ExamID, ExamType, ScheduledDate, Status, Result, Score, AttemptNumber,
+                   InstructorID, LicenseCategory, TraineeID, Version
+            FROM OLD TABLE (
+                UPDATE Exam SET Status = ?, Version = Version + 1%s
+                WHERE ExamID = ? AND Status = ?%s
+            )
+            """.formatted(
+                clearResult ? ", Result = NULL, Score = NULL, InstructorID = NULL, LicenseCategory = NULL" : "",
+                expectedVersion == null ? "" : " AND Version = ?");
+
+        List<Exam> exams = expectedVersion == null
+                ? jdbcTemplate.query(sql, examRowMapper, toStatus, examId, fromStatus)
+                : jdbcTemplate.query(sql, examRowMapper, toStatus, examId, fromStatus, expectedVersion);
+
+        if (exams.isEmpty()) {
+            return null;
+        }
+
+        tableVersions.bump(TableVersions.EXAM, examId);
+        return exams.getFirst();
     }
 
     // Delete exam by id
     public void delete(Integer examId) {
         String sql = "DELETE FROM Exam WHERE ExamID = ?";
         jdbcTemplate.update(sql, examId);
+        tableVersions.bump(TableVersions.EXAM, examId);
     }
 
     // Count total exams
@@ -178,6 +310,12 @@ public class ExamRepository {
         return jdbcTemplate.queryForObject(sql, Integer.class, status);
     }
 
+    // Count exams by result
+    public Integer countByResult(String result) {
+        String sql = "SELECT COUNT(*) FROM Exam WHERE Result = ?";
+        return jdbcTemplate.queryForObject(sql, Integer.class, result);
+    }
+
     // Count exams by type
     public Integer countByType(String examType) {
         String sql = "SELECT COUNT(*) FROM Exam WHERE ExamType = ?";
@@ -0,0 +1,195 @@
+package com.drivingschool.repository;
+
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Exam Stats Repository - Data Access Layer using raw SQL
+ *
+ * Attempt/pass counters per instructor (InstructorExamStats) and per license category
+ * and exam type (CategoryExamStats). Recording a result adjusts one row of each table,
+ * so pass-rate leaderboards read a handful of rows instead of scanning every exam.
+ *
+ * The leaderboards cover every branch (see Branches): the counters of all branches are
+ * gathered and added up first, and the pass rates are computed from the sums (an average of
+ * the branch pass rates would weigh a branch with a few exams like a large one).
+ */
+
+@Repository
+public class ExamStatsRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TableVersions tableVersions;
+    private final Branches branches;
+
+    public ExamStatsRepository(JdbcTemplate jdbcTemplate, TableVersions tableVersions, Branches branches) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.tableVersions = tableVersions;
+        this.branches = branches;
+    }
+
+    /**
+     * Add attempts and passes to the counters of an instructor and a category
+     * (negative values take back a result that was changed or removed)
+     */
+    public void record(Integer instructorId, String licenseCategory, String examType, int attempts, int passed) {
+        if (instructorId != null) {
+            upsert("UPDATE InstructorExamStats SET Attempts = Attempts + ?, Passed = Passed + ? WHERE InstructorID = ?",
+                    "INSERT INTO InstructorExamStats (InstructorID, Attempts, Passed) VALUES (?, ?, ?)",
+                    attempts, passed, instructorId);
+            tableVersions.bump(TableVersions.INSTRUCTOR_EXAM_STATS);
+        }
+
+        if (licenseCategory != null) {
+            upsert("UPDATE CategoryExamStats SET Attempts = Attempts + ?, Passed = Passed + ? "
+                            + "WHERE LicenseCategory = ? AND ExamType = ?",
+                    "INSERT INTO CategoryExamStats (Attempts, Passed, LicenseCategory, ExamType) VALUES (?, ?, ?, ?)",
+                    attempts, passed, licenseCategory, examType);
+            tableVersions.bump(TableVersions.CATEGORY_EXAM_STATS);
+        }
+    }
+
+    // UPDATE the counters, INSERT the row if it does not exist yet (both take counters first, then the key)
+    private void upsert(String update, String insert, int attempts, int passed, Object... key) {
+        Object[] params = new Object[key.length + 2];
+        params[0] = attempts;
+        params[1] = passed;
+        System.arraycopy(key, 0, params, 2, key.length);
+
+        if (jdbcTemplate.update(update, params) == 0) {
+            try {
+                jdbcTemplate.update(insert, params);
+            } catch (DuplicateKeyException e) {
+                // another result created the row in the meantime
+                jdbcTemplate.update(update, params);
+            }
+        }
+    }
+
+    // Rebuild both counter tables from the recorded results
+    public void rebuild() {
+        jdbcTemplate.update("DELETE FROM InstructorExamStats");
+        jdbcTemplate.update("""
+                INSERT INTO InstructorExamStats (InstructorID, Attempts, Passed)
+                SELECT InstructorID, COUNT(*), SUM(CASE WHEN Result = 'Passed' THEN 1 ELSE 0 END)
+                FROM Exam
+                WHERE Result IS NOT NULL AND InstructorID IS NOT NULL
+                GROUP BY InstructorID
+                """);
+
+        jdbcTemplate.update("DELETE FROM CategoryExamStats");
+        jdbcTemplate.update("""
+                INSERT INTO CategoryExamStats (LicenseCategory, ExamType, Attempts, Passed)
+                SELECT LicenseCategory, ExamType, COUNT(*), SUM(CASE WHEN Result = 'Passed' THEN 1 ELSE 0 END)
+                FROM Exam
+                WHERE Result IS NOT NULL AND LicenseCategory IS NOT NULL
+                GROUP BY LicenseCategory, ExamType
+                """);
+
+        tableVersions.bump(TableVersions.INSTRUCTOR_EXAM_STATS);
+        tableVersions.bump(TableVersions.CATEGORY_EXAM_STATS);
+    }
+
+    // Total attempts and passes held by the instructor counters (Attempts, Passed)
+    public Map<String, Object> getInstructorTotals() {
+        return jdbcTemplate.queryForMap(
+                "SELECT COALESCE(SUM(Attempts), 0) AS Attempts, COALESCE(SUM(Passed), 0) AS Passed FROM InstructorExamStats");
+    }
+
+    // Total attempts and passes held by the category counters (Attempts, Passed)
+    public Map<String, Object> getCategoryTotals() {
+        return jdbcTemplate.queryForMap(
+                "SELECT COALESCE(SUM(Attempts), 0) AS Attempts, COALESCE(SUM(Passed), 0) AS Passed FROM CategoryExamStats");
+    }
+
+    // Recorded results in the Exam table, for comparison with the counters (Attempts, Passed)
+    public Map<String, Object> getResultTotals() {
+        return jdbcTemplate.queryForMap("""
+                SELECT COUNT(*) AS Attempts, COALESCE(SUM(CASE WHEN Result = 'Passed' THEN 1 ELSE 0 END), 0) AS Passed
+                FROM Exam
+                WHERE Result IS NOT NULL
+                """);
+    }
+
+    /**
+     * Instructors of every branch ranked by the pass rate of their trainees' exams
+     * Reads one counter row per instructor - no subqueries over Exam or Trainee. An instructor
+     * works in one branch, so with more than one branch every row carries its BRANCH
+     */
+    public List<Map<String, Object>> findInstructorLeaderboard() {
+        String sql = """
+            SELECT
+                I.INSTRUCTORID,
+                I.FIRSTNAME,
+                I.LASTNAME,
+                S.ATTEMPTS,
+                S.PASSED AS PASSEDEXAMS
+            FROM INSTRUCTOREXAMSTATS S
+            JOIN INSTRUCTOR I ON S.INSTRUCTORID = I.INSTRUCTORID
+            WHERE S.ATTEMPTS > 0
+            """;
+
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (Branches.BranchResult<List<Map<String, Object>>> branchRows : branches.scatter(jdbc -> jdbc.queryForList(sql))) {
+            for (Map<String, Object> row : branchRows.result()) {
+                if (branches.isMultiBranch()) {
+                    row.put("BRANCH", branchRows.branch().id());
+                }
+                rows.add(withPassRate(row));
+            }
+        }
+
+        rows.sort(Comparator.comparingDouble((Map<String, Object> row) -> (double) row.get("PASSRATE"))
+                .thenComparingLong(row -> ((Number) row.get("PASSEDEXAMS")).longValue())
+                .reversed());
+        return rows;
+    }
+
+    // Pass rate per license category and exam type, from the counters of every branch added up
+    public List<Map<String, Object>> findCategoryPassRates() {
+        String sql = """
+            SELECT LICENSECATEGORY, EXAMTYPE, ATTEMPTS, PASSED AS PASSEDEXAMS
+            FROM CATEGORYEXAMSTATS
+            """;
+
+        Map<List<String>, Map<String, Object>> merged = new LinkedHashMap<>();
+        for (Branches.BranchResult<List<Map<String, Object>>> branchRows : branches.scatter(jdbc -> jdbc.queryForList(sql))) {
+            for (Map<String, Object> row : branchRows.result()) {
+                merged.merge(List.of((String) row.get("LICENSECATEGORY"), (String) row.get("EXAMTYPE")), row,
+                        (total, more) -> {
+                            total.put("ATTEMPTS", ((Number) total.get("ATTEMPTS")).longValue()
+                                    + ((Number) more.get("ATTEMPTS")).longValue());
+                            total.put("PASSEDEXAMS", ((Number) total.get("PASSEDEXAMS")).longValue()
+                                    + ((Number) more.get("PASSEDEXAMS")).longValue());
+                            return total;
+                        });
+            }
+        }
+
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (Map<String, Object> row : merged.values()) {
+            if (((Number) row.get("ATTEMPTS")).longValue() > 0) {
+                rows.add(withPassRate(row));
+            }
+        }
+
+        rows.sort(Comparator.comparing((Map<String, Object> row) -> (String) row.get("LICENSECATEGORY"))
+                .thenComparing(row -> (String) row.get("EXAMTYPE")));
+        return rows;
+    }
+
+    // PASSRATE (percent) from the row's ATTEMPTS and PASSEDEXAMS; attempts must be positive
+    private static Map<String, Object> withPassRate(Map<String, Object> row) {
+        long attempts = ((Number) row.get("ATTEMPTS")).longValue();
+        long passed = ((Number) row.get("PASSEDEXAMS")).longValue();
+        row.put("PASSRATE", passed * 100.0 / attempts);
+        return row;
+    }
+}
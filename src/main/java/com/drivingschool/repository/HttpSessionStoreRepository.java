@@ -0,0 +1,32 @@
+package com.drivingschool.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+/**
+ * HTTP Session Store Repository - housekeeping of the SPRING_SESSION tables
+ *
+ * Sessions themselves are read and written by Spring Session (JdbcIndexedSessionRepository);
+ * only the expiry cleanup and the row count for the metrics are done here.
+ */
+
+@Repository
+public class HttpSessionStoreRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public HttpSessionStoreRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    // Delete up to limit sessions expired before the given time (attributes go by ON DELETE CASCADE)
+    public int deleteExpired(long nowMillis, int limit) {
+        String sql = "DELETE FROM SPRING_SESSION WHERE EXPIRY_TIME < ? LIMIT ?";
+        return jdbcTemplate.update(sql, nowMillis, limit);
+    }
+
+    // Count stored sessions
+    public long count() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM SPRING_SESSION", Long.class);
+    }
+}
@@ -16,9 +16,11 @@ import java.util.Map;
 public class InstructorRepository {
 
     private final JdbcTemplate jdbcTemplate;
+    private final TableVersions tableVersions;
 
-    public InstructorRepository(JdbcTemplate jdbcTemplate) {
+    public InstructorRepository(JdbcTemplate jdbcTemplate, TableVersions tableVersions) {
         this.jdbcTemplate = jdbcTemplate;
+        this.tableVersions = tableVersions;
     }
 
     private final RowMapper<Instructor> instructorRowMapper = (rs, rowNum) -> {
@@ -98,6 +100,7 @@ public class InstructorRepository {
 
             return ps;
         }, keyHolder);
+        tableVersions.bump(TableVersions.INSTRUCTOR);
 
         Map<String, Object> keys = keyHolder.getKeys();
         if(keys != null && keys.containsKey("INSTRUCTORID")){
@@ -124,12 +127,14 @@ public class InstructorRepository {
                 instructor.getPhone(),
                 instructor.getHireDate(),
                 instructor.getInstructorId());
+        tableVersions.bump(TableVersions.INSTRUCTOR);
     }
 
     // Delete instructor by ID
     public void delete(Integer instructorId) {
         String sql = "DELETE FROM Instructor WHERE InstructorID = ?";
         jdbcTemplate.update(sql, instructorId);
+        tableVersions.bump(TableVersions.INSTRUCTOR);
     }
 
     // Count total instructors
@@ -139,6 +144,13 @@ public class InstructorRepository {
         return jdbcTemplate.queryForObject(sql, Integer.class);
     }
 
+    // Get all instructor ids (used to validate bulk imports)
+    public List<Integer> findAllIds() {
+        String sql = "SELECT InstructorID FROM Instructor";
+
+        return jdbcTemplate.queryForList(sql, Integer.class);
+    }
+
     // Check if instructor has assigned trainees
     public boolean hasAssignedTrainees(Integer instructorId){
         String sql = "SELECT COUNT(*) FROM Trainee WHERE AssignedInstructorID = ?";
@@ -0,0 +1,71 @@
+package com.drivingschool.repository;
+
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+/**
+ * JobLease Repository - Data Access Layer using raw SQL
+ *
+ * One row per cluster-wide job (see LeaderJobScheduler). A node holds a job while LeaseUntil
+ * is in the future; every time is taken from the database's clock. Leases bump no table version.
+ */
+
+@Repository
+public class JobLeaseRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public JobLeaseRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    // Create the job's row, expired and held by no one, unless it exists
+    public void register(String jobName) {
+        String sql = """
+                INSERT INTO JobLease (JobName, LeaseUntil)
+                SELECT ?, CURRENT_TIMESTAMP FROM DUAL
+                WHERE NOT EXISTS (SELECT 1 FROM JobLease WHERE JobName = ?)
+                """;
+
+        try {
+            jdbcTemplate.update(sql, jobName, jobName);
+        } catch (DuplicateKeyException e) {
+            // another node registered it at the same time
+        }
+    }
+
+    // Take the lease if it has expired, or extend it if the node holds it; false if another node holds it
+    public boolean acquire(String jobName, String nodeId, int leaseSeconds) {
+        // AcquiredAt first: MySQL evaluates SET left to right, with the new values
+        String sql = """
+                UPDATE JobLease SET
+                    AcquiredAt = CASE WHEN NodeID = ? THEN AcquiredAt ELSE CURRENT_TIMESTAMP END,
+                    NodeID = ?,
+                    LeaseUntil = TIMESTAMPADD(SECOND, ?, CURRENT_TIMESTAMP)
+                WHERE JobName = ? AND (NodeID = ? OR LeaseUntil < CURRENT_TIMESTAMP)
+                """;
+
+        return jdbcTemplate.update(sql, nodeId, nodeId, leaseSeconds, jobName, nodeId) == 1;
+    }
+
+    // Extend a lease the node still holds; false if it has been lost
+    public boolean renew(String jobName, String nodeId, int leaseSeconds) {
+        String sql = """
+                UPDATE JobLease SET LeaseUntil = TIMESTAMPADD(SECOND, ?, CURRENT_TIMESTAMP)
+                WHERE JobName = ? AND NodeID = ? AND LeaseUntil >= CURRENT_TIMESTAMP
+                """;
+
+        return jdbcTemplate.update(sql, leaseSeconds, jobName, nodeId) == 1;
+    }
+
+    // Let every lease of the node expire now, so other nodes take over without waiting
+    public int releaseAll(String nodeId) {
+        String sql = """
+                UPDATE JobLease SET LeaseUntil = TIMESTAMPADD(SECOND, -1, CURRENT_TIMESTAMP)
+                WHERE NodeID = ? AND LeaseUntil >= CURRENT_TIMESTAMP
+                """;
+
+        return jdbcTemplate.update(sql, nodeId);
+    }
+}
@@ -0,0 +1,50 @@
+package com.drivingschool.repository;
+
+import com.drivingschool.model.LicenseRequirement;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * LicenseRequirement Repository - Data Access Layer using raw SQL
+ */
+
+@Repository
+public class LicenseRequirementRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TableVersions tableVersions;
+
+    public LicenseRequirementRepository(JdbcTemplate jdbcTemplate, TableVersions tableVersions) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.tableVersions = tableVersions;
+    }
+
+    private final RowMapper<LicenseRequirement> requirementRowMapper = (rs, rowNum) ->
+            new LicenseRequirement(rs.getString("LicenseCategory"), rs.getInt("RequiredHours"));
+
+    // Find all requirements
+    public List<LicenseRequirement> findAll() {
+        String sql = "SELECT LicenseCategory, RequiredHours FROM LicenseRequirement ORDER BY LicenseCategory";
+
+        return jdbcTemplate.query(sql, requirementRowMapper);
+    }
+
+    // Find the requirement of a license category
+    public LicenseRequirement findByCategory(String licenseCategory) {
+        String sql = "SELECT LicenseCategory, RequiredHours FROM LicenseRequirement WHERE LicenseCategory = ?";
+
+        List<LicenseRequirement> requirements = jdbcTemplate.query(sql, requirementRowMapper, licenseCategory);
+        return requirements.isEmpty() ? null : requirements.getFirst();
+    }
+
+    // Change the required practical hours of a license category
+    public void updateRequiredHours(String licenseCategory, int requiredHours) {
+        String sql = "UPDATE LicenseRequirement SET RequiredHours = ? WHERE LicenseCategory = ?";
+
+        jdbcTemplate.update(sql, requiredHours, licenseCategory);
+        tableVersions.bump(TableVersions.LICENSE_REQUIREMENT);
+    }
+}
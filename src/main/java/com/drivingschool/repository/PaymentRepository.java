@@ -22,9 +22,11 @@ import java.util.Map;
 public class PaymentRepository {
 
     private final JdbcTemplate jdbcTemplate;
+    private final TableVersions tableVersions;
 
-    public PaymentRepository(JdbcTemplate jdbcTemplate) {
+    public PaymentRepository(JdbcTemplate jdbcTemplate, TableVersions tableVersions) {
         this.jdbcTemplate = jdbcTemplate;
+        this.tableVersions = tableVersions;
     }
 
     private final RowMapper<Payment> paymentRowMapper = (rs, rowNum) -> {
@@ -61,6 +63,22 @@ public class PaymentRepository {
         return jdbcTemplate.query(sql, paymentRowMapper);
     }
 
+    // Find the most recent payments
+    public List<Payment> findRecent(int limit) {
+        String sql = """
+                SELECT
+                    p.PaymentID, p.Amount, p.PaymentDate, p.PaymentMethod,
+                    p.Details, p.TraineeID,
+                    CONCAT(t.FirstName, ' ', t.LastName) AS TraineeName
+                FROM Payment p
+                LEFT JOIN Trainee t ON p.TraineeID = t.TraineeID
+                ORDER BY p.PaymentDate DESC, p.PaymentID DESC
+                LIMIT ?
+                """;
+
+        return jdbcTemplate.query(sql, paymentRowMapper, limit);
+    }
+
     // Find payment by id
     public Payment findById(Integer paymentId) {
         String sql = """
@@ -77,6 +95,19 @@ public class PaymentRepository {
         return payments.isEmpty() ? null : payments.getFirst();
     }
 
+    // Lock a payment row until the transaction ends and return it (call inside a transaction)
+    public Payment findByIdForUpdate(Integer paymentId) {
+        String sql = """
+                SELECT PaymentID, Amount, PaymentDate, PaymentMethod, Details, TraineeID
+                FROM Payment
+                WHERE PaymentID = ?
+                FOR UPDATE
+                """;
+
+        List<Payment> payments = jdbcTemplate.query(sql, paymentRowMapper, paymentId);
+        return payments.isEmpty() ? null : payments.getFirst();
+    }
+
     // Find all payments for a specific trainee
     public List<Payment> findByTraineeId(Integer traineeId) {
         String sql = """
@@ -127,6 +158,7 @@ public class PaymentRepository {
 
             return ps;
         }, keyHolder);
+        tableVersions.bump(TableVersions.PAYMENT);
 
         Map<String, Object> keys = keyHolder.getKeys();
         if (keys != null && keys.containsKey("PAYMENTID")) {
@@ -155,12 +187,14 @@ public class PaymentRepository {
                 payment.getDetails(),
                 payment.getTraineeId(),
                 payment.getPaymentId());
+        tableVersions.bump(TableVersions.PAYMENT);
     }
 
     // Delete payment by id
     public void delete(Integer paymentId) {
         String sql = "DELETE FROM Payment WHERE PaymentID = ?";
         jdbcTemplate.update(sql, paymentId);
+        tableVersions.bump(TableVersions.PAYMENT);
     }
 
     // Count total payments
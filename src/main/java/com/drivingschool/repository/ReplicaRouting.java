@@ -0,0 +1,111 @@
+package com.drivingschool.repository;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.function.Supplier;
+
+/**
+ * Replica Routing - whether the current thread may read from the read replica
+ *
+ * Only HTTP read requests (GET, HEAD) of users who have not written recently are marked as
+ * such by the web layer (see ReplicaLagGuard). While one runs, plain reads and read-only
+ * transactions use the replica; the first read-write transaction switches the rest of the
+ * request to the primary and calls the request's onWrite hook, so the user is pinned to the
+ * primary for a while. Everything else - other requests, scheduled jobs, startup loads -
+ * always uses the primary, so in-memory copies are never filled from a replica that is behind.
+ *
+ * The routing DataSource asks useReplica() every time it hands out a connection. A transaction
+ * keeps the connection it got first, so work that must read the primary runs in a transaction
+ * of its own (REQUIRES_NEW) wrapped in onPrimary.
+ */
+
+public final class ReplicaRouting {
+
+    private static final ThreadLocal<ReadRequest> READ_REQUEST = new ThreadLocal<>();
+
+    // registered with the current transaction once it has taken a connection
+    private static final TransactionSynchronization CONNECTION_TAKEN = new TransactionSynchronization() {
+    };
+
+    private ReplicaRouting() {
+    }
+
+    // Mark the current thread as serving a read request
+    public static void beginReadRequest(Runnable onWrite) {
+        READ_REQUEST.set(new ReadRequest(onWrite));
+    }
+
+    public static void endReadRequest() {
+        READ_REQUEST.remove();
+    }
+
+    // True while serving a read request that has not written
+    public static boolean isReadRequest() {
+        ReadRequest request = READ_REQUEST.get();
+        return request != null && !request.wrote;
+    }
+
+    /**
+     * Run work against the primary, for reads that must see the latest writes
+     * (cache loads, reads followed by a write)
+     * A transaction that already holds a connection keeps it, possibly the replica's, so that is
+     * refused: start a new transaction (REQUIRES_NEW) and call this inside it.
+     */
+    public static <T> T onPrimary(Supplier<T> work) {
+        if (connectionTaken()) {
+            throw new IllegalStateException("The current transaction already holds a connection; "
+                    + "run work that must read the primary in a new transaction");
+        }
+
+        ReadRequest request = READ_REQUEST.get();
+        if (request == null) {
+            return work.get();
+        }
+
+        request.primaryOnly++;
+        try {
+            return work.get();
+        } finally {
+            request.primaryOnly--;
+        }
+    }
+
+    // Whether the current transaction (or transaction synchronization scope) has taken a connection
+    public static boolean connectionTaken() {
+        return TransactionSynchronizationManager.isSynchronizationActive()
+                && TransactionSynchronizationManager.getSynchronizations().contains(CONNECTION_TAKEN);
+    }
+
+    // Whether the connection about to be handed out should come from the replica
+    public static boolean useReplica() {
+        // synchronizations are suspended with their transaction, so a REQUIRES_NEW one starts without the mark
+        if (TransactionSynchronizationManager.isSynchronizationActive() && !connectionTaken()) {
+            TransactionSynchronizationManager.registerSynchronization(CONNECTION_TAKEN);
+        }
+
+        ReadRequest request = READ_REQUEST.get();
+        if (request == null || request.wrote || request.primaryOnly > 0) {
+            return false;
+        }
+
+        if (TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            request.wrote = true;
+            request.onWrite.run();
+            return false;
+        }
+
+        return true;
+    }
+
+    private static final class ReadRequest {
+        private final Runnable onWrite;
+        private boolean wrote;
+        private int primaryOnly;
+
+        private ReadRequest(Runnable onWrite) {
+            this.onWrite = onWrite;
+        }
+    }
+}
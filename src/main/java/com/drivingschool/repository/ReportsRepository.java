@@ -3,170 +3,147 @@ package com.drivingschool.repository;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Repository;
 
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 
 /**
  * Reports Repository
  * All table and column names are UPPERCASE (H2 converts unquoted identifiers to uppercase)
+ *
+ * Reports cover every branch (see Branches). Each runs in two scatter-gather rounds: first
+ * every branch returns the sum and count behind the average, and the global average is
+ * computed from those (an average of the branch averages would weigh a small branch like a
+ * large one); then every branch returns its rows above that average, merged in one ranking.
+ * With more than one branch every row carries its BRANCH.
+ *
+ * Sessions moved to the columnar archive files (see ArchiveService) are counted through the
+ * per-trainee and per-instructor totals kept when they were archived, so an archive run does
+ * not change the reports.
  */
 
 @Repository
 public class ReportsRepository {
 
-    private final JdbcTemplate jdbcTemplate;
+    // current and archived sessions (see SessionPartitionService)
+    private static final String ALL_SESSIONS = """
+            (SELECT SESSIONID, SESSIONTYPE, STATUS, INSTRUCTORID, TRAINEEID FROM SESSION
+             UNION ALL
+             SELECT SESSIONID, SESSIONTYPE, STATUS, INSTRUCTORID, TRAINEEID FROM SESSION_ARCHIVE)""";
 
-    public ReportsRepository(JdbcTemplate jdbcTemplate) {
-        this.jdbcTemplate = jdbcTemplate;
+    private final Branches branches;
+
+    public ReportsRepository(Branches branches) {
+        this.branches = branches;
     }
 
     /**
      * COMPLEX QUERY 1: Trainees with more sessions than average
-     * uses nested subqueries to calculate and compare with average
+     * the average is taken over the trainees of every branch
      */
     public List<Map<String, Object>> findTraineesWithAboveAverageHours() {
-        String sql = """
-            SELECT 
-                T.TRAINEEID,
-                T.FIRSTNAME,
-                T.LASTNAME,
-                COUNT(S.SESSIONID) AS TOTALSESSIONS
-            FROM TRAINEE T
-            LEFT JOIN SESSION S ON T.TRAINEEID = S.TRAINEEID 
-                AND S.STATUS = 'Completed'
-                AND S.SESSIONTYPE = 'Practical'
-            GROUP BY T.TRAINEEID, T.FIRSTNAME, T.LASTNAME
-            HAVING COUNT(S.SESSIONID) > (
-                SELECT AVG(CAST(SESSION_COUNT AS DOUBLE))
+        String averageSql = """
+            SELECT COALESCE(SUM(SESSION_COUNT), 0) AS TOTAL, COUNT(*) AS GROUPS
+            FROM (
+                SELECT TRAINEEID, SUM(N) AS SESSION_COUNT
                 FROM (
-                    SELECT COUNT(SESSIONID) AS SESSION_COUNT
-                    FROM SESSION
+                    SELECT TRAINEEID, COUNT(SESSIONID) AS N
+                    FROM %1$s SS
                     WHERE STATUS = 'Completed'
                       AND SESSIONTYPE = 'Practical'
                     GROUP BY TRAINEEID
+                    UNION ALL
+                    SELECT TRAINEEID, COMPLETEDSESSIONS AS N
+                    FROM ARCHIVEDTRAINEETOTALS
+                    WHERE COMPLETEDSESSIONS > 0
                 )
+                GROUP BY TRAINEEID
             )
-            ORDER BY TOTALSESSIONS DESC
-            """;
-
-        return jdbcTemplate.queryForList(sql);
-    }
+            """.formatted(ALL_SESSIONS);
 
-    /**
-     * COMPLEX QUERY 2: Top instructors by student pass rate
-     * uses multiple correlated subqueries with IN clause and CASE
-     */
-    public List<Map<String, Object>> findTopInstructorsByPassRate() {
         String sql = """
             SELECT 
-                I.INSTRUCTORID,
-                I.FIRSTNAME,
-                I.LASTNAME,
-                (SELECT COUNT(DISTINCT TRAINEEID)
-                 FROM TRAINEE
-                 WHERE ASSIGNEDINSTRUCTORID = I.INSTRUCTORID
-                ) AS TOTALSTUDENTS,
-                (SELECT COUNT(*)
-                 FROM EXAM
-                 WHERE TRAINEEID IN (
-                     SELECT TRAINEEID 
-                     FROM TRAINEE 
-                     WHERE ASSIGNEDINSTRUCTORID = I.INSTRUCTORID
-                 )
-                 AND STATUS = 'Completed'
-                ) AS PASSEDEXAMS,
-                CASE 
-                    WHEN (SELECT COUNT(DISTINCT TRAINEEID)
-                          FROM TRAINEE
-                          WHERE ASSIGNEDINSTRUCTORID = I.INSTRUCTORID) > 0
-                    THEN CAST((SELECT COUNT(*)
-                               FROM EXAM
-                               WHERE TRAINEEID IN (
-                                   SELECT TRAINEEID 
-                                   FROM TRAINEE 
-                                   WHERE ASSIGNEDINSTRUCTORID = I.INSTRUCTORID
-                               )
-                               AND STATUS = 'Completed') AS DOUBLE) * 100.0 / 
-                         (SELECT COUNT(DISTINCT TRAINEEID)
-                          FROM TRAINEE
-                          WHERE ASSIGNEDINSTRUCTORID = I.INSTRUCTORID)
-                    ELSE 0
-                END AS PASSRATE
-            FROM INSTRUCTOR I
-            WHERE (SELECT COUNT(DISTINCT TRAINEEID)
-                   FROM TRAINEE
-                   WHERE ASSIGNEDINSTRUCTORID = I.INSTRUCTORID) > 0
-            ORDER BY PASSRATE DESC, PASSEDEXAMS DESC
-            """;
+                T.TRAINEEID,
+                T.FIRSTNAME,
+                T.LASTNAME,
+                COUNT(S.SESSIONID) + COALESCE(A.COMPLETEDSESSIONS, 0) AS TOTALSESSIONS
+            FROM TRAINEE T
+            LEFT JOIN %1$s S ON T.TRAINEEID = S.TRAINEEID 
+                AND S.STATUS = 'Completed'
+                AND S.SESSIONTYPE = 'Practical'
+            LEFT JOIN ARCHIVEDTRAINEETOTALS A ON A.TRAINEEID = T.TRAINEEID
+            GROUP BY T.TRAINEEID, T.FIRSTNAME, T.LASTNAME, A.COMPLETEDSESSIONS
+            HAVING COUNT(S.SESSIONID) + COALESCE(A.COMPLETEDSESSIONS, 0) > ?
+            """.formatted(ALL_SESSIONS);
 
-        return jdbcTemplate.queryForList(sql);
+        return findAboveAverage(averageSql, sql, "TOTALSESSIONS");
     }
 
     /**
      * COMPLEX QUERY 3: Instructors with more sessions than average
-     * uses nested subqueries to calculate average and compare
+     * the average is taken over the instructors of every branch
      */
     public List<Map<String, Object>> findMostUtilizedCars() {
+        String averageSql = """
+            SELECT COALESCE(SUM(SESSION_COUNT), 0) AS TOTAL, COUNT(*) AS GROUPS
+            FROM (
+                SELECT INSTRUCTORID, SUM(N) AS SESSION_COUNT
+                FROM (
+                    SELECT INSTRUCTORID, COUNT(SESSIONID) AS N
+                    FROM %1$s SS
+                    GROUP BY INSTRUCTORID
+                    UNION ALL
+                    SELECT INSTRUCTORID, SESSIONS AS N
+                    FROM ARCHIVEDINSTRUCTORTOTALS
+                    WHERE SESSIONS > 0
+                )
+                GROUP BY INSTRUCTORID
+            )
+            """.formatted(ALL_SESSIONS);
+
         String sql = """
             SELECT 
                 I.INSTRUCTORID AS CARID,
                 I.FIRSTNAME AS BRAND,
                 I.LASTNAME AS MODEL,
                 'N/A' AS LICENSEPLATE,
-                COUNT(S.SESSIONID) AS SESSIONCOUNT
+                COUNT(S.SESSIONID) + COALESCE(A.SESSIONS, 0) AS SESSIONCOUNT
             FROM INSTRUCTOR I
-            LEFT JOIN SESSION S ON I.INSTRUCTORID = S.INSTRUCTORID
-            GROUP BY I.INSTRUCTORID, I.FIRSTNAME, I.LASTNAME
-            HAVING COUNT(S.SESSIONID) > (
-                SELECT AVG(CAST(SESSION_COUNT AS DOUBLE))
-                FROM (
-                    SELECT COUNT(SESSIONID) AS SESSION_COUNT
-                    FROM SESSION
-                    GROUP BY INSTRUCTORID
-                )
-            )
-            ORDER BY SESSIONCOUNT DESC
-            """;
+            LEFT JOIN %1$s S ON I.INSTRUCTORID = S.INSTRUCTORID
+            LEFT JOIN ARCHIVEDINSTRUCTORTOTALS A ON A.INSTRUCTORID = I.INSTRUCTORID
+            GROUP BY I.INSTRUCTORID, I.FIRSTNAME, I.LASTNAME, A.SESSIONS
+            HAVING COUNT(S.SESSIONID) + COALESCE(A.SESSIONS, 0) > ?
+            """.formatted(ALL_SESSIONS);
 
-        return jdbcTemplate.queryForList(sql);
+        return findAboveAverage(averageSql, sql, "SESSIONCOUNT");
     }
 
-    /**
-     * COMPLEX QUERY 4: Trainees behind schedule (fewer sessions than average for their enrollment period)
-     * uses nested subqueries with date calculations to compare progress
-     */
-    public List<Map<String, Object>> findTraineesBehindSchedule() {
-        String sql = """
-            SELECT 
-                T.TRAINEEID,
-                T.FIRSTNAME,
-                T.LASTNAME,
-                T.ENROLLMENTDATE,
-                DATEDIFF('DAY', T.ENROLLMENTDATE, CURRENT_DATE) AS DAYSENROLLED,
-                COUNT(S.SESSIONID) AS COMPLETEDSESSIONS,
-                COUNT(S.SESSIONID) AS COMPLETEDHOURS
-            FROM TRAINEE T
-            LEFT JOIN SESSION S ON T.TRAINEEID = S.TRAINEEID 
-                AND S.STATUS = 'Completed'
-                AND S.SESSIONTYPE = 'Practical'
-            WHERE T.STATUS = 'Active'
-              AND DATEDIFF('DAY', T.ENROLLMENTDATE, CURRENT_DATE) >= 30
-            GROUP BY T.TRAINEEID, T.FIRSTNAME, T.LASTNAME, T.ENROLLMENTDATE
-            HAVING COUNT(S.SESSIONID) < (
-                SELECT AVG(CAST(SESSION_COUNT AS DOUBLE))
-                FROM (
-                    SELECT COUNT(S2.SESSIONID) AS SESSION_COUNT
-                    FROM TRAINEE T2
-                    JOIN SESSION S2 ON T2.TRAINEEID = S2.TRAINEEID
-                    WHERE S2.STATUS = 'Completed'
-                      AND S2.SESSIONTYPE = 'Practical'
-                      AND DATEDIFF('DAY', T2.ENROLLMENTDATE, CURRENT_DATE) >= 30
-                    GROUP BY T2.TRAINEEID
-                )
-            )
-            ORDER BY COMPLETEDSESSIONS ASC
-            """;
+    // Global average from the branch sums and counts, then the rows above it, largest count first
+    private List<Map<String, Object>> findAboveAverage(String averageSql, String sql, String countColumn) {
+        long total = 0;
+        long groups = 0;
+        for (Branches.BranchResult<Map<String, Object>> sums : branches.scatter(jdbc -> jdbc.queryForMap(averageSql))) {
+            total += ((Number) sums.result().get("TOTAL")).longValue();
+            groups += ((Number) sums.result().get("GROUPS")).longValue();
+        }
+
+        if (groups == 0) {
+            return List.of();
+        }
+        double average = (double) total / groups;
+
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (Branches.BranchResult<List<Map<String, Object>>> branchRows : branches.scatter(jdbc -> jdbc.queryForList(sql, average))) {
+            for (Map<String, Object> row : branchRows.result()) {
+                if (branches.isMultiBranch()) {
+                    row.put("BRANCH", branchRows.branch().id());
+                }
+                rows.add(row);
+            }
+        }
 
-        return jdbcTemplate.queryForList(sql);
+        rows.sort(Comparator.comparingLong((Map<String, Object> row) -> ((Number) row.get(countColumn)).longValue()).reversed());
+        return rows;
     }
-}
\ No newline at end of file
+}
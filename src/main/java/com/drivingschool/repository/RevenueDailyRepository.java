@@ -0,0 +1,114 @@
+package com.drivingschool.repository;
+
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * RevenueDaily Repository - Data Access Layer using raw SQL
+ *
+ * One row per (day, payment method). Reports group these rows, so their cost
+ * depends on the number of days in the range, not on the number of payments.
+ */
+
+@Repository
+public class RevenueDailyRepository {
+
+    // SQL expressions that turn a day into its report period
+    public static final String PERIOD_DAY = "CAST(RevenueDate AS VARCHAR(10))";
+    public static final String PERIOD_MONTH = "SUBSTRING(CAST(RevenueDate AS VARCHAR(10)), 1, 7)";
+    public static final String PERIOD_YEAR = "SUBSTRING(CAST(RevenueDate AS VARCHAR(10)), 1, 4)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TableVersions tableVersions;
+
+    public RevenueDailyRepository(JdbcTemplate jdbcTemplate, TableVersions tableVersions) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.tableVersions = tableVersions;
+    }
+
+    // Add an amount and a payment count to a day (negative values remove a payment)
+    public void add(LocalDate day, String paymentMethod, BigDecimal amount, int paymentCount) {
+        String update = """
+                UPDATE RevenueDaily SET
+                    Amount = Amount + ?,
+                    PaymentCount = PaymentCount + ?
+                WHERE RevenueDate = ? AND PaymentMethod = ?
+                """;
+        String insert = "INSERT INTO RevenueDaily (RevenueDate, PaymentMethod, Amount, PaymentCount) VALUES (?, ?, ?, ?)";
+
+        if (jdbcTemplate.update(update, amount, paymentCount, day, paymentMethod) == 0) {
+            try {
+                jdbcTemplate.update(insert, day, paymentMethod, amount, paymentCount);
+            } catch (DuplicateKeyException e) {
+                // another payment created the row in the meantime
+                jdbcTemplate.update(update, amount, paymentCount, day, paymentMethod);
+            }
+        }
+
+        // drop days whose last payment was removed
+        if (paymentCount < 0) {
+            jdbcTemplate.update("DELETE FROM RevenueDaily WHERE RevenueDate = ? AND PaymentMethod = ? AND PaymentCount <= 0",
+                    day, paymentMethod);
+        }
+        tableVersions.bump(TableVersions.REVENUE_DAILY);
+    }
+
+    // Rebuild every row from the Payment table
+    public void rebuild() {
+        jdbcTemplate.update("DELETE FROM RevenueDaily");
+        jdbcTemplate.update("""
+                INSERT INTO RevenueDaily (RevenueDate, PaymentMethod, Amount, PaymentCount)
+                SELECT PaymentDate, COALESCE(PaymentMethod, 'Other'), SUM(Amount), COUNT(*)
+                FROM Payment
+                GROUP BY PaymentDate, COALESCE(PaymentMethod, 'Other')
+                """);
+        tableVersions.bump(TableVersions.REVENUE_DAILY);
+    }
+
+    /**
+     * Revenue per period and payment method between two days (inclusive)
+     * periodExpression is one of the PERIOD_* constants
+     * Each row has Period, PaymentMethod, Amount and PaymentCount
+     */
+    public List<Map<String, Object>> findByPeriod(String periodExpression, LocalDate from, LocalDate to) {
+        String sql = """
+                SELECT %s AS Period, PaymentMethod, SUM(Amount) AS Amount, SUM(PaymentCount) AS PaymentCount
+                FROM RevenueDaily
+                WHERE RevenueDate BETWEEN ? AND ?
+                GROUP BY Period, PaymentMethod
+                ORDER BY Period, PaymentMethod
+                """.formatted(periodExpression);
+
+        return jdbcTemplate.queryForList(sql, from, to);
+    }
+
+    // Total revenue between two days (inclusive)
+    public BigDecimal getTotalBetween(LocalDate from, LocalDate to) {
+        String sql = "SELECT COALESCE(SUM(Amount), 0) FROM RevenueDaily WHERE RevenueDate BETWEEN ? AND ?";
+        return jdbcTemplate.queryForObject(sql, BigDecimal.class, from, to);
+    }
+
+    // Total revenue of all time
+    public BigDecimal getTotal() {
+        String sql = "SELECT COALESCE(SUM(Amount), 0) FROM RevenueDaily";
+        return jdbcTemplate.queryForObject(sql, BigDecimal.class);
+    }
+
+    // Total revenue of all time for one payment method
+    public BigDecimal getTotalByMethod(String paymentMethod) {
+        String sql = "SELECT COALESCE(SUM(Amount), 0) FROM RevenueDaily WHERE PaymentMethod = ?";
+        return jdbcTemplate.queryForObject(sql, BigDecimal.class, paymentMethod);
+    }
+
+    // Number of payments of all time (sum of the daily counts)
+    public Integer getPaymentCount() {
+        String sql = "SELECT COALESCE(SUM(PaymentCount), 0) FROM RevenueDaily";
+        return jdbcTemplate.queryForObject(sql, Integer.class);
+    }
+}
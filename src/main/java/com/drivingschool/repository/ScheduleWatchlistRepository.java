@@ -0,0 +1,163 @@
+package com.drivingschool.repository;
+
+import com.drivingschool.model.ScheduleWatch;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ScheduleWatchlist Repository - Data Access Layer using raw SQL
+ *
+ * Candidates are read from Trainee and TraineeProgress (completed sessions are already
+ * materialized there), so scoring a trainee is a primary key lookup.
+ *
+ * Only the home branch is written. The other branches (see Branches) are read for the totals
+ * behind the shared average and for their watchlists; with more than one branch every
+ * ScheduleWatch carries its branch.
+ */
+
+@Repository
+public class ScheduleWatchlistRepository {
+
+    private static final String CANDIDATE_SELECT = """
+            SELECT
+                t.TraineeID, t.FirstName, t.LastName, t.EnrollmentDate, t.Status,
+                COALESCE(p.CompletedSessions, 0) AS CompletedSessions,
+                w.CompletedSessions AS FlaggedSessions, w.FlaggedAt
+            FROM Trainee t
+            LEFT JOIN TraineeProgress p ON p.TraineeID = t.TraineeID
+            LEFT JOIN ScheduleWatchlist w ON w.TraineeID = t.TraineeID
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TableVersions tableVersions;
+    private final Branches branches;
+
+    public ScheduleWatchlistRepository(JdbcTemplate jdbcTemplate, TableVersions tableVersions, Branches branches) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.tableVersions = tableVersions;
+        this.branches = branches;
+    }
+
+    // RowMapper to convert candidate rows to ScheduleWatch objects
+    private final RowMapper<ScheduleWatch> candidateRowMapper = (rs, rowNum) -> {
+        ScheduleWatch watch = new ScheduleWatch();
+
+        watch.setTraineeId(rs.getInt("TraineeID"));
+        watch.setFirstName(rs.getString("FirstName"));
+        watch.setLastName(rs.getString("LastName"));
+        if (rs.getDate("EnrollmentDate") != null) {
+            watch.setEnrollmentDate(rs.getDate("EnrollmentDate").toLocalDate());
+        }
+        watch.setStatus(rs.getString("Status"));
+        watch.setCompletedSessions(rs.getInt("CompletedSessions"));
+        if (rs.getTimestamp("FlaggedAt") != null) {
+            watch.setFlaggedSessions(rs.getInt("FlaggedSessions"));
+            watch.setFlaggedAt(rs.getTimestamp("FlaggedAt").toLocalDateTime());
+        }
+        if (branches.isMultiBranch()) {
+            watch.setBranch(branches.home().id());
+        }
+
+        return watch;
+    };
+
+    // Every trainee with their completed practical sessions (for the startup / nightly rebuild)
+    public List<ScheduleWatch> findAllCandidates() {
+        return jdbcTemplate.query(CANDIDATE_SELECT, candidateRowMapper);
+    }
+
+    // One trainee with their completed practical sessions, null if the trainee no longer exists
+    public ScheduleWatch findCandidate(Integer traineeId) {
+        List<ScheduleWatch> candidates = jdbcTemplate.query(CANDIDATE_SELECT + " WHERE t.TraineeID = ?",
+                candidateRowMapper, traineeId);
+
+        return candidates.isEmpty() ? null : candidates.getFirst();
+    }
+
+    // Put a trainee on the watchlist, or refresh their session count (FlaggedAt is kept)
+    public void flag(Integer traineeId, int completedSessions, LocalDateTime flaggedAt) {
+        int updated = jdbcTemplate.update("UPDATE ScheduleWatchlist SET CompletedSessions = ? WHERE TraineeID = ?",
+                completedSessions, traineeId);
+
+        if (updated == 0) {
+            jdbcTemplate.update("INSERT INTO ScheduleWatchlist (TraineeID, CompletedSessions, FlaggedAt) VALUES (?, ?, ?)",
+                    traineeId, completedSessions, Timestamp.valueOf(flaggedAt));
+        }
+        tableVersions.bump(TableVersions.SCHEDULE_WATCHLIST, traineeId);
+    }
+
+    // Take a trainee off the watchlist
+    public void unflag(Integer traineeId) {
+        jdbcTemplate.update("DELETE FROM ScheduleWatchlist WHERE TraineeID = ?", traineeId);
+        tableVersions.bump(TableVersions.SCHEDULE_WATCHLIST, traineeId);
+    }
+
+    /**
+     * Completed sessions (Total) and number (Trainees) of the other branches' trainees that count
+     * towards the average: enrolled on or before enrolledBy, with at least one completed session
+     */
+    public Map<String, Long> findOtherBranchTotals(LocalDate enrolledBy) {
+        String sql = """
+                SELECT COALESCE(SUM(p.CompletedSessions), 0) AS Total, COUNT(*) AS Trainees
+                FROM Trainee t
+                JOIN TraineeProgress p ON p.TraineeID = t.TraineeID
+                WHERE t.EnrollmentDate <= ? AND p.CompletedSessions > 0
+                """;
+
+        long total = 0;
+        long trainees = 0;
+        if (branches.isMultiBranch()) {
+            for (Branches.BranchResult<Map<String, Object>> sums :
+                    branches.scatter(branches.others(), jdbc -> jdbc.queryForMap(sql, Date.valueOf(enrolledBy)))) {
+                total += ((Number) sums.result().get("Total")).longValue();
+                trainees += ((Number) sums.result().get("Trainees")).longValue();
+            }
+        }
+
+        return Map.of("Total", total, "Trainees", trainees);
+    }
+
+    // The watchlists of the other branches, as persisted there
+    public List<ScheduleWatch> findOtherBranchWatchlists() {
+        String sql = """
+                SELECT
+                    t.TraineeID, t.FirstName, t.LastName, t.EnrollmentDate, t.Status,
+                    w.CompletedSessions, w.CompletedSessions AS FlaggedSessions, w.FlaggedAt
+                FROM ScheduleWatchlist w
+                JOIN Trainee t ON t.TraineeID = w.TraineeID
+                """;
+
+        List<ScheduleWatch> watchlists = new ArrayList<>();
+        if (branches.isMultiBranch()) {
+            for (Branches.BranchResult<List<ScheduleWatch>> rows :
+                    branches.scatter(branches.others(), jdbc -> jdbc.query(sql, candidateRowMapper))) {
+                rows.result().forEach(watch -> watch.setBranch(rows.branch().id()));
+                watchlists.addAll(rows.result());
+            }
+        }
+
+        return watchlists;
+    }
+
+    // Number of trainees on the other branches' watchlists
+    public int countOtherBranchWatchlists() {
+        int count = 0;
+        if (branches.isMultiBranch()) {
+            for (Branches.BranchResult<Integer> rows : branches.scatter(branches.others(),
+                    jdbc -> jdbc.queryForObject("SELECT COUNT(*) FROM ScheduleWatchlist", Integer.class))) {
+                count += rows.result();
+            }
+        }
+
+        return count;
+    }
+}
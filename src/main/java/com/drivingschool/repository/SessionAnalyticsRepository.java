@@ -0,0 +1,128 @@
+package com.drivingschool.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Session Analytics Repository - streaming reads that feed the columnar session snapshot
+ *
+ * Rows are handed to the caller while the result set is open, so loading every
+ * session never builds a List<Session> in memory.
+ */
+
+@Repository
+public class SessionAnalyticsRepository {
+
+    // current and archived sessions (see SessionPartitionService)
+    private static final String SESSION_SELECT = """
+            SELECT SessionID, SessionType, Status, StartDateTime, EndDateTime, InstructorID, TraineeID
+            FROM %1$s
+            """;
+    private static final String ATTENDANCE_SELECT = "SELECT SessionID, TraineeID FROM %2$s";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public SessionAnalyticsRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    // One Session row as read for the snapshot (traineeId is 0 for theoretical sessions)
+    public record SessionRow(int sessionId, String sessionType, String status,
+                             LocalDateTime startDateTime, LocalDateTime endDateTime,
+                             int instructorId, int traineeId) {
+    }
+
+    // Stream every session, ordered by id
+    public void streamSessions(Consumer<SessionRow> consumer) {
+        jdbcTemplate.query(SessionRepository.bothTables(SESSION_SELECT) + " ORDER BY SessionID",
+                rs -> {
+                    consumer.accept(readRow(rs));
+                });
+    }
+
+    // Stream every (SessionID, TraineeID) pair of Trainee_Session, ordered by session
+    public void streamAttendance(BiConsumer<Integer, Integer> consumer) {
+        jdbcTemplate.query(SessionRepository.bothTables(ATTENDANCE_SELECT) + " ORDER BY SessionID, TraineeID",
+                rs -> {
+                    consumer.accept(rs.getInt("SessionID"), rs.getInt("TraineeID"));
+                });
+    }
+
+    // Stream the given sessions (ids that no longer exist are simply missing)
+    public void streamSessions(List<Integer> sessionIds, Consumer<SessionRow> consumer) {
+        for (List<Integer> chunk : AppUserRepository.chunks(sessionIds)) {
+            String in = " WHERE SessionID IN (" + AppUserRepository.placeholders(chunk.size()) + ")";
+
+            jdbcTemplate.query(SessionRepository.bothTables(SESSION_SELECT + in),
+                    rs -> {
+                        consumer.accept(readRow(rs));
+                    }, twice(chunk));
+        }
+    }
+
+    // Stream the attendance of the given sessions, ordered by session
+    public void streamAttendance(List<Integer> sessionIds, BiConsumer<Integer, Integer> consumer) {
+        for (List<Integer> chunk : AppUserRepository.chunks(sessionIds)) {
+            String in = " WHERE SessionID IN (" + AppUserRepository.placeholders(chunk.size()) + ")";
+
+            jdbcTemplate.query(SessionRepository.bothTables(ATTENDANCE_SELECT + in) + " ORDER BY SessionID, TraineeID",
+                    rs -> {
+                        consumer.accept(rs.getInt("SessionID"), rs.getInt("TraineeID"));
+                    }, twice(chunk));
+        }
+    }
+
+    // Instructor names by id (only the requested ids)
+    public Map<Integer, String> findInstructorNames(Collection<Integer> instructorIds) {
+        return findNames("SELECT InstructorID AS ID, FirstName, LastName FROM Instructor WHERE InstructorID IN (",
+                instructorIds);
+    }
+
+    // Trainee names by id (only the requested ids)
+    public Map<Integer, String> findTraineeNames(Collection<Integer> traineeIds) {
+        return findNames("SELECT TraineeID AS ID, FirstName, LastName FROM Trainee WHERE TraineeID IN (",
+                traineeIds);
+    }
+
+    private Map<Integer, String> findNames(String select, Collection<Integer> ids) {
+        Map<Integer, String> names = new HashMap<>();
+
+        for (List<Integer> chunk : AppUserRepository.chunks(ids)) {
+            jdbcTemplate.query(select + AppUserRepository.placeholders(chunk.size()) + ")",
+                    rs -> {
+                        names.put(rs.getInt("ID"), rs.getString("FirstName") + " " + rs.getString("LastName"));
+                    }, chunk.toArray());
+        }
+
+        return names;
+    }
+
+    // Parameters of a query run over both session tables
+    private static Object[] twice(List<Integer> ids) {
+        List<Integer> parameters = new ArrayList<>(ids);
+        parameters.addAll(ids);
+        return parameters.toArray();
+    }
+
+    private SessionRow readRow(ResultSet rs) throws SQLException {
+        return new SessionRow(
+                rs.getInt("SessionID"),
+                rs.getString("SessionType"),
+                rs.getString("Status"),
+                rs.getTimestamp("StartDateTime").toLocalDateTime(),
+                rs.getTimestamp("EndDateTime").toLocalDateTime(),
+                rs.getInt("InstructorID"),
+                rs.getInt("TraineeID"));
+    }
+}
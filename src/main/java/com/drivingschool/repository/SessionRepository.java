@@ -9,20 +9,37 @@ import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
 
 import java.sql.*;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.BiConsumer;
 
 /**
  * Session Repository - Data Access Layer using raw SQL
+ *
+ * Sessions completed long ago live in Session_Archive / Trainee_Session_Archive (see SessionPartitionService).
+ * Current queries (all, by type, by status) read only the hot Session table; history queries
+ * (by instructor, by trainee, counts) read both tables.
+ * Archived rows share the Session / Trainee_Session table versions.
+ *
+ * Named trainingSessionRepository: "sessionRepository" is Spring Session's HTTP session store.
  */
 
-@Repository
+@Repository("trainingSessionRepository")
 public class SessionRepository {
 
+    private static final String COLUMNS =
+            "SessionID, SessionType, StartDateTime, EndDateTime, Status, InstructorFeedback, InstructorID, TraineeID, Version";
+
     private final JdbcTemplate jdbcTemplate;
+    private final TableVersions tableVersions;
 
-    public SessionRepository(JdbcTemplate jdbcTemplate) {
+    public SessionRepository(JdbcTemplate jdbcTemplate, TableVersions tableVersions) {
         this.jdbcTemplate = jdbcTemplate;
+        this.tableVersions = tableVersions;
     }
 
     private final RowMapper<Session> sessionRowMapper = (rs, rowNum) -> {
@@ -71,6 +88,18 @@ public class SessionRepository {
 
         }
 
+        try {
+            session.setArchived(rs.getBoolean("Archived"));
+        } catch (Exception e) {
+
+        }
+
+        try {
+            session.setVersion(rs.getInt("Version"));
+        } catch (Exception e) {
+
+        }
+
         return session;
     };
 
@@ -79,7 +108,7 @@ public class SessionRepository {
         String sql = """
                 SELECT
                     s.SessionID, s.SessionType, s.StartDateTime, s.EndDateTime,
-                    s.Status, s.InstructorFeedback, s.InstructorID, s.TraineeID,
+                    s.Status, s.InstructorFeedback, s.InstructorID, s.TraineeID, s.Version,
                     CONCAT(i.FirstName, ' ', i.LastName) AS InstructorName,
                     CONCAT(t.FirstName, ' ', t.LastName) AS TraineeName,
                     (SELECT COUNT(*) FROM Trainee_Session WHERE SessionID = s.SessionID) AS TraineeCount
@@ -92,57 +121,113 @@ public class SessionRepository {
         return jdbcTemplate.query(sql, sessionRowMapper);
     }
 
-    // Find session by id
+    // Find all sessions of both tables (current and archived), newest first
+    public List<Session> findAllHistory() {
+        String sql = """
+                SELECT
+                    s.SessionID, s.SessionType, s.StartDateTime, s.EndDateTime,
+                    s.Status, s.InstructorFeedback, s.InstructorID, s.TraineeID, s.Version, %3$s AS Archived,
+                    CONCAT(i.FirstName, ' ', i.LastName) AS InstructorName,
+                    CONCAT(t.FirstName, ' ', t.LastName) AS TraineeName,
+                    (SELECT COUNT(*) FROM %2$s WHERE SessionID = s.SessionID) AS TraineeCount
+                FROM %1$s s
+                LEFT JOIN Instructor i ON s.InstructorID = i.InstructorID
+                LEFT JOIN Trainee t ON s.TraineeID = t.TraineeID
+                """;
+
+        return jdbcTemplate.query(bothTables(sql) + " ORDER BY StartDateTime DESC", sessionRowMapper);
+    }
+
+    // Find session by id (an archived session is returned with archived = true)
     public Session findById(Integer sessionId) {
         String sql = """
             SELECT
                 s.SessionID, s.SessionType, s.StartDateTime, s.EndDateTime,
-                s.Status, s.InstructorFeedback, s.InstructorID, s.TraineeID,
+                s.Status, s.InstructorFeedback, s.InstructorID, s.TraineeID, s.Version, %3$s AS Archived,
                 CONCAT(i.FirstName, ' ', i.LastName) AS InstructorName,
                 CONCAT(t.FirstName, ' ', t.LastName) AS TraineeName,
-                (SELECT COUNT(*) FROM Trainee_Session WHERE SessionID = s.SessionID) AS TraineeCount
-            FROM Session s
+                (SELECT COUNT(*) FROM %2$s WHERE SessionID = s.SessionID) AS TraineeCount
+            FROM %1$s s
             LEFT JOIN Instructor i ON s.InstructorID = i.InstructorID
             LEFT JOIN Trainee t ON s.TraineeID = t.TraineeID
             WHERE s.SessionID = ?
             """;
 
-        List<Session> sessions = jdbcTemplate.query(sql, sessionRowMapper, sessionId);
+        List<Session> sessions = jdbcTemplate.query(bothTables(sql), sessionRowMapper, sessionId, sessionId);
         return sessions.isEmpty() ? null : sessions.getFirst();
     }
 
-    // Find sessions by instructor id
+    // Find sessions by id with instructor and trainee names (current and archived; missing ids are skipped)
+    public List<Session> findByIds(Collection<Integer> sessionIds) {
+        List<Session> sessions = new ArrayList<>();
+
+        String sql = """
+                SELECT
+                    s.SessionID, s.SessionType, s.StartDateTime, s.EndDateTime,
+                    s.Status, s.InstructorFeedback, s.InstructorID, s.TraineeID, s.Version, %3$s AS Archived,
+                    CONCAT(i.FirstName, ' ', i.LastName) AS InstructorName,
+                    CONCAT(t.FirstName, ' ', t.LastName) AS TraineeName,
+                    (SELECT COUNT(*) FROM %2$s WHERE SessionID = s.SessionID) AS TraineeCount
+                FROM %1$s s
+                LEFT JOIN Instructor i ON s.InstructorID = i.InstructorID
+                LEFT JOIN Trainee t ON s.TraineeID = t.TraineeID
+                """;
+
+        for (List<Integer> chunk : AppUserRepository.chunks(sessionIds)) {
+            String in = "WHERE s.SessionID IN (" + AppUserRepository.placeholders(chunk.size()) + ")";
+
+            List<Object> parameters = new ArrayList<>(chunk);
+            parameters.addAll(chunk);
+            sessions.addAll(jdbcTemplate.query(bothTables(sql + in), sessionRowMapper, parameters.toArray()));
+        }
+
+        return sessions;
+    }
+
+    // Stream (SessionID, InstructorFeedback) of every session with feedback (current and archived)
+    public void forEachFeedback(BiConsumer<Integer, String> consumer) {
+        String sql = """
+                SELECT SessionID, InstructorFeedback FROM %1$s
+                WHERE InstructorFeedback IS NOT NULL AND InstructorFeedback <> ''
+                """;
+
+        jdbcTemplate.query(bothTables(sql), rs -> {
+            consumer.accept(rs.getInt("SessionID"), rs.getString("InstructorFeedback"));
+        });
+    }
+
+    // Find sessions by instructor id (current and archived)
     public List<Session> findByInstructorId(Integer instructorId) {
         String sql = """
                 SELECT
                     s.SessionID, s.SessionType, s.StartDateTime, s.EndDateTime,
-                    s.Status, s.InstructorFeedback, s.InstructorID, s.TraineeID,
+                    s.Status, s.InstructorFeedback, s.InstructorID, s.TraineeID, s.Version, %3$s AS Archived,
                     CONCAT(t.FirstName, ' ', t.LastName) AS TraineeName,
-                    (SELECT COUNT(*) FROM Trainee_Session WHERE SessionID = s.SessionID) AS TraineeCount
-                FROM Session s
+                    (SELECT COUNT(*) FROM %2$s WHERE SessionID = s.SessionID) AS TraineeCount
+                FROM %1$s s
                 LEFT JOIN Trainee t ON s.TraineeID = t.TraineeID
                 WHERE s.InstructorID = ?
-                ORDER BY s.StartDateTime DESC
                 """;
 
-        return jdbcTemplate.query(sql, sessionRowMapper, instructorId);
+        return jdbcTemplate.query(bothTables(sql) + " ORDER BY StartDateTime DESC", sessionRowMapper,
+                instructorId, instructorId);
     }
 
-    // Find sessions by trainee id (both practical and theoretical)
+    // Find sessions by trainee id (both practical and theoretical, current and archived)
     public List<Session> findByTraineeId(Integer traineeId) {
         String sql = """
                 SELECT DISTINCT
                     s.SessionID, s.SessionType, s.StartDateTime, s.EndDateTime,
-                    s.Status, s.InstructorFeedback, s.InstructorID, s.TraineeID,
+                    s.Status, s.InstructorFeedback, s.InstructorID, s.TraineeID, s.Version, %3$s AS Archived,
                     CONCAT(i.FirstName, ' ', i.LastName) AS InstructorName
-                FROM Session s
+                FROM %1$s s
                 LEFT JOIN Instructor i ON s.InstructorID = i.InstructorID
-                LEFT JOIN Trainee_Session ts ON s.SessionID = ts.SessionID
+                LEFT JOIN %2$s ts ON s.SessionID = ts.SessionID
                 WHERE s.TraineeID = ? OR ts.TraineeID = ?
-                ORDER BY s.StartDateTime DESC
                 """;
 
-        return jdbcTemplate.query(sql, sessionRowMapper, traineeId, traineeId);
+        return jdbcTemplate.query(bothTables(sql) + " ORDER BY StartDateTime DESC", sessionRowMapper,
+                traineeId, traineeId, traineeId, traineeId);
     }
 
     // Find sessions by type
@@ -150,7 +235,7 @@ public class SessionRepository {
         String sql = """
                 SELECT
                     s.SessionID, s.SessionType, s.StartDateTime, s.EndDateTime,
-                    s.Status, s.InstructorFeedback, s.InstructorID, s.TraineeID,
+                    s.Status, s.InstructorFeedback, s.InstructorID, s.TraineeID, s.Version,
                     CONCAT(i.FirstName, ' ', i.LastName) AS InstructorName,
                     CONCAT(t.FirstName, ' ', t.LastName) AS TraineeName,
                     (SELECT COUNT(*) FROM Trainee_Session WHERE SessionID = s.SessionID) AS TraineeCount
@@ -169,7 +254,7 @@ public class SessionRepository {
         String sql = """
                 SELECT
                     s.SessionID, s.SessionType, s.StartDateTime, s.EndDateTime,
-                    s.Status, s.InstructorFeedback, s.InstructorID, s.TraineeID,
+                    s.Status, s.InstructorFeedback, s.InstructorID, s.TraineeID, s.Version,
                     CONCAT(i.FirstName, ' ', i.LastName) AS InstructorName,
                     CONCAT(t.FirstName, ' ', t.LastName) AS TraineeName,
                     (SELECT COUNT(*) FROM Trainee_Session WHERE SessionID = s.SessionID) AS TraineeCount
@@ -221,59 +306,191 @@ public class SessionRepository {
 
         Map<String, Object> keys = keyHolder.getKeys();
         if (keys != null && keys.containsKey("SESSIONID")) {
-            return ((Number) keys.get("SESSIONID")).intValue();
+            Integer sessionId = ((Number) keys.get("SESSIONID")).intValue();
+            tableVersions.bump(TableVersions.SESSION, sessionId);
+            return sessionId;
         }
 
         throw new IllegalStateException("Failed to retrieve generated session ID");
     }
 
-    // Update existing session
-    public void update(Session session) {
+    /**
+     * Update an existing session if it is still at session.getVersion()
+     * Status is only changed through transitionStatus; returns false when nothing was changed
+     */
+    public boolean update(Session session) {
         String sql = """
             UPDATE Session SET
                 SessionType = ?,
                 StartDateTime = ?,
                 EndDateTime = ?,
-                Status = ?,
                 InstructorFeedback = ?,
                 InstructorID = ?,
-                TraineeID = ?
-            WHERE SessionID = ?
+                TraineeID = ?,
+                Version = Version + 1
+            WHERE SessionID = ? AND Version = ?
             """;
 
-        jdbcTemplate.update(sql,
+        int rows = jdbcTemplate.update(sql,
                 session.getSessionType(),
                 Timestamp.valueOf(session.getStartDateTime()),
                 Timestamp.valueOf(session.getEndDateTime()),
-                session.getStatus(),
                 session.getInstructorFeedback(),
                 session.getInstructorId(),
                 session.getTraineeId(),
-                session.getSessionId());
+                session.getSessionId(),
+                session.getVersion());
+
+        if (rows == 0) {
+            return false;
+        }
+
+        tableVersions.bump(TableVersions.SESSION, session.getSessionId());
+        return true;
+    }
+
+    /**
+     * Change the status in one conditional UPDATE: only when the session is still in fromStatus
+     * (and, if expectedVersion is given, still at that version)
+     * Returns the session as it was before the change, or null when nothing was changed
+     */
+    public Session transitionStatus(Integer sessionId, String fromStatus, String toStatus, Integer expectedVersion) {
+        String sql = """
+                SELECT SessionID, SessionType, StartDateTime, EndDateTime, Status,
+                       InstructorFeedback, InstructorID, TraineeID, Version
+                FROM OLD TABLE (
+                    UPDATE Session SET Status = ?, Version = Version + 1
+                    WHERE SessionID = ? AND Status = ?%s
+                )
+                """.formatted(expectedVersion == null ? "" : " AND Version = ?");
+
+        List<Session> sessions = expectedVersion == null
+                ? jdbcTemplate.query(sql, sessionRowMapper, toStatus, sessionId, fromStatus)
+                : jdbcTemplate.query(sql, sessionRowMapper, toStatus, sessionId, fromStatus, expectedVersion);
+
+        if (sessions.isEmpty()) {
+            return null;
+        }
+
+        tableVersions.bump(TableVersions.SESSION, sessionId);
+        return sessions.getFirst();
+    }
+
+    /**
+     * Mark up to limit sessions Completed that are still Scheduled and have ended by now, in one statement
+     * Returns the sessions that were changed, as they were before the change
+     */
+    public List<Session> completeElapsed(LocalDateTime now, int limit) {
+        String sql = """
+                SELECT SessionID, SessionType, StartDateTime, EndDateTime, Status,
+                       InstructorFeedback, InstructorID, TraineeID, Version
+                FROM OLD TABLE (
+                    UPDATE Session SET Status = 'Completed', Version = Version + 1
+                    WHERE Status = 'Scheduled' AND EndDateTime <= ?
+                    LIMIT ?
+                )
+                """;
+
+        List<Session> completed = jdbcTemplate.query(sql, sessionRowMapper, Timestamp.valueOf(now), limit);
+
+        if (!completed.isEmpty()) {
+            tableVersions.bump(TableVersions.SESSION, completed.stream().map(Session::getSessionId).toList());
+        }
+        return completed;
+    }
+
+    // Find scheduled sessions without joins (scheduled sessions are never archived)
+    public List<Session> findScheduled() {
+        String sql = "SELECT " + COLUMNS + " FROM Session WHERE Status = 'Scheduled'";
+        return jdbcTemplate.query(sql, sessionRowMapper);
+    }
+
+    // Trainees enrolled in scheduled theoretical sessions, by session id
+    public Map<Integer, List<Integer>> findScheduledAttendance() {
+        String sql = """
+                SELECT ts.SessionID, ts.TraineeID
+                FROM Trainee_Session ts
+                JOIN Session s ON ts.SessionID = s.SessionID
+                WHERE s.Status = 'Scheduled'
+                """;
+
+        Map<Integer, List<Integer>> attendance = new HashMap<>();
+        jdbcTemplate.query(sql, rs -> {
+            attendance.computeIfAbsent(rs.getInt("SessionID"), id -> new ArrayList<>()).add(rs.getInt("TraineeID"));
+        });
+        return attendance;
     }
 
     // Delete session by id
     public void delete(Integer sessionId) {
         String sql = "DELETE FROM Session WHERE SessionID = ?";
         jdbcTemplate.update(sql, sessionId);
+        tableVersions.bump(TableVersions.SESSION, sessionId);
+        tableVersions.bump(TableVersions.TRAINEE_SESSION, sessionId);
     }
 
-    // Count total sessions
+    // Count total sessions (current and archived)
     public Integer count() {
-        String sql = "SELECT COUNT(*) FROM Session";
+        String sql = "SELECT (SELECT COUNT(*) FROM Session) + (SELECT COUNT(*) FROM Session_Archive)";
         return jdbcTemplate.queryForObject(sql, Integer.class);
     }
 
-    // Count sessions by status
+    // Count sessions by status (current and archived)
     public Integer countByStatus(String status) {
-        String sql = "SELECT COUNT(*) FROM Session WHERE Status = ?";
-        return jdbcTemplate.queryForObject(sql, Integer.class, status);
+        String sql = "SELECT (SELECT COUNT(*) FROM Session WHERE Status = ?) " +
+                "+ (SELECT COUNT(*) FROM Session_Archive WHERE Status = ?)";
+        return jdbcTemplate.queryForObject(sql, Integer.class, status, status);
     }
 
-    // Count sessions by type
+    // Count sessions by type (current and archived)
     public Integer countByType(String sessionType) {
-        String sql = "SELECT COUNT(*) FROM Session WHERE SessionType = ?";
-        return jdbcTemplate.queryForObject(sql, Integer.class, sessionType);
+        String sql = "SELECT (SELECT COUNT(*) FROM Session WHERE SessionType = ?) " +
+                "+ (SELECT COUNT(*) FROM Session_Archive WHERE SessionType = ?)";
+        return jdbcTemplate.queryForObject(sql, Integer.class, sessionType, sessionType);
+    }
+
+    // Count rows of the hot Session table
+    public long countCurrent() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM Session", Long.class);
+    }
+
+    // Count rows of Session_Archive
+    public long countArchived() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM Session_Archive", Long.class);
+    }
+
+    // Lock the next batch of sessions completed before the cutoff, oldest ids first
+    public List<Integer> lockCompletedBefore(LocalDateTime cutoff, int limit) {
+        String sql = """
+                SELECT SessionID FROM Session
+                WHERE Status = 'Completed' AND EndDateTime < ?
+                ORDER BY SessionID
+                LIMIT ?
+                FOR UPDATE
+                """;
+
+        return jdbcTemplate.queryForList(sql, Integer.class, Timestamp.valueOf(cutoff), limit);
+    }
+
+    // Move sessions and their attendance to the archive tables (call inside a transaction)
+    public int moveToArchive(List<Integer> sessionIds) {
+        if (sessionIds.isEmpty()) {
+            return 0;
+        }
+
+        String in = " WHERE SessionID IN (" + AppUserRepository.placeholders(sessionIds.size()) + ")";
+        Object[] ids = sessionIds.toArray();
+
+        jdbcTemplate.update("INSERT INTO Session_Archive (" + COLUMNS + ") SELECT " + COLUMNS + " FROM Session" + in, ids);
+        jdbcTemplate.update("INSERT INTO Trainee_Session_Archive (TraineeID, SessionID) " +
+                "SELECT TraineeID, SessionID FROM Trainee_Session" + in, ids);
+
+        // Trainee_Session rows are deleted by ON DELETE CASCADE
+        int moved = jdbcTemplate.update("DELETE FROM Session" + in, ids);
+        tableVersions.bump(TableVersions.SESSION, sessionIds);
+        tableVersions.bump(TableVersions.TRAINEE_SESSION, sessionIds);
+
+        return moved;
     }
 
     // Add trainee to theoretical session
@@ -281,6 +498,7 @@ public class SessionRepository {
         String sql = "INSERT INTO Trainee_Session (TraineeID, SessionId) " +
                 "VALUES (?, ?)";
         jdbcTemplate.update(sql, traineeId, sessionId);
+        tableVersions.bump(TableVersions.TRAINEE_SESSION, sessionId);
     }
 
     // Remove trainee from theoretical session
@@ -288,22 +506,24 @@ public class SessionRepository {
         String sql = "DELETE FROM Trainee_Session WHERE " +
                 "TraineeID = ? AND SessionID = ?";
         jdbcTemplate.update(sql, traineeId, sessionId);
+        tableVersions.bump(TableVersions.TRAINEE_SESSION, sessionId);
     }
 
-    // Get all trainees enrolled in a theoretical session
+    // Get all trainees enrolled in a theoretical session (current or archived)
     public List<Integer> getTraineeIdsForSession(Integer sessionId) {
-        String sql = "SELECT TraineeID FROM Trainee_Session WHERE SessionID = ?";
-        return jdbcTemplate.queryForList(sql, Integer.class, sessionId);
+        String sql = "SELECT TraineeID FROM Trainee_Session WHERE SessionID = ? " +
+                "UNION ALL SELECT TraineeID FROM Trainee_Session_Archive WHERE SessionID = ?";
+        return jdbcTemplate.queryForList(sql, Integer.class, sessionId, sessionId);
     }
 
-    // Calculate total practical hours completed by a trainee
-    public Double getTotalPracticalHoursByTrainee(Integer traineeId) {
-        String sql = """
-                SELECT COALESCE(SUM(TIMESTAMPDIFF(MINUTE, StartDateTime, EndDateTime)) / 60.0, 0)
-                FROM Session
-                WHERE TraineeID = ? AND SessionType = 'Practical' AND Status = 'Completed'
-                """;
-
-        return jdbcTemplate.queryForObject(sql, Double.class, traineeId);
+    /**
+     * The same query over the hot and the archive tables, joined with UNION ALL
+     * %1$s is the session table, %2$s the attendance table and %3$s the Archived flag;
+     * parameters are needed once per table
+     */
+    static String bothTables(String sql) {
+        return String.format(sql, "Session", "Trainee_Session", "FALSE")
+                + " UNION ALL "
+                + String.format(sql, "Session_Archive", "Trainee_Session_Archive", "TRUE");
     }
 }
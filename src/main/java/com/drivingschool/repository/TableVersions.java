@@ -0,0 +1,172 @@
+package com.drivingschool.repository;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Table Versions - per-table modification counters
+ *
+ * Every repository write method bumps the version of the tables it changes.
+ * Readers combine the versions of the tables they depend on (e.g. into an ETag)
+ * to know whether anything changed without running a query.
+ *
+ * Versions start from the startup time, so a restart never reuses an old version.
+ *
+ * Every bump is also appended to ChangeLog, with the ids of the changed rows when the
+ * writer knows them, so that the other nodes sharing the database can evict their copies
+ * (see ChangeLogService). Inside a transaction the entries are written just before commit,
+ * in the same transaction: they become visible exactly when the changes do.
+ */
+
+@Component
+public class TableVersions {
+
+    public static final String APP_USER = "AppUser";
+    public static final String INSTRUCTOR = "Instructor";
+    public static final String TRAINEE = "Trainee";
+    public static final String CAR = "Car";
+    public static final String PAYMENT = "Payment";
+    public static final String EXAM = "Exam";
+    public static final String SESSION = "Session";
+    public static final String TRAINEE_SESSION = "Trainee_Session";
+    public static final String TUITION_PRICE = "TuitionPrice";
+    public static final String TRAINEE_BALANCE = "TraineeBalance";
+    public static final String REVENUE_DAILY = "RevenueDaily";
+    public static final String LICENSE_REQUIREMENT = "LicenseRequirement";
+    public static final String TRAINEE_PROGRESS = "TraineeProgress";
+    public static final String SCHEDULE_WATCHLIST = "ScheduleWatchlist";
+    public static final String INSTRUCTOR_EXAM_STATS = "InstructorExamStats";
+    public static final String CATEGORY_EXAM_STATS = "CategoryExamStats";
+    public static final String ARCHIVE_FILE = "ArchiveFile";
+    public static final String ARCHIVED_TRAINEE_TOTALS = "ArchivedTraineeTotals";
+    public static final String ARCHIVED_INSTRUCTOR_TOTALS = "ArchivedInstructorTotals";
+
+    // more changed rows of one table in one transaction are logged as a change of the whole table
+    public static final int MAX_LOGGED_ROWS = 1000;
+
+    private final long epoch = System.currentTimeMillis();
+    private final Map<String, AtomicLong> versions = new ConcurrentHashMap<>();
+    private final ChangeLogRepository changeLogRepository;
+    private final String nodeId;
+
+    public TableVersions(ChangeLogRepository changeLogRepository,
+                         @Value("${cluster.node-id:}") String nodeId,
+                         @Value("${server.port:8080}") int port) {
+        this.changeLogRepository = changeLogRepository;
+        this.nodeId = nodeId.isBlank() ? hostName() + ":" + port : nodeId;
+    }
+
+    /**
+     * Mark a table as modified
+     * Inside a transaction the version is bumped again after completion, so a reader
+     * that saw the first bump before commit cannot keep a stale copy under the new version
+     */
+    public void bump(String table) {
+        bump(table, (Collection<Integer>) null);
+    }
+
+    // Mark one row of a table as modified (null, e.g. a generated key that could not be read: any row)
+    public void bump(String table, Integer rowId) {
+        bump(table, rowId == null ? null : List.of(rowId));
+    }
+
+    // Mark rows of a table as modified (null: any row may have changed)
+    public void bump(String table, Collection<Integer> rowIds) {
+        counter(table).incrementAndGet();
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            pendingChanges().add(table, rowIds);
+        } else {
+            Map<String, Set<Integer>> changes = new HashMap<>();
+            changes.put(table, rowIds == null || rowIds.size() > MAX_LOGGED_ROWS ? null : new HashSet<>(rowIds));
+            changeLogRepository.append(nodeId, changes);
+        }
+    }
+
+    // A table was changed by another node; bumped locally without logging it again
+    public void changedElsewhere(String table) {
+        counter(table).incrementAndGet();
+    }
+
+    // Current version of a table
+    public long version(String table) {
+        return counter(table).get();
+    }
+
+    // Name of this node in ChangeLog (cluster.node-id, by default host:port)
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    private AtomicLong counter(String table) {
+        return versions.computeIfAbsent(table, name -> new AtomicLong(epoch));
+    }
+
+    // Changes of the current transaction, registered with it on the first bump
+    private PendingChanges pendingChanges() {
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            if (synchronization instanceof PendingChanges pending && pending.owner() == this) {
+                return pending;
+            }
+        }
+
+        PendingChanges pending = new PendingChanges();
+        TransactionSynchronizationManager.registerSynchronization(pending);
+        return pending;
+    }
+
+    private static String hostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            return "localhost";
+        }
+    }
+
+    // Tables and row ids changed in one transaction (a null set: the whole table)
+    private final class PendingChanges implements TransactionSynchronization {
+        private final Map<String, Set<Integer>> rowIdsByTable = new HashMap<>();
+
+        private TableVersions owner() {
+            return TableVersions.this;
+        }
+
+        private void add(String table, Collection<Integer> rowIds) {
+            if (rowIdsByTable.containsKey(table) && rowIdsByTable.get(table) == null) {
+                return;
+            }
+
+            Set<Integer> pending = rowIdsByTable.computeIfAbsent(table, name -> new HashSet<>());
+            if (rowIds == null || pending.size() + rowIds.size() > MAX_LOGGED_ROWS) {
+                rowIdsByTable.put(table, null);
+            } else {
+                pending.addAll(rowIds);
+            }
+        }
+
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            changeLogRepository.append(nodeId, rowIdsByTable);
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            for (String table : rowIdsByTable.keySet()) {
+                counter(table).incrementAndGet();
+            }
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package com.drivingschool.repository;
+
+import com.drivingschool.model.TraineeBalance;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * TraineeBalance Repository - Data Access Layer using raw SQL
+ *
+ * Balance reads are a primary key lookup; payments adjust the row with a single
+ * relative UPDATE (TotalPaid = TotalPaid + ?), so concurrent payments never lose an update.
+ */
+
+@Repository
+public class TraineeBalanceRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TableVersions tableVersions;
+
+    public TraineeBalanceRepository(JdbcTemplate jdbcTemplate, TableVersions tableVersions) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.tableVersions = tableVersions;
+    }
+
+    // RowMapper to convert database rows to TraineeBalance objects
+    private final RowMapper<TraineeBalance> balanceRowMapper = (rs, rowNum) -> {
+        TraineeBalance balance = new TraineeBalance();
+
+        balance.setTraineeId(rs.getInt("TraineeID"));
+        balance.setTotalCost(rs.getBigDecimal("TotalCost"));
+        balance.setTotalPaid(rs.getBigDecimal("TotalPaid"));
+        balance.setBalance(rs.getBigDecimal("Balance"));
+        balance.setUpdatedAt(rs.getTimestamp("UpdatedAt").toLocalDateTime());
+
+        // these fields might be null in simple queries
+        try {
+            balance.setTraineeName(rs.getString("TraineeName"));
+            balance.setLicenseCategory(rs.getString("LicenseCategory"));
+        } catch (Exception e) {
+            // ignore if columns do not exist in the query
+        }
+
+        return balance;
+    };
+
+    // Find the balance of a trainee (primary key lookup)
+    public TraineeBalance findByTraineeId(Integer traineeId) {
+        String sql = """
+                SELECT TraineeID, TotalCost, TotalPaid, Balance, UpdatedAt
+                FROM TraineeBalance
+                WHERE TraineeID = ?
+                """;
+
+        List<TraineeBalance> balances = jdbcTemplate.query(sql, balanceRowMapper, traineeId);
+        return balances.isEmpty() ? null : balances.getFirst();
+    }
+
+    // Trainees that still owe money, largest balance first (range scan on idx_trainee_balance_balance)
+    public List<TraineeBalance> findOutstanding() {
+        String sql = """
+                SELECT
+                    b.TraineeID, b.TotalCost, b.TotalPaid, b.Balance, b.UpdatedAt,
+                    CONCAT(t.FirstName, ' ', t.LastName) AS TraineeName, t.LicenseCategory
+                FROM TraineeBalance b
+                JOIN Trainee t ON b.TraineeID = t.TraineeID
+                WHERE b.Balance > 0
+                ORDER BY b.Balance DESC
+                """;
+
+        return jdbcTemplate.query(sql, balanceRowMapper);
+    }
+
+    // Total amount still owed by all trainees
+    public BigDecimal getTotalOutstanding() {
+        String sql = "SELECT COALESCE(SUM(Balance), 0) FROM TraineeBalance WHERE Balance > 0";
+
+        return jdbcTemplate.queryForObject(sql, BigDecimal.class);
+    }
+
+    /**
+     * Add a payment amount to a trainee's ledger (negative to reverse a payment)
+     * Returns false if the trainee has no ledger row yet
+     */
+    public boolean applyPayment(Integer traineeId, BigDecimal amount) {
+        String sql = """
+                UPDATE TraineeBalance SET
+                    TotalPaid = TotalPaid + ?,
+                    Balance = Balance - ?,
+                    UpdatedAt = CURRENT_TIMESTAMP
+                WHERE TraineeID = ?
+                """;
+
+        int updated = jdbcTemplate.update(sql, amount, amount, traineeId);
+        tableVersions.bump(TableVersions.TRAINEE_BALANCE);
+
+        return updated > 0;
+    }
+
+    // Rebuild one trainee's row from the price table and the payments (creates it if missing)
+    public void recompute(Integer traineeId) {
+        String sql = """
+                MERGE INTO TraineeBalance (TraineeID, TotalCost, TotalPaid, Balance, UpdatedAt) KEY (TraineeID)
+                SELECT
+                    t.TraineeID,
+                    COALESCE(tp.Price, 0),
+                    COALESCE(SUM(p.Amount), 0) + COALESCE(a.PaidAmount, 0),
+                    COALESCE(tp.Price, 0) - COALESCE(SUM(p.Amount), 0) - COALESCE(a.PaidAmount, 0),
+                    CURRENT_TIMESTAMP
+                FROM Trainee t
+                LEFT JOIN TuitionPrice tp ON tp.LicenseCategory = t.LicenseCategory
+                LEFT JOIN ArchivedTraineeTotals a ON a.TraineeID = t.TraineeID
+                LEFT JOIN Payment p ON p.TraineeID = t.TraineeID
+                WHERE t.TraineeID = ?
+                GROUP BY t.TraineeID, tp.Price, a.PaidAmount
+                """;
+
+        jdbcTemplate.update(sql, traineeId);
+        tableVersions.bump(TableVersions.TRAINEE_BALANCE);
+    }
+
+    // Create the ledger rows of freshly inserted trainees (no payments yet), found by their user ids
+    public void openAccountsForUsers(Collection<Integer> userIds) {
+        for (List<Integer> chunk : AppUserRepository.chunks(userIds)) {
+            String sql = """
+                    INSERT INTO TraineeBalance (TraineeID, TotalCost, TotalPaid, Balance)
+                    SELECT t.TraineeID, COALESCE(tp.Price, 0), 0, COALESCE(tp.Price, 0)
+                    FROM Trainee t
+                    LEFT JOIN TuitionPrice tp ON tp.LicenseCategory = t.LicenseCategory
+                    WHERE t.UserID IN (%s)
+                    """.formatted(AppUserRepository.placeholders(chunk.size()));
+
+            jdbcTemplate.update(sql, chunk.toArray());
+        }
+        tableVersions.bump(TableVersions.TRAINEE_BALANCE);
+    }
+
+    // Apply a new course price to every trainee of a license category
+    public int repriceCategory(String licenseCategory, BigDecimal price) {
+        String sql = """
+                UPDATE TraineeBalance SET
+                    TotalCost = ?,
+                    Balance = ? - TotalPaid,
+                    UpdatedAt = CURRENT_TIMESTAMP
+                WHERE TraineeID IN (SELECT TraineeID FROM Trainee WHERE LicenseCategory = ?)
+                """;
+
+        int updated = jdbcTemplate.update(sql, price, price, licenseCategory);
+        tableVersions.bump(TableVersions.TRAINEE_BALANCE);
+
+        return updated;
+    }
+
+    // Trainees whose ledger row is missing or disagrees with the price table and the payments
+    public List<Integer> findDiscrepancies() {
+        String sql = """
+                SELECT t.TraineeID
+                FROM Trainee t
+                LEFT JOIN TuitionPrice tp ON tp.LicenseCategory = t.LicenseCategory
+                LEFT JOIN (
+                    SELECT TraineeID, SUM(Amount) AS Paid
+                    FROM Payment
+                    GROUP BY TraineeID
+                ) p ON p.TraineeID = t.TraineeID
+                LEFT JOIN ArchivedTraineeTotals a ON a.TraineeID = t.TraineeID
+                LEFT JOIN TraineeBalance b ON b.TraineeID = t.TraineeID
+                WHERE b.TraineeID IS NULL
+                   OR b.TotalCost <> COALESCE(tp.Price, 0)
+                   OR b.TotalPaid <> COALESCE(p.Paid, 0) + COALESCE(a.PaidAmount, 0)
+                   OR b.Balance <> b.TotalCost - b.TotalPaid
+                ORDER BY t.TraineeID
+                """;
+
+        return jdbcTemplate.queryForList(sql, Integer.class);
+    }
+}
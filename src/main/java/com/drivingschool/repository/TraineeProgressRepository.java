@@ -0,0 +1,211 @@
+package com.drivingschool.repository;
+
+import com.drivingschool.model.TraineeProgress;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * TraineeProgress Repository - Data Access Layer using raw SQL
+ *
+ * Progress reads are a primary key lookup; completing a session adjusts the row with
+ * a single relative UPDATE. "Close to exam-ready" lists are a range scan on
+ * idx_trainee_progress_remaining instead of summing every session.
+ */
+
+@Repository
+public class TraineeProgressRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TableVersions tableVersions;
+
+    public TraineeProgressRepository(JdbcTemplate jdbcTemplate, TableVersions tableVersions) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.tableVersions = tableVersions;
+    }
+
+    // RowMapper to convert database rows to TraineeProgress objects
+    private final RowMapper<TraineeProgress> progressRowMapper = (rs, rowNum) -> {
+        TraineeProgress progress = new TraineeProgress();
+
+        progress.setTraineeId(rs.getInt("TraineeID"));
+        progress.setPracticalMinutes(rs.getInt("PracticalMinutes"));
+        progress.setCompletedSessions(rs.getInt("CompletedSessions"));
+        if (rs.getDate("LastSessionDate") != null) {
+            progress.setLastSessionDate(rs.getDate("LastSessionDate").toLocalDate());
+        }
+        progress.setRequiredMinutes(rs.getInt("RequiredMinutes"));
+        progress.setRemainingMinutes(rs.getInt("RemainingMinutes"));
+        progress.setUpdatedAt(rs.getTimestamp("UpdatedAt").toLocalDateTime());
+
+        // these fields might be null in simple queries
+        try {
+            progress.setTraineeName(rs.getString("TraineeName"));
+            progress.setLicenseCategory(rs.getString("LicenseCategory"));
+            progress.setInstructorName(rs.getString("InstructorName"));
+        } catch (Exception e) {
+            // ignore if columns do not exist in the query
+        }
+
+        return progress;
+    };
+
+    // Find the progress of a trainee (primary key lookup)
+    public TraineeProgress findByTraineeId(Integer traineeId) {
+        String sql = """
+                SELECT TraineeID, PracticalMinutes, CompletedSessions, LastSessionDate,
+                       RequiredMinutes, RemainingMinutes, UpdatedAt
+                FROM TraineeProgress
+                WHERE TraineeID = ?
+                """;
+
+        List<TraineeProgress> progress = jdbcTemplate.query(sql, progressRowMapper, traineeId);
+        return progress.isEmpty() ? null : progress.getFirst();
+    }
+
+    /**
+     * Active trainees with at most the given practical minutes left, closest first
+     * (range scan on idx_trainee_progress_remaining; 0 returns only exam-ready trainees)
+     */
+    public List<TraineeProgress> findWithinRemaining(int maxRemainingMinutes) {
+        String sql = """
+                SELECT
+                    p.TraineeID, p.PracticalMinutes, p.CompletedSessions, p.LastSessionDate,
+                    p.RequiredMinutes, p.RemainingMinutes, p.UpdatedAt,
+                    CONCAT(t.FirstName, ' ', t.LastName) AS TraineeName, t.LicenseCategory,
+                    CONCAT(i.FirstName, ' ', i.LastName) AS InstructorName
+                FROM TraineeProgress p
+                JOIN Trainee t ON p.TraineeID = t.TraineeID
+                LEFT JOIN Instructor i ON t.AssignedInstructorID = i.InstructorID
+                WHERE p.RemainingMinutes <= ? AND t.Status = 'Active'
+                ORDER BY p.RemainingMinutes, p.LastSessionDate DESC
+                """;
+
+        return jdbcTemplate.query(sql, progressRowMapper, maxRemainingMinutes);
+    }
+
+    /**
+     * Add a completed practical session to a trainee's progress
+     * Returns false if the trainee has no progress row yet
+     */
+    public boolean addCompletedSession(Integer traineeId, int minutes, LocalDate sessionDate) {
+        // RemainingMinutes is assigned first so it reads the old PracticalMinutes in every SQL dialect
+        String sql = """
+                UPDATE TraineeProgress SET
+                    RemainingMinutes = GREATEST(RequiredMinutes - PracticalMinutes - ?, 0),
+                    PracticalMinutes = PracticalMinutes + ?,
+                    CompletedSessions = CompletedSessions + 1,
+                    LastSessionDate = GREATEST(COALESCE(LastSessionDate, ?), ?),
+                    UpdatedAt = CURRENT_TIMESTAMP
+                WHERE TraineeID = ?
+                """;
+
+        int updated = jdbcTemplate.update(sql, minutes, minutes, sessionDate, sessionDate, traineeId);
+        tableVersions.bump(TableVersions.TRAINEE_PROGRESS, traineeId);
+
+        return updated > 0;
+    }
+
+    // Rebuild one trainee's row from the requirement table and the completed sessions (creates it if missing)
+    public void recompute(Integer traineeId) {
+        String sql = """
+                MERGE INTO TraineeProgress (TraineeID, PracticalMinutes, CompletedSessions, LastSessionDate,
+                                            RequiredMinutes, RemainingMinutes, UpdatedAt) KEY (TraineeID)
+                SELECT
+                    t.TraineeID,
+                    COALESCE(SUM(TIMESTAMPDIFF(MINUTE, s.StartDateTime, s.EndDateTime)), 0)
+                        + COALESCE(a.PracticalMinutes, 0),
+                    COUNT(s.SessionID) + COALESCE(a.CompletedSessions, 0),
+                    COALESCE(GREATEST(CAST(MAX(s.EndDateTime) AS DATE), a.LastSessionDate),
+                             CAST(MAX(s.EndDateTime) AS DATE), a.LastSessionDate),
+                    COALESCE(lr.RequiredHours, 0) * 60,
+                    GREATEST(COALESCE(lr.RequiredHours, 0) * 60
+                        - COALESCE(SUM(TIMESTAMPDIFF(MINUTE, s.StartDateTime, s.EndDateTime)), 0)
+                        - COALESCE(a.PracticalMinutes, 0), 0),
+                    CURRENT_TIMESTAMP
+                FROM Trainee t
+                LEFT JOIN LicenseRequirement lr ON lr.LicenseCategory = t.LicenseCategory
+                LEFT JOIN ArchivedTraineeTotals a ON a.TraineeID = t.TraineeID
+                LEFT JOIN (
+                    SELECT SessionID, TraineeID, StartDateTime, EndDateTime FROM Session
+                    WHERE TraineeID = ? AND SessionType = 'Practical' AND Status = 'Completed'
+                    UNION ALL
+                    SELECT SessionID, TraineeID, StartDateTime, EndDateTime FROM Session_Archive
+                    WHERE TraineeID = ? AND SessionType = 'Practical' AND Status = 'Completed'
+                ) s ON s.TraineeID = t.TraineeID
+                WHERE t.TraineeID = ?
+                GROUP BY t.TraineeID, lr.RequiredHours, a.PracticalMinutes, a.CompletedSessions, a.LastSessionDate
+                """;
+
+        jdbcTemplate.update(sql, traineeId, traineeId, traineeId);
+        tableVersions.bump(TableVersions.TRAINEE_PROGRESS, traineeId);
+    }
+
+    // Create the progress rows of freshly inserted trainees (no sessions yet), found by their user ids
+    public void openForUsers(Collection<Integer> userIds) {
+        for (List<Integer> chunk : AppUserRepository.chunks(userIds)) {
+            String sql = """
+                    INSERT INTO TraineeProgress (TraineeID, PracticalMinutes, CompletedSessions,
+                                                 RequiredMinutes, RemainingMinutes)
+                    SELECT t.TraineeID, 0, 0, COALESCE(lr.RequiredHours, 0) * 60, COALESCE(lr.RequiredHours, 0) * 60
+                    FROM Trainee t
+                    LEFT JOIN LicenseRequirement lr ON lr.LicenseCategory = t.LicenseCategory
+                    WHERE t.UserID IN (%s)
+                    """.formatted(AppUserRepository.placeholders(chunk.size()));
+
+            jdbcTemplate.update(sql, chunk.toArray());
+        }
+        tableVersions.bump(TableVersions.TRAINEE_PROGRESS);
+    }
+
+    // Apply new required hours to every trainee of a license category
+    public int updateRequirement(String licenseCategory, int requiredMinutes) {
+        String sql = """
+                UPDATE TraineeProgress SET
+                    RemainingMinutes = GREATEST(? - PracticalMinutes, 0),
+                    RequiredMinutes = ?,
+                    UpdatedAt = CURRENT_TIMESTAMP
+                WHERE TraineeID IN (SELECT TraineeID FROM Trainee WHERE LicenseCategory = ?)
+                """;
+
+        int updated = jdbcTemplate.update(sql, requiredMinutes, requiredMinutes, licenseCategory);
+        tableVersions.bump(TableVersions.TRAINEE_PROGRESS);
+
+        return updated;
+    }
+
+    // Trainees whose progress row is missing or disagrees with the requirements and the completed sessions
+    public List<Integer> findDiscrepancies() {
+        String sql = """
+                SELECT t.TraineeID
+                FROM Trainee t
+                LEFT JOIN LicenseRequirement lr ON lr.LicenseCategory = t.LicenseCategory
+                LEFT JOIN (
+                    SELECT TraineeID,
+                           SUM(TIMESTAMPDIFF(MINUTE, StartDateTime, EndDateTime)) AS Minutes,
+                           COUNT(*) AS Sessions
+                    FROM (
+                        SELECT TraineeID, StartDateTime, EndDateTime, SessionType, Status FROM Session
+                        UNION ALL
+                        SELECT TraineeID, StartDateTime, EndDateTime, SessionType, Status FROM Session_Archive
+                    ) all_sessions
+                    WHERE SessionType = 'Practical' AND Status = 'Completed' AND TraineeID IS NOT NULL
+                    GROUP BY TraineeID
+                ) s ON s.TraineeID = t.TraineeID
+                LEFT JOIN ArchivedTraineeTotals a ON a.TraineeID = t.TraineeID
+                LEFT JOIN TraineeProgress p ON p.TraineeID = t.TraineeID
+                WHERE p.TraineeID IS NULL
+                   OR p.RequiredMinutes <> COALESCE(lr.RequiredHours, 0) * 60
+                   OR p.PracticalMinutes <> COALESCE(s.Minutes, 0) + COALESCE(a.PracticalMinutes, 0)
+                   OR p.CompletedSessions <> COALESCE(s.Sessions, 0) + COALESCE(a.CompletedSessions, 0)
+                   OR p.RemainingMinutes <> GREATEST(p.RequiredMinutes - p.PracticalMinutes, 0)
+                ORDER BY t.TraineeID
+                """;
+
+        return jdbcTemplate.queryForList(sql, Integer.class);
+    }
+}
@@ -9,16 +9,23 @@ import org.springframework.stereotype.Repository;
 
 import java.sql.PreparedStatement;
 import java.sql.Statement;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 
 @Repository
 public class TraineeRepository {
 
     private final JdbcTemplate jdbcTemplate;
+    private final TableVersions tableVersions;
 
-    public TraineeRepository(JdbcTemplate jdbcTemplate) {
+    public TraineeRepository(JdbcTemplate jdbcTemplate, TableVersions tableVersions) {
         this.jdbcTemplate = jdbcTemplate;
+        this.tableVersions = tableVersions;
     }
 
     // RowMapper to convert database rows to Trainee objects
@@ -38,6 +45,12 @@ public class TraineeRepository {
         trainee.setAssignedInstructorId(rs.getInt("AssignedInstructorID"));
 
         // these fields might be null in simple queries
+        try {
+            trainee.setVersion(rs.getInt("Version"));
+        } catch (Exception e) {
+            // ignore if the column does not exist in the query
+        }
+
         try {
             trainee.setUsername(rs.getString("Username"));
             trainee.setEmail(rs.getString("Email"));
@@ -54,7 +67,7 @@ public class TraineeRepository {
         String sql = """
                 SELECT
                     t.TraineeID, t.UserID, t.FirstName, t.LastName, t.SSN, t.Address,
-                    t.Phone, t.EnrollmentDate, t.LicenseCategory, t.Status, t.AssignedInstructorID,
+                    t.Phone, t.EnrollmentDate, t.LicenseCategory, t.Status, t.AssignedInstructorID, t.Version,
                     u.Username, u.Email, CONCAT(i.FirstName, ' ', i.LastName) as InstructorName
                 FROM Trainee t
                 LEFT JOIN AppUser u ON t.UserID = u.UserID
@@ -70,7 +83,7 @@ public class TraineeRepository {
         String sql = """
                 SELECT
                     t.TraineeID, t.UserID, t.FirstName, t.LastName, t.SSN, t.Address,
-                    t.Phone, t.EnrollmentDate, t.LicenseCategory, t.Status, t.AssignedInstructorID,
+                    t.Phone, t.EnrollmentDate, t.LicenseCategory, t.Status, t.AssignedInstructorID, t.Version,
                     u.Username, u.Email, CONCAT(i.FirstName, ' ', i.LastName) as InstructorName
                 FROM Trainee t
                 LEFT JOIN AppUser u ON t.UserID = u.UserID
@@ -87,7 +100,7 @@ public class TraineeRepository {
         String sql = """
                 SELECT
                     t.TraineeID, t.UserID, t.FirstName, t.LastName, t.SSN, t.Address,
-                    t.Phone, t.EnrollmentDate, t.LicenseCategory, t.Status, t.AssignedInstructorID,
+                    t.Phone, t.EnrollmentDate, t.LicenseCategory, t.Status, t.AssignedInstructorID, t.Version,
                     u.Username, u.Email, CONCAT(i.FirstName, ' ', i.LastName) as InstructorName
                 FROM Trainee t
                 LEFT JOIN AppUser u ON t.UserID = u.UserID
@@ -104,7 +117,7 @@ public class TraineeRepository {
         String sql = """
                 SELECT
                     t.TraineeID, t.UserID, t.FirstName, t.LastName, t.SSN, t.Address,
-                    t.Phone, t.EnrollmentDate, t.LicenseCategory, t.Status, t.AssignedInstructorID,
+                    t.Phone, t.EnrollmentDate, t.LicenseCategory, t.Status, t.AssignedInstructorID, t.Version,
                     u.Username, u.Email
                 FROM Trainee t
                 LEFT JOIN AppUser u ON t.UserID = u.UserID
@@ -145,14 +158,42 @@ public class TraineeRepository {
 
         Map<String, Object> keys = keyHolder.getKeys();
         if (keys != null && keys.containsKey("TRAINEEID")) {
-            return ((Number) keys.get("TRAINEEID")).intValue();
+            Integer traineeId = ((Number) keys.get("TRAINEEID")).intValue();
+            tableVersions.bump(TableVersions.TRAINEE, traineeId);
+            return traineeId;
         }
 
         throw new IllegalArgumentException("Failed to retrieve generated trainee ID");
     }
 
-    // Update existing trainee
-    public void update(Trainee trainee) {
+    // Insert many trainees in one JDBC batch (user ids must already be set)
+    public void saveAll(List<Trainee> trainees) {
+        String sql = """
+                INSERT INTO Trainee (UserID, FirstName, LastName, SSN, Address, Phone,
+                                    EnrollmentDate, LicenseCategory, Status, AssignedInstructorID)
+                                    VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+                """;
+
+        jdbcTemplate.batchUpdate(sql, trainees, trainees.size(), (ps, trainee) -> {
+            ps.setInt(1, trainee.getUserId());
+            ps.setString(2, trainee.getFirstName());
+            ps.setString(3, trainee.getLastName());
+            ps.setString(4, trainee.getSsn());
+            ps.setString(5, trainee.getAddress());
+            ps.setString(6, trainee.getPhone());
+            ps.setDate(7, java.sql.Date.valueOf(trainee.getEnrollmentDate()));
+            ps.setString(8, trainee.getLicenseCategory());
+            ps.setString(9, trainee.getStatus());
+            ps.setInt(10, trainee.getAssignedInstructorId());
+        });
+        tableVersions.bump(TableVersions.TRAINEE);
+    }
+
+    /**
+     * Update an existing trainee if it is still at trainee.getVersion()
+     * Status is only changed through transitionStatus; returns false when nothing was changed
+     */
+    public boolean update(Trainee trainee) {
         String sql = """
                 UPDATE Trainee SET
                     FirstName = ?,
@@ -162,12 +203,12 @@ public class TraineeRepository {
                     Phone = ?,
                     EnrollmentDate = ?,
                     LicenseCategory = ?,
-                    Status = ?,
-                    AssignedInstructorID = ?
-                WHERE TraineeID = ?
+                    AssignedInstructorID = ?,
+                    Version = Version + 1
+                WHERE TraineeID = ? AND Version = ?
                 """;
 
-        jdbcTemplate.update(sql,
+        int rows = jdbcTemplate.update(sql,
                 trainee.getFirstName(),
                 trainee.getLastName(),
                 trainee.getSsn(),
@@ -175,9 +216,52 @@ public class TraineeRepository {
                 trainee.getPhone(),
                 trainee.getEnrollmentDate(),
                 trainee.getLicenseCategory(),
-                trainee.getStatus(),
                 trainee.getAssignedInstructorId(),
-                trainee.getTraineeId());
+                trainee.getTraineeId(),
+                trainee.getVersion());
+
+        if (rows == 0) {
+            return false;
+        }
+
+        tableVersions.bump(TableVersions.TRAINEE, trainee.getTraineeId());
+        return true;
+    }
+
+    /**
+     * Change the status in one conditional UPDATE: only when the trainee is still in fromStatus
+     * (and, if expectedVersion is given, still at that version)
+     * Returns false when nothing was changed
+     */
+    public boolean transitionStatus(Integer traineeId, String fromStatus, String toStatus, Integer expectedVersion) {
+        String sql = "UPDATE Trainee SET Status = ?, Version = Version + 1 WHERE TraineeID = ? AND Status = ?";
+
+        int updated = expectedVersion == null
+                ? jdbcTemplate.update(sql, toStatus, traineeId, fromStatus)
+                : jdbcTemplate.update(sql + " AND Version = ?", toStatus, traineeId, fromStatus, expectedVersion);
+
+        if (updated == 0) {
+            return false;
+        }
+
+        tableVersions.bump(TableVersions.TRAINEE, traineeId);
+        return true;
+    }
+
+    /**
+     * Move the trainee to another instructor in one conditional UPDATE, only while the trainee
+     * is still at expectedVersion
+     * Returns false when nothing was changed
+     */
+    public boolean reassignInstructor(Integer traineeId, Integer instructorId, Integer expectedVersion) {
+        String sql = "UPDATE Trainee SET AssignedInstructorID = ?, Version = Version + 1 WHERE TraineeID = ? AND Version = ?";
+
+        if (jdbcTemplate.update(sql, instructorId, traineeId, expectedVersion) == 0) {
+            return false;
+        }
+
+        tableVersions.bump(TableVersions.TRAINEE, traineeId);
+        return true;
     }
 
     // Delete trainee by id
@@ -185,6 +269,15 @@ public class TraineeRepository {
         String sql = "DELETE FROM Trainee WHERE TraineeID = ?";
 
         jdbcTemplate.update(sql, traineeId);
+        tableVersions.bump(TableVersions.TRAINEE, traineeId);
+        tableVersions.bump(TableVersions.TRAINEE_SESSION);
+    }
+
+    // Count all trainees
+    public Integer count() {
+        String sql = "SELECT COUNT(*) FROM Trainee";
+
+        return jdbcTemplate.queryForObject(sql, Integer.class);
     }
 
     // Count trainees by status
@@ -201,4 +294,40 @@ public class TraineeRepository {
         Integer count = jdbcTemplate.queryForObject(sql, Integer.class, ssn);
         return count != null && count > 0;
     }
+
+    // Find which of the given SSNs already exist (set-based check for bulk import)
+    public Set<String> findExistingSsns(Collection<String> ssns) {
+        Set<String> existing = new HashSet<>();
+
+        for (List<String> chunk : AppUserRepository.chunks(ssns)) {
+            String sql = "SELECT SSN FROM Trainee WHERE SSN IN (" + AppUserRepository.placeholders(chunk.size()) + ")";
+            existing.addAll(jdbcTemplate.queryForList(sql, String.class, chunk.toArray()));
+        }
+
+        return existing;
+    }
+
+    // Map user ids to the ids of their trainees (used after a batch insert)
+    public Map<Integer, Integer> findTraineeIdsByUserIds(Collection<Integer> userIds) {
+        Map<Integer, Integer> ids = new HashMap<>();
+
+        for (List<Integer> chunk : AppUserRepository.chunks(userIds)) {
+            String sql = "SELECT TraineeID, UserID FROM Trainee WHERE UserID IN (" + AppUserRepository.placeholders(chunk.size()) + ")";
+
+            jdbcTemplate.query(sql, rs -> {
+                ids.put(rs.getInt("UserID"), rs.getInt("TraineeID"));
+            }, chunk.toArray());
+        }
+
+        return ids;
+    }
+
+    // Stream every SSN (used to warm in-memory uniqueness filters)
+    public void forEachSsn(Consumer<String> consumer) {
+        String sql = "SELECT SSN FROM Trainee";
+
+        jdbcTemplate.query(sql, rs -> {
+            consumer.accept(rs.getString("SSN"));
+        });
+    }
 }
@@ -0,0 +1,51 @@
+package com.drivingschool.repository;
+
+import com.drivingschool.model.TuitionPrice;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * TuitionPrice Repository - Data Access Layer using raw SQL
+ */
+
+@Repository
+public class TuitionPriceRepository {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TableVersions tableVersions;
+
+    public TuitionPriceRepository(JdbcTemplate jdbcTemplate, TableVersions tableVersions) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.tableVersions = tableVersions;
+    }
+
+    private final RowMapper<TuitionPrice> tuitionPriceRowMapper = (rs, rowNum) ->
+            new TuitionPrice(rs.getString("LicenseCategory"), rs.getBigDecimal("Price"));
+
+    // Find all prices
+    public List<TuitionPrice> findAll() {
+        String sql = "SELECT LicenseCategory, Price FROM TuitionPrice ORDER BY LicenseCategory";
+
+        return jdbcTemplate.query(sql, tuitionPriceRowMapper);
+    }
+
+    // Find the price of a license category
+    public TuitionPrice findByCategory(String licenseCategory) {
+        String sql = "SELECT LicenseCategory, Price FROM TuitionPrice WHERE LicenseCategory = ?";
+
+        List<TuitionPrice> prices = jdbcTemplate.query(sql, tuitionPriceRowMapper, licenseCategory);
+        return prices.isEmpty() ? null : prices.getFirst();
+    }
+
+    // Change the price of a license category
+    public void updatePrice(String licenseCategory, BigDecimal price) {
+        String sql = "UPDATE TuitionPrice SET Price = ? WHERE LicenseCategory = ?";
+
+        jdbcTemplate.update(sql, price, licenseCategory);
+        tableVersions.bump(TableVersions.TUITION_PRICE);
+    }
+}
@@ -0,0 +1,520 @@
+package com.drivingschool.service;
+
+import com.drivingschool.model.ArchiveFile;
+import com.drivingschool.model.Payment;
+import com.drivingschool.model.Session;
+import com.drivingschool.repository.ArchiveRepository;
+import com.drivingschool.repository.ColumnarArchiveFile;
+import com.drivingschool.repository.ColumnarArchiveFile.Column;
+import com.drivingschool.repository.ColumnarArchiveFile.ColumnType;
+import com.drivingschool.repository.ColumnarArchiveFile.Range;
+import com.drivingschool.repository.ColumnarArchiveFile.RowVisitor;
+import com.drivingschool.repository.ColumnarArchiveFile.ScanStats;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Archive Service - closed years of sessions and payments in columnar files
+ *
+ * Completed sessions and payments of years before the current one are never modified.
+ * They are written to append-only columnar files (see ColumnarArchiveFile) and removed
+ * from Session / Payment, so the hot tables only hold the open year.
+ *
+ * Each part file is written to a temporary name first; the removal of its rows, the
+ * per-trainee totals and the ArchiveFile row are committed together with the rename.
+ * Files on disk without a registry row (a crash before commit) are deleted after startup.
+ *
+ * Reports read the archive through the scan methods: files are chosen by year, then
+ * blocks by their zone maps, and the columns are read from the memory mapping.
+ */
+
+@Service
+public class ArchiveService {
+
+    private static final Logger log = LoggerFactory.getLogger(ArchiveService.class);
+
+    // rows per part file (and per archiving transaction)
+    private static final int PART_ROWS = 100_000;
+    private static final String EXTENSION = ".dsca";
+    private static final String TEMPORARY = ".tmp";
+
+    // Session columns
+    public static final int SESSION_ID = 0;
+    public static final int SESSION_INSTRUCTOR = 1;
+    public static final int SESSION_TRAINEE = 2;
+    public static final int SESSION_START = 3;
+    public static final int SESSION_END = 4;
+    public static final int SESSION_TYPE = 5;
+    public static final int SESSION_STATUS = 6;
+    public static final int SESSION_FEEDBACK = 7;
+
+    private static final List<Column> SESSION_COLUMNS = List.of(
+            new Column("SessionID", ColumnType.INT),
+            new Column("InstructorID", ColumnType.INT),
+            new Column("TraineeID", ColumnType.INT),
+            new Column("StartMinute", ColumnType.LONG),
+            new Column("EndMinute", ColumnType.LONG),
+            new Column("SessionType", ColumnType.BYTE),
+            new Column("Status", ColumnType.BYTE),
+            new Column("InstructorFeedback", ColumnType.STRING));
+
+    // Trainee_Session columns
+    public static final int ATTENDANCE_SESSION = 0;
+    public static final int ATTENDANCE_TRAINEE = 1;
+
+    private static final List<Column> ATTENDANCE_COLUMNS = List.of(
+            new Column("SessionID", ColumnType.INT),
+            new Column("TraineeID", ColumnType.INT));
+
+    // Payment columns
+    public static final int PAYMENT_ID = 0;
+    public static final int PAYMENT_TRAINEE = 1;
+    public static final int PAYMENT_DAY = 2;
+    public static final int PAYMENT_CENTS = 3;
+    public static final int PAYMENT_METHOD = 4;
+    public static final int PAYMENT_DETAILS = 5;
+
+    private static final List<Column> PAYMENT_COLUMNS = List.of(
+            new Column("PaymentID", ColumnType.INT),
+            new Column("TraineeID", ColumnType.INT),
+            new Column("PaymentDay", ColumnType.INT),
+            new Column("AmountCents", ColumnType.LONG),
+            new Column("PaymentMethod", ColumnType.STRING),
+            new Column("Details", ColumnType.STRING));
+
+    private final ArchiveRepository archiveRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Path directory;
+
+    // files are immutable, so a mapping is opened once and shared by all scans
+    private final Map<String, ColumnarArchiveFile.Reader> readers = new ConcurrentHashMap<>();
+
+    public ArchiveService(ArchiveRepository archiveRepository, PlatformTransactionManager transactionManager,
+                          @Value("${archive.directory:archive}") String directory) {
+        this.archiveRepository = archiveRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.directory = Path.of(directory);
+    }
+
+    // All archive files
+    public List<ArchiveFile> getFiles() {
+        return archiveRepository.findFiles();
+    }
+
+    /**
+     * Move every closed year (before the current one) out of Session and Payment
+     * Runs monthly; returns the number of rows archived
+     */
+    @LeaderJob(value = "year-archive", cron = "0 30 3 2 * *")
+    public synchronized int archiveClosedYears() {
+        LocalDate firstOpenDay = LocalDate.now().withDayOfYear(1);
+        int archived = 0;
+
+        try {
+            Files.createDirectories(directory);
+
+            for (Integer year : archiveRepository.findClosedSessionYears(firstOpenDay)) {
+                int rows;
+                while ((rows = archiveSessionPart(year)) > 0) {
+                    archived += rows;
+                }
+            }
+
+            for (Integer year : archiveRepository.findClosedPaymentYears(firstOpenDay)) {
+                int rows;
+                while ((rows = archivePaymentPart(year)) > 0) {
+                    archived += rows;
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to write the archive: " + e.getMessage(), e);
+        }
+
+        log.info("Archived {} rows of closed years to {}", archived, directory.toAbsolutePath());
+        return archived;
+    }
+
+    // Remove files that were written but never committed (e.g. the process stopped while archiving)
+    @EventListener(ApplicationReadyEvent.class)
+    public void removeUncommittedFiles() {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+
+        Set<String> registered = new HashSet<>();
+        archiveRepository.findFiles().forEach(file -> registered.add(file.getFileName()));
+
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.toList()) {
+                String name = file.getFileName().toString();
+                if ((name.endsWith(EXTENSION) || name.endsWith(TEMPORARY)) && !registered.contains(name)) {
+                    log.warn("Removing uncommitted archive file {}", name);
+                    Files.delete(file);
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Could not clean the archive directory: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Archived sessions starting between two days (inclusive, null for no bound)
+     * Columns are the SESSION_* constants; start and end are epoch minutes
+     */
+    public ScanStats scanSessions(LocalDate from, LocalDate to, RowVisitor visitor) {
+        return scan(ArchiveRepository.SESSION, from, to,
+                List.of(new Range(SESSION_START,
+                        from == null ? Long.MIN_VALUE : epochMinute(from.atStartOfDay()),
+                        to == null ? Long.MAX_VALUE : epochMinute(to.plusDays(1).atStartOfDay()) - 1)),
+                visitor);
+    }
+
+    // Archived theoretical session attendance (ATTENDANCE_* columns), every session's trainees together
+    public ScanStats scanAttendance(RowVisitor visitor) {
+        return scan(ArchiveRepository.TRAINEE_SESSION, null, null, List.of(), visitor);
+    }
+
+    // Archived sessions with the given ids; the SessionID zone maps leave about one block to read per id
+    public ScanStats scanSessionsById(Collection<Integer> sessionIds, RowVisitor visitor) {
+        ScanStats stats = new ScanStats(0, 0, 0);
+        for (Integer sessionId : sessionIds) {
+            stats = stats.plus(scan(ArchiveRepository.SESSION, null, null,
+                    List.of(new Range(SESSION_ID, sessionId, sessionId)), visitor));
+        }
+        return stats;
+    }
+
+    /**
+     * Archived payments made between two days (inclusive, null for no bound)
+     * Columns are the PAYMENT_* constants; the day is an epoch day and the amount is in cents
+     */
+    public ScanStats scanPayments(LocalDate from, LocalDate to, RowVisitor visitor) {
+        return scan(ArchiveRepository.PAYMENT, from, to,
+                List.of(new Range(PAYMENT_DAY,
+                        from == null ? Long.MIN_VALUE : from.toEpochDay(),
+                        to == null ? Long.MAX_VALUE : to.toEpochDay())),
+                visitor);
+    }
+
+    // Archived sessions and payments per month between two days
+    public HistoryResult getHistory(LocalDate from, LocalDate to) {
+        if (from.isAfter(to)) {
+            throw new IllegalArgumentException("'From' must not be after 'To'");
+        }
+
+        // sessions, minutes, payments, cents
+        TreeMap<YearMonth, long[]> months = new TreeMap<>();
+
+        ScanStats sessionScan = scanSessions(from, to, row -> {
+            long[] month = months.computeIfAbsent(monthOfMinute(row.getLong(SESSION_START)), key -> new long[4]);
+            month[0]++;
+            month[1] += row.getLong(SESSION_END) - row.getLong(SESSION_START);
+        });
+
+        ScanStats paymentScan = scanPayments(from, to, row -> {
+            long[] month = months.computeIfAbsent(
+                    YearMonth.from(LocalDate.ofEpochDay(row.getInt(PAYMENT_DAY))), key -> new long[4]);
+            month[2]++;
+            month[3] += row.getLong(PAYMENT_CENTS);
+        });
+
+        List<HistoryMonth> history = new ArrayList<>();
+        months.forEach((month, values) -> history.add(new HistoryMonth(month.toString(),
+                values[0], values[1] / 60.0, values[2], BigDecimal.valueOf(values[3], 2))));
+
+        return new HistoryResult(history, sessionScan, paymentScan);
+    }
+
+    // Write archived sessions between two days as CSV
+    public void exportSessions(LocalDate from, LocalDate to, PrintWriter out) {
+        out.println("SessionID,SessionType,StartDateTime,EndDateTime,Status,InstructorID,TraineeID,InstructorFeedback");
+
+        scanSessions(from, to, row -> out.println(String.join(",",
+                String.valueOf(row.getInt(SESSION_ID)),
+                row.getByte(SESSION_TYPE) == SessionSnapshot.PRACTICAL ? "Practical" : "Theoretical",
+                dateTimeOfMinute(row.getLong(SESSION_START)).toString(),
+                dateTimeOfMinute(row.getLong(SESSION_END)).toString(),
+                row.getByte(SESSION_STATUS) == SessionSnapshot.COMPLETED ? "Completed" : "Scheduled",
+                String.valueOf(row.getInt(SESSION_INSTRUCTOR)),
+                row.getInt(SESSION_TRAINEE) == 0 ? "" : String.valueOf(row.getInt(SESSION_TRAINEE)),
+                csv(row.getString(SESSION_FEEDBACK)))));
+    }
+
+    // Write archived payments between two days as CSV
+    public void exportPayments(LocalDate from, LocalDate to, PrintWriter out) {
+        out.println("PaymentID,Amount,PaymentDate,PaymentMethod,Details,TraineeID");
+
+        scanPayments(from, to, row -> out.println(String.join(",",
+                String.valueOf(row.getInt(PAYMENT_ID)),
+                BigDecimal.valueOf(row.getLong(PAYMENT_CENTS), 2).toPlainString(),
+                LocalDate.ofEpochDay(row.getInt(PAYMENT_DAY)).toString(),
+                csv(row.getString(PAYMENT_METHOD)),
+                csv(row.getString(PAYMENT_DETAILS)),
+                String.valueOf(row.getInt(PAYMENT_TRAINEE)))));
+    }
+
+    private ScanStats scan(String tableName, LocalDate from, LocalDate to, List<Range> ranges, RowVisitor visitor) {
+        ScanStats stats = new ScanStats(0, 0, 0);
+
+        // whole files are skipped by year before any zone map is read
+        int fromYear = from == null ? Integer.MIN_VALUE : from.getYear();
+        int toYear = to == null ? Integer.MAX_VALUE : to.getYear();
+
+        for (ArchiveFile file : archiveRepository.findFiles(tableName, fromYear, toYear)) {
+            stats = stats.plus(reader(file.getFileName()).scan(ranges, visitor));
+        }
+
+        return stats;
+    }
+
+    private ColumnarArchiveFile.Reader reader(String fileName) {
+        return readers.computeIfAbsent(fileName, name -> {
+            try {
+                return ColumnarArchiveFile.open(directory.resolve(name));
+            } catch (IOException e) {
+                throw new IllegalStateException("Cannot open archive file " + name + ": " + e.getMessage(), e);
+            }
+        });
+    }
+
+    // Archive up to PART_ROWS completed sessions of a year (with their attendance)
+    private int archiveSessionPart(int year) throws IOException {
+        List<Session> sessions = archiveRepository.findCompletedSessions(year, PART_ROWS);
+        if (sessions.isEmpty()) {
+            return 0;
+        }
+
+        List<Integer> sessionIds = sessions.stream().map(Session::getSessionId).toList();
+        List<int[]> attendance = archiveRepository.findAttendance(sessionIds);
+        int part = archiveRepository.countFiles(ArchiveRepository.SESSION, year) + 1;
+
+        Path sessionFile = temporaryFile(ArchiveRepository.SESSION, year, part);
+        try (ColumnarArchiveFile.Writer writer = ColumnarArchiveFile.create(sessionFile, SESSION_COLUMNS)) {
+            for (Session session : sessions) {
+                writer.setInt(SESSION_ID, session.getSessionId())
+                        .setInt(SESSION_INSTRUCTOR, session.getInstructorId())
+                        .setInt(SESSION_TRAINEE, session.getTraineeId() == null ? 0 : session.getTraineeId())
+                        .setLong(SESSION_START, epochMinute(session.getStartDateTime()))
+                        .setLong(SESSION_END, epochMinute(session.getEndDateTime()))
+                        .setByte(SESSION_TYPE, session.isPractical() ? SessionSnapshot.PRACTICAL : SessionSnapshot.THEORETICAL)
+                        .setByte(SESSION_STATUS, SessionSnapshot.COMPLETED)
+                        .setString(SESSION_FEEDBACK, session.getInstructorFeedback());
+                writer.endRow();
+            }
+        }
+
+        Path attendanceFile = temporaryFile(ArchiveRepository.TRAINEE_SESSION, year, part);
+        try (ColumnarArchiveFile.Writer writer = ColumnarArchiveFile.create(attendanceFile, ATTENDANCE_COLUMNS)) {
+            for (int[] pair : attendance) {
+                writer.setInt(ATTENDANCE_SESSION, pair[0]).setInt(ATTENDANCE_TRAINEE, pair[1]);
+                writer.endRow();
+            }
+        }
+
+        // completed practical sessions count towards the trainee's progress
+        Map<Integer, TraineeTotals> totals = new HashMap<>();
+        for (Session session : sessions) {
+            if (TraineeProgressService.countsTowardsProgress(session)) {
+                totals.computeIfAbsent(session.getTraineeId(), id -> new TraineeTotals())
+                        .addSession(session.getStartDateTime(), session.getEndDateTime());
+            }
+        }
+
+        // every archived session still counts for its instructor in the activity report
+        Map<Integer, Integer> instructorSessions = new HashMap<>();
+        for (Session session : sessions) {
+            instructorSessions.merge(session.getInstructorId(), 1, Integer::sum);
+        }
+
+        commit(List.of(sessionFile, attendanceFile), () -> {
+            totals.forEach((traineeId, total) -> archiveRepository.addTraineeTotals(traineeId,
+                    BigDecimal.ZERO, total.practicalMinutes, total.completedSessions, total.lastSessionDate));
+            instructorSessions.forEach(archiveRepository::addInstructorSessions);
+
+            // a session reopened since it was read stays in the hot table; archive it on a later run
+            if (archiveRepository.deleteSessions(sessionIds) != sessionIds.size()) {
+                throw new IllegalStateException("Sessions of " + year + " changed while archiving");
+            }
+
+            register(sessionFile, ArchiveRepository.SESSION, year, sessions.size(), null);
+            register(attendanceFile, ArchiveRepository.TRAINEE_SESSION, year, attendance.size(), null);
+        });
+
+        log.info("Archived {} sessions of {} (part {})", sessions.size(), year, part);
+        return sessions.size();
+    }
+
+    // Archive up to PART_ROWS payments of a year
+    private int archivePaymentPart(int year) throws IOException {
+        List<Payment> payments = archiveRepository.findPayments(year, PART_ROWS);
+        if (payments.isEmpty()) {
+            return 0;
+        }
+
+        int part = archiveRepository.countFiles(ArchiveRepository.PAYMENT, year) + 1;
+        Map<Integer, BigDecimal> paid = new HashMap<>();
+        BigDecimal total = BigDecimal.ZERO;
+
+        Path paymentFile = temporaryFile(ArchiveRepository.PAYMENT, year, part);
+        try (ColumnarArchiveFile.Writer writer = ColumnarArchiveFile.create(paymentFile, PAYMENT_COLUMNS)) {
+            for (Payment payment : payments) {
+                writer.setInt(PAYMENT_ID, payment.getPaymentId())
+                        .setInt(PAYMENT_TRAINEE, payment.getTraineeId())
+                        .setInt(PAYMENT_DAY, (int) payment.getPaymentDate().toEpochDay())
+                        .setLong(PAYMENT_CENTS, payment.getAmount().movePointRight(2).longValueExact())
+                        .setString(PAYMENT_METHOD, payment.getPaymentMethod())
+                        .setString(PAYMENT_DETAILS, payment.getDetails());
+                writer.endRow();
+
+                paid.merge(payment.getTraineeId(), payment.getAmount(), BigDecimal::add);
+                total = total.add(payment.getAmount());
+            }
+        }
+
+        List<Integer> paymentIds = payments.stream().map(Payment::getPaymentId).toList();
+        BigDecimal archivedAmount = total;
+
+        commit(List.of(paymentFile), () -> {
+            paid.forEach((traineeId, amount) -> archiveRepository.addTraineeTotals(traineeId, amount, 0, 0, null));
+
+            if (archiveRepository.deletePayments(paymentIds) != paymentIds.size()) {
+                throw new IllegalStateException("Payments of " + year + " changed while archiving");
+            }
+
+            register(paymentFile, ArchiveRepository.PAYMENT, year, payments.size(), archivedAmount);
+        });
+
+        log.info("Archived {} payments of {} (part {})", payments.size(), year, part);
+        return payments.size();
+    }
+
+    // Run the database changes and rename the files in one transaction; nothing is kept if it fails
+    private void commit(List<Path> temporaryFiles, Runnable databaseChanges) throws IOException {
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                databaseChanges.run();
+
+                try {
+                    for (Path file : temporaryFiles) {
+                        Files.move(file, finalFile(file), StandardCopyOption.ATOMIC_MOVE);
+                    }
+                } catch (IOException e) {
+                    throw new IllegalStateException("Failed to rename archive file: " + e.getMessage(), e);
+                }
+            });
+        } catch (RuntimeException e) {
+            for (Path file : temporaryFiles) {
+                Files.deleteIfExists(file);
+                Files.deleteIfExists(finalFile(file));
+            }
+            throw e;
+        }
+    }
+
+    private void register(Path temporaryFile, String tableName, int year, int rows, BigDecimal totalAmount) {
+        try {
+            archiveRepository.registerFile(new ArchiveFile(finalFile(temporaryFile).getFileName().toString(),
+                    tableName, year, rows, totalAmount, Files.size(temporaryFile), null));
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to read archive file size: " + e.getMessage(), e);
+        }
+    }
+
+    private Path temporaryFile(String tableName, int year, int part) throws IOException {
+        Path file = directory.resolve(tableName.toLowerCase() + "-" + year + "-" + part + EXTENSION + TEMPORARY);
+        Files.deleteIfExists(file);
+        return file;
+    }
+
+    private static Path finalFile(Path temporaryFile) {
+        String name = temporaryFile.getFileName().toString();
+        return temporaryFile.resolveSibling(name.substring(0, name.length() - TEMPORARY.length()));
+    }
+
+    private static long epochMinute(LocalDateTime dateTime) {
+        return dateTime.toEpochSecond(ZoneOffset.UTC) / 60;
+    }
+
+    static LocalDateTime dateTimeOfMinute(long epochMinute) {
+        return LocalDateTime.ofEpochSecond(epochMinute * 60, 0, ZoneOffset.UTC);
+    }
+
+    private static YearMonth monthOfMinute(long epochMinute) {
+        return YearMonth.from(dateTimeOfMinute(epochMinute));
+    }
+
+    private static String csv(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.contains(",") || value.contains("\"") || value.contains("\n")) {
+            return "\"" + value.replace("\"", "\"\"") + "\"";
+        }
+        return value;
+    }
+
+    // What a trainee's archived sessions add to their progress
+    private static class TraineeTotals {
+        private int practicalMinutes;
+        private int completedSessions;
+        private LocalDate lastSessionDate;
+
+        void addSession(LocalDateTime start, LocalDateTime end) {
+            practicalMinutes += (int) Duration.between(start, end).toMinutes();
+            completedSessions++;
+            if (lastSessionDate == null || end.toLocalDate().isAfter(lastSessionDate)) {
+                lastSessionDate = end.toLocalDate();
+            }
+        }
+    }
+
+    // Archived activity of one month
+    @Getter
+    @AllArgsConstructor
+    public static class HistoryMonth {
+        private final String month;
+        private final long sessions;
+        private final double hours;
+        private final long payments;
+        private final BigDecimal amount;
+    }
+
+    // Months plus what the scans read and skipped
+    @Getter
+    @AllArgsConstructor
+    public static class HistoryResult {
+        private final List<HistoryMonth> months;
+        private final ScanStats sessionScan;
+        private final ScanStats paymentScan;
+    }
+}
@@ -0,0 +1,385 @@
+package com.drivingschool.service;
+
+import com.drivingschool.model.AuditEvent;
+import com.drivingschool.repository.AuditJournalFile;
+import com.drivingschool.repository.TableVersions;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+/**
+ * Audit Service - the audit journal of who created, changed or deleted trainees, sessions,
+ * payments and exams
+ *
+ * Write-behind: record() only puts the event into a lock-free ring buffer (after the commit, so
+ * a rolled back change leaves no entry), which costs the request a few hundred nanoseconds
+ * instead of a database insert. One writer thread drains the ring in batches, appends each batch
+ * to the active journal segment and forces it to disk once per batch (group fsync): the more
+ * events arrive, the more share one fsync. Segments are audit.segment-size-mb each; a full one
+ * is sealed with an index and the next one started (see AuditJournalFile).
+ * When the ring is full, callers wait for room rather than drop audit events. A batch that
+ * could not be written (I/O error) is kept and retried, with a growing pause, before anything
+ * more is taken from the ring; only appended events take a sequence number.
+ *
+ * Each node writes its own journal under audit.directory/<node id>; the history of an entity is
+ * read from every node's journal found there. The other nodes' segments are mapped once and
+ * kept, the one a node is still writing is brought up to date on each lookup, and a segment
+ * is released when its file or its node's journal is gone. Events still in the ring are not
+ * visible yet.
+ *
+ * Metrics:
+ *  - audit.events{result=journaled|failed}: events written (or dropped: larger than a segment)
+ *  - audit.write.failures: batch writes that failed and were retried
+ *  - audit.ring.waits: times a caller had to wait for room in the ring
+ *  - audit.ring.size: events waiting to be written
+ *  - audit.flush: duration of writing and forcing one batch
+ *  - audit.batch: events per fsync
+ *  - audit.lookup: duration of reading one entity's history
+ */
+
+@Service
+public class AuditService {
+
+    private static final Logger log = LoggerFactory.getLogger(AuditService.class);
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long FULL_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+    private static final long MIN_RETRY_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long MAX_RETRY_PARK_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+    private final Path root;
+    private final Path directory;
+    private final int segmentBytes;
+    private final int batchSize;
+    private final EventRing<AuditEvent> ring;
+
+    private final List<AuditJournalFile.Segment> segments = new ArrayList<>();
+    private AuditJournalFile.Segment active;
+    private long nextSequence;
+
+    // segments of the other nodes' journals by file, mapped on first lookup (guarded by itself)
+    private final Map<Path, AuditJournalFile.Segment> otherSegments = new HashMap<>();
+
+    private final Thread writer;
+    private volatile boolean running = true;
+    private volatile boolean writerIdle;
+
+    private final Counter journaled;
+    private final Counter failed;
+    private final Counter writeFailures;
+    private final Counter ringWaits;
+    private final Timer flushTimer;
+    private final DistributionSummary batchSizes;
+    private final Timer lookupTimer;
+
+    public AuditService(TableVersions tableVersions, MeterRegistry meterRegistry,
+                        @Value("${audit.directory}") String directory,
+                        @Value("${audit.segment-size-mb:16}") int segmentSizeMb,
+                        @Value("${audit.ring-capacity:8192}") int ringCapacity,
+                        @Value("${audit.batch-size:512}") int batchSize) {
+        this.root = Path.of(directory);
+        this.directory = root.resolve(tableVersions.getNodeId().replaceAll("[^A-Za-z0-9._-]", "_"));
+        this.segmentBytes = segmentSizeMb * 1024 * 1024;
+        this.batchSize = batchSize;
+        this.ring = new EventRing<>(ringCapacity);
+        this.writer = Thread.ofPlatform().name("audit-writer").daemon(true).unstarted(this::writeLoop);
+
+        this.journaled = Counter.builder("audit.events").tag("result", "journaled")
+                .description("Audit events written to the journal").register(meterRegistry);
+        this.failed = Counter.builder("audit.events").tag("result", "failed")
+                .description("Audit events dropped because they do not fit in a segment").register(meterRegistry);
+        this.writeFailures = Counter.builder("audit.write.failures")
+                .description("Audit batch writes that failed and were retried").register(meterRegistry);
+        this.ringWaits = Counter.builder("audit.ring.waits")
+                .description("Times a caller waited for room in the audit ring").register(meterRegistry);
+        Gauge.builder("audit.ring.size", ring, EventRing::size)
+                .description("Audit events waiting to be written").register(meterRegistry);
+        this.flushTimer = Timer.builder("audit.flush")
+                .description("Duration of writing and forcing one batch of audit events").register(meterRegistry);
+        this.batchSizes = DistributionSummary.builder("audit.batch")
+                .description("Audit events per fsync").register(meterRegistry);
+        this.lookupTimer = Timer.builder("audit.lookup")
+                .description("Duration of reading the audit history of one entity").register(meterRegistry);
+    }
+
+    // Open the journal of this node (sealing segments left unsealed by a crash) and start the writer
+    @PostConstruct
+    public synchronized void open() throws IOException {
+        Files.createDirectories(directory);
+
+        List<Path> paths = segmentPaths(directory);
+        for (int i = 0; i < paths.size(); i++) {
+            boolean last = i == paths.size() - 1;
+            AuditJournalFile.Segment segment = AuditJournalFile.open(paths.get(i), last);
+            if (!last && !segment.isSealed()) {
+                segment.seal();
+            }
+            segments.add(segment);
+        }
+
+        if (segments.isEmpty() || segments.getLast().isSealed()) {
+            long first = segments.isEmpty() ? 1 : segments.getLast().getLastSequence() + 1;
+            segments.add(AuditJournalFile.create(directory, first, segmentBytes));
+        }
+        active = segments.getLast();
+        nextSequence = active.getLastSequence() + 1;
+
+        writer.start();
+        log.info("Audit journal {}: {} segments, next sequence {}", directory, segments.size(), nextSequence);
+    }
+
+    // Write what is still in the ring, then stop the writer
+    @PreDestroy
+    public void close() throws InterruptedException {
+        running = false;
+        LockSupport.unpark(writer);
+        writer.join(TimeUnit.SECONDS.toMillis(10));
+    }
+
+    /**
+     * Record a change made by the current user, once the current transaction commits
+     * (at once outside a transaction); jobs without a user are recorded as "system"
+     */
+    public void record(AuditEvent.Entity entity, Integer entityId, AuditEvent.Action action, String detail) {
+        AuditEvent event = new AuditEvent(0, LocalDateTime.now(), currentUsername(), entity, entityId, action, detail, null);
+
+        AfterCommit.run(() -> enqueue(event));
+    }
+
+    // History of one entity on every node, newest first
+    public List<AuditEvent> getHistory(AuditEvent.Entity entity, int entityId) {
+        return lookupTimer.record(() -> {
+            List<AuditEvent> events = new ArrayList<>();
+
+            synchronized (this) {
+                for (AuditJournalFile.Segment segment : segments) {
+                    segment.find(entity, entityId).forEach(event -> events.add(withNode(event, directory)));
+                }
+            }
+
+            // journals of the other nodes, written meanwhile by them
+            List<Path> others = otherNodeDirectories();
+            synchronized (otherSegments) {
+                otherSegments.keySet().removeIf(path -> !others.contains(path.getParent()));
+
+                for (Path other : others) {
+                    try {
+                        for (AuditJournalFile.Segment segment : otherSegments(other)) {
+                            segment.find(entity, entityId).forEach(event -> events.add(withNode(event, other)));
+                        }
+                    } catch (IOException e) {
+                        log.warn("Could not read the audit journal in {}: {}", other, e.getMessage());
+                    }
+                }
+            }
+
+            events.sort(Comparator.comparing(AuditEvent::getOccurredAt)
+                    .thenComparingLong(AuditEvent::getSequence).reversed());
+            return events;
+        });
+    }
+
+    // Events waiting in the ring
+    public int getPendingCount() {
+        return ring.size();
+    }
+
+    /**
+     * Describe what an update changed, from (label, old value, new value) triples
+     * e.g. "Status: Active -> Completed, Instructor: 3 -> 5"; unchanged values are left out
+     */
+    public static String changes(Object... labelOldNew) {
+        StringJoiner changed = new StringJoiner(", ");
+        for (int i = 0; i + 2 < labelOldNew.length; i += 3) {
+            if (!Objects.equals(labelOldNew[i + 1], labelOldNew[i + 2])) {
+                changed.add(labelOldNew[i] + ": " + labelOldNew[i + 1] + " -> " + labelOldNew[i + 2]);
+            }
+        }
+        return changed.length() == 0 ? "no changes" : changed.toString();
+    }
+
+    private void enqueue(AuditEvent event) {
+        if (!ring.offer(event)) {
+            ringWaits.increment();
+            do {
+                if (!running) {
+                    log.warn("Audit journal closed, event dropped: {}", event);
+                    return;
+                }
+                LockSupport.unpark(writer);
+                LockSupport.parkNanos(FULL_PARK_NANOS);
+            } while (!ring.offer(event));
+        }
+
+        if (writerIdle) {
+            LockSupport.unpark(writer);
+        }
+    }
+
+    // The writer thread: drain, append, force once per batch; sleeps while the ring is empty
+    private void writeLoop() {
+        ArrayDeque<AuditEvent> batch = new ArrayDeque<>(batchSize);
+        long retryParkNanos = MIN_RETRY_PARK_NANOS;
+        boolean retry = false;
+
+        while (running || !ring.isEmpty() || retry) {
+            // a failed write (its events or its force) is finished before more is taken
+            if (!retry) {
+                ring.drainTo(batch, batchSize);
+            }
+
+            if (batch.isEmpty() && !retry) {
+                writerIdle = true;
+                if (running && ring.isEmpty()) {
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+                }
+                writerIdle = false;
+                continue;
+            }
+
+            int size = batch.size();
+            long started = System.nanoTime();
+            try {
+                write(batch);
+                flushTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+                batchSizes.record(size);
+                retryParkNanos = MIN_RETRY_PARK_NANOS;
+                retry = false;
+            } catch (IOException | RuntimeException e) {
+                // appended events left the batch; the rest (and the force) are retried
+                writeFailures.increment();
+                retry = true;
+                log.error("Could not write audit events ({} not appended yet), retrying in {} ms", batch.size(),
+                        TimeUnit.NANOSECONDS.toMillis(retryParkNanos), e);
+                LockSupport.parkNanos(retryParkNanos);
+                retryParkNanos = Math.min(retryParkNanos * 2, MAX_RETRY_PARK_NANOS);
+            }
+        }
+
+        synchronized (this) {
+            active.force();
+        }
+    }
+
+    /**
+     * Append the batch and force it; every appended event is removed from the batch
+     * On an exception the events not appended yet are still in the batch, and the ones
+     * appended are forced by the next successful call.
+     */
+    private synchronized void write(ArrayDeque<AuditEvent> batch) throws IOException {
+        while (!batch.isEmpty()) {
+            AuditEvent event = batch.peekFirst();
+            event.setSequence(nextSequence);
+
+            if (!active.append(event)) {
+                rotate();
+                if (!active.append(event)) {
+                    batch.pollFirst();
+                    failed.increment();
+                    log.error("Audit event larger than a journal segment, dropped: {}", event);
+                    continue;
+                }
+            }
+
+            batch.pollFirst();
+            nextSequence++;
+            journaled.increment();
+        }
+
+        active.force();
+    }
+
+    // Seal the full active segment and start the next one (a retry resumes where a failure left it)
+    private void rotate() throws IOException {
+        if (!active.isSealed()) {
+            active.seal();
+        }
+
+        // left by a create that failed half way
+        Path next = directory.resolve(AuditJournalFile.segmentName(nextSequence));
+        if (!next.equals(active.getPath())) {
+            Files.deleteIfExists(next);
+        }
+
+        active = AuditJournalFile.create(directory, nextSequence, segmentBytes);
+        segments.add(active);
+    }
+
+    /**
+     * The segments of another node's journal, oldest first (caller holds otherSegments)
+     * New files are mapped, an unsealed segment is refreshed, and removed files are released
+     */
+    private List<AuditJournalFile.Segment> otherSegments(Path journal) throws IOException {
+        List<Path> paths = segmentPaths(journal);
+        Set<Path> existing = new HashSet<>(paths);
+        otherSegments.keySet().removeIf(path -> path.getParent().equals(journal) && !existing.contains(path));
+
+        List<AuditJournalFile.Segment> current = new ArrayList<>(paths.size());
+        for (Path path : paths) {
+            AuditJournalFile.Segment segment = otherSegments.get(path);
+            if (segment == null) {
+                segment = AuditJournalFile.open(path, false);
+                otherSegments.put(path, segment);
+            } else {
+                segment.refresh();
+            }
+            current.add(segment);
+        }
+        return current;
+    }
+
+    private List<Path> otherNodeDirectories() {
+        try (Stream<Path> children = Files.list(root)) {
+            return children.filter(Files::isDirectory).filter(path -> !path.equals(directory)).sorted().toList();
+        } catch (IOException e) {
+            log.warn("Could not list the audit journals in {}: {}", root, e.getMessage());
+            return List.of();
+        }
+    }
+
+    // Segment files of one journal, oldest first (names are zero-padded first sequences)
+    private static List<Path> segmentPaths(Path journal) throws IOException {
+        try (Stream<Path> files = Files.list(journal)) {
+            return files.filter(path -> path.getFileName().toString().endsWith(AuditJournalFile.SEGMENT_SUFFIX))
+                    .sorted().toList();
+        }
+    }
+
+    private static AuditEvent withNode(AuditEvent event, Path journal) {
+        event.setNodeId(journal.getFileName().toString());
+        return event;
+    }
+
+    private static String currentUsername() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        return authentication == null ? "system" : authentication.getName();
+    }
+}
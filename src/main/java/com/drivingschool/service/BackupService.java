@@ -0,0 +1,563 @@
+package com.drivingschool.service;
+
+import com.drivingschool.model.ArchiveFile;
+import com.drivingschool.repository.ArchiveRepository;
+import com.drivingschool.repository.BackupFile;
+import com.drivingschool.repository.BackupRepository;
+import com.drivingschool.repository.ColumnarArchiveFile;
+import com.drivingschool.repository.TableVersions;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Backup Service - online backups of the database to backup files, verification and restore
+ *
+ * A backup copies the home branch's primary database with H2's online BACKUP TO while the
+ * application keeps running (see BackupRepository) and streams that copy into a new backup file
+ * (see BackupFile): the SQL script in deflated, checksummed chunks plus the row count of every
+ * table. The copy and the file are written to temporary names in backup.directory (which must be
+ * on the database server's file system); the copy is deleted and the file renamed once complete.
+ * The directory is shared by the nodes, so temporary names carry the node id: a backup only
+ * clears the unfinished files of its own node, and other nodes' ones once they are older than
+ * backup.abandoned-after-hours (a node that stopped for good).
+ *
+ * Archived rows of closed years live in columnar files outside the database (see ArchiveService),
+ * so a backup also copies every archive file the snapshot's ArchiveFile table registers into a
+ * directory next to the backup file (driving_school-<stamp>.archive). The files are copied with
+ * FileChannel.transferTo, which leaves the copying to the operating system, and each copy must
+ * have the size and row count of its registry row. Registered files are never changed or removed,
+ * so the ones the snapshot refers to are all there. The directory is moved into place before the
+ * backup file, so every backup file has its archive copy.
+ * Only the newest backup.retain backups are kept. Backups run every night on one node
+ * (backup.cron) or when an admin asks for one; in-memory databases cannot be backed up.
+ *
+ * Verify reads a backup back, checks every chunk and checks its archive copy against the registry.
+ * Restore replays it into a new H2 database under backup.directory/restored, checks every chunk on
+ * the way and compares the restored row counts with the snapshot's; the archive files the restored
+ * ArchiveFile table registers are copied next to it (<name>.archive) and checked against their rows.
+ * The live database is never overwritten: to switch to a restored one, stop the nodes and point
+ * spring.datasource.url at it and archive.directory at its archive files.
+ *
+ * Metrics:
+ *  - backup.duration{operation=backup|verify|restore, result=ok|failed}
+ *  - backup.size: bytes of each new backup file
+ */
+
+@Service
+public class BackupService {
+
+    private static final Logger log = LoggerFactory.getLogger(BackupService.class);
+
+    private static final String TEMPORARY = ".tmp";
+    private static final String ARCHIVE = ".archive";
+    private static final String PREFIX = "driving_school-";
+    private static final DateTimeFormatter STAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+    private static final int RECENT_OPERATIONS = 10;
+
+    private final BackupRepository backupRepository;
+    private final ArchiveRepository archiveRepository;
+    private final MeterRegistry meterRegistry;
+    private final Path directory;
+    private final Path archiveDirectory;
+    private final int retain;
+    private final int chunkBytes;
+    private final String temporarySuffix;
+    private final Duration abandonedAfter;
+    private final String username;
+    private final String password;
+    private final String urlOptions;
+    private final boolean inMemory;
+
+    private final DistributionSummary backupSize;
+    private final Deque<Operation> recent = new ArrayDeque<>();
+
+    public BackupService(BackupRepository backupRepository, ArchiveRepository archiveRepository,
+                         MeterRegistry meterRegistry, TableVersions tableVersions,
+                         @Value("${backup.directory}") String directory,
+                         @Value("${archive.directory:archive}") String archiveDirectory,
+                         @Value("${backup.retain:7}") int retain,
+                         @Value("${backup.chunk-size-kb:1024}") int chunkSizeKb,
+                         @Value("${backup.abandoned-after-hours:24}") long abandonedAfterHours,
+                         @Value("${spring.datasource.url}") String url,
+                         @Value("${spring.datasource.username:sa}") String username,
+                         @Value("${spring.datasource.password:}") String password) {
+        this.backupRepository = backupRepository;
+        this.archiveRepository = archiveRepository;
+        this.meterRegistry = meterRegistry;
+        this.directory = Path.of(directory);
+        this.archiveDirectory = Path.of(archiveDirectory);
+        this.retain = Math.max(1, retain);
+        this.chunkBytes = chunkSizeKb * 1024;
+        this.temporarySuffix = "." + tableVersions.getNodeId().replaceAll("[^A-Za-z0-9_-]", "_") + TEMPORARY;
+        this.abandonedAfter = Duration.ofHours(abandonedAfterHours);
+        this.username = username;
+        this.password = password;
+        // restored databases are opened with the live database's settings (e.g. ;MODE=MySQL)
+        this.urlOptions = url.indexOf(';') < 0 ? "" : url.substring(url.indexOf(';'));
+        // BACKUP TO copies the database file, which an in-memory database does not have
+        this.inMemory = url.startsWith("jdbc:h2:mem:");
+
+        this.backupSize = DistributionSummary.builder("backup.size").baseUnit("bytes")
+                .description("Size of each new backup file").register(meterRegistry);
+    }
+
+    /**
+     * Back up the database and its archive files, then delete the oldest backups beyond backup.retain
+     * Runs every night on one node; returns what was written
+     */
+    @LeaderJob(value = "database-backup", cron = "${backup.cron:0 0 2 * * *}")
+    public synchronized Operation backup() {
+        if (inMemory) {
+            throw new IllegalStateException("Backup failed: an in-memory database cannot be backed up online");
+        }
+
+        long started = System.nanoTime();
+        String name = PREFIX + LocalDateTime.now().format(STAMP) + BackupFile.EXTENSION;
+        Path temporary = directory.resolve(name + temporarySuffix);
+        Path copy = directory.resolve(name + ".zip" + temporarySuffix).toAbsolutePath();
+        Path archive = archiveOf(directory.resolve(name));
+        Path temporaryArchive = archive.resolveSibling(archive.getFileName() + temporarySuffix);
+        if (Files.exists(directory.resolve(name))) {
+            throw new IllegalStateException("Backup " + name + " was just taken");
+        }
+
+        try {
+            Files.createDirectories(directory);
+            removeTemporaryFiles();
+
+            List<ArchiveFile> archived;
+            try (BackupFile.Writer writer = BackupFile.create(temporary, chunkBytes)) {
+                archived = backupRepository.writeSnapshot(writer, copy, username, password);
+            } finally {
+                deleteQuietly(copy);
+            }
+            long archiveBytes = copyArchive(archiveDirectory, temporaryArchive, archived);
+            Files.move(temporaryArchive, archive, StandardCopyOption.ATOMIC_MOVE);
+            Path path = Files.move(temporary, directory.resolve(name), StandardCopyOption.ATOMIC_MOVE);
+
+            BackupFile.Reader reader = BackupFile.open(path);
+            BackupFile.Manifest manifest = reader.getManifest();
+            backupSize.record(reader.getSize());
+            int deleted = applyRetention();
+
+            log.info("Backed up {} tables ({} KB of SQL) and {} archive files ({} KB) to {} in {} ms, {} old backups deleted",
+                    manifest.tables().size(), manifest.rawBytes() / 1024, archived.size(), archiveBytes / 1024, path,
+                    manifest.durationMillis(), deleted);
+            return finish("backup", name, started, manifest.rawBytes(), true,
+                    manifest.statements() + " statements, " + kilobytes(reader.getSize()) + " KB ("
+                            + ratio(manifest.rawBytes(), reader.getSize()) + " of the SQL), "
+                            + archived.size() + " archive files (" + kilobytes(archiveBytes) + " KB)"
+                            + (deleted > 0 ? ", " + deleted + " old backups deleted" : ""));
+        } catch (IOException | SQLException | DataAccessException e) {
+            deleteQuietly(temporary);
+            deleteQuietly(temporaryArchive);
+            if (!Files.exists(directory.resolve(name))) {
+                deleteQuietly(archive);
+            }
+            finish("backup", name, started, 0, false, e.getMessage());
+            throw new IllegalStateException("Backup failed: " + e.getMessage(), e);
+        }
+    }
+
+    // Read a backup back, check every chunk and check its archive copy against the registry
+    public synchronized Operation verify(String name) {
+        long started = System.nanoTime();
+        Path path = resolve(name);
+
+        try {
+            BackupFile.Reader reader = BackupFile.open(path);
+            reader.replay(statement -> { });
+
+            BackupFile.Manifest manifest = reader.getManifest();
+            int archiveFiles = verifyArchive(path, manifest);
+            return finish("verify", name, started, manifest.rawBytes(), true,
+                    "All chunks intact, " + manifest.statements() + " statements, "
+                            + archiveFiles + " archive files checked");
+        } catch (IOException | SQLException e) {
+            finish("verify", name, started, 0, false, e.getMessage());
+            throw new IllegalStateException("Backup " + name + " is damaged: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Restore a backup into a new database under backup.directory/restored, its archive files next to it
+     * Every chunk is checked while it is replayed and the restored row counts must match the snapshot's;
+     * every archive file the restored database registers must be in the backup and match its row
+     */
+    public synchronized Operation restore(String name) {
+        long started = System.nanoTime();
+        Path path = resolve(name);
+        Path target = directory.resolve("restored")
+                .resolve(name.substring(0, name.length() - BackupFile.EXTENSION.length()) + "-" + LocalDateTime.now().format(STAMP))
+                .toAbsolutePath();
+        String url = "jdbc:h2:file:" + target + urlOptions;
+        Path archiveTarget = target.resolveSibling(target.getFileName() + ARCHIVE);
+        if (Files.exists(target.resolveSibling(target.getFileName() + ".mv.db")) || Files.exists(archiveTarget)) {
+            throw new IllegalArgumentException("A restored database named " + target.getFileName() + " already exists");
+        }
+
+        try {
+            Files.createDirectories(target.getParent());
+            BackupFile.Reader reader = BackupFile.open(path);
+            Map<String, Long> restored = backupRepository.restore(reader, url, username, password);
+
+            for (BackupFile.TableRows table : reader.getManifest().tables()) {
+                Long rows = restored.get(table.table());
+                if (rows == null || rows != table.rows()) {
+                    throw new IOException("Table " + table.table() + " has " + rows + " rows after the restore, "
+                            + table.rows() + " in the backup");
+                }
+            }
+
+            List<ArchiveFile> archived = backupRepository.findArchiveFiles(url, username, password);
+            copyArchive(archiveOf(path), archiveTarget, archived);
+
+            log.info("Restored backup {} to {}, its {} archive files to {}", name, url, archived.size(), archiveTarget);
+            return finish("restore", name, started, reader.getManifest().rawBytes(), true,
+                    restored.size() + " tables restored and their row counts checked, "
+                            + archived.size() + " archive files copied to " + archiveTarget + ": " + url);
+        } catch (IOException | SQLException e) {
+            deleteDatabase(target);
+            finish("restore", name, started, 0, false, e.getMessage());
+            throw new IllegalStateException("Restore of " + name + " failed: " + e.getMessage(), e);
+        }
+    }
+
+    // Backup files, newest first; files that cannot be read are listed with the problem
+    public List<Backup> getBackups() {
+        List<Backup> backups = new ArrayList<>();
+
+        for (Path path : backupPaths()) {
+            String name = path.getFileName().toString();
+            try {
+                BackupFile.Reader reader = BackupFile.open(path);
+                backups.add(new Backup(name, reader.getSize(), reader.getManifest(), null));
+            } catch (IOException e) {
+                backups.add(new Backup(name, sizeOf(path), null, e.getMessage()));
+            }
+        }
+
+        return backups;
+    }
+
+    // Latest backups, verifications and restores of this node, newest first
+    public List<Operation> getRecentOperations() {
+        synchronized (recent) {
+            return List.copyOf(recent);
+        }
+    }
+
+    /**
+     * Send a backup file to a channel (a download)
+     * transferTo lets the operating system copy the file without passing it through the heap
+     */
+    public void transferTo(String name, WritableByteChannel target) throws IOException {
+        try (FileChannel channel = FileChannel.open(resolve(name), StandardOpenOption.READ)) {
+            transfer(channel, target);
+        }
+    }
+
+    public long getSize(String name) {
+        return sizeOf(resolve(name));
+    }
+
+    public int getRetain() {
+        return retain;
+    }
+
+    public Path getDirectory() {
+        return directory.toAbsolutePath();
+    }
+
+    // A backup file of the directory, by name only (no paths)
+    private Path resolve(String name) {
+        if (name == null || !name.matches("[A-Za-z0-9._-]+") || !name.endsWith(BackupFile.EXTENSION)) {
+            throw new IllegalArgumentException("Not a backup file: " + name);
+        }
+
+        Path path = directory.resolve(name);
+        if (!Files.isRegularFile(path)) {
+            throw new IllegalArgumentException("Backup not found: " + name);
+        }
+        return path;
+    }
+
+    /**
+     * Copy registered archive files from one directory to a new one and check every copy against its
+     * registry row; returns the bytes copied
+     */
+    private static long copyArchive(Path from, Path to, List<ArchiveFile> files) throws IOException {
+        Files.createDirectories(to);
+        long bytes = 0;
+
+        for (ArchiveFile file : files) {
+            // names come from the database, which may be a restored one
+            if (!file.getFileName().matches("[A-Za-z0-9._-]+")) {
+                throw new IOException("Not an archive file name: " + file.getFileName());
+            }
+            Path source = from.resolve(file.getFileName());
+            if (!Files.isRegularFile(source)) {
+                throw new IOException("Archive file " + file.getFileName() + " is registered but missing from " + from);
+            }
+
+            Path target = to.resolve(file.getFileName());
+            try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+                 FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                transfer(in, out);
+                out.force(true);
+            }
+            bytes += checkArchiveFile(target, file);
+        }
+        return bytes;
+    }
+
+    /**
+     * Check a backup's archive copy against the registry: every file must be registered with its
+     * size and row count, and there must be as many as the snapshot's ArchiveFile table had rows
+     * Registered files are never removed, so the live registry still has every file of an older backup
+     */
+    private int verifyArchive(Path path, BackupFile.Manifest manifest) throws IOException {
+        long expected = manifest.tables().stream()
+                .filter(table -> table.table().equalsIgnoreCase(TableVersions.ARCHIVE_FILE))
+                .mapToLong(BackupFile.TableRows::rows)
+                .sum();
+
+        Path archive = archiveOf(path);
+        List<Path> copies;
+        if (Files.isDirectory(archive)) {
+            try (Stream<Path> files = Files.list(archive)) {
+                copies = files.toList();
+            }
+        } else {
+            copies = List.of();
+        }
+        if (copies.size() != expected) {
+            throw new IOException("The archive copy has " + copies.size() + " files, the snapshot registers " + expected);
+        }
+
+        Map<String, ArchiveFile> registry = new HashMap<>();
+        archiveRepository.findFiles().forEach(file -> registry.put(file.getFileName(), file));
+        for (Path copy : copies) {
+            ArchiveFile file = registry.get(copy.getFileName().toString());
+            if (file == null) {
+                throw new IOException("Archive file " + copy.getFileName() + " is not in the registry");
+            }
+            checkArchiveFile(copy, file);
+        }
+        return copies.size();
+    }
+
+    // A copy must have the size and row count of its registry row; returns its size
+    private static long checkArchiveFile(Path path, ArchiveFile file) throws IOException {
+        long size = Files.size(path);
+        if (size != file.getSizeBytes()) {
+            throw new IOException("Archive file " + file.getFileName() + " has " + size + " bytes, "
+                    + file.getSizeBytes() + " in the registry");
+        }
+
+        long rows = ColumnarArchiveFile.open(path).getRowCount();
+        if (rows != file.getRowCount()) {
+            throw new IOException("Archive file " + file.getFileName() + " has " + rows + " rows, "
+                    + file.getRowCount() + " in the registry");
+        }
+        return size;
+    }
+
+    // Delete the oldest backups (and their archive copies) beyond the ones to keep; returns how many were deleted
+    private int applyRetention() throws IOException {
+        List<Path> paths = backupPaths();
+        int deleted = 0;
+
+        for (Path old : paths.subList(Math.min(retain, paths.size()), paths.size())) {
+            Files.delete(old);
+            deleteTree(archiveOf(old));
+            deleted++;
+        }
+        return deleted;
+    }
+
+    // Backup files, newest first (names carry the time they were taken)
+    private List<Path> backupPaths() {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.getFileName().toString().endsWith(BackupFile.EXTENSION))
+                    .sorted(Comparator.reverseOrder())
+                    .toList();
+        } catch (IOException e) {
+            log.warn("Could not list the backup directory {}: {}", directory, e.getMessage());
+            return List.of();
+        }
+    }
+
+    /**
+     * Remove files left by a backup that did not finish (e.g. the process stopped while writing)
+     * This node runs one backup at a time, so its own are always left over; another node's may
+     * belong to a backup it is running now, so they are only removed once abandoned. So is an
+     * archive copy whose backup file never appeared (stopped between the two renames).
+     */
+    private void removeTemporaryFiles() throws IOException {
+        Instant abandoned = Instant.now().minus(abandonedAfter);
+
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.toList()) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(TEMPORARY) && (name.endsWith(temporarySuffix)
+                        || Files.getLastModifiedTime(file).toInstant().isBefore(abandoned))) {
+                    log.warn("Removing unfinished backup file {}", name);
+                    deleteTree(file);
+                } else if (name.endsWith(ARCHIVE) && Files.isDirectory(file)
+                        && !Files.exists(file.resolveSibling(name.substring(0, name.length() - ARCHIVE.length()) + BackupFile.EXTENSION))
+                        && Files.getLastModifiedTime(file).toInstant().isBefore(abandoned)) {
+                    log.warn("Removing archive copy without a backup file {}", name);
+                    deleteTree(file);
+                }
+            }
+        }
+    }
+
+    private void deleteDatabase(Path target) {
+        for (String suffix : List.of(".mv.db", ".trace.db", ARCHIVE)) {
+            deleteQuietly(target.resolveSibling(target.getFileName() + suffix));
+        }
+    }
+
+    // The archive copy of a backup file: its name without the extension, plus .archive
+    private static Path archiveOf(Path backupFile) {
+        String name = backupFile.getFileName().toString();
+        return backupFile.resolveSibling(name.substring(0, name.length() - BackupFile.EXTENSION.length()) + ARCHIVE);
+    }
+
+    // Copy a whole file to a channel; transferTo lets the operating system do it without the heap
+    private static void transfer(FileChannel source, WritableByteChannel target) throws IOException {
+        long position = 0;
+        long size = source.size();
+        while (position < size) {
+            position += source.transferTo(position, size - position, target);
+        }
+    }
+
+    private Operation finish(String kind, String name, long startedNanos, long bytes, boolean succeeded, String message) {
+        long nanos = System.nanoTime() - startedNanos;
+        Timer.builder("backup.duration").tag("operation", kind).tag("result", succeeded ? "ok" : "failed")
+                .description("Duration of backups, verifications and restores")
+                .register(meterRegistry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+
+        Operation operation = new Operation(kind, name, LocalDateTime.now(), TimeUnit.NANOSECONDS.toMillis(nanos),
+                bytes, succeeded, message);
+        // not the service's lock, which a running backup holds
+        synchronized (recent) {
+            recent.addFirst(operation);
+            while (recent.size() > RECENT_OPERATIONS) {
+                recent.removeLast();
+            }
+        }
+        return operation;
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            deleteTree(path);
+        } catch (IOException e) {
+            log.warn("Could not delete {}: {}", path, e.getMessage());
+        }
+    }
+
+    // Delete a file, or a directory with everything in it
+    private static void deleteTree(Path path) throws IOException {
+        if (Files.isDirectory(path)) {
+            try (Stream<Path> children = Files.list(path)) {
+                for (Path child : children.toList()) {
+                    deleteTree(child);
+                }
+            }
+        }
+        Files.deleteIfExists(path);
+    }
+
+    private static long sizeOf(Path path) {
+        try {
+            return Files.size(path);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static long kilobytes(long bytes) {
+        return (bytes + 1023) / 1024;
+    }
+
+    private static String ratio(long rawBytes, long storedBytes) {
+        return rawBytes == 0 ? "-" : Math.round(100.0 * storedBytes / rawBytes) + "%";
+    }
+
+    // One backup file and its manifest (null if the file cannot be read)
+    @Getter
+    @AllArgsConstructor
+    public static class Backup {
+        private final String name;
+        private final long sizeBytes;
+        private final BackupFile.Manifest manifest;
+        private final String problem;
+
+        public double getSizeKilobytes() {
+            return sizeBytes / 1024.0;
+        }
+
+        // Share of the SQL script's size the file takes
+        public Double getCompressionPercent() {
+            return manifest == null || manifest.rawBytes() == 0 ? null : 100.0 * sizeBytes / manifest.rawBytes();
+        }
+    }
+
+    // A backup, verification or restore that ran on this node
+    @Getter
+    @AllArgsConstructor
+    public static class Operation {
+        private final String kind;
+        private final String backupName;
+        private final LocalDateTime finishedAt;
+        private final long durationMillis;
+        private final long bytes;           // SQL bytes written or read
+        private final boolean succeeded;
+        private final String message;
+
+        // Throughput over the SQL script (uncompressed)
+        public double getMegabytesPerSecond() {
+            return durationMillis == 0 ? 0 : bytes / 1024.0 / 1024.0 / (durationMillis / 1000.0);
+        }
+    }
+}
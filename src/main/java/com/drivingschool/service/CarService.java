@@ -2,42 +2,66 @@ package com.drivingschool.service;
 
 import com.drivingschool.model.Car;
 import com.drivingschool.repository.CarRepository;
+import com.drivingschool.repository.TableVersions;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Car Service - Business Logic Layer
+ *
+ * Reads are served from a cached snapshot of the Car table (see ReferenceCache), invalidated
+ * by every write here and by instructor changes (cars show their instructor's name).
  */
 
 @Service
 public class CarService {
 
     private final CarRepository carRepository;
+    private final ReferenceCache<Cars> cars;
 
-    public CarService(CarRepository carRepository) {
+    public CarService(CarRepository carRepository, ChangeLogService changeLogService,
+                      PlatformTransactionManager transactionManager, MeterRegistry meterRegistry) {
         this.carRepository = carRepository;
+        this.cars = new ReferenceCache<>("cars", this::loadCars, transactionManager, meterRegistry);
+
+        // cars and instructors changed by another node
+        changeLogService.subscribe(TableVersions.CAR, carIds -> cars.invalidate());
+        changeLogService.subscribe(TableVersions.INSTRUCTOR, instructorIds -> cars.invalidate());
     }
 
-    // Get all cars
+    // Get all cars, sorted by brand and model
+    @Transactional(readOnly = true)
     public List<Car> getAllCars() {
-        return carRepository.findAll();
+        return cars.get().all();
     }
 
     // Get car by id
+    @Transactional(readOnly = true)
     public Car getCarById(Integer carId) {
-        return carRepository.findById(carId);
+        return cars.get().byId().get(carId);
     }
 
     // Get car by license plate
+    @Transactional(readOnly = true)
     public Car getCarByLicensePlate(String licensePlate) {
         return carRepository.findByLicensePlate(licensePlate);
     }
 
     // Get car assigned to instructor
+    @Transactional(readOnly = true)
     public Car getCarByInstructor(Integer instructorId) {
-        return carRepository.findByInstructorId(instructorId);
+        return cars.get().byInstructorId().get(instructorId);
+    }
+
+    // An instructor was created, edited or deleted
+    public void instructorsChanged() {
+        cars.invalidate();
     }
 
     // Create new car
@@ -52,7 +76,10 @@ public class CarService {
                     "Each instructor can only have one car.");
         }
 
-        return carRepository.save(car);
+        Integer carId = carRepository.save(car);
+        cars.invalidate();
+
+        return carId;
     }
 
     // Update existing car
@@ -78,6 +105,7 @@ public class CarService {
         }
 
         carRepository.update(car);
+        cars.invalidate();
     }
 
     // Delete car
@@ -90,14 +118,17 @@ public class CarService {
         }
 
         carRepository.delete(carId);
+        cars.invalidate();
     }
 
     // Get total count
+    @Transactional(readOnly = true)
     public Integer getTotalCount() {
-        return carRepository.count();
+        return cars.get().all().size();
     }
 
     // Reassign car to different instructor
+    @Transactional
     public void reassignCar(Integer carId, Integer newInstructorId) {
         Car existing = carRepository.findById(carId);
 
@@ -111,5 +142,23 @@ public class CarService {
 
         existing.setAssignedInstructorId(newInstructorId);
         carRepository.update(existing);
+        cars.invalidate();
+    }
+
+    private Cars loadCars() {
+        List<Car> all = carRepository.findAll();
+        Map<Integer, Car> byId = new HashMap<>();
+        Map<Integer, Car> byInstructorId = new HashMap<>();
+
+        for (Car car : all) {
+            byId.put(car.getCarId(), car);
+            byInstructorId.put(car.getAssignedInstructorId(), car);
+        }
+
+        return new Cars(List.copyOf(all), byId, byInstructorId);
+    }
+
+    // One cached snapshot of the Car table
+    private record Cars(List<Car> all, Map<Integer, Car> byId, Map<Integer, Car> byInstructorId) {
     }
 }
@@ -0,0 +1,256 @@
+package com.drivingschool.service;
+
+import com.drivingschool.repository.ChangeLogRepository;
+import com.drivingschool.repository.TableVersions;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Change Log Service - keeps the in-memory copies of this node in step with the other nodes
+ *
+ * Every write appends (table, row id) entries to ChangeLog in its own transaction (see
+ * TableVersions). Each node reads the entries after its high-water mark every
+ * cluster.change-log.poll-millis and hands the ones written by other nodes to the services
+ * that subscribed to their table; a table's version is bumped too, so ETags change.
+ *
+ * ChangeIDs are handed out when the entries are written, not when they commit, so a newer
+ * entry can become visible before an older one. A missing ChangeID holds the high-water mark
+ * back for up to cluster.change-log.gap-timeout-seconds (entries are written just before
+ * commit, so a real gap only stays open for a commit); after that it is taken for a rolled
+ * back transaction. Entries above a gap are applied at once and remembered until it closes.
+ *
+ * The mark is saved in ChangeLogCursor, so a restarted node replays what it missed.
+ * Entries older than cluster.change-log.retention-hours are deleted.
+ *
+ * Metrics:
+ *  - cluster.change_log.entries{origin=self|other}: entries read
+ *  - cluster.change_log.gaps_abandoned: missing ChangeIDs given up on
+ *  - cluster.change_log.pending: entries read above an open gap
+ *  - cluster.change_log.poll: duration of one poll, including the evictions
+ */
+
+@Service
+public class ChangeLogService {
+
+    private static final Logger log = LoggerFactory.getLogger(ChangeLogService.class);
+
+    private static final int PAGE_SIZE = 1000;
+    private static final int PRUNE_BATCH_SIZE = 5000;
+
+    /**
+     * Receives the changes other nodes made to one table
+     * rowIds is null when the whole table may have changed (bulk writes, cascades, catch-up)
+     */
+    @FunctionalInterface
+    public interface Listener {
+        void changed(Set<Integer> rowIds);
+    }
+
+    private final ChangeLogRepository changeLogRepository;
+    private final TableVersions tableVersions;
+    private final String nodeId;
+    private final long gapTimeoutMillis;
+    private final int retentionHours;
+    private final Map<String, List<Listener>> listeners = new ConcurrentHashMap<>();
+
+    // every ChangeID up to the mark has been applied or given up on
+    private long highWaterMark;
+    private long savedMark = -1;
+    private long highestSeen;
+    private final NavigableSet<Long> appliedAboveMark = new TreeSet<>();
+    private final Map<Long, Long> gapsSince = new HashMap<>();
+    private final AtomicLong pending = new AtomicLong();
+
+    private final Counter ownEntries;
+    private final Counter otherEntries;
+    private final Counter gapsAbandoned;
+    private final Timer pollTimer;
+
+    public ChangeLogService(ChangeLogRepository changeLogRepository, TableVersions tableVersions,
+                            MeterRegistry meterRegistry,
+                            @Value("${cluster.change-log.gap-timeout-seconds:10}") int gapTimeoutSeconds,
+                            @Value("${cluster.change-log.retention-hours:24}") int retentionHours) {
+        this.changeLogRepository = changeLogRepository;
+        this.tableVersions = tableVersions;
+        this.nodeId = tableVersions.getNodeId();
+        this.gapTimeoutMillis = TimeUnit.SECONDS.toMillis(gapTimeoutSeconds);
+        this.retentionHours = retentionHours;
+
+        this.ownEntries = Counter.builder("cluster.change_log.entries")
+                .tag("origin", "self").description("Change log entries written by this node").register(meterRegistry);
+        this.otherEntries = Counter.builder("cluster.change_log.entries")
+                .tag("origin", "other").description("Change log entries applied from other nodes").register(meterRegistry);
+        this.gapsAbandoned = Counter.builder("cluster.change_log.gaps_abandoned")
+                .description("Missing ChangeIDs taken for rolled back transactions").register(meterRegistry);
+        Gauge.builder("cluster.change_log.pending", pending, AtomicLong::get)
+                .description("Entries applied above a ChangeID that has not committed yet").register(meterRegistry);
+        this.pollTimer = Timer.builder("cluster.change_log.poll")
+                .description("Duration of one change log poll").register(meterRegistry);
+    }
+
+    /**
+     * Start from the saved high-water mark, or from the newest entry for a new node
+     * Runs before the in-memory copies are loaded, so nothing committed in between is missed
+     */
+    @PostConstruct
+    public synchronized void start() {
+        Long saved = changeLogRepository.findCursor(nodeId);
+        highWaterMark = saved != null ? saved : changeLogRepository.maxChangeId();
+        highestSeen = highWaterMark;
+
+        long oldest = changeLogRepository.minChangeId();
+        if (saved != null && oldest > saved + 1) {
+            log.warn("Change log entries {} to {} were pruned before node {} read them; relying on the startup reload",
+                    saved + 1, oldest - 1, nodeId);
+        }
+
+        log.info("Node {} tails the change log from ChangeID {}", nodeId, highWaterMark);
+    }
+
+    // Call the listener with the changes other nodes make to a table
+    public void subscribe(String table, Listener listener) {
+        listeners.computeIfAbsent(table, name -> new CopyOnWriteArrayList<>()).add(listener);
+    }
+
+    // Read the new entries, apply those of other nodes and move the high-water mark
+    @Scheduled(fixedDelayString = "${cluster.change-log.poll-millis:1000}")
+    public synchronized void poll() {
+        long started = System.nanoTime();
+
+        List<ChangeLogRepository.Change> entries = new ArrayList<>();
+        long after = highWaterMark;
+        List<ChangeLogRepository.Change> page;
+        do {
+            page = changeLogRepository.findAfter(after, PAGE_SIZE);
+            for (ChangeLogRepository.Change change : page) {
+                after = change.changeId();
+                if (!appliedAboveMark.contains(change.changeId())) {
+                    entries.add(change);
+                }
+            }
+        } while (page.size() == PAGE_SIZE);
+
+        long now = System.currentTimeMillis();
+        Map<String, Set<Integer>> changes = new HashMap<>();
+        for (ChangeLogRepository.Change change : entries) {
+            long changeId = change.changeId();
+            appliedAboveMark.add(changeId);
+            gapsSince.remove(changeId);
+            for (long missing = highestSeen + 1; missing < changeId; missing++) {
+                gapsSince.put(missing, now);
+            }
+            highestSeen = Math.max(highestSeen, changeId);
+
+            if (nodeId.equals(change.nodeId())) {
+                ownEntries.increment();
+            } else {
+                otherEntries.increment();
+                collect(changes, change);
+            }
+        }
+
+        changes.forEach(this::apply);
+        advance(now);
+
+        if (highWaterMark != savedMark) {
+            changeLogRepository.saveCursor(nodeId, highWaterMark);
+            savedMark = highWaterMark;
+        }
+
+        pollTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+    }
+
+    // Delete entries past the retention and the cursors of nodes gone as long
+    @LeaderJob(value = "change-log-prune", cron = "0 15 * * * *")
+    public void prune() {
+        LocalDateTime cutoff = LocalDateTime.now().minusHours(retentionHours);
+
+        int deleted = 0;
+        int batch;
+        do {
+            batch = changeLogRepository.deleteOlderThan(cutoff, PRUNE_BATCH_SIZE);
+            deleted += batch;
+        } while (batch == PRUNE_BATCH_SIZE);
+        int cursors = changeLogRepository.deleteCursorsOlderThan(cutoff);
+
+        if (deleted > 0 || cursors > 0) {
+            log.info("Pruned {} change log entries and {} node cursors older than {}", deleted, cursors, cutoff);
+        }
+    }
+
+    // High-water mark of this node
+    public synchronized long getHighWaterMark() {
+        return highWaterMark;
+    }
+
+    // Group a change by table; too many rows of one table count as the whole table
+    private static void collect(Map<String, Set<Integer>> changes, ChangeLogRepository.Change change) {
+        String table = change.tableName();
+        if (changes.containsKey(table) && changes.get(table) == null) {
+            return;
+        }
+
+        if (change.rowId() == null) {
+            changes.put(table, null);
+            return;
+        }
+
+        Set<Integer> rowIds = changes.computeIfAbsent(table, name -> new HashSet<>());
+        rowIds.add(change.rowId());
+        if (rowIds.size() > TableVersions.MAX_LOGGED_ROWS) {
+            changes.put(table, null);
+        }
+    }
+
+    private void apply(String table, Set<Integer> rowIds) {
+        tableVersions.changedElsewhere(table);
+
+        for (Listener listener : listeners.getOrDefault(table, List.of())) {
+            try {
+                listener.changed(rowIds);
+            } catch (RuntimeException e) {
+                log.error("Could not apply changes of {} made by another node", table, e);
+            }
+        }
+    }
+
+    // Move the mark over applied entries and gaps open for longer than the timeout
+    private void advance(long now) {
+        while (highWaterMark < highestSeen) {
+            long next = highWaterMark + 1;
+            if (!appliedAboveMark.remove(next)) {
+                Long since = gapsSince.get(next);
+                if (since != null && now - since < gapTimeoutMillis) {
+                    break;
+                }
+                gapsSince.remove(next);
+                gapsAbandoned.increment();
+            }
+            highWaterMark = next;
+        }
+
+        pending.set(appliedAboveMark.size());
+    }
+}
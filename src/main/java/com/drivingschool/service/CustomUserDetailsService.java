@@ -16,11 +16,17 @@ import java.util.List;
 /**
  * Custom UserDetailsService implementation
  * Loads user data from the database for Spring Security authentication
+ *
+ * A username unknown to the home branch is looked up in the other branches (see Branches).
+ * Such a user only gets a BRANCH_<id> authority, no role: the login is checked against the
+ * account of their branch and then handed over to its nodes (see BranchLoginHandler).
  */
 
 @Service
 public class CustomUserDetailsService implements UserDetailsService {
 
+    public static final String BRANCH_AUTHORITY_PREFIX = "BRANCH_";
+
     private final AppUserRepository appUserRepository;
 
     public CustomUserDetailsService(AppUserRepository appUserRepository) {
@@ -35,11 +41,17 @@ public class CustomUserDetailsService implements UserDetailsService {
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
 
-        // Find user in database
+        // Find user in database, then in the other branches
         AppUser appUser = appUserRepository.findByUsername(username);
+        String otherBranch = null;
 
         if (appUser == null) {
-            throw new UsernameNotFoundException("User not found: " + username);
+            AppUserRepository.BranchUser branchUser = appUserRepository.findByUsernameInOtherBranches(username);
+            if (branchUser == null) {
+                throw new UsernameNotFoundException("User not found: " + username);
+            }
+            appUser = branchUser.user();
+            otherBranch = branchUser.branch().id();
         }
 
         // Check if user is active
@@ -49,7 +61,11 @@ public class CustomUserDetailsService implements UserDetailsService {
 
         // Convert role to Spring Security authority
         List<GrantedAuthority> authorities = new ArrayList<>();
-        authorities.add(new SimpleGrantedAuthority("ROLE_" + appUser.getRole()));
+        if (otherBranch == null) {
+            authorities.add(new SimpleGrantedAuthority("ROLE_" + appUser.getRole()));
+        } else {
+            authorities.add(new SimpleGrantedAuthority(BRANCH_AUTHORITY_PREFIX + otherBranch));
+        }
 
         // Return Spring Security User object
         UserDetails userDetails = User.builder()
@@ -0,0 +1,100 @@
+package com.drivingschool.service;
+
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded lock-free ring buffer with many producers and one consumer
+ *
+ * Every slot carries a sequence number telling whose turn it is: a producer claims the next
+ * position with one compare-and-set on the tail, stores its element and publishes it by moving
+ * the slot's sequence on; the consumer takes elements in order and hands each slot back to the
+ * producers of the next lap. Nobody blocks: offer() returns false when the ring is full.
+ * Only one thread may call poll() / drainTo().
+ */
+
+public class EventRing<T> {
+
+    private final Object[] elements;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long head;
+
+    public EventRing(int capacity) {
+        if (capacity < 2 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Ring capacity must be a power of two");
+        }
+
+        this.elements = new Object[capacity];
+        this.sequences = new AtomicLongArray(capacity);
+        this.mask = capacity - 1;
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    // Add an element; false if the ring is full
+    public boolean offer(T element) {
+        long position = tail.get();
+        while (true) {
+            int slot = (int) (position & mask);
+            long turn = sequences.get(slot) - position;
+
+            if (turn == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    elements[slot] = element;
+                    sequences.set(slot, position + 1);
+                    return true;
+                }
+                position = tail.get();
+            } else if (turn < 0) {
+                // the slot still holds the element of the previous lap
+                return false;
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    // Take the oldest element, null if there is none (or it is still being stored)
+    @SuppressWarnings("unchecked")
+    public T poll() {
+        long position = head;
+        int slot = (int) (position & mask);
+        if (sequences.get(slot) != position + 1) {
+            return null;
+        }
+
+        T element = (T) elements[slot];
+        elements[slot] = null;
+        sequences.set(slot, position + mask + 1);
+        head = position + 1;
+        return element;
+    }
+
+    // Move up to max elements, oldest first, to target; returns how many were moved
+    public int drainTo(Collection<? super T> target, int max) {
+        int moved = 0;
+        T element;
+        while (moved < max && (element = poll()) != null) {
+            target.add(element);
+            moved++;
+        }
+        return moved;
+    }
+
+    // Elements claimed and not taken yet (approximate while producers are adding)
+    public int size() {
+        return (int) Math.max(0, tail.get() - head);
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public int capacity() {
+        return elements.length;
+    }
+}
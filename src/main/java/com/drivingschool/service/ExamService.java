@@ -1,16 +1,24 @@
 package com.drivingschool.service;
 
+import com.drivingschool.model.AuditEvent;
 import com.drivingschool.model.Exam;
 import com.drivingschool.model.Trainee;
 import com.drivingschool.repository.ExamRepository;
+import com.drivingschool.repository.ExamStatsRepository;
 import com.drivingschool.repository.TraineeRepository;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * Exam Service - Business Logic Layer
@@ -19,35 +27,57 @@ import java.util.List;
 @Service
 public class ExamService {
 
+    private static final Logger log = LoggerFactory.getLogger(ExamService.class);
+
+    private static final Set<String> RESULTS = Set.of("Passed", "Failed");
+
+    // status -> the status an exam must be in to be moved to it
+    private static final Map<String, String> STATUS_TRANSITIONS = Map.of(
+            "Completed", "Scheduled",
+            "Scheduled", "Completed");
+
     private final ExamRepository examRepository;
     private final TraineeRepository traineeRepository;
+    private final ExamStatsRepository examStatsRepository;
+    private final UpcomingScheduleService upcomingScheduleService;
+    private final AuditService auditService;
 
-    public ExamService(ExamRepository examRepository, TraineeRepository traineeRepository) {
+    public ExamService(ExamRepository examRepository, TraineeRepository traineeRepository,
+                       ExamStatsRepository examStatsRepository, UpcomingScheduleService upcomingScheduleService,
+                       AuditService auditService) {
         this.examRepository = examRepository;
         this.traineeRepository = traineeRepository;
+        this.examStatsRepository = examStatsRepository;
+        this.upcomingScheduleService = upcomingScheduleService;
+        this.auditService = auditService;
     }
 
     // Get all exams
+    @Transactional(readOnly = true)
     public List<Exam> getAllExams() {
         return examRepository.findAll();
     }
 
     // Get exam by id
+    @Transactional(readOnly = true)
     public Exam getExamById(Integer examId) {
         return examRepository.findById(examId);
     }
 
     // Get all exams for a trainee
+    @Transactional(readOnly = true)
     public List<Exam> getExamsByTrainee(Integer traineeId) {
         return examRepository.findByTraineeId(traineeId);
     }
 
     // Get exams by type
+    @Transactional(readOnly = true)
     public List<Exam> getExamsByType(String examType) {
         return examRepository.findByExamType(examType);
     }
 
     // Get exams by status
+    @Transactional(readOnly = true)
     public List<Exam> getExamsByStatus(String status) {
         return examRepository.findByStatus(status);
     }
@@ -72,77 +102,253 @@ public class ExamService {
             exam.setStatus("Scheduled");
         }
 
-        return examRepository.save(exam);
+        // Retakes get the next attempt number for this exam type
+        exam.setAttemptNumber(examRepository.nextAttemptNumber(exam.getTraineeId(), exam.getExamType()));
+
+        Integer examId = examRepository.save(exam);
+        upcomingScheduleService.examChanged(examId);
+        auditService.record(AuditEvent.Entity.EXAM, examId, AuditEvent.Action.CREATE,
+                exam.getExamType() + " on " + exam.getScheduledDate() + ", trainee " + exam.getTraineeId()
+                        + ", attempt " + exam.getAttemptNumber());
+
+        return examId;
     }
 
-    // Update existing exam
+    /**
+     * Update existing exam
+     * exam.getVersion() is the version the form was rendered with; the update is refused if the
+     * exam was modified since. Status and result are kept, they only change through changeStatus / recordResult
+     */
     @Transactional
     public void updateExam(Exam exam) {
 
-        // Validate exam exists
-        Exam existing = examRepository.findById(exam.getExamId());
+        // Validate exam exists (locked, as a recorded result may be taken back below)
+        Exam existing = examRepository.findByIdForUpdate(exam.getExamId());
         if (existing == null) {
             throw new IllegalArgumentException("Exam not found: " + exam.getExamId());
         }
 
+        if (!existing.getVersion().equals(exam.getVersion())) {
+            throw changedElsewhere(exam.getExamId());
+        }
+        exam.setStatus(existing.getStatus());
+
         // Validate trainee exists
         Trainee trainee = traineeRepository.findById(exam.getTraineeId());
         if (trainee == null) {
             throw new IllegalArgumentException("Trainee not found: " + exam.getTraineeId());
         }
 
-        examRepository.update(exam);
+        if (!examRepository.update(exam)) {
+            throw changedElsewhere(exam.getExamId());
+        }
+        exam.setVersion(exam.getVersion() + 1);
+        upcomingScheduleService.examChanged(exam.getExamId());
+
+        if (existing.hasResult()) {
+            if (!existing.getTraineeId().equals(exam.getTraineeId())) {
+                // the recorded result no longer applies
+                removeResult(existing);
+            } else if (!existing.getExamType().equals(exam.getExamType())) {
+                // move the result to the counters of the new exam type
+                takeBack(existing);
+                examStatsRepository.record(existing.getInstructorId(), existing.getLicenseCategory(),
+                        exam.getExamType(), 1, existing.isPassed() ? 1 : 0);
+            }
+        }
+
+        auditService.record(AuditEvent.Entity.EXAM, exam.getExamId(), AuditEvent.Action.UPDATE,
+                AuditService.changes(
+                        "Type", existing.getExamType(), exam.getExamType(),
+                        "Date", existing.getScheduledDate(), exam.getScheduledDate(),
+                        "Trainee", existing.getTraineeId(), exam.getTraineeId()));
+    }
+
+    /**
+     * Record the result of an exam (Passed / Failed, optional score)
+     * The exam is marked Completed and credited to the trainee's current instructor and
+     * license category; a result that is corrected is first taken back from the counters
+     */
+    @Transactional
+    public void recordResult(Integer examId, String result, Integer score) {
+        // locked, so a concurrent correction waits and then takes back this result, not the same old one
+        Exam exam = examRepository.findByIdForUpdate(examId);
+        if (exam == null) {
+            throw new IllegalArgumentException("Exam not found: " + examId);
+        }
+
+        if (result == null || !RESULTS.contains(result)) {
+            throw new IllegalArgumentException("Result must be Passed or Failed");
+        }
+
+        if (score != null && score < 0) {
+            throw new IllegalArgumentException("Score cannot be negative");
+        }
+
+        if (exam.getScheduledDate().isAfter(LocalDate.now())) {
+            throw new IllegalArgumentException("Cannot record the result of an exam scheduled in the future");
+        }
+
+        Trainee trainee = traineeRepository.findById(exam.getTraineeId());
+        if (trainee == null) {
+            throw new IllegalArgumentException("Trainee not found: " + exam.getTraineeId());
+        }
+
+        if (exam.hasResult()) {
+            takeBack(exam);
+        }
+
+        examRepository.saveResult(examId, result, score, trainee.getAssignedInstructorId(), trainee.getLicenseCategory());
+        upcomingScheduleService.examChanged(examId);
+        examStatsRepository.record(trainee.getAssignedInstructorId(), trainee.getLicenseCategory(),
+                exam.getExamType(), 1, "Passed".equals(result) ? 1 : 0);
+        auditService.record(AuditEvent.Entity.EXAM, examId, AuditEvent.Action.RESULT,
+                (exam.hasResult() ? exam.getResult() + " -> " : "") + result + (score == null ? "" : ", score " + score));
+    }
+
+    // Remove a recorded result from the exam and from the counters
+    private void removeResult(Exam exam) {
+        takeBack(exam);
+        examRepository.clearResult(exam.getExamId());
+    }
+
+    // Subtract a recorded result from the counters it was credited to
+    private void takeBack(Exam exam) {
+        examStatsRepository.record(exam.getInstructorId(), exam.getLicenseCategory(),
+                exam.getExamType(), -1, exam.isPassed() ? -1 : 0);
     }
 
     // Delete exam
     @Transactional
     public void deleteExam(Integer examId) {
-        Exam exam = examRepository.findById(examId);
+        Exam exam = examRepository.findByIdForUpdate(examId);
         if (exam == null) {
             throw new IllegalArgumentException("Exam not found: " + examId);
         }
 
+        if (exam.hasResult()) {
+            takeBack(exam);
+        }
+
         examRepository.delete(examId);
+        upcomingScheduleService.examChanged(examId);
+        auditService.record(AuditEvent.Entity.EXAM, examId, AuditEvent.Action.DELETE,
+                exam.getExamType() + " on " + exam.getScheduledDate() + ", trainee " + exam.getTraineeId());
     }
 
-    // Change exam status
-    public void changeStatus(Integer examId, String newStatus) {
-        Exam exam = examRepository.findById(examId);
-        if (exam == null) {
-            throw new IllegalArgumentException("Exam not found: " + examId);
+    /**
+     * Change exam status with one conditional UPDATE (no read-modify-write)
+     * Going back to Scheduled removes the recorded result in the same statement; expectedVersion
+     * (optional) refuses the change if the exam was modified since the caller read it
+     */
+    @Transactional
+    public void changeStatus(Integer examId, String newStatus, Integer expectedVersion) {
+        String fromStatus = STATUS_TRANSITIONS.get(newStatus);
+        if (fromStatus == null) {
+            throw new IllegalArgumentException("Unknown exam status: " + newStatus);
+        }
+
+        boolean reopening = !"Completed".equals(newStatus);
+        Exam before = examRepository.transitionStatus(examId, fromStatus, newStatus, expectedVersion, reopening);
+
+        if (before == null) {
+            Exam current = examRepository.findById(examId);
+            if (current == null) {
+                throw new IllegalArgumentException("Exam not found: " + examId);
+            }
+            if (newStatus.equals(current.getStatus())) {
+                throw new IllegalArgumentException("Exam " + examId + " is already " + newStatus);
+            }
+            throw changedElsewhere(examId);
         }
 
-        exam.setStatus(newStatus);
-        examRepository.update(exam);
+        if (reopening && before.hasResult()) {
+            takeBack(before);
+        }
+
+        upcomingScheduleService.examChanged(examId);
+        auditService.record(AuditEvent.Entity.EXAM, examId, AuditEvent.Action.STATUS, fromStatus + " -> " + newStatus);
+    }
+
+    // Instructors of every branch ranked by the pass rate of their trainees (from the counters)
+    @Transactional(readOnly = true)
+    public List<Map<String, Object>> getInstructorLeaderboard() {
+        return examStatsRepository.findInstructorLeaderboard();
+    }
+
+    // Pass rate per license category and exam type over every branch (from the counters)
+    @Transactional(readOnly = true)
+    public List<Map<String, Object>> getCategoryPassRates() {
+        return examStatsRepository.findCategoryPassRates();
+    }
+
+    // Rebuild the pass-rate counters from the recorded results
+    @Transactional
+    public void rebuildCounters() {
+        examStatsRepository.rebuild();
+    }
+
+    /**
+     * Check the counters against the recorded results after startup (results may have been
+     * entered outside the application) and rebuild them if they disagree
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void verifyCounters() {
+        Map<String, Object> results = examStatsRepository.getResultTotals();
+
+        if (sameTotals(results, examStatsRepository.getInstructorTotals())
+                && sameTotals(results, examStatsRepository.getCategoryTotals())) {
+            log.info("Exam counters match the recorded results");
+            return;
+        }
+
+        log.warn("Exam counters disagree with the recorded results - rebuilding");
+        examStatsRepository.rebuild();
+    }
+
+    private static boolean sameTotals(Map<String, Object> expected, Map<String, Object> actual) {
+        return ((Number) expected.get("Attempts")).longValue() == ((Number) actual.get("Attempts")).longValue()
+                && ((Number) expected.get("Passed")).longValue() == ((Number) actual.get("Passed")).longValue();
     }
 
     // Get total count
+    @Transactional(readOnly = true)
     public Integer getTotalCount() {
         return examRepository.count();
     }
 
     // Get count by status
+    @Transactional(readOnly = true)
     public Integer getCountByStatus(String status) {
         return examRepository.countByStatus(status);
     }
 
     // Get count by type
+    @Transactional(readOnly = true)
     public Integer getCountByType(String examType) {
         return examRepository.countByType(examType);
     }
 
     // Get exam statistics
+    @Transactional(readOnly = true)
     public ExamStats getExamStatistics() {
         Integer totalExams = getTotalCount();
         Integer scheduledExams = getCountByStatus("Scheduled");
         Integer completedExams = getCountByStatus("Completed");
+        Integer passedExams = examRepository.countByResult("Passed");
+        Integer failedExams = examRepository.countByResult("Failed");
         Integer theoreticalExams = getCountByType("Theoretical");
         Integer practicalExams = getCountByType("Practical");
 
-        return new ExamStats(totalExams, scheduledExams, completedExams,
+        return new ExamStats(totalExams, scheduledExams, completedExams, passedExams, failedExams,
                 theoreticalExams, practicalExams);
     }
 
+    private static IllegalArgumentException changedElsewhere(Integer examId) {
+        return new IllegalArgumentException("Exam " + examId + " was changed by someone else - reload and try again");
+    }
+
     // Inner class for exam statistics
     @Getter
     @AllArgsConstructor
@@ -150,6 +356,8 @@ public class ExamService {
         private final Integer totalExams;
         private final Integer scheduledExams;
         private final Integer completedExams;
+        private final Integer passedExams;
+        private final Integer failedExams;
         private final Integer theoreticalExams;
         private final Integer practicalExams;
     }
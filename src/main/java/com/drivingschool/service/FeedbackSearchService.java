@@ -0,0 +1,196 @@
+package com.drivingschool.service;
+
+import com.drivingschool.model.Session;
+import com.drivingschool.repository.SessionAnalyticsRepository;
+import com.drivingschool.repository.SessionRepository;
+import com.drivingschool.repository.TableVersions;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Feedback Search Service - full-text search over instructor feedback
+ *
+ * Feedback of every session (current, Session_Archive and the columnar archive files) is kept
+ * in an in-memory inverted index, built at startup and updated after commit whenever
+ * SessionService adds feedback to, edits or deletes a session. Archiving does not touch the
+ * index: a session keeps its id and its feedback wherever it is stored. Sessions changed by
+ * other nodes are re-indexed the same way (see ChangeLogService).
+ *
+ * Only the page of hits being shown is read back (names from the tables, feedback of sessions
+ * archived to files from their SessionID zone maps).
+ */
+
+@Service
+public class FeedbackSearchService {
+
+    private static final Logger log = LoggerFactory.getLogger(FeedbackSearchService.class);
+
+    public static final int MAX_LIMIT = 100;
+
+    // words too common in Romanian and English feedback to tell sessions apart
+    private static final Set<String> STOP_WORDS = Set.of(
+            "a", "al", "ale", "am", "as", "ca", "ce", "cu", "de", "din", "e", "este", "fost", "i", "in", "la",
+            "mai", "o", "pe", "pentru", "sa", "se", "si", "sau", "un", "una",
+            "an", "and", "are", "at", "be", "for", "he", "is", "it", "of", "on", "or", "she", "the", "they",
+            "to", "was", "were", "with");
+
+    private final SessionRepository sessionRepository;
+    private final SessionAnalyticsRepository sessionAnalyticsRepository;
+    private final ArchiveService archiveService;
+    private final InvertedIndex index = new InvertedIndex(STOP_WORDS);
+
+    public FeedbackSearchService(SessionRepository sessionRepository,
+                                 SessionAnalyticsRepository sessionAnalyticsRepository,
+                                 ArchiveService archiveService, ChangeLogService changeLogService) {
+        this.sessionRepository = sessionRepository;
+        this.sessionAnalyticsRepository = sessionAnalyticsRepository;
+        this.archiveService = archiveService;
+        changeLogService.subscribe(TableVersions.SESSION, this::changedElsewhere);
+    }
+
+    // Index the feedback of every session
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void rebuild() {
+        long start = System.currentTimeMillis();
+
+        index.clear();
+        sessionRepository.forEachFeedback(index::put);
+        archiveService.scanSessions(null, null, row -> {
+            String feedback = row.getString(ArchiveService.SESSION_FEEDBACK);
+            if (feedback != null) {
+                index.put(row.getInt(ArchiveService.SESSION_ID), feedback);
+            }
+        });
+
+        log.info("Feedback index built: {} sessions, {} terms in {} ms",
+                index.size(), index.termCount(), System.currentTimeMillis() - start);
+    }
+
+    // A session's feedback was added or edited, or the session was deleted; re-indexed after commit
+    public void sessionChanged(Integer sessionId) {
+        AfterCommit.run(() -> {
+            Session session = sessionRepository.findById(sessionId);
+
+            synchronized (this) {
+                if (session == null) {
+                    index.remove(sessionId);
+                } else {
+                    index.put(sessionId, session.getInstructorFeedback());
+                }
+            }
+        });
+    }
+
+    // Sessions changed by another node (null: any session, e.g. a year archived to files)
+    private void changedElsewhere(Set<Integer> sessionIds) {
+        if (sessionIds == null) {
+            rebuild();
+        } else {
+            sessionIds.forEach(this::sessionChanged);
+        }
+    }
+
+    // Sessions whose feedback contains every word of the query, best first
+    public FeedbackSearchResult search(String query, int limit) {
+        long start = System.nanoTime();
+
+        InvertedIndex.Result result = index.search(query, Math.min(Math.max(limit, 1), MAX_LIMIT));
+        long searchMicros = (System.nanoTime() - start) / 1000;
+
+        List<Integer> sessionIds = result.hits().stream().map(InvertedIndex.Hit::id).toList();
+        Map<Integer, Session> sessions = loadSessions(sessionIds);
+
+        List<FeedbackHit> hits = new ArrayList<>();
+        for (InvertedIndex.Hit hit : result.hits()) {
+            Session session = sessions.get(hit.id());
+            if (session != null) {
+                hits.add(new FeedbackHit(session, hit.score()));
+            }
+        }
+
+        return new FeedbackSearchResult(result.terms(), hits, result.matches(), index.size(),
+                searchMicros, (System.nanoTime() - start) / 1000);
+    }
+
+    // Hit sessions with names: from the tables, then from the archive files for the rest
+    private Map<Integer, Session> loadSessions(List<Integer> sessionIds) {
+        Map<Integer, Session> sessions = new HashMap<>();
+        for (Session session : sessionRepository.findByIds(sessionIds)) {
+            sessions.put(session.getSessionId(), session);
+        }
+
+        Set<Integer> missing = new HashSet<>(sessionIds);
+        missing.removeAll(sessions.keySet());
+        if (missing.isEmpty()) {
+            return sessions;
+        }
+
+        List<Session> archived = new ArrayList<>();
+        archiveService.scanSessionsById(missing, row -> {
+            Session session = new Session();
+            session.setSessionId(row.getInt(ArchiveService.SESSION_ID));
+            session.setSessionType(row.getByte(ArchiveService.SESSION_TYPE) == SessionSnapshot.PRACTICAL
+                    ? "Practical" : "Theoretical");
+            session.setStartDateTime(ArchiveService.dateTimeOfMinute(row.getLong(ArchiveService.SESSION_START)));
+            session.setEndDateTime(ArchiveService.dateTimeOfMinute(row.getLong(ArchiveService.SESSION_END)));
+            session.setStatus("Completed");
+            session.setInstructorFeedback(row.getString(ArchiveService.SESSION_FEEDBACK));
+            session.setInstructorId(row.getInt(ArchiveService.SESSION_INSTRUCTOR));
+            int traineeId = row.getInt(ArchiveService.SESSION_TRAINEE);
+            session.setTraineeId(traineeId == 0 ? null : traineeId);
+            session.setArchived(true);
+            archived.add(session);
+        });
+
+        Set<Integer> instructorIds = new HashSet<>();
+        Set<Integer> traineeIds = new HashSet<>();
+        for (Session session : archived) {
+            instructorIds.add(session.getInstructorId());
+            if (session.getTraineeId() != null) {
+                traineeIds.add(session.getTraineeId());
+            }
+        }
+
+        Map<Integer, String> instructorNames = sessionAnalyticsRepository.findInstructorNames(instructorIds);
+        Map<Integer, String> traineeNames = sessionAnalyticsRepository.findTraineeNames(traineeIds);
+        for (Session session : archived) {
+            session.setInstructorName(instructorNames.get(session.getInstructorId()));
+            session.setTraineeName(session.getTraineeId() == null ? null : traineeNames.get(session.getTraineeId()));
+            sessions.put(session.getSessionId(), session);
+        }
+
+        return sessions;
+    }
+
+    // Inner class for one ranked session
+    @Getter
+    @AllArgsConstructor
+    public static class FeedbackHit {
+        private final Session session;
+        private final double score;
+    }
+
+    // Inner class for a search: the terms looked up, the hits shown and how many sessions matched
+    @Getter
+    @AllArgsConstructor
+    public static class FeedbackSearchResult {
+        private final List<String> terms;
+        private final List<FeedbackHit> hits;
+        private final int totalMatches;
+        private final int indexedSessions;
+        private final long searchMicros;
+        private final long elapsedMicros;
+    }
+}
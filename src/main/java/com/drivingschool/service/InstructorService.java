@@ -4,15 +4,24 @@ import com.drivingschool.model.AppUser;
 import com.drivingschool.model.Instructor;
 import com.drivingschool.repository.AppUserRepository;
 import com.drivingschool.repository.InstructorRepository;
+import com.drivingschool.repository.TableVersions;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Instructor Service - Business Logic Layer
+ *
+ * Instructors change a few times a year, so reads are served from a cached snapshot
+ * (see ReferenceCache) that every write here invalidates. Cached instructors are shared
+ * between requests and must not be modified; writes validate against the database.
  */
 
 @Service
@@ -21,33 +30,48 @@ public class InstructorService {
     private final InstructorRepository instructorRepository;
     private final AppUserRepository appUserRepository;
     private final PasswordEncoder passwordEncoder;
-
-    public InstructorService(InstructorRepository instructorRepository, AppUserRepository appUserRepository, PasswordEncoder passwordEncoder) {
+    private final UniquenessFilterService uniquenessFilterService;
+    private final CarService carService;
+    private final ReferenceCache<Instructors> instructors;
+
+    public InstructorService(InstructorRepository instructorRepository, AppUserRepository appUserRepository,
+                             PasswordEncoder passwordEncoder, UniquenessFilterService uniquenessFilterService,
+                             CarService carService, ChangeLogService changeLogService,
+                             PlatformTransactionManager transactionManager, MeterRegistry meterRegistry) {
         this.instructorRepository = instructorRepository;
         this.appUserRepository = appUserRepository;
         this.passwordEncoder = passwordEncoder;
+        this.uniquenessFilterService = uniquenessFilterService;
+        this.carService = carService;
+        this.instructors = new ReferenceCache<>("instructors", this::loadInstructors, transactionManager, meterRegistry);
+
+        // instructors changed by another node
+        changeLogService.subscribe(TableVersions.INSTRUCTOR, instructorIds -> instructors.invalidate());
     }
 
-    // Get all instructors
+    // Get all instructors, sorted by name
+    @Transactional(readOnly = true)
     public List<Instructor> getAllInstructors() {
-        return instructorRepository.findAll();
+        return instructors.get().all();
     }
 
     // Get instructor by id
+    @Transactional(readOnly = true)
     public Instructor getInstructorById(Integer instructorId) {
-        return instructorRepository.findById(instructorId);
+        return instructors.get().byId().get(instructorId);
+    }
+
+    // Get the instructor profile of a user account (null if the user is not an instructor)
+    @Transactional(readOnly = true)
+    public Instructor getInstructorByUserId(Integer userId) {
+        return instructors.get().byUserId().get(userId);
     }
 
     // Create new instructor with user account (with password encryption)
     @Transactional
     public Integer createInstructor(Instructor instructor, String username, String password, String email) {
-        if (appUserRepository.existsByUsername(username)) {
-            throw new IllegalArgumentException("Username already exists: " + username);
-        }
-
-        if (appUserRepository.existsByEmail(email)) {
-            throw new IllegalArgumentException("Email already exists: " + email);
-        }
+        // Bloom filters skip the database unless a value is probably taken
+        uniquenessFilterService.checkAvailable(username, email, null);
 
         AppUser newUser = new AppUser();
         newUser.setUsername(username);
@@ -64,7 +88,11 @@ public class InstructorService {
             instructor.setHireDate(LocalDate.now());
         }
 
-        return instructorRepository.save(instructor);
+        Integer instructorId = instructorRepository.save(instructor);
+        uniquenessFilterService.register(username, email, null);
+        instructors.invalidate();
+
+        return instructorId;
     }
 
     // Update existing instructor
@@ -77,6 +105,10 @@ public class InstructorService {
         }
 
         instructorRepository.update(instructor);
+        instructors.invalidate();
+
+        // cars show their instructor's name
+        carService.instructorsChanged();
     }
 
     // Delete instructor and associated user account
@@ -101,10 +133,29 @@ public class InstructorService {
 
         instructorRepository.delete(instructorId);
         appUserRepository.delete(existing.getUserId());
+        instructors.invalidate();
     }
 
     // Get total count
+    @Transactional(readOnly = true)
     public Integer getTotalCount() {
-        return instructorRepository.count();
+        return instructors.get().all().size();
+    }
+
+    private Instructors loadInstructors() {
+        List<Instructor> all = instructorRepository.findAll();
+        Map<Integer, Instructor> byId = new HashMap<>();
+        Map<Integer, Instructor> byUserId = new HashMap<>();
+
+        for (Instructor instructor : all) {
+            byId.put(instructor.getInstructorId(), instructor);
+            byUserId.put(instructor.getUserId(), instructor);
+        }
+
+        return new Instructors(List.copyOf(all), byId, byUserId);
+    }
+
+    // One cached snapshot of the Instructor table
+    private record Instructors(List<Instructor> all, Map<Integer, Instructor> byId, Map<Integer, Instructor> byUserId) {
     }
 }
\ No newline at end of file
@@ -0,0 +1,282 @@
+package com.drivingschool.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Thread-safe inverted index over free text identified by an int id, ranked with BM25
+ *
+ * Text is split into terms with TrigramIndex.words (lower case ASCII, diacritics folded, so
+ * "parcare laterală" and "parcare laterala" are the same two terms); stop words are not indexed.
+ * Every term has a posting list of the documents containing it, sorted by id, with the term
+ * frequency and the document length packed alongside so that scoring never looks a document up.
+ *
+ * A search returns the documents containing every query term: the shortest posting list is
+ * walked and the others are advanced by galloping search. Matches are ranked by BM25, so rare
+ * terms, repeated terms and short texts weigh more; equal scores rank the higher id first.
+ */
+
+public class InvertedIndex {
+
+    // BM25 term frequency saturation and length normalization
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    // frequency and length share one int in the posting lists
+    private static final int MAX_PACKED = 0xFFFF;
+
+    private final Set<String> stopWords;
+    private final Map<String, Postings> postings = new HashMap<>();
+    private final Map<Integer, Postings[]> documents = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private long totalLength;
+
+    public InvertedIndex(Set<String> stopWords) {
+        this.stopWords = stopWords;
+    }
+
+    // Index (or re-index) a document; a text without terms removes it
+    public void put(int id, String text) {
+        Map<String, Integer> frequencies = frequencies(text);
+        int length = 0;
+        for (int frequency : frequencies.values()) {
+            length += frequency;
+        }
+
+        lock.writeLock().lock();
+        try {
+            removeLocked(id);
+            if (frequencies.isEmpty()) {
+                return;
+            }
+
+            Postings[] terms = new Postings[frequencies.size()];
+            int i = 0;
+            for (Map.Entry<String, Integer> entry : frequencies.entrySet()) {
+                Postings list = postings.computeIfAbsent(entry.getKey(), Postings::new);
+                list.add(id, pack(entry.getValue(), length));
+                terms[i++] = list;
+            }
+
+            documents.put(id, terms);
+            totalLength += Math.min(length, MAX_PACKED);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Remove a document, if indexed
+    public void remove(int id) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Remove every document
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            postings.clear();
+            documents.clear();
+            totalLength = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Best matches for a query, best first, with the number of documents matching it
+    public Result search(String query, int limit) {
+        List<String> terms = new ArrayList<>(frequencies(query).keySet());
+        if (terms.isEmpty() || limit <= 0) {
+            return new Result(terms, List.of(), 0);
+        }
+
+        lock.readLock().lock();
+        try {
+            Postings[] lists = new Postings[terms.size()];
+            for (int t = 0; t < lists.length; t++) {
+                lists[t] = postings.get(terms.get(t));
+                if (lists[t] == null) {
+                    return new Result(terms, List.of(), 0);
+                }
+            }
+            Arrays.sort(lists, Comparator.comparingInt(list -> list.size));
+
+            int documentCount = documents.size();
+            double averageLength = (double) totalLength / documentCount;
+            double[] idf = new double[lists.length];
+            for (int t = 0; t < lists.length; t++) {
+                idf[t] = Math.log(1 + (documentCount - lists[t].size + 0.5) / (lists[t].size + 0.5));
+            }
+
+            Comparator<Hit> worstFirst = Comparator.comparingDouble(Hit::score).thenComparingInt(Hit::id);
+            PriorityQueue<Hit> best = new PriorityQueue<>(limit + 1, worstFirst);
+            int[] positions = new int[lists.length];
+            int matches = 0;
+
+            candidates:
+            for (int c = 0; c < lists[0].size; c++) {
+                int id = lists[0].ids[c];
+                positions[0] = c;
+                for (int t = 1; t < lists.length; t++) {
+                    positions[t] = lists[t].seek(id, positions[t]);
+                    if (positions[t] == lists[t].size) {
+                        break candidates;
+                    }
+                    if (lists[t].ids[positions[t]] != id) {
+                        continue candidates;
+                    }
+                }
+
+                matches++;
+                double score = 0;
+                for (int t = 0; t < lists.length; t++) {
+                    int packed = lists[t].packed[positions[t]];
+                    int frequency = packed >>> 16;
+                    int length = packed & MAX_PACKED;
+                    score += idf[t] * frequency * (K1 + 1) / (frequency + K1 * (1 - B + B * length / averageLength));
+                }
+
+                // a full queue only takes documents better than its worst hit
+                Hit hit = new Hit(id, score);
+                if (best.size() < limit) {
+                    best.add(hit);
+                } else if (worstFirst.compare(hit, best.peek()) > 0) {
+                    best.poll();
+                    best.add(hit);
+                }
+            }
+
+            List<Hit> hits = new ArrayList<>(best.size());
+            while (!best.isEmpty()) {
+                hits.add(best.poll());
+            }
+            return new Result(terms, hits.reversed(), matches);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Number of indexed documents
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Number of distinct terms
+    public int termCount() {
+        lock.readLock().lock();
+        try {
+            return postings.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Occurrences of every term of a text, in order of first appearance
+    private Map<String, Integer> frequencies(String text) {
+        Map<String, Integer> frequencies = new LinkedHashMap<>();
+        for (String word : TrigramIndex.words(text)) {
+            if (!stopWords.contains(word)) {
+                frequencies.merge(word, 1, Integer::sum);
+            }
+        }
+        return frequencies;
+    }
+
+    private void removeLocked(int id) {
+        Postings[] terms = documents.remove(id);
+        if (terms == null) {
+            return;
+        }
+
+        for (int t = 0; t < terms.length; t++) {
+            int packed = terms[t].remove(id);
+            if (t == 0) {
+                totalLength -= packed & MAX_PACKED;
+            }
+            if (terms[t].size == 0) {
+                postings.remove(terms[t].term);
+            }
+        }
+    }
+
+    private static int pack(int frequency, int length) {
+        return Math.min(frequency, MAX_PACKED) << 16 | Math.min(length, MAX_PACKED);
+    }
+
+    // One ranked match
+    public record Hit(int id, double score) {
+    }
+
+    // The terms searched for (query words without stop words), the best hits and how many documents matched
+    public record Result(List<String> terms, List<Hit> hits, int matches) {
+    }
+
+    // Sorted ids of the documents containing one term, with frequency << 16 | document length
+    private static final class Postings {
+        private final String term;
+        private int[] ids = new int[2];
+        private int[] packed = new int[2];
+        private int size;
+
+        private Postings(String term) {
+            this.term = term;
+        }
+
+        // Position of the first id >= the given one, from a position on (size if none)
+        private int seek(int id, int from) {
+            int step = 1;
+            int low = from;
+            int high = from;
+            while (high < size && ids[high] < id) {
+                low = high + 1;
+                high += step;
+                step <<= 1;
+            }
+
+            int position = Arrays.binarySearch(ids, low, Math.min(high + 1, size), id);
+            return position >= 0 ? position : -position - 1;
+        }
+
+        private void add(int id, int value) {
+            int position = size == 0 || ids[size - 1] < id ? size : -Arrays.binarySearch(ids, 0, size, id) - 1;
+
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                packed = Arrays.copyOf(packed, size * 2);
+            }
+            System.arraycopy(ids, position, ids, position + 1, size - position);
+            System.arraycopy(packed, position, packed, position + 1, size - position);
+            ids[position] = id;
+            packed[position] = value;
+            size++;
+        }
+
+        // Remove an id, returning its packed value
+        private int remove(int id) {
+            int position = Arrays.binarySearch(ids, 0, size, id);
+            int value = packed[position];
+            System.arraycopy(ids, position + 1, ids, position, size - position - 1);
+            System.arraycopy(packed, position + 1, packed, position, size - position - 1);
+            size--;
+            return value;
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.drivingschool.service;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Marks a background job that must run on one node of the cluster at a time
+ * Used instead of @Scheduled on jobs that work on the shared database; the node holding the
+ * job's lease runs it (see LeaderJobScheduler). Set either cron or fixedDelay.
+ */
+
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface LeaderJob {
+
+    // Name of the job's lease row and metrics
+    String value();
+
+    // Cron expression, as for @Scheduled (placeholders allowed)
+    String cron() default "";
+
+    // Delay between the end of one run and the start of the next (placeholders allowed)
+    String fixedDelay() default "";
+
+    TimeUnit timeUnit() default TimeUnit.MILLISECONDS;
+}
@@ -0,0 +1,319 @@
+package com.drivingschool.service;
+
+import com.drivingschool.repository.JobLeaseRepository;
+import com.drivingschool.repository.TableVersions;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.MethodIntrospector;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.core.annotation.Order;
+import org.springframework.core.env.Environment;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.scheduling.support.CronExpression;
+import org.springframework.stereotype.Service;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Leader Job Scheduler - runs each @LeaderJob on one node of the cluster at a time
+ *
+ * Each job has a row in JobLease. When a job is due, the node tries to take or extend its
+ * lease (jobs.lease-seconds, in the database's clock) and only runs the job if it holds it.
+ * A heartbeat every jobs.heartbeat-seconds extends the leases the node holds, so the job stays
+ * on the same node between runs and during long ones. If that node stops, its leases run out
+ * and the next node the job is due on takes over; a node that shuts down releases them at once.
+ * With one node (e.g. embedded H2) every lease is simply always held.
+ *
+ * Runs happen on virtual threads, at most jobs.max-concurrent at a time; the scheduler thread
+ * only takes leases and hands runs over. A job that is still running or waiting when it is due
+ * again skips that turn. Fixed delays count from the end of a run, as with @Scheduled.
+ *
+ * Metrics:
+ *  - jobs.run{job}: duration of the runs
+ *  - jobs.wait{job}: time runs waited for a free slot
+ *  - jobs.waiting{job}: runs waiting for a free slot (the backlog)
+ *  - jobs.skipped{job, reason=not-leader|still-running}: turns skipped
+ *  - jobs.failed{job}: runs that threw
+ *  - jobs.leader{job}: 1 while this node holds the lease
+ */
+
+@Service
+public class LeaderJobScheduler implements SmartInitializingSingleton, DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(LeaderJobScheduler.class);
+
+    private final ApplicationContext applicationContext;
+    private final JobLeaseRepository jobLeaseRepository;
+    private final Environment environment;
+    private final MeterRegistry meterRegistry;
+    private final String nodeId;
+    private final int leaseSeconds;
+    private final int heartbeatSeconds;
+
+    private final Map<String, Job> jobs = new LinkedHashMap<>();
+    private final Semaphore slots;
+    private final ExecutorService executor = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("leader-job-", 0).factory());
+    private final ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+    private volatile boolean stopped;
+
+    public LeaderJobScheduler(ApplicationContext applicationContext, JobLeaseRepository jobLeaseRepository,
+                              TableVersions tableVersions, Environment environment, MeterRegistry meterRegistry,
+                              @Value("${jobs.lease-seconds:30}") int leaseSeconds,
+                              @Value("${jobs.heartbeat-seconds:10}") int heartbeatSeconds,
+                              @Value("${jobs.max-concurrent:4}") int maxConcurrent) {
+        if (heartbeatSeconds >= leaseSeconds) {
+            throw new IllegalArgumentException("jobs.heartbeat-seconds must be shorter than jobs.lease-seconds");
+        }
+
+        this.applicationContext = applicationContext;
+        this.jobLeaseRepository = jobLeaseRepository;
+        this.environment = environment;
+        this.meterRegistry = meterRegistry;
+        this.nodeId = tableVersions.getNodeId();
+        this.leaseSeconds = leaseSeconds;
+        this.heartbeatSeconds = heartbeatSeconds;
+        this.slots = new Semaphore(maxConcurrent);
+
+        scheduler.setPoolSize(1);
+        scheduler.setThreadNamePrefix("leader-job-scheduler-");
+    }
+
+    // Find the @LeaderJob methods of the application's beans and register their leases
+    @Override
+    public void afterSingletonsInstantiated() {
+        for (String beanName : applicationContext.getBeanDefinitionNames()) {
+            Class<?> type = applicationContext.getType(beanName);
+            if (type == null || !ClassUtils.getUserClass(type).getName().startsWith("com.drivingschool.")) {
+                continue;
+            }
+
+            Map<Method, LeaderJob> annotated = MethodIntrospector.selectMethods(ClassUtils.getUserClass(type),
+                    (MethodIntrospector.MetadataLookup<LeaderJob>) method ->
+                            AnnotatedElementUtils.findMergedAnnotation(method, LeaderJob.class));
+            if (annotated.isEmpty()) {
+                continue;
+            }
+
+            Object bean = applicationContext.getBean(beanName);
+            annotated.forEach((method, annotation) -> add(annotation, bean,
+                    AopUtils.selectInvocableMethod(method, bean.getClass())));
+        }
+
+        jobs.keySet().forEach(jobLeaseRepository::register);
+    }
+
+    // Start once the startup work (e.g. the reconciliations after startup) is done
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(100)
+    public void start() {
+        scheduler.initialize();
+        Instant now = Instant.now();
+        jobs.values().forEach(job -> scheduler.schedule(() -> due(job), job.first(now)));
+        scheduler.scheduleWithFixedDelay(this::heartbeat, Duration.ofSeconds(heartbeatSeconds));
+
+        log.info("Node {} schedules {} leader jobs: {}", nodeId, jobs.size(), jobs.keySet());
+    }
+
+    // Stop scheduling, let the running jobs finish for up to one lease and hand the leases over
+    @Override
+    public void destroy() throws InterruptedException {
+        stopped = true;
+        scheduler.shutdown();
+        executor.shutdown();
+        if (!executor.awaitTermination(leaseSeconds, TimeUnit.SECONDS)) {
+            executor.shutdownNow();
+        }
+
+        try {
+            jobLeaseRepository.releaseAll(nodeId);
+        } catch (DataAccessException e) {
+            log.warn("Could not release the job leases of node {}: {}", nodeId, e.getMessage());
+        }
+    }
+
+    // The job is due: run it if this node holds (or can take) its lease
+    private void due(Job job) {
+        if (stopped) {
+            return;
+        }
+        if (job.cron != null) {
+            scheduleNext(job, Instant.now());
+        }
+
+        if (!job.busy.compareAndSet(false, true)) {
+            job.skippedRunning.increment();
+            return;
+        }
+
+        boolean leader;
+        try {
+            leader = jobLeaseRepository.acquire(job.name, nodeId, leaseSeconds);
+        } catch (DataAccessException e) {
+            log.warn("Could not take the lease of job {}: {}", job.name, e.getMessage());
+            leader = false;
+        }
+        job.leader = leader;
+
+        if (!leader) {
+            job.skippedNotLeader.increment();
+            job.busy.set(false);
+            if (job.cron == null) {
+                scheduleNext(job, Instant.now());
+            }
+            return;
+        }
+
+        long dueAt = System.nanoTime();
+        job.waiting.incrementAndGet();
+        executor.execute(() -> run(job, dueAt));
+    }
+
+    // Run the job on a free slot
+    private void run(Job job, long dueAt) {
+        try {
+            slots.acquire();
+        } catch (InterruptedException e) {
+            job.waiting.decrementAndGet();
+            job.busy.set(false);
+            Thread.currentThread().interrupt();
+            return;
+        }
+
+        job.waiting.decrementAndGet();
+        long started = System.nanoTime();
+        job.waitTimer.record(started - dueAt, TimeUnit.NANOSECONDS);
+
+        try {
+            job.body.run();
+        } catch (RuntimeException e) {
+            job.failed.increment();
+            log.error("Leader job {} failed", job.name, e);
+        } finally {
+            job.runTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+            slots.release();
+            job.busy.set(false);
+            if (job.cron == null) {
+                scheduleNext(job, Instant.now());
+            }
+        }
+    }
+
+    // Extend the leases this node holds; a lease lost meanwhile (e.g. after a long pause) is dropped
+    private void heartbeat() {
+        for (Job job : jobs.values()) {
+            if (!job.leader) {
+                continue;
+            }
+
+            try {
+                if (!jobLeaseRepository.renew(job.name, nodeId, leaseSeconds)) {
+                    job.leader = false;
+                    log.warn("Node {} lost the lease of job {}", nodeId, job.name);
+                }
+            } catch (DataAccessException e) {
+                log.warn("Could not renew the lease of job {}: {}", job.name, e.getMessage());
+            }
+        }
+    }
+
+    private void scheduleNext(Job job, Instant after) {
+        if (!stopped) {
+            scheduler.schedule(() -> due(job), job.next(after));
+        }
+    }
+
+    private void add(LeaderJob annotation, Object bean, Method method) {
+        String cron = environment.resolvePlaceholders(annotation.cron());
+        String fixedDelay = environment.resolvePlaceholders(annotation.fixedDelay());
+        if (cron.isEmpty() == fixedDelay.isEmpty()) {
+            throw new IllegalStateException("@LeaderJob " + annotation.value() + " needs either cron or fixedDelay");
+        }
+        if (jobs.containsKey(annotation.value())) {
+            throw new IllegalStateException("Two leader jobs are named " + annotation.value());
+        }
+
+        Job job = new Job(annotation.value(), () -> ReflectionUtils.invokeMethod(method, bean),
+                cron.isEmpty() ? null : CronExpression.parse(cron),
+                cron.isEmpty() ? Duration.of(Long.parseLong(fixedDelay), annotation.timeUnit().toChronoUnit()) : null);
+        jobs.put(job.name, job);
+    }
+
+    // One job with its state and meters
+    private final class Job {
+        private final String name;
+        private final Runnable body;
+        private final CronExpression cron;
+        private final Duration delay;
+
+        private final AtomicBoolean busy = new AtomicBoolean();
+        private final AtomicInteger waiting = new AtomicInteger();
+        private volatile boolean leader;
+
+        private final Timer runTimer;
+        private final Timer waitTimer;
+        private final Counter skippedNotLeader;
+        private final Counter skippedRunning;
+        private final Counter failed;
+
+        private Job(String name, Runnable body, CronExpression cron, Duration delay) {
+            this.name = name;
+            this.body = body;
+            this.cron = cron;
+            this.delay = delay;
+
+            this.runTimer = Timer.builder("jobs.run").tag("job", name)
+                    .description("Duration of the job's runs").register(meterRegistry);
+            this.waitTimer = Timer.builder("jobs.wait").tag("job", name)
+                    .description("Time the job's runs waited for a free slot").register(meterRegistry);
+            this.skippedNotLeader = Counter.builder("jobs.skipped").tag("job", name).tag("reason", "not-leader")
+                    .description("Turns skipped because another node holds the lease").register(meterRegistry);
+            this.skippedRunning = Counter.builder("jobs.skipped").tag("job", name).tag("reason", "still-running")
+                    .description("Turns skipped because the previous run had not finished").register(meterRegistry);
+            this.failed = Counter.builder("jobs.failed").tag("job", name)
+                    .description("Runs that threw").register(meterRegistry);
+            Gauge.builder("jobs.waiting", waiting, AtomicInteger::get).tag("job", name)
+                    .description("Runs waiting for a free slot").register(meterRegistry);
+            Gauge.builder("jobs.leader", this, job -> job.leader ? 1 : 0).tag("job", name)
+                    .description("1 while this node holds the job's lease").register(meterRegistry);
+        }
+
+        // First run: the next cron time, or right away
+        private Instant first(Instant now) {
+            return cron != null ? next(now) : now;
+        }
+
+        private Instant next(Instant after) {
+            if (cron == null) {
+                return after.plus(delay);
+            }
+            return cron.next(ZonedDateTime.ofInstant(after, ZoneId.systemDefault())).toInstant();
+        }
+    }
+}
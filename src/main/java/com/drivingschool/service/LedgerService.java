@@ -0,0 +1,144 @@
+package com.drivingschool.service;
+
+import com.drivingschool.model.TraineeBalance;
+import com.drivingschool.model.TuitionPrice;
+import com.drivingschool.repository.ReplicaRouting;
+import com.drivingschool.repository.TraineeBalanceRepository;
+import com.drivingschool.repository.TuitionPriceRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Ledger Service - tuition prices and materialized trainee balances
+ *
+ * PaymentService and TraineeService call this inside their own transactions,
+ * so a balance never disagrees with the committed payments.
+ * The nightly reconciliation repairs rows changed outside the application.
+ */
+
+@Service
+public class LedgerService {
+
+    private static final Logger log = LoggerFactory.getLogger(LedgerService.class);
+
+    private final TraineeBalanceRepository traineeBalanceRepository;
+    private final TuitionPriceRepository tuitionPriceRepository;
+    private final TransactionTemplate openTransaction;
+
+    public LedgerService(TraineeBalanceRepository traineeBalanceRepository,
+                         TuitionPriceRepository tuitionPriceRepository,
+                         PlatformTransactionManager transactionManager) {
+        this.traineeBalanceRepository = traineeBalanceRepository;
+        this.tuitionPriceRepository = tuitionPriceRepository;
+
+        this.openTransaction = new TransactionTemplate(transactionManager);
+        this.openTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    // Get the balance of a trainee (one primary key lookup)
+    public TraineeBalance getBalance(Integer traineeId) {
+        TraineeBalance balance = traineeBalanceRepository.findByTraineeId(traineeId);
+
+        // trainee created before the ledger existed (the reconciliation creates the missing rows);
+        // callers read in read-only transactions, possibly on the replica, so the row is created
+        // in a transaction of its own on the primary
+        if (balance == null) {
+            balance = openTransaction.execute(status -> ReplicaRouting.onPrimary(() -> {
+                traineeBalanceRepository.recompute(traineeId);
+                return traineeBalanceRepository.findByTraineeId(traineeId);
+            }));
+        }
+
+        return balance;
+    }
+
+    // Get trainees that still owe money, largest balance first
+    @Transactional(readOnly = true)
+    public List<TraineeBalance> getOutstandingBalances() {
+        return traineeBalanceRepository.findOutstanding();
+    }
+
+    // Get the total amount owed by all trainees
+    @Transactional(readOnly = true)
+    public BigDecimal getTotalOutstanding() {
+        return traineeBalanceRepository.getTotalOutstanding();
+    }
+
+    // Create the ledger row of a new trainee
+    public void openAccount(Integer traineeId) {
+        traineeBalanceRepository.recompute(traineeId);
+    }
+
+    // Create the ledger rows of trainees inserted by a bulk import
+    public void openAccountsForUsers(Collection<Integer> userIds) {
+        traineeBalanceRepository.openAccountsForUsers(userIds);
+    }
+
+    // Course price follows the trainee's license category
+    public void licenseCategoryChanged(Integer traineeId) {
+        traineeBalanceRepository.recompute(traineeId);
+    }
+
+    // Record a payment that was just saved (negative amount reverses one)
+    public void applyPayment(Integer traineeId, BigDecimal amount) {
+        if (!traineeBalanceRepository.applyPayment(traineeId, amount)) {
+            // no ledger row yet - build it from the payments, which already include this one
+            traineeBalanceRepository.recompute(traineeId);
+        }
+    }
+
+    // Get all tuition prices
+    @Transactional(readOnly = true)
+    public List<TuitionPrice> getTuitionPrices() {
+        return tuitionPriceRepository.findAll();
+    }
+
+    // Change a tuition price and re-price the balances of that category
+    @Transactional
+    public int updateTuitionPrice(String licenseCategory, BigDecimal price) {
+        if (tuitionPriceRepository.findByCategory(licenseCategory) == null) {
+            throw new IllegalArgumentException("License category not found: " + licenseCategory);
+        }
+
+        if (price == null || price.compareTo(BigDecimal.ZERO) < 0) {
+            throw new IllegalArgumentException("Price must be zero or greater");
+        }
+
+        tuitionPriceRepository.updatePrice(licenseCategory, price);
+        return traineeBalanceRepository.repriceCategory(licenseCategory, price);
+    }
+
+    /**
+     * Reconciliation: rebuild every ledger row that disagrees with the payments and prices
+     * Runs after startup and every night; returns the number of repaired rows
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @LeaderJob(value = "ledger-reconcile", cron = "0 30 2 * * *")
+    @Transactional
+    public int reconcile() {
+        List<Integer> traineeIds = traineeBalanceRepository.findDiscrepancies();
+
+        for (Integer traineeId : traineeIds) {
+            traineeBalanceRepository.recompute(traineeId);
+        }
+
+        if (traineeIds.isEmpty()) {
+            log.info("Ledger reconciliation: all balances match the payments");
+        } else {
+            log.warn("Ledger reconciliation: repaired {} balances (trainees {})", traineeIds.size(), traineeIds);
+        }
+
+        return traineeIds.size();
+    }
+}
@@ -1,5 +1,6 @@
 package com.drivingschool.service;
 
+import com.drivingschool.model.AuditEvent;
 import com.drivingschool.model.Payment;
 import com.drivingschool.model.Trainee;
 import com.drivingschool.repository.PaymentRepository;
@@ -22,28 +23,40 @@ public class PaymentService {
 
     private final PaymentRepository paymentRepository;
     private final TraineeRepository traineeRepository;
+    private final LedgerService ledgerService;
+    private final RevenueService revenueService;
+    private final AuditService auditService;
 
-    public PaymentService(PaymentRepository paymentRepository, TraineeRepository traineeRepository) {
+    public PaymentService(PaymentRepository paymentRepository, TraineeRepository traineeRepository,
+                          LedgerService ledgerService, RevenueService revenueService,
+                          AuditService auditService) {
         this.paymentRepository = paymentRepository;
         this.traineeRepository = traineeRepository;
+        this.ledgerService = ledgerService;
+        this.revenueService = revenueService;
+        this.auditService = auditService;
     }
 
     // Get all payments
+    @Transactional(readOnly = true)
     public List<Payment> getAllPayments() {
         return paymentRepository.findAll();
     }
 
     // Get payment by id
+    @Transactional(readOnly = true)
     public Payment getPaymentById(Integer paymentId) {
         return paymentRepository.findById(paymentId);
     }
 
     // Get all payments for a trainee
+    @Transactional(readOnly = true)
     public List<Payment> getPaymentsByTrainee(Integer traineeId) {
         return paymentRepository.findByTraineeId(traineeId);
     }
 
     // Get payments by method
+    @Transactional(readOnly = true)
     public List<Payment> getPaymentsByMethod(String paymentMethod) {
         return paymentRepository.findByPaymentMethod(paymentMethod);
     }
@@ -68,14 +81,20 @@ public class PaymentService {
             payment.setPaymentDate(LocalDate.now());
         }
 
-        return paymentRepository.save(payment);
+        Integer paymentId = paymentRepository.save(payment);
+        ledgerService.applyPayment(payment.getTraineeId(), payment.getAmount());
+        revenueService.paymentAdded(payment);
+        auditService.record(AuditEvent.Entity.PAYMENT, paymentId, AuditEvent.Action.CREATE,
+                amountOf(payment) + " by " + payment.getPaymentMethod() + ", trainee " + payment.getTraineeId());
+
+        return paymentId;
     }
 
     // Update existing payment
     @Transactional
     public void updatePayment(Payment payment) {
-        // validate payment exists
-        Payment existing = paymentRepository.findById(payment.getPaymentId());
+        // validate payment exists; the lock keeps concurrent edits from moving the same old amount twice
+        Payment existing = paymentRepository.findByIdForUpdate(payment.getPaymentId());
         if (existing == null) {
             throw new IllegalArgumentException("Payment not found: " + payment.getPaymentId());
         }
@@ -86,47 +105,80 @@ public class PaymentService {
             throw new IllegalArgumentException("Trainee not found: " + payment.getTraineeId());
         }
 
+        // keep the original date if none was submitted
+        if (payment.getPaymentDate() == null) {
+            payment.setPaymentDate(existing.getPaymentDate());
+        }
+
         paymentRepository.update(payment);
+
+        // move the amount in the ledger and the revenue rollup (trainee, day or method may have changed)
+        ledgerService.applyPayment(existing.getTraineeId(), existing.getAmount().negate());
+        ledgerService.applyPayment(payment.getTraineeId(), payment.getAmount());
+        revenueService.paymentRemoved(existing);
+        revenueService.paymentAdded(payment);
+
+        auditService.record(AuditEvent.Entity.PAYMENT, payment.getPaymentId(), AuditEvent.Action.UPDATE,
+                AuditService.changes(
+                        "Amount", amountOf(existing), amountOf(payment),
+                        "Date", existing.getPaymentDate(), payment.getPaymentDate(),
+                        "Method", existing.getPaymentMethod(), payment.getPaymentMethod(),
+                        "Trainee", existing.getTraineeId(), payment.getTraineeId(),
+                        "Details", existing.getDetails(), payment.getDetails()));
     }
 
     // Delete payment
     @Transactional
     public void deletePayment(Integer paymentId) {
-        Payment payment = paymentRepository.findById(paymentId);
+        Payment payment = paymentRepository.findByIdForUpdate(paymentId);
 
         if (payment == null) {
             throw new IllegalArgumentException("Payment not found: " + paymentId);
         }
 
         paymentRepository.delete(paymentId);
+        ledgerService.applyPayment(payment.getTraineeId(), payment.getAmount().negate());
+        revenueService.paymentRemoved(payment);
+        auditService.record(AuditEvent.Entity.PAYMENT, paymentId, AuditEvent.Action.DELETE,
+                amountOf(payment) + " by " + payment.getPaymentMethod() + ", trainee " + payment.getTraineeId());
+    }
+
+    // Amount as written in the audit journal (100.00 and 100 are the same amount)
+    private static String amountOf(Payment payment) {
+        return payment.getAmount().stripTrailingZeros().toPlainString();
     }
 
     // Get total count
+    @Transactional(readOnly = true)
     public Integer getTotalCount() {
         return paymentRepository.count();
     }
 
-    // Get total amount paid by a trainee
+    // Get total amount paid by a trainee (from the ledger, no SUM over payments)
+    @Transactional(readOnly = true)
     public BigDecimal getTotalPaidByTrainee(Integer traineeId) {
-        return paymentRepository.getTotalAmountByTrainee(traineeId);
+        return ledgerService.getBalance(traineeId).getTotalPaid();
     }
 
-    // Get total revenue (all payments)
+    // Get total revenue (all payments, from the daily rollup)
+    @Transactional(readOnly = true)
     public BigDecimal getTotalRevenue() {
-        return paymentRepository.getTotalRevenue();
+        return revenueService.getTotalRevenue();
     }
 
-    // Get revenue by payment method
+    // Get revenue by payment method (from the daily rollup)
+    @Transactional(readOnly = true)
     public BigDecimal getRevenueByMethod(String paymentMethod) {
-        return paymentRepository.getRevenueByMethod(paymentMethod);
+        return revenueService.getRevenueByMethod(paymentMethod);
     }
 
     // Get payment statistics
+    @Transactional(readOnly = true)
     public PaymentStats getPaymentStatistics() {
         BigDecimal totalRevenue = getTotalRevenue();
         BigDecimal cashRevenue = getRevenueByMethod("Cash");
         BigDecimal cardRevenue = getRevenueByMethod("Card");
-        Integer totalCount = getTotalCount();
+        Integer totalCount = revenueService.getPaymentCount();
 
         return new PaymentStats(totalRevenue, cashRevenue, cardRevenue, totalCount);
     }
@@ -0,0 +1,132 @@
+package com.drivingschool.service;
+
+import com.drivingschool.repository.ReplicaRouting;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Read-through cache of one immutable snapshot of reference data (all instructors, all cars)
+ *
+ * The snapshot is loaded on the first read after an invalidation and shared by every reader
+ * until the next one. Writers call invalidate() inside their transaction: the snapshot is
+ * dropped at once and again when the transaction completes (commit or rollback), so a read
+ * made in between - even inside the writing transaction - is never kept. A load that started
+ * before an invalidation is returned to its caller but not cached. Loads always read the
+ * primary: a snapshot loaded from a lagging replica would outlive the lag. A transaction that
+ * already holds a connection (maybe the replica's) loads in a read-only transaction of its own,
+ * except after invalidating the cache itself: then it loads on its own connection, to see its
+ * writes, and the snapshot is not cached.
+ *
+ * Metrics: reference.cache.requests (result=hit|miss), reference.cache.invalidations and
+ * reference.cache.load, all tagged with the cache name.
+ */
+
+public class ReferenceCache<S> {
+
+    private final Supplier<S> loader;
+    private final TransactionTemplate loadTransaction;
+    private final AtomicReference<S> snapshot = new AtomicReference<>();
+    private final AtomicLong generation = new AtomicLong();
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter invalidations;
+    private final Timer loads;
+
+    public ReferenceCache(String name, Supplier<S> loader, PlatformTransactionManager transactionManager,
+                          MeterRegistry meterRegistry) {
+        this.loader = loader;
+
+        this.loadTransaction = new TransactionTemplate(transactionManager);
+        this.loadTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.loadTransaction.setReadOnly(true);
+
+        this.hits = Counter.builder("reference.cache.requests")
+                .tag("cache", name).tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("reference.cache.requests")
+                .tag("cache", name).tag("result", "miss").register(meterRegistry);
+        this.invalidations = Counter.builder("reference.cache.invalidations")
+                .tag("cache", name).register(meterRegistry);
+        this.loads = Timer.builder("reference.cache.load")
+                .tag("cache", name)
+                .description("Time to load the snapshot from the database")
+                .register(meterRegistry);
+    }
+
+    // The current snapshot, loaded from the database on a miss
+    public S get() {
+        S current = snapshot.get();
+        if (current != null) {
+            hits.increment();
+            return current;
+        }
+
+        misses.increment();
+        long loadedGeneration = generation.get();
+        long start = System.nanoTime();
+        S loaded;
+        if (invalidatedByCurrentTransaction()) {
+            // generation has moved on, so this is not cached
+            loaded = loader.get();
+        } else if (ReplicaRouting.connectionTaken()) {
+            loaded = loadTransaction.execute(status -> ReplicaRouting.onPrimary(loader));
+        } else {
+            loaded = ReplicaRouting.onPrimary(loader);
+        }
+        loads.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+
+        // only cached if no invalidation happened while loading
+        synchronized (this) {
+            if (generation.get() == loadedGeneration) {
+                snapshot.set(loaded);
+            }
+        }
+        return loaded;
+    }
+
+    // Drop the snapshot now and when the current transaction (if any) completes
+    public void invalidate() {
+        drop();
+
+        if (TransactionSynchronizationManager.isSynchronizationActive() && !invalidatedByCurrentTransaction()) {
+            TransactionSynchronizationManager.registerSynchronization(new Invalidation());
+        }
+    }
+
+    private boolean invalidatedByCurrentTransaction() {
+        return TransactionSynchronizationManager.isSynchronizationActive()
+                && TransactionSynchronizationManager.getSynchronizations().stream()
+                        .anyMatch(synchronization -> synchronization instanceof ReferenceCache<?>.Invalidation invalidation
+                                && invalidation.cache() == this);
+    }
+
+    private synchronized void drop() {
+        generation.incrementAndGet();
+        snapshot.set(null);
+        invalidations.increment();
+    }
+
+    // Drops the snapshot again when the invalidating transaction completes
+    private class Invalidation implements TransactionSynchronization {
+
+        ReferenceCache<S> cache() {
+            return ReferenceCache.this;
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            drop();
+        }
+    }
+}
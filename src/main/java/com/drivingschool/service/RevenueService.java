@@ -0,0 +1,191 @@
+package com.drivingschool.service;
+
+import com.drivingschool.model.Payment;
+import com.drivingschool.repository.ArchiveRepository;
+import com.drivingschool.repository.PaymentRepository;
+import com.drivingschool.repository.RevenueDailyRepository;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Revenue Service - revenue reports served from the RevenueDaily rollup
+ *
+ * PaymentService keeps the rollup current inside each payment transaction;
+ * rebuild() recreates it from the Payment table and the archived payments.
+ */
+
+@Service
+public class RevenueService {
+
+    private static final Logger log = LoggerFactory.getLogger(RevenueService.class);
+
+    public static final String DAY = "day";
+    public static final String MONTH = "month";
+    public static final String YEAR = "year";
+
+    private final RevenueDailyRepository revenueDailyRepository;
+    private final PaymentRepository paymentRepository;
+    private final ArchiveRepository archiveRepository;
+    private final ArchiveService archiveService;
+
+    public RevenueService(RevenueDailyRepository revenueDailyRepository, PaymentRepository paymentRepository,
+                          ArchiveRepository archiveRepository, ArchiveService archiveService) {
+        this.revenueDailyRepository = revenueDailyRepository;
+        this.paymentRepository = paymentRepository;
+        this.archiveRepository = archiveRepository;
+        this.archiveService = archiveService;
+    }
+
+    // Add a saved payment to the rollup
+    public void paymentAdded(Payment payment) {
+        revenueDailyRepository.add(payment.getPaymentDate(), methodOf(payment), payment.getAmount(), 1);
+    }
+
+    // Remove a payment (deleted, or the old version of an edited one) from the rollup
+    public void paymentRemoved(Payment payment) {
+        revenueDailyRepository.add(payment.getPaymentDate(), methodOf(payment), payment.getAmount().negate(), -1);
+    }
+
+    // Get total revenue of all time
+    @Transactional(readOnly = true)
+    public BigDecimal getTotalRevenue() {
+        return revenueDailyRepository.getTotal();
+    }
+
+    // Get total revenue of all time for one payment method
+    @Transactional(readOnly = true)
+    public BigDecimal getRevenueByMethod(String paymentMethod) {
+        return revenueDailyRepository.getTotalByMethod(paymentMethod);
+    }
+
+    // Get the number of payments ever recorded
+    @Transactional(readOnly = true)
+    public Integer getPaymentCount() {
+        return revenueDailyRepository.getPaymentCount();
+    }
+
+    // Get revenue of the current month
+    @Transactional(readOnly = true)
+    public BigDecimal getRevenueThisMonth() {
+        LocalDate today = LocalDate.now();
+        return revenueDailyRepository.getTotalBetween(today.withDayOfMonth(1), today);
+    }
+
+    /**
+     * Revenue per day, month or year between two days (inclusive)
+     * A null paymentMethod includes every method
+     */
+    @Transactional(readOnly = true)
+    public List<RevenuePeriod> getRevenue(String granularity, LocalDate from, LocalDate to, String paymentMethod) {
+        String periodExpression = switch (granularity == null ? MONTH : granularity) {
+            case DAY -> RevenueDailyRepository.PERIOD_DAY;
+            case MONTH -> RevenueDailyRepository.PERIOD_MONTH;
+            case YEAR -> RevenueDailyRepository.PERIOD_YEAR;
+            default -> throw new IllegalArgumentException("Granularity must be day, month or year");
+        };
+
+        if (from.isAfter(to)) {
+            throw new IllegalArgumentException("Start date must not be after end date");
+        }
+
+        Map<String, RevenuePeriod> periods = new LinkedHashMap<>();
+
+        for (Map<String, Object> row : revenueDailyRepository.findByPeriod(periodExpression, from, to)) {
+            String method = (String) row.get("PaymentMethod");
+            if (paymentMethod != null && !paymentMethod.equals(method)) {
+                continue;
+            }
+
+            String period = (String) row.get("Period");
+            BigDecimal amount = (BigDecimal) row.get("Amount");
+            int count = ((Number) row.get("PaymentCount")).intValue();
+
+            RevenuePeriod current = periods.getOrDefault(period,
+                    new RevenuePeriod(period, BigDecimal.ZERO, BigDecimal.ZERO, BigDecimal.ZERO, 0));
+
+            periods.put(period, new RevenuePeriod(period,
+                    "Cash".equals(method) ? current.getCashRevenue().add(amount) : current.getCashRevenue(),
+                    "Card".equals(method) ? current.getCardRevenue().add(amount) : current.getCardRevenue(),
+                    current.getTotalRevenue().add(amount),
+                    current.getPaymentCount() + count));
+        }
+
+        return new ArrayList<>(periods.values());
+    }
+
+    // Default report range for a granularity: last 31 days, last 12 months or all years
+    public LocalDate defaultFrom(String granularity) {
+        LocalDate today = LocalDate.now();
+
+        return switch (granularity == null ? MONTH : granularity) {
+            case DAY -> today.minusDays(30);
+            case YEAR -> LocalDate.of(2000, 1, 1);
+            default -> today.minusMonths(11).withDayOfMonth(1);
+        };
+    }
+
+    // Recreate the whole rollup from the Payment table and the archived payments
+    @Transactional
+    public void rebuild() {
+        revenueDailyRepository.rebuild();
+
+        // archived payments: amount (cents) and count per day and method
+        Map<LocalDate, Map<String, long[]>> archived = new TreeMap<>();
+        archiveService.scanPayments(null, null, row -> {
+            String method = row.getString(ArchiveService.PAYMENT_METHOD);
+            long[] totals = archived
+                    .computeIfAbsent(LocalDate.ofEpochDay(row.getInt(ArchiveService.PAYMENT_DAY)), day -> new HashMap<>())
+                    .computeIfAbsent(method == null ? "Other" : method, key -> new long[2]);
+            totals[0] += row.getLong(ArchiveService.PAYMENT_CENTS);
+            totals[1]++;
+        });
+
+        archived.forEach((day, methods) -> methods.forEach((method, totals) ->
+                revenueDailyRepository.add(day, method, BigDecimal.valueOf(totals[0], 2), (int) totals[1])));
+    }
+
+    // After startup, rebuild the rollup if it disagrees with the payments (e.g. rows changed by hand)
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void verifyRollup() {
+        Map<String, Object> archived = archiveRepository.getArchivedPaymentTotals();
+        BigDecimal fromPayments = paymentRepository.getTotalRevenue().add(new BigDecimal(archived.get("AMOUNT").toString()));
+        int paymentCount = paymentRepository.count() + ((Number) archived.get("PAYMENTS")).intValue();
+        BigDecimal fromRollup = revenueDailyRepository.getTotal();
+
+        if (fromPayments.compareTo(fromRollup) != 0 || paymentCount != revenueDailyRepository.getPaymentCount()) {
+            log.warn("Revenue rollup out of date ({} vs {} in payments), rebuilding", fromRollup, fromPayments);
+            rebuild();
+        }
+    }
+
+    private static String methodOf(Payment payment) {
+        return payment.getPaymentMethod() == null ? "Other" : payment.getPaymentMethod();
+    }
+
+    // Revenue of one day, month or year
+    @Getter
+    @AllArgsConstructor
+    public static class RevenuePeriod {
+        private final String period;
+        private final BigDecimal cashRevenue;
+        private final BigDecimal cardRevenue;
+        private final BigDecimal totalRevenue;
+        private final Integer paymentCount;
+    }
+}
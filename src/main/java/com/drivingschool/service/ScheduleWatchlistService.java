@@ -0,0 +1,369 @@
+package com.drivingschool.service;
+
+import com.drivingschool.model.ScheduleWatch;
+import com.drivingschool.repository.ScheduleWatchlistRepository;
+import com.drivingschool.repository.TableVersions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Schedule Watchlist Service - active trainees behind schedule
+ *
+ * A trainee is behind schedule when they have been enrolled for at least 30 days and have
+ * fewer completed practical sessions than the average of the trainees enrolled for at least
+ * 30 days that completed any session. The average is taken over every branch (see Branches):
+ * the other branches' session sum and trainee count are re-read every branches.cache-seconds
+ * and added to this branch's, so every branch flags its trainees against the same average and
+ * the per-branch watchlists add up to the school's.
+ *
+ * The average is kept as a running sum/count and active trainees are indexed by their session
+ * count, so a change re-scores only the affected trainee and the watchlist is a head of that index.
+ * Membership is persisted in ScheduleWatchlist, so the time a trainee was flagged survives restarts.
+ *
+ * The node that changes a trainee re-scores them and writes the membership changes. The other
+ * nodes re-read the trainees ChangeLogService reports (Trainee, TraineeProgress, which every
+ * counted session change updates, and ScheduleWatchlist) into memory without writing. Days
+ * enrolled grow on their own, so every node reloads its copy after startup and every night,
+ * and one node rewrites the table then (LeaderJob schedule-watchlist). When the other branches'
+ * totals move, one node rewrites the table as well (LeaderJob schedule-watchlist-branches).
+ */
+
+@Service
+public class ScheduleWatchlistService {
+
+    private static final Logger log = LoggerFactory.getLogger(ScheduleWatchlistService.class);
+
+    public static final int MIN_DAYS_ENROLLED = 30;
+
+    private final ScheduleWatchlistRepository scheduleWatchlistRepository;
+    private final TransactionTemplate writeTransaction;
+
+    // guarded by this
+    private final Map<Integer, ScheduleWatch> eligible = new HashMap<>();
+    private final TreeMap<Integer, Set<Integer>> activeBySessions = new TreeMap<>();
+    private final Map<Integer, ScheduleWatch> flagged = new HashMap<>();
+    private long sessionSum;
+    private int traineesWithSessions;
+    private long otherSessionSum;               // eligible trainees of the other branches
+    private long otherTraineesWithSessions;
+    private long rewrittenOtherSessionSum;      // the other branches' totals at the last rewrite
+    private long rewrittenOtherTrainees;
+
+    public ScheduleWatchlistService(ScheduleWatchlistRepository scheduleWatchlistRepository,
+                                    PlatformTransactionManager transactionManager,
+                                    ChangeLogService changeLogService) {
+        this.scheduleWatchlistRepository = scheduleWatchlistRepository;
+
+        // changes are applied after the caller's commit, so they need a transaction of their own
+        this.writeTransaction = new TransactionTemplate(transactionManager);
+        this.writeTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+
+        // entries of all three tables carry the TraineeID
+        changeLogService.subscribe(TableVersions.TRAINEE, this::changedElsewhere);
+        changeLogService.subscribe(TableVersions.TRAINEE_PROGRESS, this::changedElsewhere);
+        changeLogService.subscribe(TableVersions.SCHEDULE_WATCHLIST, this::changedElsewhere);
+    }
+
+    // Trainees behind schedule, fewest completed sessions first (reads only the k listed trainees)
+    public synchronized List<ScheduleWatch> getWatchlist() {
+        List<ScheduleWatch> watchlist = new ArrayList<>(flagged.size());
+
+        for (Set<Integer> traineeIds : behindSchedule().values()) {
+            for (Integer traineeId : traineeIds) {
+                watchlist.add(flagged.get(traineeId));
+            }
+        }
+
+        return watchlist;
+    }
+
+    // Number of trainees behind schedule
+    public synchronized int getWatchlistSize() {
+        return flagged.size();
+    }
+
+    /**
+     * Trainees behind schedule in every branch, fewest completed sessions first
+     * This branch's from memory, the other branches' from their ScheduleWatchlist
+     */
+    public List<ScheduleWatch> getAllWatchlists() {
+        List<ScheduleWatch> watchlist = new ArrayList<>(getWatchlist());
+        watchlist.addAll(scheduleWatchlistRepository.findOtherBranchWatchlists());
+        watchlist.sort(Comparator.comparing(ScheduleWatch::getCompletedSessions));
+        return watchlist;
+    }
+
+    // Number of trainees behind schedule in every branch
+    public int countAllWatchlists() {
+        return getWatchlistSize() + scheduleWatchlistRepository.countOtherBranchWatchlists();
+    }
+
+    // Average completed sessions over every branch the watchlist compares against (0 when nobody completed a session yet)
+    public synchronized double getAverageSessions() {
+        long trainees = traineesWithSessions + otherTraineesWithSessions;
+        return trainees == 0 ? 0 : (double) (sessionSum + otherSessionSum) / trainees;
+    }
+
+    /**
+     * A trainee's sessions, status or enrollment changed
+     * Inside a transaction the trainee is re-scored after commit (nothing changes on rollback)
+     */
+    public void traineeChanged(Integer traineeId) {
+        AfterCommit.run(() -> rescore(traineeId));
+    }
+
+    // Many trainees changed at once (e.g. a bulk import)
+    public void traineesChanged() {
+        AfterCommit.run(this::rebuild);
+    }
+
+    /**
+     * Reload this node's copy from the database, without writing
+     * Runs after startup and every night, when trainees cross the 30 days mark
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "0 5 0 * * *")
+    public synchronized void reload() {
+        applyOtherBranches(readOtherBranches());
+        load();
+        sync(false);
+
+        log.info("Schedule watchlist loaded: {} trainees behind schedule (average {} sessions)",
+                flagged.size(), String.format("%.2f", getAverageSessions()));
+    }
+
+    /**
+     * Rebuild the watchlist from the database and write every membership change to ScheduleWatchlist
+     * Runs every night on one node; the other nodes pick the changes up from the change log
+     */
+    @LeaderJob(value = "schedule-watchlist", cron = "0 5 0 * * *")
+    public synchronized void rebuild() {
+        applyOtherBranches(readOtherBranches());
+        rewrite();
+    }
+
+    /**
+     * Re-read the other branches' totals, which move the shared average, without writing
+     * Runs on every node every branches.cache-seconds
+     */
+    @Scheduled(fixedDelayString = "${branches.cache-seconds:60}", timeUnit = TimeUnit.SECONDS)
+    public void refreshOtherBranches() {
+        // read outside the lock: another branch may take up to branches.query-timeout-seconds
+        Map<String, Long> totals = readOtherBranches();
+
+        synchronized (this) {
+            if (applyOtherBranches(totals)) {
+                sync(false);
+            }
+        }
+    }
+
+    /**
+     * Rewrite ScheduleWatchlist when the other branches' totals moved since the last rewrite
+     * Runs every branches.cache-seconds on one node. On that node refreshOtherBranches may have
+     * updated the copy already, so the rewrite starts again from the table, not from the copy
+     */
+    @LeaderJob(value = "schedule-watchlist-branches", fixedDelay = "${branches.cache-seconds:60}", timeUnit = TimeUnit.SECONDS)
+    public void rewriteForOtherBranches() {
+        Map<String, Long> totals = readOtherBranches();
+
+        synchronized (this) {
+            applyOtherBranches(totals);
+            if (otherSessionSum != rewrittenOtherSessionSum || otherTraineesWithSessions != rewrittenOtherTrainees) {
+                rewrite();
+            }
+        }
+    }
+
+    // Reload from the database and write the membership changes
+    private void rewrite() {
+        writeTransaction.executeWithoutResult(status -> {
+            load();
+            sync(true);
+        });
+        rewrittenOtherSessionSum = otherSessionSum;
+        rewrittenOtherTrainees = otherTraineesWithSessions;
+
+        log.info("Schedule watchlist rebuilt: {} trainees behind schedule (average {} sessions)",
+                flagged.size(), String.format("%.2f", getAverageSessions()));
+    }
+
+    private synchronized void rescore(Integer traineeId) {
+        writeTransaction.executeWithoutResult(status -> {
+            reload(traineeId);
+            sync(true);
+        });
+    }
+
+    // Trainees changed by another node are re-read; an unknown set of trainees reloads everything
+    private synchronized void changedElsewhere(Set<Integer> traineeIds) {
+        if (traineeIds == null) {
+            reload();
+            return;
+        }
+
+        traineeIds.forEach(this::reload);
+        sync(false);
+    }
+
+    /**
+     * Session sum (Total) and trainee count (Trainees) of the other branches
+     * null when a branch did not answer: the last totals read are kept, so the watchlist does not jump
+     */
+    private Map<String, Long> readOtherBranches() {
+        try {
+            return scheduleWatchlistRepository.findOtherBranchTotals(LocalDate.now().minusDays(MIN_DAYS_ENROLLED));
+        } catch (RuntimeException e) {
+            log.warn("Could not read the session totals of the other branches, keeping the last ones: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    // Take the other branches' totals into the average; returns true when they changed
+    private boolean applyOtherBranches(Map<String, Long> totals) {
+        if (totals == null) {
+            return false;
+        }
+
+        boolean changed = totals.get("Total") != otherSessionSum || totals.get("Trainees") != otherTraineesWithSessions;
+        otherSessionSum = totals.get("Total");
+        otherTraineesWithSessions = totals.get("Trainees");
+        return changed;
+    }
+
+    // Every candidate, with the persisted watchlist as the current membership
+    private void load() {
+        eligible.clear();
+        activeBySessions.clear();
+        flagged.clear();
+        sessionSum = 0;
+        traineesWithSessions = 0;
+
+        for (ScheduleWatch candidate : scheduleWatchlistRepository.findAllCandidates()) {
+            add(candidate);
+
+            // as persisted, so a rewrite only touches the rows that changed
+            if (candidate.getFlaggedAt() != null) {
+                ScheduleWatch persisted = new ScheduleWatch();
+                persisted.setTraineeId(candidate.getTraineeId());
+                persisted.setCompletedSessions(candidate.getFlaggedSessions());
+                persisted.setFlaggedAt(candidate.getFlaggedAt());
+                flagged.put(candidate.getTraineeId(), persisted);
+            }
+        }
+    }
+
+    private void reload(Integer traineeId) {
+        remove(traineeId);
+
+        ScheduleWatch candidate = scheduleWatchlistRepository.findCandidate(traineeId);
+        if (candidate != null) {
+            add(candidate);
+        }
+    }
+
+    private void add(ScheduleWatch candidate) {
+        if (candidate.getEnrollmentDate() == null || candidate.getDaysEnrolled() < MIN_DAYS_ENROLLED) {
+            return;
+        }
+
+        eligible.put(candidate.getTraineeId(), candidate);
+
+        if (candidate.getCompletedSessions() > 0) {
+            sessionSum += candidate.getCompletedSessions();
+            traineesWithSessions++;
+        }
+
+        if (candidate.isActive()) {
+            activeBySessions.computeIfAbsent(candidate.getCompletedSessions(), key -> new HashSet<>())
+                    .add(candidate.getTraineeId());
+        }
+    }
+
+    private void remove(Integer traineeId) {
+        ScheduleWatch previous = eligible.remove(traineeId);
+        if (previous == null) {
+            return;
+        }
+
+        if (previous.getCompletedSessions() > 0) {
+            sessionSum -= previous.getCompletedSessions();
+            traineesWithSessions--;
+        }
+
+        activeBySessions.computeIfPresent(previous.getCompletedSessions(), (key, set) -> {
+            set.remove(traineeId);
+            return set.isEmpty() ? null : set;
+        });
+    }
+
+    // Active trainees with fewer sessions than the average, grouped by session count
+    private Map<Integer, Set<Integer>> behindSchedule() {
+        long trainees = traineesWithSessions + otherTraineesWithSessions;
+        if (trainees == 0) {
+            return Map.of();
+        }
+
+        // sessions < average  <=>  sessions < ceil(average)
+        int bound = (int) Math.ceil((double) (sessionSum + otherSessionSum) / trainees);
+        return activeBySessions.headMap(bound, false);
+    }
+
+    /**
+     * Bring the flagged set in line with the index (the average moves, so others may join or leave)
+     * With persist, membership changes are also written to ScheduleWatchlist
+     */
+    private void sync(boolean persist) {
+        Set<Integer> current = new HashSet<>();
+        behindSchedule().values().forEach(current::addAll);
+
+        for (Iterator<Integer> it = flagged.keySet().iterator(); it.hasNext(); ) {
+            Integer traineeId = it.next();
+            if (!current.contains(traineeId)) {
+                it.remove();
+                if (persist) {
+                    scheduleWatchlistRepository.unflag(traineeId);
+                }
+            }
+        }
+
+        for (Integer traineeId : current) {
+            ScheduleWatch candidate = eligible.get(traineeId);
+            ScheduleWatch previous = flagged.get(traineeId);
+
+            if (previous == null || previous.getFlaggedAt() == null) {
+                candidate.setFlaggedAt(candidate.getFlaggedAt() != null ? candidate.getFlaggedAt() : LocalDateTime.now());
+                if (persist) {
+                    scheduleWatchlistRepository.flag(traineeId, candidate.getCompletedSessions(), candidate.getFlaggedAt());
+                }
+            } else {
+                candidate.setFlaggedAt(previous.getFlaggedAt());
+                if (persist && !previous.getCompletedSessions().equals(candidate.getCompletedSessions())) {
+                    scheduleWatchlistRepository.flag(traineeId, candidate.getCompletedSessions(), candidate.getFlaggedAt());
+                }
+            }
+
+            flagged.put(traineeId, candidate);
+        }
+    }
+}
@@ -0,0 +1,380 @@
+package com.drivingschool.service;
+
+import com.drivingschool.repository.SessionAnalyticsRepository;
+import com.drivingschool.repository.TableVersions;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * Session Analytics Service - session counts and hours per instructor, trainee, day or week
+ *
+ * Reports run on a columnar snapshot of Session and Trainee_Session, plus the archived
+ * closed years (see SessionSnapshot), instead of SQL or List<Session> streams.
+ *
+ * SessionService appends the id of every committed change to an in-memory change log;
+ * the log is applied before each report and every few seconds, by reloading only those
+ * sessions. Sessions changed by other nodes are logged the same way (see ChangeLogService).
+ * The snapshot is loaded after startup and can be rebuilt on demand.
+ */
+
+@Service
+public class SessionAnalyticsService {
+
+    private static final Logger log = LoggerFactory.getLogger(SessionAnalyticsService.class);
+
+    public static final String INSTRUCTOR = "instructor";
+    public static final String TRAINEE = "trainee";
+    public static final String DAY = "day";
+    public static final String WEEK = "week";
+
+    private final SessionAnalyticsRepository sessionAnalyticsRepository;
+    private final ArchiveService archiveService;
+
+    private final Queue<Integer> changeLog = new ConcurrentLinkedQueue<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // guarded by lock; null until the first load finished
+    private SessionSnapshot snapshot;
+
+    public SessionAnalyticsService(SessionAnalyticsRepository sessionAnalyticsRepository,
+                                   ArchiveService archiveService, ChangeLogService changeLogService) {
+        this.sessionAnalyticsRepository = sessionAnalyticsRepository;
+        this.archiveService = archiveService;
+
+        // Trainee_Session entries carry the SessionID
+        changeLogService.subscribe(TableVersions.SESSION, this::changedElsewhere);
+        changeLogService.subscribe(TableVersions.TRAINEE_SESSION, this::changedElsewhere);
+    }
+
+    /**
+     * A session was created, updated or deleted
+     * Inside a transaction the id is logged after commit (nothing changes on rollback)
+     */
+    public void sessionChanged(Integer sessionId) {
+        AfterCommit.run(() -> changeLog.add(sessionId));
+    }
+
+    // A trainee was deleted; their theoretical attendance went with them
+    public void traineeDeleted(Integer traineeId) {
+        AfterCommit.run(() -> {
+            lock.writeLock().lock();
+            try {
+                if (snapshot != null) {
+                    snapshot.removeAttendee(traineeId);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    // Sessions changed by another node (null: any session, e.g. a trainee deleted with their attendance)
+    private void changedElsewhere(Set<Integer> sessionIds) {
+        if (sessionIds == null) {
+            rebuild();
+        } else {
+            changeLog.addAll(sessionIds);
+        }
+    }
+
+    /**
+     * Load the whole snapshot from the database
+     * Changes committed during the load stay in the change log and are applied on top
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void rebuild() {
+        long started = System.nanoTime();
+
+        SessionSnapshot loaded = new SessionSnapshot();
+        loadArchive(loaded);
+        load(loaded, null);
+        loaded.trimToSize();
+
+        lock.writeLock().lock();
+        try {
+            snapshot = loaded;
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        applyChanges();
+
+        log.info("Session analytics snapshot loaded: {} sessions, {} KB in {} ms",
+                loaded.rows(), loaded.heapBytes() / 1024, (System.nanoTime() - started) / 1_000_000);
+    }
+
+    // Apply the logged changes to the snapshot (one applier at a time, so an older reload never wins)
+    @Scheduled(fixedDelay = 5000)
+    public synchronized void applyChanges() {
+        if (changeLog.isEmpty() || !isLoaded()) {
+            return;
+        }
+
+        Set<Integer> changed = new LinkedHashSet<>();
+        Integer sessionId;
+        while ((sessionId = changeLog.poll()) != null) {
+            changed.add(sessionId);
+        }
+
+        // reload outside the lock, then swap the rows in
+        SessionSnapshot reloaded = new SessionSnapshot();
+        load(reloaded, List.copyOf(changed));
+
+        lock.writeLock().lock();
+        try {
+            for (Integer id : changed) {
+                if (reloaded.contains(id)) {
+                    reloaded.copyTo(id, snapshot);
+                } else {
+                    snapshot.remove(id);
+                }
+            }
+            snapshot.compactIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Number of sessions and hours per group, for sessions starting between two days (inclusive)
+     * sessionType / status may be null for all; instructor and trainee groups are sorted by
+     * number of sessions and cut at limit, days and weeks are in calendar order
+     */
+    public AnalyticsResult aggregate(String groupBy, LocalDate from, LocalDate to,
+                                     String sessionType, String status, int limit) {
+        SessionSnapshot.GroupBy group = groupOf(groupBy);
+        byte type = sessionType == null ? SessionSnapshot.ANY : typeCode(sessionType);
+        byte statusCode = status == null ? SessionSnapshot.ANY : statusCode(status);
+
+        if (from.isAfter(to)) {
+            throw new IllegalArgumentException("'From' must not be after 'To'");
+        }
+
+        applyChanges();
+
+        long started = System.nanoTime();
+        SessionSnapshot.Buckets buckets;
+        int snapshotRows;
+        long heapBytes;
+
+        lock.readLock().lock();
+        try {
+            if (snapshot == null) {
+                throw new IllegalArgumentException("Session analytics are still loading, try again in a moment");
+            }
+
+            buckets = snapshot.aggregate(group, type, statusCode,
+                    epochMinute(from.atStartOfDay()), epochMinute(to.plusDays(1).atStartOfDay()));
+            snapshotRows = snapshot.rows();
+            heapBytes = snapshot.heapBytes();
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        long elapsedMicros = (System.nanoTime() - started) / 1000;
+
+        long[] sessions = buckets.sessions();
+        List<Integer> nonEmpty = new ArrayList<>();
+        long totalSessions = 0;
+        long totalMinutes = 0;
+
+        for (int i = 0; i < sessions.length; i++) {
+            if (sessions[i] > 0) {
+                nonEmpty.add(i);
+                totalSessions += sessions[i];
+                totalMinutes += buckets.minutes()[i];
+            }
+        }
+
+        if (group == SessionSnapshot.GroupBy.INSTRUCTOR || group == SessionSnapshot.GroupBy.TRAINEE) {
+            nonEmpty.sort(Comparator.comparingLong((Integer i) -> sessions[i]).reversed()
+                    .thenComparingInt(i -> i));
+            if (nonEmpty.size() > limit) {
+                nonEmpty = nonEmpty.subList(0, limit);
+            }
+        }
+
+        List<Long> keys = nonEmpty.stream().map(i -> buckets.firstKey() + i).toList();
+        Map<Long, String> labels = labels(group, keys);
+
+        List<SessionGroup> groups = new ArrayList<>(nonEmpty.size());
+        for (int i = 0; i < nonEmpty.size(); i++) {
+            int bucket = nonEmpty.get(i);
+            long key = keys.get(i);
+            groups.add(new SessionGroup(key, labels.get(key), sessions[bucket], buckets.minutes()[bucket]));
+        }
+
+        return new AnalyticsResult(groups, totalSessions, totalMinutes / 60.0,
+                snapshotRows, heapBytes, elapsedMicros);
+    }
+
+    private boolean isLoaded() {
+        lock.readLock().lock();
+        try {
+            return snapshot != null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Read sessions and their attendees into a snapshot (all sessions when ids is null)
+    private void load(SessionSnapshot target, List<Integer> ids) {
+        Consumer<SessionAnalyticsRepository.SessionRow> putRow = row -> target.put(
+                row.sessionId(), typeCode(row.sessionType()), statusCode(row.status()),
+                epochMinute(row.startDateTime()), epochMinute(row.endDateTime()),
+                row.instructorId(), row.traineeId());
+        AttendeeBuffer attendees = new AttendeeBuffer(target);
+
+        if (ids == null) {
+            sessionAnalyticsRepository.streamSessions(putRow);
+            sessionAnalyticsRepository.streamAttendance(attendees::add);
+        } else {
+            sessionAnalyticsRepository.streamSessions(ids, putRow);
+            sessionAnalyticsRepository.streamAttendance(ids, attendees::add);
+        }
+
+        attendees.flush();
+    }
+
+    // Read the archived sessions (closed years) into a snapshot
+    private void loadArchive(SessionSnapshot target) {
+        archiveService.scanSessions(null, null, row -> target.put(
+                row.getInt(ArchiveService.SESSION_ID), row.getByte(ArchiveService.SESSION_TYPE),
+                row.getByte(ArchiveService.SESSION_STATUS), row.getLong(ArchiveService.SESSION_START),
+                row.getLong(ArchiveService.SESSION_END), row.getInt(ArchiveService.SESSION_INSTRUCTOR),
+                row.getInt(ArchiveService.SESSION_TRAINEE)));
+
+        AttendeeBuffer attendees = new AttendeeBuffer(target);
+        archiveService.scanAttendance(row -> attendees.add(
+                row.getInt(ArchiveService.ATTENDANCE_SESSION), row.getInt(ArchiveService.ATTENDANCE_TRAINEE)));
+        attendees.flush();
+    }
+
+    // Names for instructors and trainees, dates for days and weeks
+    private Map<Long, String> labels(SessionSnapshot.GroupBy group, List<Long> keys) {
+        Map<Long, String> labels = new HashMap<>();
+
+        switch (group) {
+            case INSTRUCTOR, TRAINEE -> {
+                List<Integer> ids = keys.stream().map(Long::intValue).toList();
+                Map<Integer, String> names = group == SessionSnapshot.GroupBy.INSTRUCTOR
+                        ? sessionAnalyticsRepository.findInstructorNames(ids)
+                        : sessionAnalyticsRepository.findTraineeNames(ids);
+                keys.forEach(key -> labels.put(key, names.getOrDefault(key.intValue(), "#" + key)));
+            }
+            case DAY -> keys.forEach(key -> labels.put(key, LocalDate.ofEpochDay(key).toString()));
+            case WEEK -> keys.forEach(key ->
+                    labels.put(key, "Week of " + LocalDate.ofEpochDay(SessionSnapshot.weekStartDay(key))));
+        }
+
+        return labels;
+    }
+
+    private static SessionSnapshot.GroupBy groupOf(String groupBy) {
+        return switch (groupBy) {
+            case INSTRUCTOR -> SessionSnapshot.GroupBy.INSTRUCTOR;
+            case TRAINEE -> SessionSnapshot.GroupBy.TRAINEE;
+            case DAY -> SessionSnapshot.GroupBy.DAY;
+            case WEEK -> SessionSnapshot.GroupBy.WEEK;
+            default -> throw new IllegalArgumentException("Unknown grouping: " + groupBy);
+        };
+    }
+
+    private static byte typeCode(String sessionType) {
+        return switch (sessionType) {
+            case "Practical" -> SessionSnapshot.PRACTICAL;
+            case "Theoretical" -> SessionSnapshot.THEORETICAL;
+            default -> throw new IllegalArgumentException("Unknown session type: " + sessionType);
+        };
+    }
+
+    private static byte statusCode(String status) {
+        return switch (status) {
+            case "Scheduled" -> SessionSnapshot.SCHEDULED;
+            case "Completed" -> SessionSnapshot.COMPLETED;
+            default -> throw new IllegalArgumentException("Unknown session status: " + status);
+        };
+    }
+
+    private static long epochMinute(LocalDateTime dateTime) {
+        return dateTime.toEpochSecond(ZoneOffset.UTC) / 60;
+    }
+
+    // Collects attendance rows ordered by session and hands every session's trainees over together
+    private static class AttendeeBuffer {
+        private final SessionSnapshot target;
+        private int sessionId;
+        private int[] traineeIds = new int[16];
+        private int count;
+
+        AttendeeBuffer(SessionSnapshot target) {
+            this.target = target;
+        }
+
+        void add(int rowSessionId, int traineeId) {
+            if (rowSessionId != sessionId) {
+                flush();
+                sessionId = rowSessionId;
+            }
+            if (count == traineeIds.length) {
+                traineeIds = Arrays.copyOf(traineeIds, count * 2);
+            }
+            traineeIds[count++] = traineeId;
+        }
+
+        void flush() {
+            if (count > 0) {
+                target.setAttendees(sessionId, traineeIds, count);
+                count = 0;
+            }
+        }
+    }
+
+    // One group of an analytics report
+    @Getter
+    @AllArgsConstructor
+    public static class SessionGroup {
+        private final long key;
+        private final String label;
+        private final long sessions;
+        private final long minutes;
+
+        public double getHours() {
+            return minutes / 60.0;
+        }
+    }
+
+    // Groups plus totals and what the query cost
+    @Getter
+    @AllArgsConstructor
+    public static class AnalyticsResult {
+        private final List<SessionGroup> groups;
+        private final long totalSessions;
+        private final double totalHours;
+        private final int snapshotRows;
+        private final long snapshotBytes;
+        private final long elapsedMicros;
+    }
+}
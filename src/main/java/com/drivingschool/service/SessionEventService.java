@@ -0,0 +1,289 @@
+package com.drivingschool.service;
+
+import com.drivingschool.model.Session;
+import com.drivingschool.repository.SessionRepository;
+import com.drivingschool.repository.TableVersions;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Session Event Service - live session updates over Server-Sent Events
+ *
+ * Instructors and trainees subscribe to their own stream; SessionService publishes
+ * an event after every committed change to a session. Changes made on other nodes are
+ * reloaded when ChangeLogService reports them and published the same way.
+ *
+ * Idle subscribers hold no thread (SseEmitter uses async servlet requests).
+ * Every subscriber has its own outgoing queue, drained by a short-lived virtual thread,
+ * so a slow client only delays its own events.
+ */
+
+@Service
+public class SessionEventService {
+
+    private static final Logger log = LoggerFactory.getLogger(SessionEventService.class);
+
+    public static final String CREATED = "created";
+    public static final String UPDATED = "updated";
+    public static final String CANCELLED = "cancelled";
+    public static final String STATUS_CHANGED = "status-changed";
+
+    // the browser reconnects automatically when a stream times out
+    private static final long EMITTER_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(30);
+    private static final long HEARTBEAT_SECONDS = 25;
+
+    private final Map<Integer, Set<Subscriber>> instructorSubscribers = new ConcurrentHashMap<>();
+    private final Map<Integer, Set<Subscriber>> traineeSubscribers = new ConcurrentHashMap<>();
+
+    // last event of every scheduled session seen by this node: who to tell when another node
+    // deletes the session or moves it to another instructor
+    private final Map<Integer, SessionEvent> scheduledSessions = new ConcurrentHashMap<>();
+
+    private final SessionRepository sessionRepository;
+
+    private final ExecutorService senders = Executors.newVirtualThreadPerTaskExecutor();
+    private final ScheduledExecutorService heartbeat = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofVirtual().name("session-events-heartbeat").factory());
+
+    public SessionEventService(SessionRepository sessionRepository, ChangeLogService changeLogService) {
+        this.sessionRepository = sessionRepository;
+
+        // Trainee_Session entries carry the SessionID
+        changeLogService.subscribe(TableVersions.SESSION, this::changedElsewhere);
+        changeLogService.subscribe(TableVersions.TRAINEE_SESSION, this::changedElsewhere);
+
+        // comments keep proxies from closing idle streams and reveal dead connections
+        heartbeat.scheduleAtFixedRate(this::sendHeartbeat, HEARTBEAT_SECONDS, HEARTBEAT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    // Open a stream of events for an instructor's sessions
+    public SseEmitter subscribeInstructor(Integer instructorId) {
+        return subscribe(instructorSubscribers, instructorId);
+    }
+
+    // Open a stream of events for a trainee's sessions
+    public SseEmitter subscribeTrainee(Integer traineeId) {
+        return subscribe(traineeSubscribers, traineeId);
+    }
+
+    /**
+     * Publish a session change to its instructor and trainees
+     * Inside a transaction the event is sent only after commit (nothing is sent on rollback)
+     */
+    public void publish(String type, Session session, Collection<Integer> traineeIds) {
+        SessionEvent event = new SessionEvent(type, session.getSessionId(), session.getSessionType(),
+                session.getStartDateTime(), session.getEndDateTime(), session.getStatus(),
+                session.getInstructorId(), List.copyOf(traineeIds), LocalDateTime.now());
+
+        AfterCommit.run(() -> {
+            remember(event);
+            dispatch(event);
+        });
+    }
+
+    // Number of open streams (instructors + trainees)
+    public int getSubscriberCount() {
+        return count(instructorSubscribers) + count(traineeSubscribers);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        heartbeat.shutdownNow();
+        senders.shutdownNow();
+    }
+
+    private SseEmitter subscribe(Map<Integer, Set<Subscriber>> subscribers, Integer id) {
+        SseEmitter emitter = new SseEmitter(EMITTER_TIMEOUT_MILLIS);
+        Subscriber subscriber = new Subscriber(emitter);
+
+        subscribers.computeIfAbsent(id, key -> ConcurrentHashMap.newKeySet()).add(subscriber);
+
+        Runnable remove = () -> subscribers.computeIfPresent(id, (key, set) -> {
+            set.remove(subscriber);
+            return set.isEmpty() ? null : set;
+        });
+        emitter.onCompletion(remove);
+        emitter.onTimeout(remove);
+        emitter.onError(e -> remove.run());
+
+        // tells the client the stream is open
+        subscriber.enqueue(() -> SseEmitter.event().name("connected").data("ok"));
+
+        return emitter;
+    }
+
+    /**
+     * Sessions changed on another node: reload them and tell their instructor and trainees
+     * A session that is gone is cancelled for whoever this node last sent it to.
+     * Whole-table changes (archiving, cascades of deleted trainees) move no session in anyone's schedule.
+     */
+    private void changedElsewhere(Set<Integer> sessionIds) {
+        if (sessionIds == null) {
+            return;
+        }
+
+        for (Integer sessionId : sessionIds) {
+            Session session = sessionRepository.findById(sessionId);
+            SessionEvent previous = scheduledSessions.get(sessionId);
+
+            if (session == null) {
+                if (previous != null) {
+                    SessionEvent cancelled = previous.as(CANCELLED);
+                    remember(cancelled);
+                    dispatch(cancelled);
+                }
+                continue;
+            }
+
+            Set<Integer> traineeIds = new HashSet<>(session.isTheoretical()
+                    ? sessionRepository.getTraineeIdsForSession(sessionId)
+                    : session.getTraineeId() == null ? List.of() : List.of(session.getTraineeId()));
+            String type = UPDATED;
+
+            if (previous != null) {
+                // trainees taken off the session are told too
+                traineeIds.addAll(previous.getTraineeIds());
+                if (!previous.getStatus().equals(session.getStatus())) {
+                    type = STATUS_CHANGED;
+                }
+            }
+
+            SessionEvent event = new SessionEvent(type, sessionId, session.getSessionType(),
+                    session.getStartDateTime(), session.getEndDateTime(), session.getStatus(),
+                    session.getInstructorId(), List.copyOf(traineeIds), LocalDateTime.now());
+            remember(event);
+            dispatch(event);
+
+            // the previous instructor loses the session from their schedule
+            if (previous != null && !previous.getInstructorId().equals(session.getInstructorId())) {
+                dispatch(new SessionEvent(CANCELLED, sessionId, previous.getSessionType(),
+                        previous.getStartDateTime(), previous.getEndDateTime(), previous.getStatus(),
+                        previous.getInstructorId(), List.of(), LocalDateTime.now()));
+            }
+        }
+    }
+
+    // Keep the last event of scheduled sessions only; completed and deleted ones are not moved any more
+    private void remember(SessionEvent event) {
+        if (CANCELLED.equals(event.getType())) {
+            // a session moved to another instructor cancels it for the previous one only
+            scheduledSessions.computeIfPresent(event.getSessionId(), (id, known) ->
+                    known.getInstructorId().equals(event.getInstructorId()) ? null : known);
+        } else if ("Scheduled".equals(event.getStatus())) {
+            scheduledSessions.put(event.getSessionId(), event);
+        } else {
+            scheduledSessions.remove(event.getSessionId());
+        }
+    }
+
+    private void dispatch(SessionEvent event) {
+        // builders are single use, every subscriber gets a fresh one
+        Supplier<SseEmitter.SseEventBuilder> message = () -> SseEmitter.event()
+                .name(event.getType())
+                .data(event, MediaType.APPLICATION_JSON);
+
+        Set<Subscriber> recipients = new HashSet<>();
+        recipients.addAll(instructorSubscribers.getOrDefault(event.getInstructorId(), Set.of()));
+        for (Integer traineeId : event.getTraineeIds()) {
+            recipients.addAll(traineeSubscribers.getOrDefault(traineeId, Set.of()));
+        }
+
+        for (Subscriber subscriber : recipients) {
+            subscriber.enqueue(message);
+        }
+    }
+
+    private void sendHeartbeat() {
+        Supplier<SseEmitter.SseEventBuilder> ping = () -> SseEmitter.event().comment("heartbeat");
+
+        instructorSubscribers.values().forEach(set -> set.forEach(subscriber -> subscriber.enqueue(ping)));
+        traineeSubscribers.values().forEach(set -> set.forEach(subscriber -> subscriber.enqueue(ping)));
+    }
+
+    private static int count(Map<Integer, Set<Subscriber>> subscribers) {
+        return subscribers.values().stream().mapToInt(Set::size).sum();
+    }
+
+    // One open stream with its own ordered outgoing queue
+    private class Subscriber {
+        private final SseEmitter emitter;
+        private final Queue<Supplier<SseEmitter.SseEventBuilder>> pending = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean draining = new AtomicBoolean();
+
+        Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        void enqueue(Supplier<SseEmitter.SseEventBuilder> message) {
+            pending.add(message);
+            if (draining.compareAndSet(false, true)) {
+                senders.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            try {
+                Supplier<SseEmitter.SseEventBuilder> message;
+                while ((message = pending.poll()) != null) {
+                    emitter.send(message.get());
+                }
+            } catch (IOException | IllegalStateException e) {
+                // client went away; onError/onCompletion removes the subscriber
+                pending.clear();
+                emitter.completeWithError(e);
+                log.debug("Session event stream closed: {}", e.getMessage());
+            } finally {
+                draining.set(false);
+            }
+
+            // a message may have arrived after the queue looked empty
+            if (!pending.isEmpty() && draining.compareAndSet(false, true)) {
+                senders.execute(this::drain);
+            }
+        }
+    }
+
+    // Payload of one event (serialized as JSON)
+    @Getter
+    @AllArgsConstructor
+    public static class SessionEvent {
+        private final String type;
+        private final Integer sessionId;
+        private final String sessionType;
+        private final LocalDateTime startDateTime;
+        private final LocalDateTime endDateTime;
+        private final String status;
+        private final Integer instructorId;
+        private final List<Integer> traineeIds;
+        private final LocalDateTime occurredAt;
+
+        // The same session under another event type, sent now
+        SessionEvent as(String newType) {
+            return new SessionEvent(newType, sessionId, sessionType, startDateTime, endDateTime, status,
+                    instructorId, traineeIds, LocalDateTime.now());
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.drivingschool.service;
+
+import com.drivingschool.repository.SessionRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Session Partition Service - keeps the Session table small
+ *
+ * Sessions completed more than sessions.hot-months ago are moved to Session_Archive
+ * (with their Trainee_Session rows) every night. Every batch is its own short transaction
+ * that locks only the rows it moves, so writers are never blocked for long.
+ *
+ * Metrics:
+ *  - sessions.partition.rows{table}: rows in Session and Session_Archive
+ *  - sessions.partition.moved / sessions.partition.batch: moved rows and batch duration
+ *  - sessions.partition.current_query{phase}: duration of the current session list before and after the last move
+ */
+
+@Service
+public class SessionPartitionService {
+
+    private static final Logger log = LoggerFactory.getLogger(SessionPartitionService.class);
+
+    // gives waiting writers a turn between batches
+    private static final long BATCH_PAUSE_MILLIS = 50;
+
+    private final SessionRepository sessionRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int hotMonths;
+    private final int batchSize;
+
+    private final AtomicLong currentRows = new AtomicLong();
+    private final AtomicLong archivedRows = new AtomicLong();
+    private final AtomicLong queryNanosBefore = new AtomicLong();
+    private final AtomicLong queryNanosAfter = new AtomicLong();
+    private final Counter moved;
+    private final Timer batchTimer;
+
+    public SessionPartitionService(SessionRepository sessionRepository, PlatformTransactionManager transactionManager,
+                                   MeterRegistry meterRegistry,
+                                   @Value("${sessions.hot-months:6}") int hotMonths,
+                                   @Value("${sessions.archive-batch-size:500}") int batchSize) {
+        this.sessionRepository = sessionRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.hotMonths = hotMonths;
+        this.batchSize = batchSize;
+
+        Gauge.builder("sessions.partition.rows", currentRows, AtomicLong::get)
+                .tag("table", "Session").description("Rows in the hot session table").register(meterRegistry);
+        Gauge.builder("sessions.partition.rows", archivedRows, AtomicLong::get)
+                .tag("table", "Session_Archive").description("Rows in the session archive table").register(meterRegistry);
+        Gauge.builder("sessions.partition.current_query", queryNanosBefore, nanos -> nanos.get() / 1e9)
+                .tag("phase", "before").baseUnit("seconds")
+                .description("Current session list duration before the last move").register(meterRegistry);
+        Gauge.builder("sessions.partition.current_query", queryNanosAfter, nanos -> nanos.get() / 1e9)
+                .tag("phase", "after").baseUnit("seconds")
+                .description("Current session list duration after the last move").register(meterRegistry);
+
+        this.moved = Counter.builder("sessions.partition.moved")
+                .description("Sessions moved to Session_Archive").register(meterRegistry);
+        this.batchTimer = Timer.builder("sessions.partition.batch")
+                .description("Duration of one move batch").register(meterRegistry);
+    }
+
+    // Row counts for the gauges at startup
+    @EventListener(ApplicationReadyEvent.class)
+    public void countRows() {
+        currentRows.set(sessionRepository.countCurrent());
+        archivedRows.set(sessionRepository.countArchived());
+    }
+
+    /**
+     * Move sessions completed before the hot window to Session_Archive
+     * Runs nightly; returns the number of sessions moved
+     */
+    @LeaderJob(value = "session-partition", cron = "0 30 2 * * *")
+    public synchronized int moveColdSessions() {
+        LocalDateTime cutoff = LocalDateTime.now().minusMonths(hotMonths);
+        long rowsBefore = sessionRepository.countCurrent();
+        long queryBefore = timeCurrentQuery();
+
+        int total = 0;
+        int batches = 0;
+        int count;
+
+        do {
+            long start = System.nanoTime();
+            count = transactionTemplate.execute(status ->
+                    sessionRepository.moveToArchive(sessionRepository.lockCompletedBefore(cutoff, batchSize)));
+            batchTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+
+            if (count > 0) {
+                total += count;
+                batches++;
+                moved.increment(count);
+                pause();
+            }
+        } while (count == batchSize);
+
+        countRows();
+        long queryAfter = timeCurrentQuery();
+        queryNanosBefore.set(queryBefore);
+        queryNanosAfter.set(queryAfter);
+
+        log.info("Moved {} sessions completed before {} to Session_Archive in {} batches; Session rows {} -> {}, "
+                        + "current list {} ms -> {} ms",
+                total, cutoff.toLocalDate(), batches, rowsBefore, currentRows.get(),
+                TimeUnit.NANOSECONDS.toMillis(queryBefore), TimeUnit.NANOSECONDS.toMillis(queryAfter));
+
+        return total;
+    }
+
+    // Duration of the admin's current session list, the query the hot table exists for
+    private long timeCurrentQuery() {
+        long start = System.nanoTime();
+        sessionRepository.findAll();
+        return System.nanoTime() - start;
+    }
+
+    public long getCurrentRows() {
+        return currentRows.get();
+    }
+
+    public long getArchivedRows() {
+        return archivedRows.get();
+    }
+
+    public int getHotMonths() {
+        return hotMonths;
+    }
+
+    private void pause() {
+        try {
+            Thread.sleep(BATCH_PAUSE_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.drivingschool.service;
 
+import com.drivingschool.model.AuditEvent;
 import com.drivingschool.model.Instructor;
 import com.drivingschool.model.Session;
 import com.drivingschool.model.Trainee;
@@ -8,11 +9,19 @@ import com.drivingschool.repository.SessionRepository;
 import com.drivingschool.repository.TraineeRepository;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDateTime;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Session Service - Business Logic Layer
@@ -21,42 +30,85 @@ import java.util.List;
 @Service
 public class SessionService {
 
+    private static final Logger log = LoggerFactory.getLogger(SessionService.class);
+
+    // status -> the status a session must be in to be moved to it
+    private static final Map<String, String> STATUS_TRANSITIONS = Map.of(
+            "Completed", "Scheduled",
+            "Scheduled", "Completed");
+
+    // sessions completed per transaction by the session clock
+    private static final int COMPLETE_BATCH_SIZE = 500;
+
     private final SessionRepository sessionRepository;
     private final InstructorRepository instructorRepository;
     private final TraineeRepository traineeRepository;
-
-    public SessionService(SessionRepository sessionRepository, InstructorRepository instructorRepository, TraineeRepository traineeRepository) {
+    private final SessionEventService sessionEventService;
+    private final TraineeProgressService traineeProgressService;
+    private final SessionAnalyticsService sessionAnalyticsService;
+    private final UpcomingScheduleService upcomingScheduleService;
+    private final FeedbackSearchService feedbackSearchService;
+    private final TransactionTemplate transactionTemplate;
+    private final AuditService auditService;
+
+    public SessionService(SessionRepository sessionRepository, InstructorRepository instructorRepository,
+                          TraineeRepository traineeRepository, SessionEventService sessionEventService,
+                          TraineeProgressService traineeProgressService,
+                          SessionAnalyticsService sessionAnalyticsService,
+                          UpcomingScheduleService upcomingScheduleService,
+                          FeedbackSearchService feedbackSearchService,
+                          PlatformTransactionManager transactionManager,
+                          AuditService auditService) {
         this.sessionRepository = sessionRepository;
         this.instructorRepository = instructorRepository;
         this.traineeRepository = traineeRepository;
+        this.sessionEventService = sessionEventService;
+        this.traineeProgressService = traineeProgressService;
+        this.sessionAnalyticsService = sessionAnalyticsService;
+        this.upcomingScheduleService = upcomingScheduleService;
+        this.feedbackSearchService = feedbackSearchService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.auditService = auditService;
     }
 
     // Get all sessions
+    @Transactional(readOnly = true)
     public List<Session> getAllSessions() {
         return sessionRepository.findAll();
     }
 
+    // Get all sessions, including the archived ones
+    @Transactional(readOnly = true)
+    public List<Session> getSessionHistory() {
+        return sessionRepository.findAllHistory();
+    }
+
     // Get session by id
+    @Transactional(readOnly = true)
     public Session getSessionById(Integer sessionId) {
         return sessionRepository.findById(sessionId);
     }
 
     // Get sessions by instructor
+    @Transactional(readOnly = true)
     public List<Session> getSessionsByInstructor(Integer instructorId) {
         return sessionRepository.findByInstructorId(instructorId);
     }
 
     // Get sessions by trainee
+    @Transactional(readOnly = true)
     public List<Session> getSessionsByTrainee(Integer traineeId) {
         return sessionRepository.findByTraineeId(traineeId);
     }
 
     // Get sessions by type
+    @Transactional(readOnly = true)
     public List<Session> getSessionsByType(String sessionType) {
         return sessionRepository.findByType(sessionType);
     }
 
     // Get sessions by status
+    @Transactional(readOnly = true)
     public List<Session> getSessionsByStatus(String status) {
         return sessionRepository.findByStatus(status);
     }
@@ -125,17 +177,31 @@ public class SessionService {
             }
         }
 
+        session.setSessionId(sessionId);
+        traineeProgressService.sessionCompleted(session);
+        sessionAnalyticsService.sessionChanged(sessionId);
+        upcomingScheduleService.sessionChanged(sessionId);
+        sessionEventService.publish(SessionEventService.CREATED, session, traineeIdsOf(session, traineeIds));
+        auditService.record(AuditEvent.Entity.SESSION, sessionId, AuditEvent.Action.CREATE,
+                session.getSessionType() + " at " + session.getStartDateTime() + ", instructor " + session.getInstructorId()
+                        + ", trainees " + traineeIdsOf(session, traineeIds));
+
         return sessionId;
     }
 
-    // Update existing session
+    /**
+     * Update existing session
+     * session.getVersion() is the version the form was rendered with; the update is refused if the
+     * session was modified since. The status is kept, it only changes through changeStatus
+     */
     @Transactional
     public void updateSession(Session session, List<Integer> traineeIds) {
         // validate session exists
-        Session existing = sessionRepository.findById(session.getSessionId());
-        if (existing == null) {
-            throw new IllegalArgumentException("Session not found: " + session.getSessionId());
+        Session existing = findChangeable(session.getSessionId());
+        if (!existing.getVersion().equals(session.getVersion())) {
+            throw changedElsewhere(session.getSessionId());
         }
+        session.setStatus(existing.getStatus());
 
         // validate instructor exists
         Instructor instructor = instructorRepository.findById(session.getInstructorId());
@@ -160,8 +226,14 @@ public class SessionService {
             throw new IllegalArgumentException("End date/time must be after start date/time");
         }
 
-        // update session
-        sessionRepository.update(session);
+        // trainees of the session before the update also need to hear about it
+        Set<Integer> notifiedTrainees = new HashSet<>(traineeIdsOf(existing, null));
+
+        // update session (the version check also catches a change committed since existing was read)
+        if (!sessionRepository.update(session)) {
+            throw changedElsewhere(session.getSessionId());
+        }
+        session.setVersion(session.getVersion() + 1);
 
         // for theoretical sessions, update trainee assignments
         if (session.isTheoretical() && traineeIds != null) {
@@ -180,74 +252,225 @@ public class SessionService {
                 sessionRepository.addTraineeToSession(traineeId, session.getSessionId());
             }
         }
+
+        traineeProgressService.sessionsChanged(existing, session);
+        sessionAnalyticsService.sessionChanged(session.getSessionId());
+        upcomingScheduleService.sessionChanged(session.getSessionId());
+        feedbackSearchService.sessionChanged(session.getSessionId());
+
+        notifiedTrainees.addAll(traineeIdsOf(session, traineeIds));
+        sessionEventService.publish(SessionEventService.UPDATED, session, notifiedTrainees);
+
+        // the previous instructor loses the session from their schedule
+        if (!existing.getInstructorId().equals(session.getInstructorId())) {
+            sessionEventService.publish(SessionEventService.CANCELLED, existing, List.of());
+        }
+
+        auditService.record(AuditEvent.Entity.SESSION, session.getSessionId(), AuditEvent.Action.UPDATE,
+                AuditService.changes(
+                        "Type", existing.getSessionType(), session.getSessionType(),
+                        "Start", existing.getStartDateTime(), session.getStartDateTime(),
+                        "End", existing.getEndDateTime(), session.getEndDateTime(),
+                        "Instructor", existing.getInstructorId(), session.getInstructorId(),
+                        "Trainee", existing.getTraineeId(), session.getTraineeId()));
     }
 
     // Delete session
     @Transactional
     public void deleteSession(Integer sessionId) {
-        Session session = sessionRepository.findById(sessionId);
-        if (session == null) {
-            throw new IllegalArgumentException("Session not found: " + sessionId);
-        }
+        Session session = findChangeable(sessionId);
+
+        List<Integer> traineeIds = traineeIdsOf(session, null);
 
         // Trainee_Session records will be deleted automatically due to ON DELETE CASCADE
         sessionRepository.delete(sessionId);
+        traineeProgressService.sessionsChanged(session, null);
+        sessionAnalyticsService.sessionChanged(sessionId);
+        upcomingScheduleService.sessionChanged(sessionId);
+        feedbackSearchService.sessionChanged(sessionId);
+
+        sessionEventService.publish(SessionEventService.CANCELLED, session, traineeIds);
+        auditService.record(AuditEvent.Entity.SESSION, sessionId, AuditEvent.Action.DELETE,
+                session.getSessionType() + " at " + session.getStartDateTime() + ", instructor " + session.getInstructorId());
     }
 
-    // Change session status
+    /**
+     * Change session status with one conditional UPDATE (no read-modify-write)
+     * expectedVersion is the version the caller last saw (optional); the change is refused if the
+     * session was modified since, instead of silently overwriting that modification
+     */
     @Transactional
-    public void changeStatus(Integer sessionId, String newStatus) {
-        Session session = sessionRepository.findById(sessionId);
+    public void changeStatus(Integer sessionId, String newStatus, Integer expectedVersion) {
+        String fromStatus = STATUS_TRANSITIONS.get(newStatus);
+        if (fromStatus == null) {
+            throw new IllegalArgumentException("Unknown session status: " + newStatus);
+        }
+
+        Session session = sessionRepository.transitionStatus(sessionId, fromStatus, newStatus, expectedVersion);
         if (session == null) {
-            throw new IllegalArgumentException("Session not found: " + sessionId);
+            throw transitionRefused(sessionId, newStatus);
         }
 
         session.setStatus(newStatus);
-        sessionRepository.update(session);
+        session.setVersion(session.getVersion() + 1);
+
+        // completing adds the session to the trainee's progress, reopening rebuilds it
+        if (session.isCompleted()) {
+            traineeProgressService.sessionCompleted(session);
+        } else {
+            traineeProgressService.sessionReopened(session);
+        }
+
+        sessionAnalyticsService.sessionChanged(sessionId);
+        upcomingScheduleService.sessionChanged(sessionId);
+        sessionEventService.publish(SessionEventService.STATUS_CHANGED, session, traineeIdsOf(session, null));
+        auditService.record(AuditEvent.Entity.SESSION, sessionId, AuditEvent.Action.STATUS, fromStatus + " -> " + newStatus);
+    }
+
+    /**
+     * Complete the sessions that have ended while still Scheduled
+     * The elapsed sessions are selected from the database (idx_session_status_end), so sessions
+     * that ended while no node was running are completed on the first tick; each batch is
+     * completed with one UPDATE in one transaction
+     */
+    @LeaderJob(value = "session-clock", fixedDelay = "${sessions.clock-tick-seconds:30}", timeUnit = TimeUnit.SECONDS)
+    public void completeElapsedSessions() {
+        LocalDateTime now = LocalDateTime.now();
+        int total = 0;
+        int completed;
+
+        do {
+            completed = completeElapsedBatch(now);
+            total += completed;
+        } while (completed == COMPLETE_BATCH_SIZE);
+
+        if (total > 0) {
+            log.info("Completed {} elapsed sessions", total);
+        }
+    }
+
+    private int completeElapsedBatch(LocalDateTime now) {
+        return transactionTemplate.execute(status -> {
+            List<Session> sessions = sessionRepository.completeElapsed(now, COMPLETE_BATCH_SIZE);
+
+            for (Session session : sessions) {
+                session.setStatus("Completed");
+                session.setVersion(session.getVersion() + 1);
+
+                traineeProgressService.sessionCompleted(session);
+                sessionAnalyticsService.sessionChanged(session.getSessionId());
+                sessionEventService.publish(SessionEventService.STATUS_CHANGED, session, traineeIdsOf(session, null));
+                auditService.record(AuditEvent.Entity.SESSION, session.getSessionId(), AuditEvent.Action.STATUS,
+                        "Scheduled -> Completed (ended)");
+                upcomingScheduleService.sessionChanged(session.getSessionId());
+            }
+
+            return sessions.size();
+        });
     }
 
-    // Add feedback to completed session
+    /**
+     * Add feedback to completed session
+     * expectedVersion is the version the feedback form was rendered with (optional)
+     */
     @Transactional
-    public void addFeedback(Integer sessionId, String feedback) {
-        Session session = sessionRepository.findById(sessionId);
-        if (session == null) {
-            throw new IllegalArgumentException("Session not found: " + sessionId);
+    public void addFeedback(Integer sessionId, String feedback, Integer expectedVersion) {
+        Session session = findChangeable(sessionId);
+
+        if (expectedVersion != null && !expectedVersion.equals(session.getVersion())) {
+            throw changedElsewhere(sessionId);
         }
 
         if (!session.isCompleted()) {
             throw new IllegalArgumentException("Can only add feedback to completed sessions");
         }
 
+        // the version read above: a session reopened meanwhile does not get the feedback
         session.setInstructorFeedback(feedback);
-        sessionRepository.update(session);
+        if (!sessionRepository.update(session)) {
+            throw changedElsewhere(sessionId);
+        }
+        session.setVersion(session.getVersion() + 1);
+        feedbackSearchService.sessionChanged(sessionId);
+
+        sessionEventService.publish(SessionEventService.UPDATED, session, traineeIdsOf(session, null));
+        auditService.record(AuditEvent.Entity.SESSION, sessionId, AuditEvent.Action.FEEDBACK, feedback);
+    }
+
+    // Why a status transition did not apply (only read after the conditional UPDATE changed nothing)
+    private IllegalArgumentException transitionRefused(Integer sessionId, String newStatus) {
+        Session current = findChangeable(sessionId);
+
+        if (newStatus.equals(current.getStatus())) {
+            return new IllegalArgumentException("Session " + sessionId + " is already " + newStatus);
+        }
+
+        return changedElsewhere(sessionId);
+    }
+
+    private static IllegalArgumentException changedElsewhere(Integer sessionId) {
+        return new IllegalArgumentException("Session " + sessionId + " was changed by someone else - reload and try again");
+    }
+
+    // Find a session that may still be changed (archived sessions are read only)
+    private Session findChangeable(Integer sessionId) {
+        Session session = sessionRepository.findById(sessionId);
+        if (session == null) {
+            throw new IllegalArgumentException("Session not found: " + sessionId);
+        }
+
+        if (session.isArchived()) {
+            throw new IllegalArgumentException("Session " + sessionId + " is archived and can no longer be changed");
+        }
+
+        return session;
+    }
+
+    // Trainees attending a session: the assigned trainee (practical) or the enrolled group (theoretical)
+    private List<Integer> traineeIdsOf(Session session, List<Integer> traineeIds) {
+        if (session.isPractical()) {
+            return session.getTraineeId() == null ? List.of() : List.of(session.getTraineeId());
+        }
+
+        if (traineeIds != null) {
+            return traineeIds;
+        }
+
+        return sessionRepository.getTraineeIdsForSession(session.getSessionId());
     }
 
     // Get trainees enrolled in a theoretical session
+    @Transactional(readOnly = true)
     public List<Integer> getTraineesForSession(Integer sessionId) {
         return sessionRepository.getTraineeIdsForSession(sessionId);
     }
 
-    // Get total practical hours completed by a trainee
+    // Get total practical hours completed by a trainee (from the progress row)
+    @Transactional(readOnly = true)
     public Double getTotalPracticalHours(Integer traineeId) {
-        return sessionRepository.getTotalPracticalHoursByTrainee(traineeId);
+        return traineeProgressService.getProgress(traineeId).getPracticalHours();
     }
 
     // Get total count
+    @Transactional(readOnly = true)
     public Integer getTotalCount() {
         return sessionRepository.count();
     }
 
     // Get count by status
+    @Transactional(readOnly = true)
     public Integer getCountByStatus(String status) {
         return sessionRepository.countByStatus(status);
     }
 
     // Get count by type
+    @Transactional(readOnly = true)
     public Integer getCountByType(String sessionType) {
         return sessionRepository.countByType(sessionType);
     }
 
     // Get session statistics
+    @Transactional(readOnly = true)
     public SessionStats getSessionStatistics() {
         Integer totalSessions = getTotalCount();
         Integer scheduledSessions = getCountByStatus("Scheduled");
@@ -0,0 +1,424 @@
+package com.drivingschool.service;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Session Snapshot - columnar in-memory copy of Session and Trainee_Session
+ *
+ * Every column is a primitive array indexed by row: ids as int, start/end as epoch minutes,
+ * type and status as one byte. A session costs about 40 bytes here instead of a Session
+ * object with its strings and LocalDateTimes.
+ *
+ * Trainees of theoretical sessions live in one shared attendee array; every row points to
+ * its own segment. Rows are updated in place, deleted rows become tombstones and the arrays
+ * are compacted once too much of them is garbage.
+ *
+ * Aggregations split the rows into ranges and run them with fork/join; every range fills
+ * its own bucket arrays, which are added together on join.
+ *
+ * Not thread safe: SessionAnalyticsService reads and writes it under a read/write lock.
+ */
+
+final class SessionSnapshot {
+
+    static final byte PRACTICAL = 0;
+    static final byte THEORETICAL = 1;
+
+    static final byte SCHEDULED = 0;
+    static final byte COMPLETED = 1;
+    static final byte REMOVED = -1;
+
+    // any type / status in a filter
+    static final byte ANY = -2;
+
+    enum GroupBy { INSTRUCTOR, TRAINEE, DAY, WEEK }
+
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int MIN_RANGE_ROWS = 1 << 16;
+    private static final int NO_ROW = -1;
+
+    // 1970-01-01 was a Thursday: (epochDay + 3) / 7 counts weeks starting on Monday
+    private static final int WEEK_SHIFT = 3;
+    private static final int MINUTES_PER_DAY = 24 * 60;
+
+    private int size;
+    private int removedRows;
+
+    private int[] sessionIds = new int[INITIAL_CAPACITY];
+    private int[] instructorIds = new int[INITIAL_CAPACITY];
+    private int[] traineeIds = new int[INITIAL_CAPACITY];
+    private long[] startMinutes = new long[INITIAL_CAPACITY];
+    private long[] endMinutes = new long[INITIAL_CAPACITY];
+    private byte[] types = new byte[INITIAL_CAPACITY];
+    private byte[] statuses = new byte[INITIAL_CAPACITY];
+    private int[] attendeeOffsets = new int[INITIAL_CAPACITY];
+    private int[] attendeeCounts = new int[INITIAL_CAPACITY];
+
+    private int[] attendees = new int[INITIAL_CAPACITY];
+    private int attendeeSize;
+    private int garbageAttendees;
+
+    // SessionID is AUTO_INCREMENT, so a dense array maps ids to rows
+    private int[] rowBySessionId = new int[INITIAL_CAPACITY];
+
+    private int maxInstructorId;
+    private int maxTraineeId;
+    private long minStartMinute = Long.MAX_VALUE;
+    private long maxStartMinute = Long.MIN_VALUE;
+
+    SessionSnapshot() {
+        Arrays.fill(rowBySessionId, NO_ROW);
+    }
+
+    // Insert or replace a session (keeps its attendees)
+    void put(int sessionId, byte type, byte status, long startMinute, long endMinute,
+             int instructorId, int traineeId) {
+        int row = rowOf(sessionId);
+
+        if (row == NO_ROW) {
+            row = appendRow(sessionId);
+        } else if (statuses[row] == REMOVED) {
+            removedRows--;
+        }
+
+        types[row] = type;
+        statuses[row] = status;
+        startMinutes[row] = startMinute;
+        endMinutes[row] = endMinute;
+        instructorIds[row] = instructorId;
+        traineeIds[row] = traineeId;
+
+        maxInstructorId = Math.max(maxInstructorId, instructorId);
+        maxTraineeId = Math.max(maxTraineeId, traineeId);
+        minStartMinute = Math.min(minStartMinute, startMinute);
+        maxStartMinute = Math.max(maxStartMinute, startMinute);
+    }
+
+    // Replace the trainees of a session (theoretical sessions); the session must have been put
+    void setAttendees(int sessionId, int[] traineeIdsOfSession, int count) {
+        int row = rowOf(sessionId);
+        if (row == NO_ROW) {
+            return;
+        }
+
+        // a segment that is large enough is reused, otherwise a new one is appended
+        if (count > attendeeCounts[row]) {
+            garbageAttendees += attendeeCounts[row];
+            ensureAttendeeCapacity(attendeeSize + count);
+            attendeeOffsets[row] = attendeeSize;
+            attendeeSize += count;
+        } else {
+            garbageAttendees += attendeeCounts[row] - count;
+        }
+
+        System.arraycopy(traineeIdsOfSession, 0, attendees, attendeeOffsets[row], count);
+        attendeeCounts[row] = count;
+
+        for (int i = 0; i < count; i++) {
+            maxTraineeId = Math.max(maxTraineeId, traineeIdsOfSession[i]);
+        }
+    }
+
+    // Remove a session (the row stays as a tombstone until the next compaction)
+    void remove(int sessionId) {
+        int row = rowOf(sessionId);
+        if (row == NO_ROW || statuses[row] == REMOVED) {
+            return;
+        }
+
+        statuses[row] = REMOVED;
+        removedRows++;
+        garbageAttendees += attendeeCounts[row];
+        attendeeCounts[row] = 0;
+    }
+
+    // Drop a deleted trainee from every theoretical session (Trainee_Session rows cascade)
+    void removeAttendee(int traineeId) {
+        for (int row = 0; row < size; row++) {
+            int offset = attendeeOffsets[row];
+            int kept = 0;
+
+            for (int i = 0; i < attendeeCounts[row]; i++) {
+                if (attendees[offset + i] != traineeId) {
+                    attendees[offset + kept++] = attendees[offset + i];
+                }
+            }
+
+            garbageAttendees += attendeeCounts[row] - kept;
+            attendeeCounts[row] = kept;
+        }
+    }
+
+    // Release the spare capacity left by growing the arrays (after a full load)
+    void trimToSize() {
+        int capacity = Math.max(INITIAL_CAPACITY, size);
+        sessionIds = Arrays.copyOf(sessionIds, capacity);
+        instructorIds = Arrays.copyOf(instructorIds, capacity);
+        traineeIds = Arrays.copyOf(traineeIds, capacity);
+        startMinutes = Arrays.copyOf(startMinutes, capacity);
+        endMinutes = Arrays.copyOf(endMinutes, capacity);
+        types = Arrays.copyOf(types, capacity);
+        statuses = Arrays.copyOf(statuses, capacity);
+        attendeeOffsets = Arrays.copyOf(attendeeOffsets, capacity);
+        attendeeCounts = Arrays.copyOf(attendeeCounts, capacity);
+        attendees = Arrays.copyOf(attendees, Math.max(INITIAL_CAPACITY, attendeeSize));
+
+        int maxSessionId = 0;
+        for (int row = 0; row < size; row++) {
+            maxSessionId = Math.max(maxSessionId, sessionIds[row]);
+        }
+        rowBySessionId = Arrays.copyOf(rowBySessionId, Math.max(INITIAL_CAPACITY, maxSessionId + 1));
+    }
+
+    // Whether the snapshot holds a session
+    boolean contains(int sessionId) {
+        int row = rowOf(sessionId);
+        return row != NO_ROW && statuses[row] != REMOVED;
+    }
+
+    // Copy one session with its attendees into another snapshot
+    void copyTo(int sessionId, SessionSnapshot target) {
+        int row = rowOf(sessionId);
+
+        target.put(sessionId, types[row], statuses[row], startMinutes[row], endMinutes[row],
+                instructorIds[row], traineeIds[row]);
+        target.setAttendees(sessionId,
+                Arrays.copyOfRange(attendees, attendeeOffsets[row], attendeeOffsets[row] + attendeeCounts[row]),
+                attendeeCounts[row]);
+    }
+
+    // Number of sessions in the snapshot
+    int rows() {
+        return size - removedRows;
+    }
+
+    // Approximate heap used by the columns
+    long heapBytes() {
+        long ints = (long) sessionIds.length * 5 + attendees.length + rowBySessionId.length;
+        long longs = (long) startMinutes.length * 2;
+        long bytes = (long) types.length * 2;
+        return ints * Integer.BYTES + longs * Long.BYTES + bytes;
+    }
+
+    // Rewrite the columns without tombstones and unused attendee slots once a quarter of them is garbage
+    void compactIfNeeded() {
+        if (removedRows * 4L <= size && garbageAttendees * 4L <= attendeeSize) {
+            return;
+        }
+
+        int[] compactAttendees = new int[Math.max(INITIAL_CAPACITY, attendeeSize - garbageAttendees)];
+        int attendeeCursor = 0;
+        int live = 0;
+
+        for (int row = 0; row < size; row++) {
+            if (statuses[row] == REMOVED) {
+                rowBySessionId[sessionIds[row]] = NO_ROW;
+                continue;
+            }
+
+            sessionIds[live] = sessionIds[row];
+            instructorIds[live] = instructorIds[row];
+            traineeIds[live] = traineeIds[row];
+            startMinutes[live] = startMinutes[row];
+            endMinutes[live] = endMinutes[row];
+            types[live] = types[row];
+            statuses[live] = statuses[row];
+
+            System.arraycopy(attendees, attendeeOffsets[row], compactAttendees, attendeeCursor, attendeeCounts[row]);
+            attendeeOffsets[live] = attendeeCursor;
+            attendeeCounts[live] = attendeeCounts[row];
+            attendeeCursor += attendeeCounts[row];
+
+            rowBySessionId[sessionIds[live]] = live;
+            live++;
+        }
+
+        size = live;
+        removedRows = 0;
+        attendees = compactAttendees;
+        attendeeSize = attendeeCursor;
+        garbageAttendees = 0;
+    }
+
+    /**
+     * Count sessions and sum their minutes per group, for sessions starting in [fromMinute, toMinute)
+     * type and status may be ANY. Returns the buckets; bucket i is key firstKey + i
+     * (instructor id, trainee id, epoch day, or Monday based week number)
+     */
+    Buckets aggregate(GroupBy groupBy, byte type, byte status, long fromMinute, long toMinute) {
+        long from = Math.max(fromMinute, minStartMinute);
+        long to = Math.min(toMinute, maxStartMinute + 1);
+
+        long firstKey;
+        int keyCount;
+        if (from >= to) {
+            return new Buckets(0, new long[0], new long[0]);
+        }
+
+        switch (groupBy) {
+            case INSTRUCTOR -> {
+                firstKey = 0;
+                keyCount = maxInstructorId + 1;
+            }
+            case TRAINEE -> {
+                firstKey = 0;
+                keyCount = maxTraineeId + 1;
+            }
+            case DAY -> {
+                firstKey = Math.floorDiv(from, MINUTES_PER_DAY);
+                keyCount = (int) (Math.floorDiv(to - 1, MINUTES_PER_DAY) - firstKey + 1);
+            }
+            default -> {
+                firstKey = weekOf(Math.floorDiv(from, MINUTES_PER_DAY));
+                keyCount = (int) (weekOf(Math.floorDiv(to - 1, MINUTES_PER_DAY)) - firstKey + 1);
+            }
+        }
+
+        // a few ranges per core, but never ranges so small that the bucket arrays dominate
+        int parallelism = ForkJoinPool.commonPool().getParallelism();
+        int rangeRows = Math.max(MIN_RANGE_ROWS, size / (parallelism * 4) + 1);
+
+        AggregateTask task = new AggregateTask(
+                new Query(groupBy, type, status, from, to, firstKey, keyCount, rangeRows), 0, size);
+        long[][] result = ForkJoinPool.commonPool().invoke(task);
+
+        return new Buckets(firstKey, result[0], result[1]);
+    }
+
+    // First day (epoch day) of a Monday based week number
+    static long weekStartDay(long week) {
+        return week * 7 - WEEK_SHIFT;
+    }
+
+    private static long weekOf(long epochDay) {
+        return Math.floorDiv(epochDay + WEEK_SHIFT, 7);
+    }
+
+    private int rowOf(int sessionId) {
+        return sessionId < rowBySessionId.length ? rowBySessionId[sessionId] : NO_ROW;
+    }
+
+    private int appendRow(int sessionId) {
+        if (size == sessionIds.length) {
+            int capacity = size * 2;
+            sessionIds = Arrays.copyOf(sessionIds, capacity);
+            instructorIds = Arrays.copyOf(instructorIds, capacity);
+            traineeIds = Arrays.copyOf(traineeIds, capacity);
+            startMinutes = Arrays.copyOf(startMinutes, capacity);
+            endMinutes = Arrays.copyOf(endMinutes, capacity);
+            types = Arrays.copyOf(types, capacity);
+            statuses = Arrays.copyOf(statuses, capacity);
+            attendeeOffsets = Arrays.copyOf(attendeeOffsets, capacity);
+            attendeeCounts = Arrays.copyOf(attendeeCounts, capacity);
+        }
+
+        if (sessionId >= rowBySessionId.length) {
+            int previous = rowBySessionId.length;
+            rowBySessionId = Arrays.copyOf(rowBySessionId, Math.max(previous * 2, sessionId + 1));
+            Arrays.fill(rowBySessionId, previous, rowBySessionId.length, NO_ROW);
+        }
+
+        int row = size++;
+        sessionIds[row] = sessionId;
+        attendeeOffsets[row] = attendeeSize;
+        attendeeCounts[row] = 0;
+        rowBySessionId[sessionId] = row;
+
+        return row;
+    }
+
+    private void ensureAttendeeCapacity(int capacity) {
+        if (capacity > attendees.length) {
+            attendees = Arrays.copyOf(attendees, Math.max(capacity, attendees.length * 2));
+        }
+    }
+
+    // Session counts and minutes per key
+    record Buckets(long firstKey, long[] sessions, long[] minutes) {
+    }
+
+    private record Query(GroupBy groupBy, byte type, byte status, long fromMinute, long toMinute,
+                         long firstKey, int keyCount, int rangeRows) {
+    }
+
+    // Aggregates rows [from, to): splits until a range is small enough, then scans its columns
+    @SuppressWarnings("serial") // never serialized, only run on the fork/join pool
+    private final class AggregateTask extends RecursiveTask<long[][]> {
+        private final Query query;
+        private final int from;
+        private final int to;
+
+        AggregateTask(Query query, int from, int to) {
+            this.query = query;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected long[][] compute() {
+            if (to - from <= query.rangeRows()) {
+                return scan();
+            }
+
+            int middle = (from + to) >>> 1;
+            AggregateTask left = new AggregateTask(query, from, middle);
+            left.fork();
+            long[][] right = new AggregateTask(query, middle, to).compute();
+            long[][] result = left.join();
+
+            for (int i = 0; i < query.keyCount(); i++) {
+                result[0][i] += right[0][i];
+                result[1][i] += right[1][i];
+            }
+
+            return result;
+        }
+
+        private long[][] scan() {
+            long[] sessions = new long[query.keyCount()];
+            long[] minutes = new long[query.keyCount()];
+
+            for (int row = from; row < to; row++) {
+                byte rowStatus = statuses[row];
+                long start = startMinutes[row];
+
+                if (rowStatus == REMOVED
+                        || start < query.fromMinute() || start >= query.toMinute()
+                        || (query.type() != ANY && types[row] != query.type())
+                        || (query.status() != ANY && rowStatus != query.status())) {
+                    continue;
+                }
+
+                long duration = endMinutes[row] - start;
+
+                switch (query.groupBy()) {
+                    case INSTRUCTOR -> add(sessions, minutes, instructorIds[row], duration);
+                    case DAY -> add(sessions, minutes, Math.floorDiv(start, MINUTES_PER_DAY), duration);
+                    case WEEK -> add(sessions, minutes, weekOf(Math.floorDiv(start, MINUTES_PER_DAY)), duration);
+                    case TRAINEE -> {
+                        if (types[row] == PRACTICAL) {
+                            add(sessions, minutes, traineeIds[row], duration);
+                        } else {
+                            int offset = attendeeOffsets[row];
+                            for (int i = 0; i < attendeeCounts[row]; i++) {
+                                add(sessions, minutes, attendees[offset + i], duration);
+                            }
+                        }
+                    }
+                }
+            }
+
+            return new long[][] {sessions, minutes};
+        }
+
+        private void add(long[] sessions, long[] minutes, long key, long duration) {
+            int bucket = (int) (key - query.firstKey());
+            if (bucket >= 0 && bucket < sessions.length) {
+                sessions[bucket]++;
+                minutes[bucket] += duration;
+            }
+        }
+    }
+}
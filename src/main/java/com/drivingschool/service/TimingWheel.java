@@ -0,0 +1,100 @@
+package com.drivingschool.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Hashed timing wheel for keyed deadlines
+ *
+ * A deadline is hashed to the bucket of its tick (tick % wheel size), so scheduling and
+ * cancelling are O(1) and advancing the clock only looks at the buckets of the elapsed ticks.
+ * Deadlines further away than one revolution share a bucket with nearer ones and are
+ * skipped until their tick comes round. Rescheduling a key replaces its previous deadline.
+ * Not thread-safe: the owner synchronizes access.
+ */
+
+public class TimingWheel<K> {
+
+    private final long tickMillis;
+    private final Set<K>[] buckets;
+    private final Map<K, Long> deadlineTicks = new HashMap<>();
+    private long currentTick;
+
+    public TimingWheel(long tickMillis, int wheelSize, long startMillis) {
+        if (tickMillis <= 0 || wheelSize <= 0) {
+            throw new IllegalArgumentException("Tick duration and wheel size must be positive");
+        }
+
+        this.tickMillis = tickMillis;
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        Set<K>[] buckets = new Set[wheelSize];
+        this.buckets = buckets;
+        for (int i = 0; i < wheelSize; i++) {
+            buckets[i] = new HashSet<>();
+        }
+        this.currentTick = startMillis / tickMillis;
+    }
+
+    // Schedule (or reschedule) a key; a deadline already passed expires on the next advance
+    public void schedule(K key, long deadlineMillis) {
+        cancel(key);
+
+        long tick = Math.max(deadlineMillis / tickMillis, currentTick);
+        deadlineTicks.put(key, tick);
+        buckets[bucketOf(tick)].add(key);
+    }
+
+    // Remove a key's deadline, if it has one
+    public void cancel(K key) {
+        Long tick = deadlineTicks.remove(key);
+        if (tick != null) {
+            buckets[bucketOf(tick)].remove(key);
+        }
+    }
+
+    /**
+     * Move the clock to nowMillis and return the keys whose deadline has passed
+     * After a pause longer than one revolution every bucket is visited once instead of tick by tick
+     */
+    public List<K> advance(long nowMillis) {
+        long targetTick = nowMillis / tickMillis;
+        List<K> expired = new ArrayList<>();
+
+        if (targetTick - currentTick >= buckets.length) {
+            for (Set<K> bucket : buckets) {
+                expire(bucket, targetTick, expired);
+            }
+        } else {
+            for (long tick = currentTick; tick <= targetTick; tick++) {
+                expire(buckets[bucketOf(tick)], targetTick, expired);
+            }
+        }
+
+        currentTick = Math.max(currentTick, targetTick);
+        return expired;
+    }
+
+    // Number of keys with a deadline
+    public int size() {
+        return deadlineTicks.size();
+    }
+
+    private void expire(Set<K> bucket, long targetTick, List<K> expired) {
+        bucket.removeIf(key -> {
+            if (deadlineTicks.get(key) > targetTick) {
+                return false;
+            }
+            deadlineTicks.remove(key);
+            expired.add(key);
+            return true;
+        });
+    }
+
+    private int bucketOf(long tick) {
+        return (int) Math.floorMod(tick, (long) buckets.length);
+    }
+}
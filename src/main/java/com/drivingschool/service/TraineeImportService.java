@@ -0,0 +1,436 @@
+package com.drivingschool.service;
+
+import com.drivingschool.model.AppUser;
+import com.drivingschool.model.AuditEvent;
+import com.drivingschool.model.Trainee;
+import com.drivingschool.repository.AppUserRepository;
+import com.drivingschool.repository.InstructorRepository;
+import com.drivingschool.repository.TraineeRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.dao.DataAccessException;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Trainee Import Service - bulk creation of trainees from a CSV file
+ *
+ * Pipeline:
+ *  1. parse and validate every row (format errors are reported per row)
+ *  2. check usernames, emails and SSNs against the database with set-based IN queries
+ *  3. hash passwords in parallel on a bounded pool
+ *  4. insert AppUser and Trainee rows with JDBC batches, one transaction per chunk
+ *
+ * If a chunk fails in the database, its rows are retried one by one so a single
+ * bad row does not abort the rest of the file.
+ */
+
+@Service
+public class TraineeImportService {
+
+    static final int CHUNK_SIZE = 500;
+
+    public static final List<String> REQUIRED_COLUMNS = List.of(
+            "username", "password", "email", "first_name", "last_name",
+            "ssn", "phone", "license_category", "assigned_instructor_id");
+
+    static final Set<String> LICENSE_CATEGORIES = Set.of(
+            "A", "A1", "A2", "B", "B1", "C", "C1", "C+E", "D", "D1", "D+E");
+
+    private final TraineeRepository traineeRepository;
+    private final AppUserRepository appUserRepository;
+    private final InstructorRepository instructorRepository;
+    private final PasswordEncoder passwordEncoder;
+    private final TransactionTemplate transactionTemplate;
+    private final UniquenessFilterService uniquenessFilterService;
+    private final LedgerService ledgerService;
+    private final TraineeProgressService traineeProgressService;
+    private final TraineeSearchService traineeSearchService;
+    private final AuditService auditService;
+
+    // BCrypt is CPU bound, so the pool is sized to the available cores
+    private final ExecutorService hashingPool =
+            Executors.newFixedThreadPool(Math.max(2, Runtime.getRuntime().availableProcessors()));
+
+    public TraineeImportService(TraineeRepository traineeRepository,
+                                AppUserRepository appUserRepository,
+                                InstructorRepository instructorRepository,
+                                PasswordEncoder passwordEncoder,
+                                TransactionTemplate transactionTemplate,
+                                UniquenessFilterService uniquenessFilterService,
+                                LedgerService ledgerService,
+                                TraineeProgressService traineeProgressService,
+                                TraineeSearchService traineeSearchService,
+                                AuditService auditService) {
+        this.traineeRepository = traineeRepository;
+        this.appUserRepository = appUserRepository;
+        this.instructorRepository = instructorRepository;
+        this.passwordEncoder = passwordEncoder;
+        this.transactionTemplate = transactionTemplate;
+        this.uniquenessFilterService = uniquenessFilterService;
+        this.ledgerService = ledgerService;
+        this.traineeProgressService = traineeProgressService;
+        this.traineeSearchService = traineeSearchService;
+        this.auditService = auditService;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        hashingPool.shutdown();
+    }
+
+    // Import trainees from a CSV stream (first line must be the header)
+    public ImportResult importCsv(InputStream input) throws IOException {
+        long startedAt = System.currentTimeMillis();
+        List<RowError> errors = new ArrayList<>();
+
+        List<ImportRow> rows = parse(input, errors);
+        List<ImportRow> valid = checkUniqueness(rows, errors);
+
+        hashPasswords(valid);
+
+        int imported = 0;
+        for (int i = 0; i < valid.size(); i += CHUNK_SIZE) {
+            imported += insertChunk(valid.subList(i, Math.min(i + CHUNK_SIZE, valid.size())), errors);
+        }
+
+        if (imported > 0) {
+            traineeSearchService.traineesImported();
+        }
+
+        errors.sort(Comparator.comparingInt(RowError::getLine));
+
+        return new ImportResult(rows.size() + countFormatErrors(errors), imported, errors,
+                System.currentTimeMillis() - startedAt);
+    }
+
+    // Parse the CSV file and validate the format of each row
+    private List<ImportRow> parse(InputStream input, List<RowError> errors) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+
+        String headerLine = reader.readLine();
+        if (headerLine == null) {
+            throw new IllegalArgumentException("The file is empty");
+        }
+
+        Map<String, Integer> header = new HashMap<>();
+        List<String> headerFields = splitCsvLine(stripBom(headerLine));
+        for (int i = 0; i < headerFields.size(); i++) {
+            header.put(headerFields.get(i).trim().toLowerCase(), i);
+        }
+
+        for (String column : REQUIRED_COLUMNS) {
+            if (!header.containsKey(column)) {
+                throw new IllegalArgumentException("Missing column in header: " + column);
+            }
+        }
+
+        Set<Integer> instructorIds = new HashSet<>(instructorRepository.findAllIds());
+        List<ImportRow> rows = new ArrayList<>();
+
+        String line;
+        int lineNumber = 1;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+
+            if (line.isBlank()) {
+                continue;
+            }
+
+            try {
+                rows.add(toRow(lineNumber, splitCsvLine(line), header, instructorIds));
+            } catch (IllegalArgumentException e) {
+                errors.add(new RowError(lineNumber, e.getMessage(), true));
+            }
+        }
+
+        return rows;
+    }
+
+    private ImportRow toRow(int line, List<String> fields, Map<String, Integer> header, Set<Integer> instructorIds) {
+        String username = required(fields, header, "username");
+        String password = required(fields, header, "password");
+        String email = required(fields, header, "email");
+
+        if (password.length() < 6) {
+            throw new IllegalArgumentException("Password must have at least 6 characters");
+        }
+
+        if (!email.contains("@")) {
+            throw new IllegalArgumentException("Invalid email: " + email);
+        }
+
+        Trainee trainee = new Trainee();
+        trainee.setFirstName(required(fields, header, "first_name"));
+        trainee.setLastName(required(fields, header, "last_name"));
+        trainee.setSsn(required(fields, header, "ssn"));
+        trainee.setPhone(required(fields, header, "phone"));
+        trainee.setAddress(optional(fields, header, "address"));
+        trainee.setLicenseCategory(required(fields, header, "license_category"));
+
+        if (!trainee.getSsn().matches("[0-9]{13}")) {
+            throw new IllegalArgumentException("SSN must have 13 digits: " + trainee.getSsn());
+        }
+
+        if (!trainee.getPhone().matches("[0-9]{10}")) {
+            throw new IllegalArgumentException("Phone must have 10 digits: " + trainee.getPhone());
+        }
+
+        if (!LICENSE_CATEGORIES.contains(trainee.getLicenseCategory())) {
+            throw new IllegalArgumentException("Unknown license category: " + trainee.getLicenseCategory());
+        }
+
+        try {
+            trainee.setAssignedInstructorId(Integer.valueOf(required(fields, header, "assigned_instructor_id")));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Assigned instructor id must be a number");
+        }
+
+        if (!instructorIds.contains(trainee.getAssignedInstructorId())) {
+            throw new IllegalArgumentException("Instructor not found: " + trainee.getAssignedInstructorId());
+        }
+
+        String enrollmentDate = optional(fields, header, "enrollment_date");
+        try {
+            trainee.setEnrollmentDate(enrollmentDate == null ? LocalDate.now() : LocalDate.parse(enrollmentDate));
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Enrollment date must be in yyyy-MM-dd format: " + enrollmentDate);
+        }
+
+        String status = optional(fields, header, "status");
+        trainee.setStatus(status == null ? "Active" : status);
+
+        if (!trainee.getStatus().equals("Active") && !trainee.getStatus().equals("Completed")) {
+            throw new IllegalArgumentException("Unknown status: " + trainee.getStatus());
+        }
+
+        return new ImportRow(line, username, password, email, trainee);
+    }
+
+    // Check uniqueness against the file itself and against the database (3 set-based queries in total)
+    private List<ImportRow> checkUniqueness(List<ImportRow> rows, List<RowError> errors) {
+        Set<String> usernames = new HashSet<>();
+        Set<String> emails = new HashSet<>();
+        Set<String> ssns = new HashSet<>();
+        List<ImportRow> unique = new ArrayList<>();
+
+        for (ImportRow row : rows) {
+            if (!usernames.add(row.username)) {
+                errors.add(new RowError(row.line, "Duplicate username in file: " + row.username, false));
+            } else if (!emails.add(row.email)) {
+                errors.add(new RowError(row.line, "Duplicate email in file: " + row.email, false));
+            } else if (!ssns.add(row.trainee.getSsn())) {
+                errors.add(new RowError(row.line, "Duplicate SSN in file: " + row.trainee.getSsn(), false));
+            } else {
+                unique.add(row);
+            }
+        }
+
+        Set<String> existingUsernames = appUserRepository.findExistingUsernames(usernames);
+        Set<String> existingEmails = appUserRepository.findExistingEmails(emails);
+        Set<String> existingSsns = traineeRepository.findExistingSsns(ssns);
+
+        List<ImportRow> valid = new ArrayList<>();
+        for (ImportRow row : unique) {
+            if (existingUsernames.contains(row.username)) {
+                errors.add(new RowError(row.line, "Username " + row.username + " already exists!", false));
+            } else if (existingEmails.contains(row.email)) {
+                errors.add(new RowError(row.line, "Email " + row.email + " already exists!", false));
+            } else if (existingSsns.contains(row.trainee.getSsn())) {
+                errors.add(new RowError(row.line, "SSN " + row.trainee.getSsn() + " already exists!", false));
+            } else {
+                valid.add(row);
+            }
+        }
+
+        return valid;
+    }
+
+    // Hash all passwords in parallel on the bounded pool
+    private void hashPasswords(List<ImportRow> rows) {
+        List<CompletableFuture<Void>> futures = new ArrayList<>(rows.size());
+
+        for (ImportRow row : rows) {
+            futures.add(CompletableFuture.runAsync(
+                    () -> row.passwordHash = passwordEncoder.encode(row.password), hashingPool));
+        }
+
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+    }
+
+    // Insert one chunk in a single transaction, falling back to row-by-row on failure
+    private int insertChunk(List<ImportRow> chunk, List<RowError> errors) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> insertBatch(chunk));
+            return chunk.size();
+        } catch (DataAccessException e) {
+            int imported = 0;
+
+            for (ImportRow row : chunk) {
+                try {
+                    transactionTemplate.executeWithoutResult(status -> insertBatch(List.of(row)));
+                    imported++;
+                } catch (DataAccessException rowException) {
+                    errors.add(new RowError(row.line, "Database error: " +
+                            rowException.getMostSpecificCause().getMessage(), false));
+                }
+            }
+
+            return imported;
+        }
+    }
+
+    private void insertBatch(List<ImportRow> rows) {
+        List<AppUser> users = new ArrayList<>(rows.size());
+
+        for (ImportRow row : rows) {
+            AppUser user = new AppUser();
+            user.setUsername(row.username);
+            user.setPassword(row.passwordHash);
+            user.setEmail(row.email);
+            user.setRole("TRAINEE");
+            user.setIsActive(true);
+            users.add(user);
+        }
+
+        appUserRepository.saveAll(users);
+
+        Map<String, Integer> userIds = appUserRepository.findUserIdsByUsernames(
+                rows.stream().map(row -> row.username).toList());
+
+        List<Trainee> trainees = new ArrayList<>(rows.size());
+        for (ImportRow row : rows) {
+            row.trainee.setUserId(userIds.get(row.username));
+            trainees.add(row.trainee);
+        }
+
+        traineeRepository.saveAll(trainees);
+        ledgerService.openAccountsForUsers(userIds.values());
+        traineeProgressService.openProgressForUsers(userIds.values());
+
+        for (ImportRow row : rows) {
+            uniquenessFilterService.register(row.username, row.email, row.trainee.getSsn());
+        }
+
+        // journaled once the chunk commits; a chunk retried row by row is journaled by the retries
+        Map<Integer, Integer> traineeIds = traineeRepository.findTraineeIdsByUserIds(userIds.values());
+        for (ImportRow row : rows) {
+            Trainee trainee = row.trainee;
+            auditService.record(AuditEvent.Entity.TRAINEE, traineeIds.get(trainee.getUserId()), AuditEvent.Action.CREATE,
+                    trainee.getFirstName() + " " + trainee.getLastName() + ", category " + trainee.getLicenseCategory()
+                            + ", user " + row.username + " (imported from CSV, line " + row.line + ")");
+        }
+    }
+
+    private int countFormatErrors(List<RowError> errors) {
+        return (int) errors.stream().filter(RowError::isFormatError).count();
+    }
+
+    private static String required(List<String> fields, Map<String, Integer> header, String column) {
+        String value = optional(fields, header, column);
+
+        if (value == null) {
+            throw new IllegalArgumentException("Missing value for " + column);
+        }
+
+        return value;
+    }
+
+    private static String optional(List<String> fields, Map<String, Integer> header, String column) {
+        Integer index = header.get(column);
+
+        if (index == null || index >= fields.size()) {
+            return null;
+        }
+
+        String value = fields.get(index).trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    private static String stripBom(String line) {
+        return line.startsWith("\uFEFF") ? line.substring(1) : line;
+    }
+
+    // Split one CSV line, supporting double-quoted fields with escaped quotes ("")
+    static List<String> splitCsvLine(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    current.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    current.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(current.toString());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+
+        fields.add(current.toString());
+        return fields;
+    }
+
+    // One parsed CSV row
+    private static class ImportRow {
+        private final int line;
+        private final String username;
+        private final String password;
+        private final String email;
+        private final Trainee trainee;
+        private volatile String passwordHash;
+
+        ImportRow(int line, String username, String password, String email, Trainee trainee) {
+            this.line = line;
+            this.username = username;
+            this.password = password;
+            this.email = email;
+            this.trainee = trainee;
+        }
+    }
+
+    // Inner class for a rejected row
+    @Getter
+    @AllArgsConstructor
+    public static class RowError {
+        private final int line;
+        private final String message;
+        private final boolean formatError;
+    }
+
+    // Inner class for the import summary
+    @Getter
+    @AllArgsConstructor
+    public static class ImportResult {
+        private final int totalRows;
+        private final int importedRows;
+        private final List<RowError> errors;
+        private final long durationMillis;
+    }
+}
@@ -0,0 +1,200 @@
+package com.drivingschool.service;
+
+import com.drivingschool.model.LicenseRequirement;
+import com.drivingschool.model.Session;
+import com.drivingschool.model.TraineeProgress;
+import com.drivingschool.repository.LicenseRequirementRepository;
+import com.drivingschool.repository.ReplicaRouting;
+import com.drivingschool.repository.TraineeProgressRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Trainee Progress Service - required practical hours and materialized training progress
+ *
+ * SessionService and TraineeService call this inside their own transactions,
+ * so a trainee's progress never disagrees with the committed sessions.
+ * The nightly reconciliation repairs rows changed outside the application.
+ */
+
+@Service
+public class TraineeProgressService {
+
+    private static final Logger log = LoggerFactory.getLogger(TraineeProgressService.class);
+
+    private final TraineeProgressRepository traineeProgressRepository;
+    private final LicenseRequirementRepository licenseRequirementRepository;
+    private final ScheduleWatchlistService scheduleWatchlistService;
+    private final TransactionTemplate openTransaction;
+
+    public TraineeProgressService(TraineeProgressRepository traineeProgressRepository,
+                                  LicenseRequirementRepository licenseRequirementRepository,
+                                  ScheduleWatchlistService scheduleWatchlistService,
+                                  PlatformTransactionManager transactionManager) {
+        this.traineeProgressRepository = traineeProgressRepository;
+        this.licenseRequirementRepository = licenseRequirementRepository;
+        this.scheduleWatchlistService = scheduleWatchlistService;
+
+        this.openTransaction = new TransactionTemplate(transactionManager);
+        this.openTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    // Get the progress of a trainee (one primary key lookup)
+    public TraineeProgress getProgress(Integer traineeId) {
+        TraineeProgress progress = traineeProgressRepository.findByTraineeId(traineeId);
+
+        // trainee created before progress was tracked: the reconciliation creates the missing rows,
+        // until then it is written on the primary in a transaction of its own (never in the caller's read)
+        if (progress == null) {
+            progress = openTransaction.execute(status -> ReplicaRouting.onPrimary(() -> {
+                traineeProgressRepository.recompute(traineeId);
+                return traineeProgressRepository.findByTraineeId(traineeId);
+            }));
+        }
+
+        return progress;
+    }
+
+    // Active trainees that completed all required practical hours
+    @Transactional(readOnly = true)
+    public List<TraineeProgress> getExamReady() {
+        return traineeProgressRepository.findWithinRemaining(0);
+    }
+
+    // Active trainees with at most the given practical hours left (exam-ready ones included), closest first
+    @Transactional(readOnly = true)
+    public List<TraineeProgress> getCloseToExamReady(int hoursLeft) {
+        if (hoursLeft < 0) {
+            throw new IllegalArgumentException("Hours left must be zero or greater");
+        }
+
+        return traineeProgressRepository.findWithinRemaining(hoursLeft * 60);
+    }
+
+    // Create the progress row of a new trainee
+    public void openProgress(Integer traineeId) {
+        traineeProgressRepository.recompute(traineeId);
+        scheduleWatchlistService.traineeChanged(traineeId);
+    }
+
+    // Create the progress rows of trainees inserted by a bulk import
+    public void openProgressForUsers(Collection<Integer> userIds) {
+        traineeProgressRepository.openForUsers(userIds);
+        scheduleWatchlistService.traineesChanged();
+    }
+
+    // Required hours follow the trainee's license category
+    public void licenseCategoryChanged(Integer traineeId) {
+        traineeProgressRepository.recompute(traineeId);
+    }
+
+    // Only completed practical sessions count towards the required hours
+    public static boolean countsTowardsProgress(Session session) {
+        return session.isPractical() && session.isCompleted() && session.getTraineeId() != null;
+    }
+
+    // A practical session was just marked Completed
+    public void sessionCompleted(Session session) {
+        if (!countsTowardsProgress(session)) {
+            return;
+        }
+
+        int minutes = (int) Duration.between(session.getStartDateTime(), session.getEndDateTime()).toMinutes();
+
+        if (!traineeProgressRepository.addCompletedSession(session.getTraineeId(), minutes,
+                session.getEndDateTime().toLocalDate())) {
+            // no progress row yet - build it from the sessions, which already include this one
+            traineeProgressRepository.recompute(session.getTraineeId());
+        }
+        scheduleWatchlistService.traineeChanged(session.getTraineeId());
+    }
+
+    // A completed practical session was set back to Scheduled
+    public void sessionReopened(Session session) {
+        if (session.isPractical() && session.getTraineeId() != null) {
+            traineeProgressRepository.recompute(session.getTraineeId());
+            scheduleWatchlistService.traineeChanged(session.getTraineeId());
+        }
+    }
+
+    /**
+     * A session that counted (or now counts) was reopened, edited or deleted
+     * The last session date cannot be undone incrementally, so the affected trainees are rebuilt
+     */
+    public void sessionsChanged(Session before, Session after) {
+        Set<Integer> traineeIds = new LinkedHashSet<>();
+
+        if (before != null && countsTowardsProgress(before)) {
+            traineeIds.add(before.getTraineeId());
+        }
+        if (after != null && countsTowardsProgress(after)) {
+            traineeIds.add(after.getTraineeId());
+        }
+
+        traineeIds.stream()
+                .filter(Objects::nonNull)
+                .forEach(traineeId -> {
+                    traineeProgressRepository.recompute(traineeId);
+                    scheduleWatchlistService.traineeChanged(traineeId);
+                });
+    }
+
+    // Get all license requirements
+    @Transactional(readOnly = true)
+    public List<LicenseRequirement> getRequirements() {
+        return licenseRequirementRepository.findAll();
+    }
+
+    // Change the required practical hours of a category and update the progress of its trainees
+    @Transactional
+    public int updateRequiredHours(String licenseCategory, Integer requiredHours) {
+        if (licenseRequirementRepository.findByCategory(licenseCategory) == null) {
+            throw new IllegalArgumentException("License category not found: " + licenseCategory);
+        }
+
+        if (requiredHours == null || requiredHours <= 0) {
+            throw new IllegalArgumentException("Required hours must be greater than zero");
+        }
+
+        licenseRequirementRepository.updateRequiredHours(licenseCategory, requiredHours);
+        return traineeProgressRepository.updateRequirement(licenseCategory, requiredHours * 60);
+    }
+
+    /**
+     * Reconciliation: rebuild every progress row that disagrees with the sessions and requirements
+     * Runs after startup and every night; returns the number of repaired rows
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @LeaderJob(value = "progress-reconcile", cron = "0 40 2 * * *")
+    @Transactional
+    public int reconcile() {
+        List<Integer> traineeIds = traineeProgressRepository.findDiscrepancies();
+
+        for (Integer traineeId : traineeIds) {
+            traineeProgressRepository.recompute(traineeId);
+            scheduleWatchlistService.traineeChanged(traineeId);
+        }
+
+        if (traineeIds.isEmpty()) {
+            log.info("Progress reconciliation: all trainees match their completed sessions");
+        } else {
+            log.warn("Progress reconciliation: repaired {} trainees ({})", traineeIds.size(), traineeIds);
+        }
+
+        return traineeIds.size();
+    }
+}
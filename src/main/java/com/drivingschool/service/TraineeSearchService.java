@@ -0,0 +1,142 @@
+package com.drivingschool.service;
+
+import com.drivingschool.model.Trainee;
+import com.drivingschool.repository.TableVersions;
+import com.drivingschool.repository.TraineeRepository;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Trainee Search Service - typeahead over all trainees
+ *
+ * Trainees are indexed in memory by name, username, phone and the last four digits of the SSN
+ * (the full SSN is never indexed). The index is built at startup and kept current by
+ * TraineeService and the CSV import after every committed change, and by ChangeLogService
+ * for the changes of other nodes.
+ */
+
+@Service
+public class TraineeSearchService {
+
+    private static final Logger log = LoggerFactory.getLogger(TraineeSearchService.class);
+
+    public static final int MAX_LIMIT = 50;
+
+    private final TraineeRepository traineeRepository;
+    private final TrigramIndex index = new TrigramIndex();
+    private final Map<Integer, TraineeMatch> matches = new ConcurrentHashMap<>();
+
+    public TraineeSearchService(TraineeRepository traineeRepository, ChangeLogService changeLogService) {
+        this.traineeRepository = traineeRepository;
+        changeLogService.subscribe(TableVersions.TRAINEE, this::changedElsewhere);
+    }
+
+    // Index every trainee
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void rebuild() {
+        long start = System.currentTimeMillis();
+
+        index.clear();
+        matches.clear();
+        for (Trainee trainee : traineeRepository.findAll()) {
+            put(trainee);
+        }
+
+        log.info("Trainee search index built: {} trainees in {} ms", index.size(), System.currentTimeMillis() - start);
+    }
+
+    // A trainee was created, edited or deleted; re-indexed after commit
+    public void traineeChanged(Integer traineeId) {
+        AfterCommit.run(() -> {
+            Trainee trainee = traineeRepository.findById(traineeId);
+
+            synchronized (this) {
+                if (trainee == null) {
+                    index.remove(traineeId);
+                    matches.remove(traineeId);
+                } else {
+                    put(trainee);
+                }
+            }
+        });
+    }
+
+    // Trainees were imported in bulk; the index is rebuilt after commit
+    public void traineesImported() {
+        AfterCommit.run(this::rebuild);
+    }
+
+    // Trainees changed by another node (null: any trainee)
+    private void changedElsewhere(Set<Integer> traineeIds) {
+        if (traineeIds == null) {
+            rebuild();
+        } else {
+            traineeIds.forEach(this::traineeChanged);
+        }
+    }
+
+    // Best matches for a typed query, best first
+    public List<TraineeMatch> search(String query, int limit) {
+        List<TraineeMatch> result = new ArrayList<>();
+        for (Integer traineeId : index.search(query, Math.min(limit, MAX_LIMIT))) {
+            TraineeMatch match = matches.get(traineeId);
+            if (match != null) {
+                result.add(match);
+            }
+        }
+        return result;
+    }
+
+    // A trainee as shown in the pickers (null if not found)
+    public TraineeMatch getMatch(Integer traineeId) {
+        return traineeId == null ? null : matches.get(traineeId);
+    }
+
+    // Several trainees as shown in the pickers, in the given order
+    public List<TraineeMatch> getMatches(Collection<Integer> traineeIds) {
+        List<TraineeMatch> result = new ArrayList<>();
+        if (traineeIds != null) {
+            for (Integer traineeId : traineeIds) {
+                TraineeMatch match = matches.get(traineeId);
+                if (match != null) {
+                    result.add(match);
+                }
+            }
+        }
+        return result;
+    }
+
+    private void put(Trainee trainee) {
+        String name = trainee.getFirstName() + " " + trainee.getLastName();
+        String ssn = trainee.getSsn();
+        String ssnDigits = ssn != null && ssn.length() >= 4 ? ssn.substring(ssn.length() - 4) : null;
+
+        index.put(trainee.getTraineeId(), name.toLowerCase(),
+                trainee.getFirstName(), trainee.getLastName(), trainee.getUsername(), trainee.getPhone(), ssnDigits);
+        matches.put(trainee.getTraineeId(), new TraineeMatch(trainee.getTraineeId(), name, trainee.getUsername(),
+                trainee.getLicenseCategory(), trainee.getStatus()));
+    }
+
+    // Inner class for one search result
+    @Getter
+    @AllArgsConstructor
+    public static class TraineeMatch {
+        private final Integer traineeId;
+        private final String name;
+        private final String username;
+        private final String licenseCategory;
+        private final String status;
+    }
+}
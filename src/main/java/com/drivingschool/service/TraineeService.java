@@ -1,6 +1,7 @@
 package com.drivingschool.service;
 
 import com.drivingschool.model.AppUser;
+import com.drivingschool.model.AuditEvent;
 import com.drivingschool.model.Trainee;
 import com.drivingschool.repository.AppUserRepository;
 import com.drivingschool.repository.TraineeRepository;
@@ -10,6 +11,7 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Trainee Service - Business Logic Layer
@@ -18,37 +20,71 @@ import java.util.List;
 @Service
 public class TraineeService {
 
+    // status -> the status a trainee must be in to be moved to it
+    private static final Map<String, String> STATUS_TRANSITIONS = Map.of(
+            "Completed", "Active",
+            "Active", "Completed");
+
     private final TraineeRepository traineeRepository;
     private final AppUserRepository appUserRepository;
     private final PasswordEncoder passwordEncoder;
-
-    public TraineeService(TraineeRepository traineeRepository, AppUserRepository appUserRepository, PasswordEncoder passwordEncoder) {
+    private final UniquenessFilterService uniquenessFilterService;
+    private final LedgerService ledgerService;
+    private final TraineeProgressService traineeProgressService;
+    private final ScheduleWatchlistService scheduleWatchlistService;
+    private final SessionAnalyticsService sessionAnalyticsService;
+    private final UpcomingScheduleService upcomingScheduleService;
+    private final TraineeSearchService traineeSearchService;
+    private final AuditService auditService;
+
+    public TraineeService(TraineeRepository traineeRepository, AppUserRepository appUserRepository,
+                          PasswordEncoder passwordEncoder, UniquenessFilterService uniquenessFilterService,
+                          LedgerService ledgerService,
+                          TraineeProgressService traineeProgressService,
+                          ScheduleWatchlistService scheduleWatchlistService,
+                          SessionAnalyticsService sessionAnalyticsService,
+                          UpcomingScheduleService upcomingScheduleService,
+                          TraineeSearchService traineeSearchService,
+                          AuditService auditService) {
         this.traineeRepository = traineeRepository;
         this.appUserRepository = appUserRepository;
         this.passwordEncoder = passwordEncoder;
+        this.uniquenessFilterService = uniquenessFilterService;
+        this.ledgerService = ledgerService;
+        this.traineeProgressService = traineeProgressService;
+        this.scheduleWatchlistService = scheduleWatchlistService;
+        this.sessionAnalyticsService = sessionAnalyticsService;
+        this.upcomingScheduleService = upcomingScheduleService;
+        this.traineeSearchService = traineeSearchService;
+        this.auditService = auditService;
     }
 
     // Get all trainees
+    @Transactional(readOnly = true)
     public List<Trainee> getAllTrainees() {
         return traineeRepository.findAll();
     }
 
     // Get trainee by id
+    @Transactional(readOnly = true)
     public Trainee getTraineeById(Integer traineeId) {
         return traineeRepository.findById(traineeId);
     }
 
     // Get Active trainees
+    @Transactional(readOnly = true)
     public List<Trainee> getActiveTrainees() {
         return traineeRepository.findByStatus("Active");
     }
 
     // Get Completed trainees
+    @Transactional(readOnly = true)
     public List<Trainee> getCompletedTrainees() {
         return traineeRepository.findByStatus("Completed");
     }
 
     // Get trainees by instructor id
+    @Transactional(readOnly = true)
     public List<Trainee> getTraineesByInstructorId(Integer instructorId) {
         return traineeRepository.findByInstructorId(instructorId);
     }
@@ -57,17 +93,8 @@ public class TraineeService {
     @Transactional
     public Integer createTrainee(Trainee trainee, String username, String password, String email) {
 
-        if (appUserRepository.existsByUsername(username)) {
-            throw new IllegalArgumentException("Username " + username + " already exists!");
-        }
-
-        if (appUserRepository.existsByEmail(email)) {
-            throw new IllegalArgumentException("Email " + email + " already exists!");
-        }
-
-        if (traineeRepository.existsBySsn(trainee.getSsn())) {
-            throw new IllegalArgumentException("SSN " + trainee.getSsn() + " already exists!");
-        }
+        // Bloom filters skip the database unless a value is probably taken
+        uniquenessFilterService.checkAvailable(username, email, trainee.getSsn());
 
         AppUser newUser = new AppUser();
 
@@ -89,10 +116,23 @@ public class TraineeService {
             trainee.setStatus("Active");
         }
 
-        return traineeRepository.save(trainee);
+        Integer traineeId = traineeRepository.save(trainee);
+        uniquenessFilterService.register(username, email, trainee.getSsn());
+        ledgerService.openAccount(traineeId);
+        traineeProgressService.openProgress(traineeId);
+        traineeSearchService.traineeChanged(traineeId);
+        auditService.record(AuditEvent.Entity.TRAINEE, traineeId, AuditEvent.Action.CREATE,
+                trainee.getFirstName() + " " + trainee.getLastName() + ", category " + trainee.getLicenseCategory()
+                        + ", user " + username);
+
+        return traineeId;
     }
 
-    // Update existing trainee
+    /**
+     * Update existing trainee
+     * trainee.getVersion() is the version the form was rendered with; the update is refused if the
+     * trainee was modified since. The status is kept, it only changes through changeStatus
+     */
     @Transactional
     public void updateTrainee(Trainee trainee) {
         Trainee existing = traineeRepository.findById(trainee.getTraineeId());
@@ -101,13 +141,45 @@ public class TraineeService {
             throw new IllegalArgumentException("Trainee : " + trainee.getTraineeId() + " not found!");
         }
 
+        if (!existing.getVersion().equals(trainee.getVersion())) {
+            throw changedElsewhere(trainee.getTraineeId());
+        }
+        trainee.setStatus(existing.getStatus());
+
         if (!existing.getSsn().equals(trainee.getSsn())) {
-            if (traineeRepository.existsBySsn(trainee.getSsn())) {
-                throw new IllegalArgumentException("SSN " + trainee.getSsn() + " already exists!");
-            }
+            uniquenessFilterService.checkAvailable(null, null, trainee.getSsn());
+        }
+
+        // the version check also catches a change committed since existing was read
+        if (!traineeRepository.update(trainee)) {
+            throw changedElsewhere(trainee.getTraineeId());
+        }
+        trainee.setVersion(trainee.getVersion() + 1);
+        uniquenessFilterService.register(null, null, trainee.getSsn());
+
+        if (!existing.getLicenseCategory().equals(trainee.getLicenseCategory())) {
+            ledgerService.licenseCategoryChanged(trainee.getTraineeId());
+            traineeProgressService.licenseCategoryChanged(trainee.getTraineeId());
         }
 
-        traineeRepository.update(trainee);
+        // enrollment date may have changed
+        scheduleWatchlistService.traineeChanged(trainee.getTraineeId());
+        traineeSearchService.traineeChanged(trainee.getTraineeId());
+
+        // the SSN is left out of the journal; a new instructor is journaled as a reassignment
+        auditService.record(AuditEvent.Entity.TRAINEE, trainee.getTraineeId(), AuditEvent.Action.UPDATE,
+                AuditService.changes(
+                        "Name", existing.getFirstName() + " " + existing.getLastName(),
+                        trainee.getFirstName() + " " + trainee.getLastName(),
+                        "Address", existing.getAddress(), trainee.getAddress(),
+                        "Phone", existing.getPhone(), trainee.getPhone(),
+                        "Enrollment", existing.getEnrollmentDate(), trainee.getEnrollmentDate(),
+                        "Category", existing.getLicenseCategory(), trainee.getLicenseCategory()));
+
+        if (!existing.getAssignedInstructorId().equals(trainee.getAssignedInstructorId())) {
+            auditService.record(AuditEvent.Entity.TRAINEE, trainee.getTraineeId(), AuditEvent.Action.REASSIGN,
+                    "Instructor: " + existing.getAssignedInstructorId() + " -> " + trainee.getAssignedInstructorId());
+        }
     }
 
     // Delete trainee and associated user account
@@ -121,34 +193,81 @@ public class TraineeService {
 
         traineeRepository.delete(traineeId);
         appUserRepository.delete(existing.getUserId());
+        scheduleWatchlistService.traineeChanged(traineeId);
+        sessionAnalyticsService.traineeDeleted(traineeId);
+        upcomingScheduleService.traineeDeleted(traineeId);
+        traineeSearchService.traineeChanged(traineeId);
+        auditService.record(AuditEvent.Entity.TRAINEE, traineeId, AuditEvent.Action.DELETE,
+                existing.getFirstName() + " " + existing.getLastName());
     }
 
-    // Change trainee status
-    public void changeStatus(Integer traineeId, String newStatus) {
-        Trainee existing = traineeRepository.findById(traineeId);
+    /**
+     * Change trainee status with one conditional UPDATE (no read-modify-write)
+     * expectedVersion (optional) refuses the change if the trainee was modified since the caller read it
+     */
+    @Transactional
+    public void changeStatus(Integer traineeId, String newStatus, Integer expectedVersion) {
+        String fromStatus = STATUS_TRANSITIONS.get(newStatus);
+        if (fromStatus == null) {
+            throw new IllegalArgumentException("Unknown trainee status: " + newStatus);
+        }
 
-        if (existing == null) {
-            throw new IllegalArgumentException("Trainee " + traineeId + " not found!");
+        if (!traineeRepository.transitionStatus(traineeId, fromStatus, newStatus, expectedVersion)) {
+            Trainee current = traineeRepository.findById(traineeId);
+            if (current == null) {
+                throw new IllegalArgumentException("Trainee " + traineeId + " not found!");
+            }
+            if (newStatus.equals(current.getStatus())) {
+                throw new IllegalArgumentException("Trainee " + traineeId + " is already " + newStatus);
+            }
+            throw changedElsewhere(traineeId);
         }
 
-        existing.setStatus(newStatus);
-        traineeRepository.update(existing);
+        scheduleWatchlistService.traineeChanged(traineeId);
+        traineeSearchService.traineeChanged(traineeId);
+        auditService.record(AuditEvent.Entity.TRAINEE, traineeId, AuditEvent.Action.STATUS,
+                fromStatus + " -> " + newStatus);
     }
 
-    // Reassign trainee to different instructor
-    public void reassignInstructor(Integer traineeId, Integer newInstructorId) {
+    /**
+     * Reassign trainee to a different instructor with one conditional UPDATE
+     * expectedVersion (optional) refuses the change if the trainee was modified since the caller read it
+     */
+    @Transactional
+    public void reassignInstructor(Integer traineeId, Integer newInstructorId, Integer expectedVersion) {
         Trainee existing = traineeRepository.findById(traineeId);
 
         if (existing == null) {
             throw new IllegalArgumentException("Trainee " + traineeId + " not found!");
         }
 
-        existing.setAssignedInstructorId(newInstructorId);
-        traineeRepository.update(existing);
+        if (expectedVersion != null && !expectedVersion.equals(existing.getVersion())) {
+            throw changedElsewhere(traineeId);
+        }
+
+        Integer previousInstructorId = existing.getAssignedInstructorId();
+        if (previousInstructorId.equals(newInstructorId)) {
+            throw new IllegalArgumentException("Trainee " + traineeId + " is already assigned to instructor " + newInstructorId);
+        }
+
+        // conditional on the version read above, so previousInstructorId is the one replaced
+        if (!traineeRepository.reassignInstructor(traineeId, newInstructorId, existing.getVersion())) {
+            throw changedElsewhere(traineeId);
+        }
+
+        scheduleWatchlistService.traineeChanged(traineeId);
+        traineeSearchService.traineeChanged(traineeId);
+        auditService.record(AuditEvent.Entity.TRAINEE, traineeId, AuditEvent.Action.REASSIGN,
+                "Instructor: " + previousInstructorId + " -> " + newInstructorId);
     }
 
     // Get count by status for reporting
+    @Transactional(readOnly = true)
     public Integer getCountByStatus(String status) {
         return traineeRepository.countByStatus(status);
     }
-}
\ No newline at end of file
+
+    private static IllegalArgumentException changedElsewhere(Integer traineeId) {
+        return new IllegalArgumentException("Trainee " + traineeId + " was changed by someone else - reload and try again");
+    }
+}
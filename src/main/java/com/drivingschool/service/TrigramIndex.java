@@ -0,0 +1,256 @@
+package com.drivingschool.service;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/**
+ * Thread-safe trigram index over short documents identified by an int id
+ *
+ * Text is folded to lower case ASCII (diacritics removed) and split into words. Every word is
+ * indexed by its trigrams, padded with two leading blanks so that word prefixes of one and
+ * two characters have trigrams too. A query word of three or more characters matches anywhere
+ * inside a word, a shorter one only at the start of a word; every query word has to match.
+ *
+ * Posting lists are sorted int arrays (appending ids in ascending order is amortized O(1)):
+ * a search intersects the shortest list with the others by binary search, then checks the
+ * candidates against the text (trigrams alone can match words that merely share them).
+ * Word-prefix matches rank before matches inside a word.
+ */
+
+public class TrigramIndex {
+
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^a-z0-9]+");
+    private final Map<Integer, Document> documents = new HashMap<>();
+    private final Map<Long, Postings> postings = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Index (or re-index) a document; sortKey orders equally good matches
+    public void put(int id, String sortKey, String... fields) {
+        List<String> words = new ArrayList<>();
+        for (String field : fields) {
+            words.addAll(words(field));
+        }
+
+        Document document = new Document(" " + String.join(" ", words), sortKey == null ? "" : sortKey,
+                trigramsOf(words, true));
+
+        lock.writeLock().lock();
+        try {
+            removeLocked(id);
+            documents.put(id, document);
+            for (long trigram : document.trigrams()) {
+                postings.computeIfAbsent(trigram, key -> new Postings()).add(id);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Remove a document, if indexed
+    public void remove(int id) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Remove every document
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            documents.clear();
+            postings.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Ids of the best matches for a query, best first (empty for a blank query)
+    public List<Integer> search(String query, int limit) {
+        List<String> words = words(query);
+        if (words.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+
+        Set<Long> trigrams = new LinkedHashSet<>();
+        for (String word : words) {
+            for (long trigram : trigramsOf(List.of(word), word.length() < 3)) {
+                trigrams.add(trigram);
+            }
+        }
+
+        lock.readLock().lock();
+        try {
+            Postings[] lists = new Postings[trigrams.size()];
+            int i = 0;
+            for (Long trigram : trigrams) {
+                Postings list = postings.get(trigram);
+                if (list == null) {
+                    return List.of();
+                }
+                lists[i++] = list;
+            }
+            Arrays.sort(lists, Comparator.comparingInt(list -> list.size));
+
+            Comparator<Match> worstFirst = Comparator.comparingInt(Match::score)
+                    .thenComparing(Comparator.comparing((Match match) -> match.document().sortKey()).reversed())
+                    .thenComparing(Comparator.comparingInt(Match::id).reversed());
+            PriorityQueue<Match> best = new PriorityQueue<>(limit + 1, worstFirst);
+
+            candidates:
+            for (int c = 0; c < lists[0].size; c++) {
+                int id = lists[0].ids[c];
+                for (int j = 1; j < lists.length; j++) {
+                    if (!lists[j].contains(id)) {
+                        continue candidates;
+                    }
+                }
+
+                Document document = documents.get(id);
+                int score = score(document.text(), words);
+                if (score == 0) {
+                    continue;
+                }
+
+                // a full queue only takes candidates better than its worst match
+                Match match = new Match(id, document, score);
+                if (best.size() < limit) {
+                    best.add(match);
+                } else if (worstFirst.compare(match, best.peek()) > 0) {
+                    best.poll();
+                    best.add(match);
+                }
+            }
+
+            List<Integer> ids = new ArrayList<>(best.size());
+            while (!best.isEmpty()) {
+                ids.add(best.poll().id());
+            }
+            return ids.reversed();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Number of indexed documents
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Lower case ASCII words of a text: "Ștefan-Ionuț" -> [stefan, ionut]
+    public static List<String> words(String text) {
+        if (text == null || text.isBlank()) {
+            return List.of();
+        }
+
+        String folded = MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("").toLowerCase();
+        List<String> words = new ArrayList<>();
+        for (String word : SEPARATORS.split(folded)) {
+            if (!word.isEmpty()) {
+                words.add(word);
+            }
+        }
+        return words;
+    }
+
+    // 2 points per word matching at the start of a word, 1 inside a word, 0 if any word does not match
+    private static int score(String text, List<String> words) {
+        int score = 0;
+        for (String word : words) {
+            if (text.contains(" " + word)) {
+                score += 2;
+            } else if (word.length() >= 3 && text.contains(word)) {
+                score += 1;
+            } else {
+                return 0;
+            }
+        }
+        return score;
+    }
+
+    private void removeLocked(int id) {
+        Document document = documents.remove(id);
+        if (document == null) {
+            return;
+        }
+
+        for (long trigram : document.trigrams()) {
+            Postings list = postings.get(trigram);
+            list.remove(id);
+            if (list.size == 0) {
+                postings.remove(trigram);
+            }
+        }
+    }
+
+    private static long[] trigramsOf(List<String> words, boolean padded) {
+        Set<Long> trigrams = new LinkedHashSet<>();
+        for (String word : words) {
+            String text = padded ? "  " + word : word;
+            for (int i = 0; i + 3 <= text.length(); i++) {
+                trigrams.add(((long) text.charAt(i) << 32) | ((long) text.charAt(i + 1) << 16) | text.charAt(i + 2));
+            }
+        }
+        return trigrams.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    private record Document(String text, String sortKey, long[] trigrams) {
+    }
+
+    private record Match(int id, Document document, int score) {
+    }
+
+    // Sorted ids of the documents containing one trigram
+    private static final class Postings {
+        private int[] ids = new int[4];
+        private int size;
+
+        private boolean contains(int id) {
+            return Arrays.binarySearch(ids, 0, size, id) >= 0;
+        }
+
+        private void add(int id) {
+            int position = size == 0 || ids[size - 1] < id ? size : Arrays.binarySearch(ids, 0, size, id);
+            if (position >= 0 && position < size) {
+                return;
+            }
+            if (position < 0) {
+                position = -position - 1;
+            }
+
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            System.arraycopy(ids, position, ids, position + 1, size - position);
+            ids[position] = id;
+            size++;
+        }
+
+        private void remove(int id) {
+            int position = Arrays.binarySearch(ids, 0, size, id);
+            if (position >= 0) {
+                System.arraycopy(ids, position + 1, ids, position, size - position - 1);
+                size--;
+            }
+        }
+    }
+}
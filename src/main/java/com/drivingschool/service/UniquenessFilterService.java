@@ -0,0 +1,299 @@
+package com.drivingschool.service;
+
+import com.drivingschool.model.AppUser;
+import com.drivingschool.model.Trainee;
+import com.drivingschool.repository.AppUserRepository;
+import com.drivingschool.repository.TableVersions;
+import com.drivingschool.repository.TraineeRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Uniqueness Filter Service - in-memory Bloom filters for usernames, emails and SSNs
+ *
+ * Registration forms used to run one COUNT(*) per field. The filters answer
+ * "definitely not taken" from memory; only values the filters report as probably
+ * taken are verified, all together, in a single combined query.
+ *
+ * Deleted values stay in the filters - that only costs an extra verification query.
+ * Values written by other nodes are added when ChangeLogService reports their rows.
+ * Values registered while a rebuild scans the tables are replayed into the new filters
+ * before they replace the old ones, so a rebuild never forgets a value.
+ */
+
+@Service
+public class UniquenessFilterService {
+
+    private static final Logger log = LoggerFactory.getLogger(UniquenessFilterService.class);
+
+    private static final double TARGET_FALSE_POSITIVE_RATE = 0.01;
+    private static final long MINIMUM_CAPACITY = 10_000;
+
+    private final AppUserRepository appUserRepository;
+    private final TraineeRepository traineeRepository;
+
+    private volatile BloomFilter usernames;
+    private volatile BloomFilter emails;
+    private volatile BloomFilter ssns;
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+
+    // one rebuild at a time; registrations made while it runs (null: no rebuild running)
+    private final Object rebuildLock = new Object();
+    private List<Registration> registeredDuringRebuild;
+
+    private final FieldMetrics usernameMetrics;
+    private final FieldMetrics emailMetrics;
+    private final FieldMetrics ssnMetrics;
+
+    public UniquenessFilterService(AppUserRepository appUserRepository,
+                                   TraineeRepository traineeRepository,
+                                   ChangeLogService changeLogService,
+                                   MeterRegistry meterRegistry) {
+        this.appUserRepository = appUserRepository;
+        this.traineeRepository = traineeRepository;
+
+        this.usernameMetrics = new FieldMetrics("username", meterRegistry, () -> usernames);
+        this.emailMetrics = new FieldMetrics("email", meterRegistry, () -> emails);
+        this.ssnMetrics = new FieldMetrics("ssn", meterRegistry, () -> ssns);
+
+        changeLogService.subscribe(TableVersions.APP_USER, this::usersChangedElsewhere);
+        changeLogService.subscribe(TableVersions.TRAINEE, this::traineesChangedElsewhere);
+    }
+
+    // Build the filters from AppUser and Trainee at startup
+    @PostConstruct
+    public void rebuild() {
+        synchronized (rebuildLock) {
+            synchronized (this) {
+                registeredDuringRebuild = new ArrayList<>();
+            }
+
+            try {
+                buildAndSwap();
+            } finally {
+                synchronized (this) {
+                    registeredDuringRebuild = null;
+                }
+            }
+        }
+    }
+
+    private void buildAndSwap() {
+        long started = System.currentTimeMillis();
+
+        // size the filters with 2x headroom over the current row count
+        long userCount = appUserRepository.count();
+        long traineeCount = traineeRepository.count();
+
+        BloomFilter u = new BloomFilter(Math.max(MINIMUM_CAPACITY, userCount * 2), TARGET_FALSE_POSITIVE_RATE);
+        BloomFilter e = new BloomFilter(Math.max(MINIMUM_CAPACITY, userCount * 2), TARGET_FALSE_POSITIVE_RATE);
+        BloomFilter s = new BloomFilter(Math.max(MINIMUM_CAPACITY, traineeCount * 2), TARGET_FALSE_POSITIVE_RATE);
+
+        appUserRepository.forEachUsernameAndEmail((username, email) -> {
+            u.put(normalize(username));
+            e.put(normalize(email));
+        });
+        traineeRepository.forEachSsn(ssn -> s.put(normalize(ssn)));
+
+        // values registered during the scan may have been committed after it read their table
+        synchronized (this) {
+            for (Registration registration : registeredDuringRebuild) {
+                putAll(u, e, s, registration);
+            }
+
+            usernames = u;
+            emails = e;
+            ssns = s;
+        }
+
+        log.info("Uniqueness filters built for {} users and {} trainees in {} ms",
+                userCount, traineeCount, System.currentTimeMillis() - started);
+    }
+
+    /**
+     * Throw IllegalArgumentException if the username, email or SSN is already used
+     * Any argument may be null to skip that check (instructors have no SSN)
+     */
+    public void checkAvailable(String username, String email, String ssn) {
+        String usernameToVerify = probablyTaken(usernames, usernameMetrics, username) ? username : null;
+        String emailToVerify = probablyTaken(emails, emailMetrics, email) ? email : null;
+        String ssnToVerify = probablyTaken(ssns, ssnMetrics, ssn) ? ssn : null;
+
+        if (usernameToVerify == null && emailToVerify == null && ssnToVerify == null) {
+            return;
+        }
+
+        Map<String, Object> counts = appUserRepository.countIdentityConflicts(
+                usernameToVerify, emailToVerify, ssnToVerify);
+
+        boolean usernameTaken = verified(usernameMetrics, usernameToVerify, counts.get("UsernameCount"));
+        boolean emailTaken = verified(emailMetrics, emailToVerify, counts.get("EmailCount"));
+        boolean ssnTaken = verified(ssnMetrics, ssnToVerify, counts.get("SsnCount"));
+
+        if (usernameTaken) {
+            throw new IllegalArgumentException("Username " + username + " already exists!");
+        }
+
+        if (emailTaken) {
+            throw new IllegalArgumentException("Email " + email + " already exists!");
+        }
+
+        if (ssnTaken) {
+            throw new IllegalArgumentException("SSN " + ssn + " already exists!");
+        }
+    }
+
+    // Record values that were just written to the database
+    public void register(String username, String email, String ssn) {
+        Registration registration = new Registration(username, email, ssn);
+        synchronized (this) {
+            putAll(usernames, emails, ssns, registration);
+            if (registeredDuringRebuild != null) {
+                registeredDuringRebuild.add(registration);
+            }
+        }
+
+        rebuildIfSaturated();
+    }
+
+    private static void putAll(BloomFilter u, BloomFilter e, BloomFilter s, Registration registration) {
+        if (registration.username() != null) {
+            u.put(normalize(registration.username()));
+        }
+
+        if (registration.email() != null) {
+            e.put(normalize(registration.email()));
+        }
+
+        if (registration.ssn() != null) {
+            s.put(normalize(registration.ssn()));
+        }
+    }
+
+    // Users created or edited by another node (null: any user)
+    private void usersChangedElsewhere(Set<Integer> userIds) {
+        if (userIds == null) {
+            rebuild();
+            return;
+        }
+
+        for (Integer userId : userIds) {
+            AppUser user = appUserRepository.findById(userId);
+            if (user != null) {
+                register(user.getUsername(), user.getEmail(), null);
+            }
+        }
+    }
+
+    // Trainees created or edited by another node (null: any trainee)
+    private void traineesChangedElsewhere(Set<Integer> traineeIds) {
+        if (traineeIds == null) {
+            rebuild();
+            return;
+        }
+
+        for (Integer traineeId : traineeIds) {
+            Trainee trainee = traineeRepository.findById(traineeId);
+            if (trainee != null) {
+                register(null, null, trainee.getSsn());
+            }
+        }
+    }
+
+    private boolean probablyTaken(BloomFilter filter, FieldMetrics metrics, String value) {
+        if (value == null) {
+            return false;
+        }
+
+        boolean probable = filter.mightContain(normalize(value));
+        if (!probable) {
+            metrics.definiteNegatives.increment();
+        }
+
+        return probable;
+    }
+
+    private boolean verified(FieldMetrics metrics, String value, Object count) {
+        if (value == null) {
+            return false;
+        }
+
+        boolean taken = count != null && ((Number) count).intValue() > 0;
+        if (taken) {
+            metrics.truePositives.increment();
+        } else {
+            metrics.falsePositives.increment();
+        }
+
+        return taken;
+    }
+
+    // grow the filters in the background once they hold more values than they were sized for
+    private void rebuildIfSaturated() {
+        if ((usernames.isSaturated() || emails.isSaturated() || ssns.isSaturated())
+                && rebuilding.compareAndSet(false, true)) {
+            Thread.ofVirtual().name("uniqueness-filter-rebuild").start(() -> {
+                try {
+                    rebuild();
+                } catch (RuntimeException e) {
+                    log.warn("Rebuilding uniqueness filters failed", e);
+                } finally {
+                    rebuilding.set(false);
+                }
+            });
+        }
+    }
+
+    // Values are compared case-sensitively by the database; only trim here
+    private static String normalize(String value) {
+        return value.trim();
+    }
+
+    private record Registration(String username, String email, String ssn) {
+    }
+
+    // Per-field counters; false positive rate = FP / (FP + definite negatives)
+    private static class FieldMetrics {
+        private final Counter definiteNegatives;
+        private final Counter truePositives;
+        private final Counter falsePositives;
+
+        FieldMetrics(String field, MeterRegistry registry, Supplier<BloomFilter> filter) {
+            this.definiteNegatives = Counter.builder("uniqueness.filter.checks")
+                    .tag("field", field).tag("outcome", "definite_negative").register(registry);
+            this.truePositives = Counter.builder("uniqueness.filter.checks")
+                    .tag("field", field).tag("outcome", "true_positive").register(registry);
+            this.falsePositives = Counter.builder("uniqueness.filter.checks")
+                    .tag("field", field).tag("outcome", "false_positive").register(registry);
+
+            Gauge.builder("uniqueness.filter.false_positive_rate", this, FieldMetrics::observedFalsePositiveRate)
+                    .tag("field", field)
+                    .description("Observed share of absent values the filter reported as probably present")
+                    .register(registry);
+
+            Gauge.builder("uniqueness.filter.expected_false_positive_rate", filter,
+                            f -> f.get() == null ? 0.0 : f.get().expectedFalsePositiveRate())
+                    .tag("field", field)
+                    .description("False positive probability predicted from the filter fill ratio")
+                    .strongReference(true)
+                    .register(registry);
+        }
+
+        double observedFalsePositiveRate() {
+            double negatives = falsePositives.count() + definiteNegatives.count();
+            return negatives == 0 ? 0.0 : falsePositives.count() / negatives;
+        }
+    }
+}
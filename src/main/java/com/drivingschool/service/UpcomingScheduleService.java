@@ -0,0 +1,292 @@
+package com.drivingschool.service;
+
+import com.drivingschool.model.Exam;
+import com.drivingschool.model.Session;
+import com.drivingschool.repository.ExamRepository;
+import com.drivingschool.repository.SessionRepository;
+import com.drivingschool.repository.TableVersions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Upcoming Schedule Service - which sessions and exams are still ahead
+ *
+ * Every scheduled session and every scheduled exam from today on is kept in memory, with a
+ * deadline on a hashed timing wheel: a session leaves the upcoming set when it starts and is
+ * dropped when it ends, an exam leaves the upcoming set at the end of its day. Dashboards read
+ * the sets instead of comparing every row with the clock, and the state is rebuilt from the
+ * database at startup. Every node advances its own wheel; completing ended sessions is the
+ * leader's job and works from the database (SessionService.completeElapsedSessions).
+ *
+ * Changes are applied after commit by reloading the changed row (changes of other nodes when
+ * ChangeLogService reports them). The sets are only as exact as the tick
+ * (sessions.clock-tick-seconds).
+ */
+
+@Service
+public class UpcomingScheduleService {
+
+    private static final Logger log = LoggerFactory.getLogger(UpcomingScheduleService.class);
+
+    // 512 ticks of 30 seconds cover a little over four hours per revolution
+    private static final int WHEEL_SIZE = 512;
+
+    private static final Comparator<UpcomingSession> BY_START =
+            Comparator.comparing(UpcomingSession::start).thenComparing(UpcomingSession::sessionId);
+    private static final Comparator<UpcomingExam> BY_DATE =
+            Comparator.comparing(UpcomingExam::date).thenComparing(UpcomingExam::examId);
+
+    private final SessionRepository sessionRepository;
+    private final ExamRepository examRepository;
+    private final long tickMillis;
+
+    // scheduled sessions that have not ended yet, and the ones among them that have not started
+    private final Map<Integer, UpcomingSession> sessions = new HashMap<>();
+    private final NavigableSet<UpcomingSession> upcomingSessions = new TreeSet<>(BY_START);
+
+    // scheduled exams from today on
+    private final Map<Integer, UpcomingExam> upcomingExams = new HashMap<>();
+    private final NavigableSet<UpcomingExam> examsByDate = new TreeSet<>(BY_DATE);
+
+    private TimingWheel<Deadline> wheel;
+
+    public UpcomingScheduleService(SessionRepository sessionRepository, ExamRepository examRepository,
+                                   ChangeLogService changeLogService,
+                                   @Value("${sessions.clock-tick-seconds:30}") long tickSeconds) {
+        this.sessionRepository = sessionRepository;
+        this.examRepository = examRepository;
+        this.tickMillis = TimeUnit.SECONDS.toMillis(tickSeconds);
+        this.wheel = new TimingWheel<>(tickMillis, WHEEL_SIZE, System.currentTimeMillis());
+
+        // Trainee_Session entries carry the SessionID
+        changeLogService.subscribe(TableVersions.SESSION, sessionIds -> changedElsewhere(sessionIds, this::sessionChanged));
+        changeLogService.subscribe(TableVersions.TRAINEE_SESSION, sessionIds -> changedElsewhere(sessionIds, this::sessionChanged));
+        changeLogService.subscribe(TableVersions.EXAM, examIds -> changedElsewhere(examIds, this::examChanged));
+    }
+
+    // Load every scheduled session and upcoming exam from the database
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void rebuild() {
+        long start = System.currentTimeMillis();
+
+        sessions.clear();
+        upcomingSessions.clear();
+        upcomingExams.clear();
+        examsByDate.clear();
+        wheel = new TimingWheel<>(tickMillis, WHEEL_SIZE, start);
+
+        Map<Integer, List<Integer>> attendance = sessionRepository.findScheduledAttendance();
+        for (Session session : sessionRepository.findScheduled()) {
+            putSession(session, attendance.getOrDefault(session.getSessionId(), List.of()));
+        }
+
+        for (Exam exam : examRepository.findScheduledFrom(LocalDate.now())) {
+            putExam(exam);
+        }
+
+        log.info("Upcoming schedule loaded: {} scheduled sessions ({} upcoming), {} upcoming exams in {} ms",
+                sessions.size(), upcomingSessions.size(), upcomingExams.size(), System.currentTimeMillis() - start);
+    }
+
+    // A session was created, edited, deleted or changed status; reloaded after commit
+    public void sessionChanged(Integer sessionId) {
+        AfterCommit.run(() -> {
+            Session session = sessionRepository.findById(sessionId);
+            List<Integer> traineeIds = session != null && session.isTheoretical()
+                    ? sessionRepository.getTraineeIdsForSession(sessionId)
+                    : List.of();
+
+            synchronized (this) {
+                removeSession(sessionId);
+                if (session != null && session.isScheduled() && !session.isArchived()) {
+                    putSession(session, traineeIds);
+                }
+            }
+        });
+    }
+
+    // An exam was created, edited, deleted or changed status; reloaded after commit
+    public void examChanged(Integer examId) {
+        AfterCommit.run(() -> {
+            Exam exam = examRepository.findById(examId);
+
+            synchronized (this) {
+                removeExam(examId);
+                if (exam != null && "Scheduled".equals(exam.getStatus())
+                        && !exam.getScheduledDate().isBefore(LocalDate.now())) {
+                    putExam(exam);
+                }
+            }
+        });
+    }
+
+    // A trainee was deleted; their theoretical enrollments went with them
+    public void traineeDeleted(Integer traineeId) {
+        AfterCommit.run(() -> {
+            synchronized (this) {
+                for (UpcomingSession session : sessions.values()) {
+                    session.traineeIds().remove(traineeId);
+                }
+            }
+        });
+    }
+
+    // Rows changed by another node are reloaded one by one; an unknown set of rows reloads everything
+    private void changedElsewhere(Set<Integer> rowIds, Consumer<Integer> reload) {
+        if (rowIds == null) {
+            rebuild();
+        } else {
+            rowIds.forEach(reload);
+        }
+    }
+
+    // Move the clock to now: started sessions leave the upcoming set, ended sessions and past exams are dropped
+    @Scheduled(fixedDelayString = "${sessions.clock-tick-seconds:30}", timeUnit = TimeUnit.SECONDS)
+    public synchronized void advance() {
+        long now = System.currentTimeMillis();
+
+        for (Deadline deadline : wheel.advance(now)) {
+            if (deadline.exam()) {
+                removeExam(deadline.id());
+                continue;
+            }
+
+            UpcomingSession session = sessions.get(deadline.id());
+            if (session == null) {
+                continue;
+            }
+
+            upcomingSessions.remove(session);
+            if (millis(session.end()) <= now) {
+                sessions.remove(session.sessionId());
+            } else {
+                wheel.schedule(deadline, millis(session.end()));
+            }
+        }
+    }
+
+    // Number of sessions that have not started yet
+    public synchronized int getUpcomingSessionCount() {
+        return upcomingSessions.size();
+    }
+
+    // Next sessions, soonest first
+    public synchronized List<Integer> getUpcomingSessionIds(int limit) {
+        return firstSessions(session -> true, limit);
+    }
+
+    // Next sessions of an instructor, soonest first
+    public synchronized List<Integer> getUpcomingSessionIdsForInstructor(Integer instructorId, int limit) {
+        return firstSessions(session -> session.instructorId().equals(instructorId), limit);
+    }
+
+    // Next sessions of a trainee (practical or enrolled theoretical), soonest first
+    public synchronized List<Integer> getUpcomingSessionIdsForTrainee(Integer traineeId, int limit) {
+        return firstSessions(session -> traineeId.equals(session.traineeId())
+                || session.traineeIds().contains(traineeId), limit);
+    }
+
+    // Number of scheduled exams from today on
+    public synchronized int getUpcomingExamCount() {
+        return upcomingExams.size();
+    }
+
+    // Upcoming exams of a trainee, soonest first
+    public synchronized List<Integer> getUpcomingExamIdsForTrainee(Integer traineeId) {
+        List<Integer> ids = new ArrayList<>();
+        for (UpcomingExam exam : examsByDate) {
+            if (exam.traineeId().equals(traineeId)) {
+                ids.add(exam.examId());
+            }
+        }
+        return ids;
+    }
+
+    private List<Integer> firstSessions(Predicate<UpcomingSession> filter, int limit) {
+        List<Integer> ids = new ArrayList<>();
+        for (UpcomingSession session : upcomingSessions) {
+            if (ids.size() == limit) {
+                break;
+            }
+            if (filter.test(session)) {
+                ids.add(session.sessionId());
+            }
+        }
+        return ids;
+    }
+
+    private void putSession(Session session, List<Integer> traineeIds) {
+        UpcomingSession entry = new UpcomingSession(session.getSessionId(), session.getStartDateTime(),
+                session.getEndDateTime(), session.getInstructorId(), session.getTraineeId(), new HashSet<>(traineeIds));
+
+        sessions.put(entry.sessionId(), entry);
+
+        long now = System.currentTimeMillis();
+        if (millis(entry.start()) > now) {
+            upcomingSessions.add(entry);
+            wheel.schedule(new Deadline(false, entry.sessionId()), millis(entry.start()));
+        } else {
+            wheel.schedule(new Deadline(false, entry.sessionId()), millis(entry.end()));
+        }
+    }
+
+    private void removeSession(Integer sessionId) {
+        UpcomingSession entry = sessions.remove(sessionId);
+        if (entry != null) {
+            upcomingSessions.remove(entry);
+            wheel.cancel(new Deadline(false, sessionId));
+        }
+    }
+
+    private void putExam(Exam exam) {
+        UpcomingExam entry = new UpcomingExam(exam.getExamId(), exam.getScheduledDate(), exam.getTraineeId());
+
+        upcomingExams.put(entry.examId(), entry);
+        examsByDate.add(entry);
+        wheel.schedule(new Deadline(true, entry.examId()), millis(entry.date().plusDays(1).atStartOfDay()));
+    }
+
+    private void removeExam(Integer examId) {
+        UpcomingExam entry = upcomingExams.remove(examId);
+        if (entry != null) {
+            examsByDate.remove(entry);
+            wheel.cancel(new Deadline(true, examId));
+        }
+    }
+
+    private static long millis(LocalDateTime dateTime) {
+        return dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    // key of a wheel entry: a session (start, then end) or an exam (end of its day)
+    private record Deadline(boolean exam, int id) {
+    }
+
+    private record UpcomingSession(int sessionId, LocalDateTime start, LocalDateTime end, Integer instructorId,
+                                   Integer traineeId, Set<Integer> traineeIds) {
+    }
+
+    private record UpcomingExam(int examId, LocalDate date, Integer traineeId) {
+    }
+}
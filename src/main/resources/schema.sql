@@ -43,6 +43,7 @@ CREATE TABLE Trainee (
     ),
     Status VARCHAR(20) CHECK(Status IN ('Active', 'Completed')),
     AssignedInstructorID INTEGER NOT NULL,
+    Version INTEGER NOT NULL DEFAULT 0, -- incremented by every update (optimistic concurrency)
     FOREIGN KEY (UserID) REFERENCES AppUser(UserID) ON DELETE CASCADE,
     FOREIGN KEY (AssignedInstructorID) REFERENCES Instructor(InstructorID)
 );
@@ -77,7 +78,13 @@ CREATE TABLE Exam (
     ExamType VARCHAR(20) NOT NULL CHECK(ExamType IN ('Practical', 'Theoretical')),
     ScheduledDate DATE NOT NULL,
     Status VARCHAR(20) CHECK(Status IN ('Scheduled', 'Completed')),
+    Result VARCHAR(10) CHECK(Result IN ('Passed', 'Failed')), -- NULL until the result is recorded
+    Score INTEGER CHECK(Score >= 0),
+    AttemptNumber INTEGER NOT NULL DEFAULT 1, -- per trainee and exam type
+    InstructorID INTEGER, -- trainee's instructor when the result was recorded
+    LicenseCategory VARCHAR(5), -- trainee's category when the result was recorded
     TraineeID INTEGER NOT NULL,
+    Version INTEGER NOT NULL DEFAULT 0, -- incremented by every update (optimistic concurrency)
     FOREIGN KEY (TraineeID) REFERENCES Trainee(TraineeID)
 );
 
@@ -90,6 +97,7 @@ CREATE TABLE Session (
     InstructorFeedback VARCHAR(255),
     InstructorID INTEGER NOT NULL,
     TraineeID INTEGER, -- NULL for theoretical group sessions
+    Version INTEGER NOT NULL DEFAULT 0, -- incremented by every update (optimistic concurrency)
     FOREIGN KEY (InstructorID) REFERENCES Instructor(InstructorID),
     FOREIGN KEY (TraineeID) REFERENCES Trainee(TraineeID)
 );
@@ -103,6 +111,196 @@ CREATE TABLE Trainee_Session (
     FOREIGN KEY (SessionID) REFERENCES Session(SessionID) ON DELETE CASCADE
 );
 
+-- the mover looks for completed sessions by end time
+CREATE INDEX idx_session_status_end ON Session(Status, EndDateTime);
+
+-- SESSION_ARCHIVE (sessions completed more than sessions.hot-months ago)
+-- Same columns as Session; rows are moved in small batches by SessionPartitionService
+CREATE TABLE Session_Archive (
+    SessionID INTEGER PRIMARY KEY,
+    SessionType VARCHAR(20) NOT NULL CHECK(SessionType IN ('Practical', 'Theoretical')),
+    StartDateTime TIMESTAMP NOT NULL,
+    EndDateTime TIMESTAMP NOT NULL,
+    Status VARCHAR(20) CHECK(Status IN ('Scheduled', 'Completed')),
+    InstructorFeedback VARCHAR(255),
+    InstructorID INTEGER NOT NULL,
+    TraineeID INTEGER,
+    Version INTEGER NOT NULL DEFAULT 0,
+    FOREIGN KEY (InstructorID) REFERENCES Instructor(InstructorID),
+    FOREIGN KEY (TraineeID) REFERENCES Trainee(TraineeID)
+);
+
+-- TRAINEE_SESSION_ARCHIVE (attendance of archived theoretical sessions)
+CREATE TABLE Trainee_Session_Archive (
+    TraineeID INTEGER NOT NULL,
+    SessionID INTEGER NOT NULL,
+    PRIMARY KEY (TraineeID, SessionID),
+    FOREIGN KEY (TraineeID) REFERENCES Trainee(TraineeID) ON DELETE CASCADE,
+    FOREIGN KEY (SessionID) REFERENCES Session_Archive(SessionID) ON DELETE CASCADE
+);
+
+-- TUITION_PRICE (full course price per license category)
+CREATE TABLE TuitionPrice (
+    LicenseCategory VARCHAR(5) PRIMARY KEY,
+    Price DECIMAL(10,2) NOT NULL CHECK(Price >= 0)
+);
+
+-- TRAINEE_BALANCE (materialized payment ledger, one row per trainee)
+-- Kept up to date by PaymentService in the same transaction as the payment
+CREATE TABLE TraineeBalance (
+    TraineeID INTEGER PRIMARY KEY,
+    TotalCost DECIMAL(10,2) NOT NULL,
+    TotalPaid DECIMAL(10,2) NOT NULL DEFAULT 0,
+    Balance DECIMAL(10,2) NOT NULL, -- TotalCost - TotalPaid
+    UpdatedAt TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    FOREIGN KEY (TraineeID) REFERENCES Trainee(TraineeID) ON DELETE CASCADE
+);
+
+CREATE INDEX idx_trainee_balance_balance ON TraineeBalance(Balance);
+
+-- REVENUE_DAILY (rollup of Payment per day and payment method)
+-- Kept up to date by PaymentService; can be rebuilt from Payment at any time
+CREATE TABLE RevenueDaily (
+    RevenueDate DATE NOT NULL,
+    PaymentMethod VARCHAR(15) NOT NULL,
+    Amount DECIMAL(12,2) NOT NULL DEFAULT 0,
+    PaymentCount INTEGER NOT NULL DEFAULT 0,
+    PRIMARY KEY (RevenueDate, PaymentMethod)
+);
+
+-- LICENSE_REQUIREMENT (practical driving hours required per license category)
+CREATE TABLE LicenseRequirement (
+    LicenseCategory VARCHAR(5) PRIMARY KEY,
+    RequiredHours INTEGER NOT NULL CHECK(RequiredHours > 0)
+);
+
+-- TRAINEE_PROGRESS (materialized practical training progress, one row per trainee)
+-- Kept up to date by SessionService when a practical session is completed or reopened
+CREATE TABLE TraineeProgress (
+    TraineeID INTEGER PRIMARY KEY,
+    PracticalMinutes INTEGER NOT NULL DEFAULT 0,
+    CompletedSessions INTEGER NOT NULL DEFAULT 0, -- completed practical sessions
+    LastSessionDate DATE,
+    RequiredMinutes INTEGER NOT NULL,
+    RemainingMinutes INTEGER NOT NULL, -- GREATEST(RequiredMinutes - PracticalMinutes, 0)
+    UpdatedAt TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    FOREIGN KEY (TraineeID) REFERENCES Trainee(TraineeID) ON DELETE CASCADE
+);
+
+CREATE INDEX idx_trainee_progress_remaining ON TraineeProgress(RemainingMinutes);
+
+-- SCHEDULE_WATCHLIST (active trainees behind schedule)
+-- Maintained by ScheduleWatchlistService; FlaggedAt survives restarts
+CREATE TABLE ScheduleWatchlist (
+    TraineeID INTEGER PRIMARY KEY,
+    CompletedSessions INTEGER NOT NULL,
+    FlaggedAt TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    FOREIGN KEY (TraineeID) REFERENCES Trainee(TraineeID) ON DELETE CASCADE
+);
+
+-- INSTRUCTOR_EXAM_STATS (exam attempts and passes of each instructor's trainees)
+-- Kept up to date by ExamService when a result is recorded, changed or removed
+CREATE TABLE InstructorExamStats (
+    InstructorID INTEGER PRIMARY KEY,
+    Attempts INTEGER NOT NULL DEFAULT 0,
+    Passed INTEGER NOT NULL DEFAULT 0,
+    FOREIGN KEY (InstructorID) REFERENCES Instructor(InstructorID) ON DELETE CASCADE
+);
+
+-- CATEGORY_EXAM_STATS (exam attempts and passes per license category and exam type)
+CREATE TABLE CategoryExamStats (
+    LicenseCategory VARCHAR(5) NOT NULL,
+    ExamType VARCHAR(20) NOT NULL,
+    Attempts INTEGER NOT NULL DEFAULT 0,
+    Passed INTEGER NOT NULL DEFAULT 0,
+    PRIMARY KEY (LicenseCategory, ExamType)
+);
+
+-- ARCHIVE_FILE (closed years of Session / Payment moved to columnar files on disk)
+-- A file is only read once its row is committed, together with the removal of its rows
+CREATE TABLE ArchiveFile (
+    FileName VARCHAR(100) PRIMARY KEY,
+    TableName VARCHAR(30) NOT NULL,
+    ArchiveYear INTEGER NOT NULL,
+    RowCount INTEGER NOT NULL,
+    TotalAmount DECIMAL(12,2), -- payments only
+    SizeBytes BIGINT NOT NULL,
+    CreatedAt TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+-- ARCHIVED_TRAINEE_TOTALS (what archived payments and sessions contributed to each trainee)
+-- Added to the Payment / Session sums when balances and progress are recomputed
+CREATE TABLE ArchivedTraineeTotals (
+    TraineeID INTEGER PRIMARY KEY,
+    PaidAmount DECIMAL(10,2) NOT NULL DEFAULT 0,
+    PracticalMinutes INTEGER NOT NULL DEFAULT 0,
+    CompletedSessions INTEGER NOT NULL DEFAULT 0,
+    LastSessionDate DATE,
+    FOREIGN KEY (TraineeID) REFERENCES Trainee(TraineeID) ON DELETE CASCADE
+);
+
+-- ARCHIVED_INSTRUCTOR_TOTALS (sessions of each instructor moved to archive files)
+-- Added to the Session counts by the instructor activity report
+CREATE TABLE ArchivedInstructorTotals (
+    InstructorID INTEGER PRIMARY KEY,
+    Sessions INTEGER NOT NULL DEFAULT 0,
+    FOREIGN KEY (InstructorID) REFERENCES Instructor(InstructorID) ON DELETE CASCADE
+);
+
+-- CHANGE_LOG (committed writes, tailed by every node to evict its in-memory copies)
+-- Written with the changes it describes; RowID NULL means the whole table changed
+-- (for Trainee_Session the RowID is the SessionID)
+CREATE TABLE ChangeLog (
+    ChangeID BIGINT AUTO_INCREMENT PRIMARY KEY,
+    TableName VARCHAR(30) NOT NULL,
+    RowID INTEGER,
+    NodeID VARCHAR(100) NOT NULL,
+    ChangedAt TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE INDEX idx_change_log_changed_at ON ChangeLog(ChangedAt);
+
+-- CHANGE_LOG_CURSOR (the last ChangeID each node has applied, so a restarted node catches up)
+CREATE TABLE ChangeLogCursor (
+    NodeID VARCHAR(100) PRIMARY KEY,
+    LastChangeID BIGINT NOT NULL,
+    UpdatedAt TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+-- JOB_LEASE (which node runs each cluster-wide background job, until when; see LeaderJobScheduler)
+-- LeaseUntil is in the database's clock, so the nodes' clocks do not matter
+CREATE TABLE JobLease (
+    JobName VARCHAR(100) PRIMARY KEY,
+    NodeID VARCHAR(100),
+    LeaseUntil TIMESTAMP NOT NULL,
+    AcquiredAt TIMESTAMP
+);
+
+-- SPRING_SESSION (HTTP sessions shared by every node, managed by Spring Session JDBC)
+-- Times are epoch milliseconds; attribute values are encoded by SessionAttributeCodec
+CREATE TABLE SPRING_SESSION (
+    PRIMARY_ID CHAR(36) NOT NULL,
+    SESSION_ID CHAR(36) NOT NULL,
+    CREATION_TIME BIGINT NOT NULL,
+    LAST_ACCESS_TIME BIGINT NOT NULL,
+    MAX_INACTIVE_INTERVAL INT NOT NULL,
+    EXPIRY_TIME BIGINT NOT NULL,
+    PRINCIPAL_NAME VARCHAR(100),
+    CONSTRAINT SPRING_SESSION_PK PRIMARY KEY (PRIMARY_ID)
+);
+
+CREATE UNIQUE INDEX SPRING_SESSION_IX1 ON SPRING_SESSION (SESSION_ID);
+CREATE INDEX SPRING_SESSION_IX2 ON SPRING_SESSION (EXPIRY_TIME);
+CREATE INDEX SPRING_SESSION_IX3 ON SPRING_SESSION (PRINCIPAL_NAME);
+
+CREATE TABLE SPRING_SESSION_ATTRIBUTES (
+    SESSION_PRIMARY_ID CHAR(36) NOT NULL,
+    ATTRIBUTE_NAME VARCHAR(200) NOT NULL,
+    ATTRIBUTE_BYTES LONGVARBINARY NOT NULL,
+    CONSTRAINT SPRING_SESSION_ATTRIBUTES_PK PRIMARY KEY (SESSION_PRIMARY_ID, ATTRIBUTE_NAME),
+    CONSTRAINT SPRING_SESSION_ATTRIBUTES_FK FOREIGN KEY (SESSION_PRIMARY_ID) REFERENCES SPRING_SESSION(PRIMARY_ID) ON DELETE CASCADE
+);
+
 -- Password: "password123" (in production, these would be hashed with BCrypt)
 INSERT INTO AppUser (Username, Password, Email, Role, IsActive) VALUES
     -- Administrators
@@ -181,6 +379,14 @@ INSERT INTO Exam (ExamType, ScheduledDate, Status, TraineeID) VALUES
     ('Theoretical', '2025-06-14', 'Completed', 8),
     ('Practical', '2025-12-02', 'Scheduled', 8);
 
+-- Failed first attempts before some of the exams above
+-- Theoretical scores are correct answers out of 26 (22 to pass); practical exams have no score
+INSERT INTO Exam (ExamType, ScheduledDate, Status, Result, Score, TraineeID) VALUES
+    ('Practical', '2024-07-05', 'Completed', 'Failed', NULL, 3),
+    ('Theoretical', '2024-05-20', 'Completed', 'Failed', 19, 4),
+    ('Practical', '2025-10-20', 'Completed', 'Failed', NULL, 6),
+    ('Theoretical', '2025-05-30', 'Completed', 'Failed', 20, 8);
+
 INSERT INTO Session (SessionType, StartDateTime, EndDateTime, Status, InstructorFeedback, InstructorID, TraineeID) VALUES
     ('Practical', '2025-08-21 09:00:00', '2025-08-21 10:30:00', 'Completed', 'Good progress', 3, 1),
     ('Practical', '2025-10-22 11:00:00', '2025-10-22 12:30:00', 'Completed', NULL, 5, 2),
@@ -207,4 +413,89 @@ INSERT INTO Trainee_Session (TraineeID, SessionID) VALUES
     (5, 11),
     (7, 11),
     (6, 12),
-    (8, 12);
\ No newline at end of file
+    (8, 12);
+
+INSERT INTO TuitionPrice (LicenseCategory, Price) VALUES
+    ('A', 3000.00),
+    ('A1', 2500.00),
+    ('A2', 2800.00),
+    ('B', 4000.00),
+    ('B1', 3500.00),
+    ('C', 5000.00),
+    ('C1', 4500.00),
+    ('C+E', 6000.00),
+    ('D', 6500.00),
+    ('D1', 5500.00),
+    ('D+E', 7000.00);
+
+INSERT INTO LicenseRequirement (LicenseCategory, RequiredHours) VALUES
+    ('A', 18),
+    ('A1', 18),
+    ('A2', 18),
+    ('B', 30),
+    ('B1', 24),
+    ('C', 24),
+    ('C1', 24),
+    ('C+E', 18),
+    ('D', 36),
+    ('D1', 30),
+    ('D+E', 18);
+
+-- Opening balances for the trainees above
+INSERT INTO TraineeBalance (TraineeID, TotalCost, TotalPaid, Balance)
+SELECT t.TraineeID, tp.Price, COALESCE(SUM(p.Amount), 0), tp.Price - COALESCE(SUM(p.Amount), 0)
+FROM Trainee t
+JOIN TuitionPrice tp ON tp.LicenseCategory = t.LicenseCategory
+LEFT JOIN Payment p ON p.TraineeID = t.TraineeID
+GROUP BY t.TraineeID, tp.Price;
+
+-- Revenue rollup for the payments above
+INSERT INTO RevenueDaily (RevenueDate, PaymentMethod, Amount, PaymentCount)
+SELECT PaymentDate, COALESCE(PaymentMethod, 'Other'), SUM(Amount), COUNT(*)
+FROM Payment
+GROUP BY PaymentDate, COALESCE(PaymentMethod, 'Other');
+
+-- Training progress for the trainees above
+INSERT INTO TraineeProgress (TraineeID, PracticalMinutes, CompletedSessions, LastSessionDate, RequiredMinutes, RemainingMinutes)
+SELECT
+    t.TraineeID,
+    COALESCE(SUM(TIMESTAMPDIFF(MINUTE, s.StartDateTime, s.EndDateTime)), 0),
+    COUNT(s.SessionID),
+    CAST(MAX(s.EndDateTime) AS DATE),
+    COALESCE(lr.RequiredHours, 0) * 60,
+    GREATEST(COALESCE(lr.RequiredHours, 0) * 60 - COALESCE(SUM(TIMESTAMPDIFF(MINUTE, s.StartDateTime, s.EndDateTime)), 0), 0)
+FROM Trainee t
+LEFT JOIN LicenseRequirement lr ON lr.LicenseCategory = t.LicenseCategory
+LEFT JOIN Session s ON s.TraineeID = t.TraineeID AND s.SessionType = 'Practical' AND s.Status = 'Completed'
+GROUP BY t.TraineeID, lr.RequiredHours;
+
+-- The other completed exams were passed
+UPDATE Exam SET Result = 'Passed' WHERE Status = 'Completed' AND Result IS NULL;
+
+UPDATE Exam SET Score = CASE ExamID
+    WHEN 3 THEN 24 WHEN 5 THEN 23 WHEN 7 THEN 25 WHEN 9 THEN 22 WHEN 11 THEN 26 WHEN 13 THEN 23 END
+WHERE ExamType = 'Theoretical' AND Result = 'Passed';
+
+-- Attempts are numbered per trainee and exam type in date order
+UPDATE Exam e SET AttemptNumber = 1 + (
+    SELECT COUNT(*) FROM Exam p
+    WHERE p.TraineeID = e.TraineeID AND p.ExamType = e.ExamType AND p.ScheduledDate < e.ScheduledDate);
+
+-- Credit the results above to the trainee's instructor and category
+UPDATE Exam e SET
+    InstructorID = (SELECT t.AssignedInstructorID FROM Trainee t WHERE t.TraineeID = e.TraineeID),
+    LicenseCategory = (SELECT t.LicenseCategory FROM Trainee t WHERE t.TraineeID = e.TraineeID)
+WHERE e.Result IS NOT NULL;
+
+-- Exam counters for the results above
+INSERT INTO InstructorExamStats (InstructorID, Attempts, Passed)
+SELECT InstructorID, COUNT(*), SUM(CASE WHEN Result = 'Passed' THEN 1 ELSE 0 END)
+FROM Exam
+WHERE Result IS NOT NULL
+GROUP BY InstructorID;
+
+INSERT INTO CategoryExamStats (LicenseCategory, ExamType, Attempts, Passed)
+SELECT LicenseCategory, ExamType, COUNT(*), SUM(CASE WHEN Result = 'Passed' THEN 1 ELSE 0 END)
+FROM Exam
+WHERE Result IS NOT NULL
+GROUP BY LicenseCategory, ExamType;
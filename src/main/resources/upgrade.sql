@@ -0,0 +1,260 @@
+-- Upgrade of a database created by an older schema.sql (schema.sql only runs on an empty database)
+-- Every statement can be run again: columns and tables are only added when missing,
+-- and the derived tables are only filled for rows they do not have yet.
+-- Run it once per database, e.g. on startup with
+--   --spring.sql.init.mode=always --spring.sql.init.schema-locations=classpath:upgrade.sql
+
+SET MODE MySQL;
+
+-- Optimistic concurrency
+ALTER TABLE Trainee ADD COLUMN IF NOT EXISTS Version INTEGER NOT NULL DEFAULT 0;
+ALTER TABLE Session ADD COLUMN IF NOT EXISTS Version INTEGER NOT NULL DEFAULT 0;
+ALTER TABLE Exam ADD COLUMN IF NOT EXISTS Version INTEGER NOT NULL DEFAULT 0;
+
+-- Exam results (NULL for exams completed before the upgrade, until a result is recorded)
+ALTER TABLE Exam ADD COLUMN IF NOT EXISTS Result VARCHAR(10) CHECK(Result IN ('Passed', 'Failed'));
+ALTER TABLE Exam ADD COLUMN IF NOT EXISTS Score INTEGER CHECK(Score >= 0);
+ALTER TABLE Exam ADD COLUMN IF NOT EXISTS AttemptNumber INTEGER NOT NULL DEFAULT 1;
+ALTER TABLE Exam ADD COLUMN IF NOT EXISTS InstructorID INTEGER;
+ALTER TABLE Exam ADD COLUMN IF NOT EXISTS LicenseCategory VARCHAR(5);
+
+-- the mover looks for completed sessions by end time
+CREATE INDEX IF NOT EXISTS idx_session_status_end ON Session(Status, EndDateTime);
+
+-- SESSION_ARCHIVE (sessions completed more than sessions.hot-months ago)
+-- Same columns as Session; rows are moved in small batches by SessionPartitionService
+CREATE TABLE IF NOT EXISTS Session_Archive (
+    SessionID INTEGER PRIMARY KEY,
+    SessionType VARCHAR(20) NOT NULL CHECK(SessionType IN ('Practical', 'Theoretical')),
+    StartDateTime TIMESTAMP NOT NULL,
+    EndDateTime TIMESTAMP NOT NULL,
+    Status VARCHAR(20) CHECK(Status IN ('Scheduled', 'Completed')),
+    InstructorFeedback VARCHAR(255),
+    InstructorID INTEGER NOT NULL,
+    TraineeID INTEGER,
+    Version INTEGER NOT NULL DEFAULT 0,
+    FOREIGN KEY (InstructorID) REFERENCES Instructor(InstructorID),
+    FOREIGN KEY (TraineeID) REFERENCES Trainee(TraineeID)
+);
+
+-- TRAINEE_SESSION_ARCHIVE (attendance of archived theoretical sessions)
+CREATE TABLE IF NOT EXISTS Trainee_Session_Archive (
+    TraineeID INTEGER NOT NULL,
+    SessionID INTEGER NOT NULL,
+    PRIMARY KEY (TraineeID, SessionID),
+    FOREIGN KEY (TraineeID) REFERENCES Trainee(TraineeID) ON DELETE CASCADE,
+    FOREIGN KEY (SessionID) REFERENCES Session_Archive(SessionID) ON DELETE CASCADE
+);
+
+-- TUITION_PRICE (full course price per license category)
+CREATE TABLE IF NOT EXISTS TuitionPrice (
+    LicenseCategory VARCHAR(5) PRIMARY KEY,
+    Price DECIMAL(10,2) NOT NULL CHECK(Price >= 0)
+);
+
+-- TRAINEE_BALANCE (materialized payment ledger, one row per trainee)
+-- Kept up to date by PaymentService in the same transaction as the payment
+CREATE TABLE IF NOT EXISTS TraineeBalance (
+    TraineeID INTEGER PRIMARY KEY,
+    TotalCost DECIMAL(10,2) NOT NULL,
+    TotalPaid DECIMAL(10,2) NOT NULL DEFAULT 0,
+    Balance DECIMAL(10,2) NOT NULL, -- TotalCost - TotalPaid
+    UpdatedAt TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    FOREIGN KEY (TraineeID) REFERENCES Trainee(TraineeID) ON DELETE CASCADE
+);
+
+CREATE INDEX IF NOT EXISTS idx_trainee_balance_balance ON TraineeBalance(Balance);
+
+-- REVENUE_DAILY (rollup of Payment per day and payment method)
+-- Kept up to date by PaymentService; can be rebuilt from Payment at any time
+CREATE TABLE IF NOT EXISTS RevenueDaily (
+    RevenueDate DATE NOT NULL,
+    PaymentMethod VARCHAR(15) NOT NULL,
+    Amount DECIMAL(12,2) NOT NULL DEFAULT 0,
+    PaymentCount INTEGER NOT NULL DEFAULT 0,
+    PRIMARY KEY (RevenueDate, PaymentMethod)
+);
+
+-- LICENSE_REQUIREMENT (practical driving hours required per license category)
+CREATE TABLE IF NOT EXISTS LicenseRequirement (
+    LicenseCategory VARCHAR(5) PRIMARY KEY,
+    RequiredHours INTEGER NOT NULL CHECK(RequiredHours > 0)
+);
+
+-- TRAINEE_PROGRESS (materialized practical training progress, one row per trainee)
+-- Kept up to date by SessionService when a practical session is completed or reopened
+CREATE TABLE IF NOT EXISTS TraineeProgress (
+    TraineeID INTEGER PRIMARY KEY,
+    PracticalMinutes INTEGER NOT NULL DEFAULT 0,
+    CompletedSessions INTEGER NOT NULL DEFAULT 0, -- completed practical sessions
+    LastSessionDate DATE,
+    RequiredMinutes INTEGER NOT NULL,
+    RemainingMinutes INTEGER NOT NULL, -- GREATEST(RequiredMinutes - PracticalMinutes, 0)
+    UpdatedAt TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    FOREIGN KEY (TraineeID) REFERENCES Trainee(TraineeID) ON DELETE CASCADE
+);
+
+CREATE INDEX IF NOT EXISTS idx_trainee_progress_remaining ON TraineeProgress(RemainingMinutes);
+
+-- SCHEDULE_WATCHLIST (active trainees behind schedule)
+-- Maintained by ScheduleWatchlistService; FlaggedAt survives restarts
+CREATE TABLE IF NOT EXISTS ScheduleWatchlist (
+    TraineeID INTEGER PRIMARY KEY,
+    CompletedSessions INTEGER NOT NULL,
+    FlaggedAt TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    FOREIGN KEY (TraineeID) REFERENCES Trainee(TraineeID) ON DELETE CASCADE
+);
+
+-- INSTRUCTOR_EXAM_STATS (exam attempts and passes of each instructor's trainees)
+-- Kept up to date by ExamService when a result is recorded, changed or removed
+CREATE TABLE IF NOT EXISTS InstructorExamStats (
+    InstructorID INTEGER PRIMARY KEY,
+    Attempts INTEGER NOT NULL DEFAULT 0,
+    Passed INTEGER NOT NULL DEFAULT 0,
+    FOREIGN KEY (InstructorID) REFERENCES Instructor(InstructorID) ON DELETE CASCADE
+);
+
+-- CATEGORY_EXAM_STATS (exam attempts and passes per license category and exam type)
+CREATE TABLE IF NOT EXISTS CategoryExamStats (
+    LicenseCategory VARCHAR(5) NOT NULL,
+    ExamType VARCHAR(20) NOT NULL,
+    Attempts INTEGER NOT NULL DEFAULT 0,
+    Passed INTEGER NOT NULL DEFAULT 0,
+    PRIMARY KEY (LicenseCategory, ExamType)
+);
+
+-- ARCHIVE_FILE (closed years of Session / Payment moved to columnar files on disk)
+-- A file is only read once its row is committed, together with the removal of its rows
+CREATE TABLE IF NOT EXISTS ArchiveFile (
+    FileName VARCHAR(100) PRIMARY KEY,
+    TableName VARCHAR(30) NOT NULL,
+    ArchiveYear INTEGER NOT NULL,
+    RowCount INTEGER NOT NULL,
+    TotalAmount DECIMAL(12,2), -- payments only
+    SizeBytes BIGINT NOT NULL,
+    CreatedAt TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+-- ARCHIVED_TRAINEE_TOTALS (what archived payments and sessions contributed to each trainee)
+-- Added to the Payment / Session sums when balances and progress are recomputed
+CREATE TABLE IF NOT EXISTS ArchivedTraineeTotals (
+    TraineeID INTEGER PRIMARY KEY,
+    PaidAmount DECIMAL(10,2) NOT NULL DEFAULT 0,
+    PracticalMinutes INTEGER NOT NULL DEFAULT 0,
+    CompletedSessions INTEGER NOT NULL DEFAULT 0,
+    LastSessionDate DATE,
+    FOREIGN KEY (TraineeID) REFERENCES Trainee(TraineeID) ON DELETE CASCADE
+);
+
+-- ARCHIVED_INSTRUCTOR_TOTALS (sessions of each instructor moved to archive files)
+-- Added to the Session counts by the instructor activity report
+CREATE TABLE IF NOT EXISTS ArchivedInstructorTotals (
+    InstructorID INTEGER PRIMARY KEY,
+    Sessions INTEGER NOT NULL DEFAULT 0,
+    FOREIGN KEY (InstructorID) REFERENCES Instructor(InstructorID) ON DELETE CASCADE
+);
+
+-- CHANGE_LOG (committed writes, tailed by every node to evict its in-memory copies)
+-- Written with the changes it describes; RowID NULL means the whole table changed
+-- (for Trainee_Session the RowID is the SessionID)
+CREATE TABLE IF NOT EXISTS ChangeLog (
+    ChangeID BIGINT AUTO_INCREMENT PRIMARY KEY,
+    TableName VARCHAR(30) NOT NULL,
+    RowID INTEGER,
+    NodeID VARCHAR(100) NOT NULL,
+    ChangedAt TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE INDEX IF NOT EXISTS idx_change_log_changed_at ON ChangeLog(ChangedAt);
+
+-- CHANGE_LOG_CURSOR (the last ChangeID each node has applied, so a restarted node catches up)
+CREATE TABLE IF NOT EXISTS ChangeLogCursor (
+    NodeID VARCHAR(100) PRIMARY KEY,
+    LastChangeID BIGINT NOT NULL,
+    UpdatedAt TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+-- JOB_LEASE (which node runs each cluster-wide background job, until when; see LeaderJobScheduler)
+-- LeaseUntil is in the database's clock, so the nodes' clocks do not matter
+CREATE TABLE IF NOT EXISTS JobLease (
+    JobName VARCHAR(100) PRIMARY KEY,
+    NodeID VARCHAR(100),
+    LeaseUntil TIMESTAMP NOT NULL,
+    AcquiredAt TIMESTAMP
+);
+
+-- SPRING_SESSION (HTTP sessions shared by every node, managed by Spring Session JDBC)
+-- Times are epoch milliseconds; attribute values are encoded by SessionAttributeCodec
+CREATE TABLE IF NOT EXISTS SPRING_SESSION (
+    PRIMARY_ID CHAR(36) NOT NULL,
+    SESSION_ID CHAR(36) NOT NULL,
+    CREATION_TIME BIGINT NOT NULL,
+    LAST_ACCESS_TIME BIGINT NOT NULL,
+    MAX_INACTIVE_INTERVAL INT NOT NULL,
+    EXPIRY_TIME BIGINT NOT NULL,
+    PRINCIPAL_NAME VARCHAR(100),
+    CONSTRAINT SPRING_SESSION_PK PRIMARY KEY (PRIMARY_ID)
+);
+
+CREATE UNIQUE INDEX IF NOT EXISTS SPRING_SESSION_IX1 ON SPRING_SESSION (SESSION_ID);
+CREATE INDEX IF NOT EXISTS SPRING_SESSION_IX2 ON SPRING_SESSION (EXPIRY_TIME);
+CREATE INDEX IF NOT EXISTS SPRING_SESSION_IX3 ON SPRING_SESSION (PRINCIPAL_NAME);
+
+CREATE TABLE IF NOT EXISTS SPRING_SESSION_ATTRIBUTES (
+    SESSION_PRIMARY_ID CHAR(36) NOT NULL,
+    ATTRIBUTE_NAME VARCHAR(200) NOT NULL,
+    ATTRIBUTE_BYTES LONGVARBINARY NOT NULL,
+    CONSTRAINT SPRING_SESSION_ATTRIBUTES_PK PRIMARY KEY (SESSION_PRIMARY_ID, ATTRIBUTE_NAME),
+    CONSTRAINT SPRING_SESSION_ATTRIBUTES_FK FOREIGN KEY (SESSION_PRIMARY_ID) REFERENCES SPRING_SESSION(PRIMARY_ID) ON DELETE CASCADE
+);
+
+-- Reference data (existing rows are left as they are)
+INSERT INTO TuitionPrice (LicenseCategory, Price)
+SELECT v.LicenseCategory, v.Price
+FROM (VALUES ('A', 3000.00), ('A1', 2500.00), ('A2', 2800.00), ('B', 4000.00), ('B1', 3500.00),
+             ('C', 5000.00), ('C1', 4500.00), ('C+E', 6000.00), ('D', 6500.00), ('D1', 5500.00),
+             ('D+E', 7000.00)) v(LicenseCategory, Price)
+WHERE NOT EXISTS (SELECT 1 FROM TuitionPrice tp WHERE tp.LicenseCategory = v.LicenseCategory);
+
+INSERT INTO LicenseRequirement (LicenseCategory, RequiredHours)
+SELECT v.LicenseCategory, v.RequiredHours
+FROM (VALUES ('A', 18), ('A1', 18), ('A2', 18), ('B', 30), ('B1', 24), ('C', 24), ('C1', 24),
+             ('C+E', 18), ('D', 36), ('D1', 30), ('D+E', 18)) v(LicenseCategory, RequiredHours)
+WHERE NOT EXISTS (SELECT 1 FROM LicenseRequirement lr WHERE lr.LicenseCategory = v.LicenseCategory);
+
+-- Attempts of the existing exams, per trainee and exam type in date order
+UPDATE Exam e SET AttemptNumber = 1 + (
+    SELECT COUNT(*) FROM Exam p
+    WHERE p.TraineeID = e.TraineeID AND p.ExamType = e.ExamType AND p.ScheduledDate < e.ScheduledDate)
+WHERE e.Result IS NULL AND e.AttemptNumber = 1;
+
+-- Balances of the trainees that do not have one yet
+INSERT INTO TraineeBalance (TraineeID, TotalCost, TotalPaid, Balance)
+SELECT t.TraineeID, tp.Price, COALESCE(SUM(p.Amount), 0), tp.Price - COALESCE(SUM(p.Amount), 0)
+FROM Trainee t
+JOIN TuitionPrice tp ON tp.LicenseCategory = t.LicenseCategory
+LEFT JOIN Payment p ON p.TraineeID = t.TraineeID
+WHERE NOT EXISTS (SELECT 1 FROM TraineeBalance b WHERE b.TraineeID = t.TraineeID)
+GROUP BY t.TraineeID, tp.Price;
+
+-- Revenue rollup, only when it was never built
+INSERT INTO RevenueDaily (RevenueDate, PaymentMethod, Amount, PaymentCount)
+SELECT PaymentDate, COALESCE(PaymentMethod, 'Other'), SUM(Amount), COUNT(*)
+FROM Payment
+WHERE NOT EXISTS (SELECT 1 FROM RevenueDaily)
+GROUP BY PaymentDate, COALESCE(PaymentMethod, 'Other');
+
+-- Training progress of the trainees that do not have it yet
+INSERT INTO TraineeProgress (TraineeID, PracticalMinutes, CompletedSessions, LastSessionDate, RequiredMinutes, RemainingMinutes)
+SELECT
+    t.TraineeID,
+    COALESCE(SUM(TIMESTAMPDIFF(MINUTE, s.StartDateTime, s.EndDateTime)), 0),
+    COUNT(s.SessionID),
+    CAST(MAX(s.EndDateTime) AS DATE),
+    COALESCE(lr.RequiredHours, 0) * 60,
+    GREATEST(COALESCE(lr.RequiredHours, 0) * 60 - COALESCE(SUM(TIMESTAMPDIFF(MINUTE, s.StartDateTime, s.EndDateTime)), 0), 0)
+FROM Trainee t
+LEFT JOIN LicenseRequirement lr ON lr.LicenseCategory = t.LicenseCategory
+LEFT JOIN Session s ON s.TraineeID = t.TraineeID AND s.SessionType = 'Practical' AND s.Status = 'Completed'
+WHERE NOT EXISTS (SELECT 1 FROM TraineeProgress tp WHERE tp.TraineeID = t.TraineeID)
+GROUP BY t.TraineeID, lr.RequiredHours;
@@ -0,0 +1,93 @@
+package com.drivingschool.repository;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Backup files written and read back, without a database
+ *
+ * The chunks are small, so statements run over chunk boundaries and a one-byte change in
+ * any chunk must be caught by its checksum.
+ */
+
+class BackupFileTest {
+
+    private static final int CHUNK_BYTES = 256;
+    private static final int STATEMENTS = 500;
+
+    // header (magic, version, chunk size), then the first chunk's raw length, stored length and CRC
+    private static final int FIRST_CHUNK_STORED_LENGTH = 4 * Integer.BYTES;
+    private static final int FIRST_CHUNK_DATA = 6 * Integer.BYTES;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void statementsAndTablesReadBackAsWritten() throws Exception {
+        Path path = directory.resolve("round-trip" + BackupFile.EXTENSION);
+        List<String> written = write(path);
+
+        BackupFile.Reader reader = BackupFile.open(path);
+        BackupFile.Manifest manifest = reader.getManifest();
+        assertEquals(STATEMENTS, manifest.statements());
+        assertEquals(List.of(new BackupFile.TableRows("TRAINEE", STATEMENTS), new BackupFile.TableRows("SESSION", 0)),
+                manifest.tables());
+
+        List<String> read = new ArrayList<>();
+        reader.replay(read::add);
+        assertEquals(written, read);
+    }
+
+    @Test
+    void flippedByteInAChunkIsRejected() throws Exception {
+        Path path = directory.resolve("damaged" + BackupFile.EXTENSION);
+        write(path);
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            int storedLength = read(channel, FIRST_CHUNK_STORED_LENGTH, Integer.BYTES).getInt();
+            long position = FIRST_CHUNK_DATA + storedLength / 2;
+
+            byte value = read(channel, position, 1).get();
+            channel.write(ByteBuffer.wrap(new byte[] {(byte) ~value}), position);
+        }
+
+        // the trailer is intact, so the file opens; the chunk fails when it is read
+        BackupFile.Reader reader = BackupFile.open(path);
+        assertThrows(IOException.class, () -> reader.replay(statement -> { }));
+    }
+
+    private static List<String> write(Path path) throws IOException {
+        List<String> statements = new ArrayList<>();
+        for (int i = 1; i <= STATEMENTS; i++) {
+            statements.add("INSERT INTO \"PUBLIC\".\"TRAINEE\" VALUES (" + i + ", 'Ștefan', 'Ionuț " + i + "')");
+        }
+
+        try (BackupFile.Writer writer = BackupFile.create(path, CHUNK_BYTES)) {
+            writer.addTable("TRAINEE", STATEMENTS);
+            writer.addTable("SESSION", 0);
+            for (String statement : statements) {
+                writer.writeStatement(statement);
+            }
+        }
+        return statements;
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int bytes) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(bytes);
+        while (buffer.hasRemaining()) {
+            channel.read(buffer, position + buffer.position());
+        }
+        return buffer.flip();
+    }
+}
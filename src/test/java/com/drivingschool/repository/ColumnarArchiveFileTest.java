@@ -0,0 +1,149 @@
+package com.drivingschool.repository;
+
+import com.drivingschool.repository.ColumnarArchiveFile.Column;
+import com.drivingschool.repository.ColumnarArchiveFile.ColumnType;
+import com.drivingschool.repository.ColumnarArchiveFile.Range;
+import com.drivingschool.repository.ColumnarArchiveFile.ScanStats;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Archive files written and scanned back, without a database
+ *
+ * Row i has day i, so every block covers its own range of days and a range condition must
+ * read only the blocks its zone maps allow.
+ */
+
+class ColumnarArchiveFileTest {
+
+    private static final int ID = 0;
+    private static final int DAY = 1;
+    private static final int KIND = 2;
+    private static final int NOTE = 3;
+
+    private static final List<Column> COLUMNS = List.of(
+            new Column("Id", ColumnType.INT),
+            new Column("Day", ColumnType.LONG),
+            new Column("Kind", ColumnType.BYTE),
+            new Column("Note", ColumnType.STRING));
+
+    // three full blocks and a partial one
+    private static final int BLOCKS = 4;
+    private static final int ROWS = 3 * ColumnarArchiveFile.BLOCK_ROWS + 100;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void everyRowReadsBackAsWritten() throws IOException {
+        ColumnarArchiveFile.Reader reader = write(directory.resolve("all.dsca"));
+
+        assertEquals(COLUMNS, reader.getColumns());
+        assertEquals(ROWS, reader.getRowCount());
+        assertEquals(BLOCKS, reader.getBlockCount());
+        assertEquals(DAY, reader.column("Day"));
+
+        List<Integer> ids = new ArrayList<>();
+        ScanStats stats = reader.scan(List.of(), row -> {
+            int id = row.getInt(ID);
+            ids.add(id);
+            assertEquals(id, row.getLong(DAY));
+            assertEquals((byte) (id % 3), row.getByte(KIND));
+            assertEquals(note(id), row.getString(NOTE));
+        });
+
+        assertEquals(new ScanStats(BLOCKS, 0, ROWS), stats);
+        assertEquals(ROWS, ids.size());
+        assertEquals(ROWS - 1, (int) ids.get(ROWS - 1));
+    }
+
+    @Test
+    void rangeInsideOneBlockReadsOnlyThatBlock() throws IOException {
+        ColumnarArchiveFile.Reader reader = write(directory.resolve("one-block.dsca"));
+        long from = ColumnarArchiveFile.BLOCK_ROWS + 10;
+
+        List<Integer> ids = new ArrayList<>();
+        ScanStats stats = reader.scan(List.of(new Range(DAY, from, from + 9)), row -> ids.add(row.getInt(ID)));
+
+        assertEquals(new ScanStats(1, BLOCKS - 1, 10), stats);
+        assertEquals(ids(from, from + 9), ids);
+    }
+
+    @Test
+    void rangeAcrossABlockBoundaryReadsBothBlocks() throws IOException {
+        ColumnarArchiveFile.Reader reader = write(directory.resolve("two-blocks.dsca"));
+        long boundary = 2L * ColumnarArchiveFile.BLOCK_ROWS;
+
+        List<Integer> ids = new ArrayList<>();
+        ScanStats stats = reader.scan(List.of(new Range(DAY, boundary - 5, boundary + 4)),
+                row -> ids.add(row.getInt(ID)));
+
+        assertEquals(new ScanStats(2, BLOCKS - 2, 10), stats);
+        assertEquals(ids(boundary - 5, boundary + 4), ids);
+    }
+
+    @Test
+    void rangesOnTwoColumnsMustBothMatch() throws IOException {
+        ColumnarArchiveFile.Reader reader = write(directory.resolve("two-columns.dsca"));
+
+        List<Integer> ids = new ArrayList<>();
+        ScanStats stats = reader.scan(List.of(new Range(DAY, 0, 29), new Range(KIND, 0, 0)),
+                row -> ids.add(row.getInt(ID)));
+
+        assertEquals(new ScanStats(1, BLOCKS - 1, 10), stats);
+        assertEquals(List.of(0, 3, 6, 9, 12, 15, 18, 21, 24, 27), ids);
+    }
+
+    @Test
+    void rangeOutsideEveryBlockReadsNothing() throws IOException {
+        ColumnarArchiveFile.Reader reader = write(directory.resolve("none.dsca"));
+
+        ScanStats stats = reader.scan(List.of(new Range(DAY, ROWS, Long.MAX_VALUE)), row -> {
+            throw new AssertionError("No row is after the last day");
+        });
+
+        assertEquals(new ScanStats(0, BLOCKS, 0), stats);
+    }
+
+    @Test
+    void missingNotesStayNull() throws IOException {
+        ColumnarArchiveFile.Reader reader = write(directory.resolve("nulls.dsca"));
+
+        reader.scan(List.of(new Range(ID, 7, 7)), row -> assertNull(row.getString(NOTE)));
+        reader.scan(List.of(new Range(ID, 8, 8)), row -> assertEquals(note(8), row.getString(NOTE)));
+    }
+
+    private static ColumnarArchiveFile.Reader write(Path path) throws IOException {
+        try (ColumnarArchiveFile.Writer writer = ColumnarArchiveFile.create(path, COLUMNS)) {
+            for (int id = 0; id < ROWS; id++) {
+                writer.setInt(ID, id)
+                        .setLong(DAY, id)
+                        .setByte(KIND, (byte) (id % 3))
+                        .setString(NOTE, note(id));
+                writer.endRow();
+            }
+        }
+        return ColumnarArchiveFile.open(path);
+    }
+
+    // every seventh row has no note; the others have non-ASCII text of varying length
+    private static String note(int id) {
+        return id % 7 == 0 ? null : "Parcare laterală " + id;
+    }
+
+    private static List<Integer> ids(long from, long to) {
+        List<Integer> ids = new ArrayList<>();
+        for (long id = from; id <= to; id++) {
+            ids.add((int) id);
+        }
+        return ids;
+    }
+}
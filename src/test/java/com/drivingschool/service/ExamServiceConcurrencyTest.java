@@ -0,0 +1,189 @@
+package com.drivingschool.service;
+
+import com.drivingschool.model.Exam;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Concurrent exam edits and status changes against an in-memory database
+ *
+ * Every edit moves the exam one day later, so an edit that overwrote another one would leave
+ * the date behind the number of edits that reported success.
+ */
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:exam-concurrency;MODE=MySQL;DB_CLOSE_DELAY=-1",
+        "spring.sql.init.mode=always",
+        "security.remember-me.key=exam-concurrency-test-key",
+        "archive.directory=${java.io.tmpdir}/driving-school-test/archive",
+        "audit.directory=${java.io.tmpdir}/driving-school-test/audit",
+        "backup.directory=${java.io.tmpdir}/driving-school-test/backup"
+})
+class ExamServiceConcurrencyTest {
+
+    private static final int EDITORS = 4;
+    private static final int EDITS_PER_EDITOR = 25;
+    private static final int STATUS_CHANGERS = 2;
+    private static final int STATUS_CHANGES_PER_CHANGER = 25;
+
+    @Autowired
+    private ExamService examService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Integer traineeId;
+
+    @BeforeEach
+    void createInstructorAndTrainee() {
+        String suffix = String.valueOf(System.nanoTime());
+
+        jdbcTemplate.update("INSERT INTO AppUser (Username, Password, Email, Role) VALUES (?, 'x', ?, 'INSTRUCTOR')",
+                "instructor" + suffix, "instructor" + suffix + "@test.ro");
+        jdbcTemplate.update("INSERT INTO Instructor (UserID, FirstName, LastName, Phone, HireDate) VALUES (?, 'Ion', 'Popescu', '0712345678', CURRENT_DATE)",
+                userId("instructor" + suffix));
+        Integer instructorId = jdbcTemplate.queryForObject("SELECT MAX(InstructorID) FROM Instructor", Integer.class);
+
+        jdbcTemplate.update("INSERT INTO AppUser (Username, Password, Email, Role) VALUES (?, 'x', ?, 'TRAINEE')",
+                "trainee" + suffix, "trainee" + suffix + "@test.ro");
+        jdbcTemplate.update("""
+                INSERT INTO Trainee (UserID, FirstName, LastName, SSN, Phone, EnrollmentDate, LicenseCategory, Status, AssignedInstructorID)
+                VALUES (?, 'Ana', 'Ionescu', ?, '0723456789', CURRENT_DATE, 'B', 'Active', ?)
+                """, userId("trainee" + suffix), suffix.substring(suffix.length() - 13), instructorId);
+        traineeId = jdbcTemplate.queryForObject("SELECT MAX(TraineeID) FROM Trainee", Integer.class);
+    }
+
+    @Test
+    void concurrentEditsAndStatusChangesLoseNothing() throws Exception {
+        LocalDate firstDate = LocalDate.now().plusDays(7);
+        Integer examId = createExam(firstDate);
+        int initialVersion = examService.getExamById(examId).getVersion();
+
+        AtomicInteger edits = new AtomicInteger();
+        AtomicInteger statusChanges = new AtomicInteger();
+
+        List<Callable<Void>> workers = new ArrayList<>();
+        for (int i = 0; i < EDITORS; i++) {
+            workers.add(() -> {
+                for (int done = 0; done < EDITS_PER_EDITOR; ) {
+                    // what the edit form posts: the row as rendered, the date moved by a day
+                    Exam form = examService.getExamById(examId);
+                    form.setScheduledDate(form.getScheduledDate().plusDays(1));
+                    form.setStatus("Scheduled".equals(form.getStatus()) ? "Completed" : "Scheduled");
+
+                    try {
+                        examService.updateExam(form);
+                        edits.incrementAndGet();
+                        done++;
+                    } catch (IllegalArgumentException e) {
+                        // changed since it was read: read it again and retry
+                    }
+                }
+                return null;
+            });
+        }
+
+        for (int i = 0; i < STATUS_CHANGERS; i++) {
+            workers.add(() -> {
+                for (int done = 0; done < STATUS_CHANGES_PER_CHANGER; ) {
+                    String current = examService.getExamById(examId).getStatus();
+                    try {
+                        examService.changeStatus(examId, "Scheduled".equals(current) ? "Completed" : "Scheduled", null);
+                        statusChanges.incrementAndGet();
+                        done++;
+                    } catch (IllegalArgumentException e) {
+                        // changed since it was read: read it again and retry
+                    }
+                }
+                return null;
+            });
+        }
+
+        runAll(workers);
+
+        Exam result = examService.getExamById(examId);
+
+        assertEquals(EDITORS * EDITS_PER_EDITOR, edits.get());
+        assertEquals(firstDate.plusDays(edits.get()), result.getScheduledDate());
+        assertEquals(initialVersion + edits.get() + statusChanges.get(), result.getVersion());
+
+        // edits never write the status, so only the status changes decide it
+        String expectedStatus = statusChanges.get() % 2 == 0 ? "Scheduled" : "Completed";
+        assertEquals(expectedStatus, result.getStatus());
+    }
+
+    @Test
+    void staleFormIsRejected() {
+        LocalDate firstDate = LocalDate.now().plusDays(7);
+        Integer examId = createExam(firstDate);
+
+        Exam stale = examService.getExamById(examId);
+        Exam fresh = examService.getExamById(examId);
+
+        fresh.setScheduledDate(firstDate.plusDays(1));
+        examService.updateExam(fresh);
+
+        stale.setScheduledDate(firstDate.plusDays(2));
+        IllegalArgumentException refused = assertThrows(IllegalArgumentException.class,
+                () -> examService.updateExam(stale));
+        assertEquals("Exam " + examId + " was changed by someone else - reload and try again", refused.getMessage());
+
+        assertEquals(firstDate.plusDays(1), examService.getExamById(examId).getScheduledDate());
+    }
+
+    @Test
+    void formRenderedBeforeResultIsRejected() {
+        Integer examId = createExam(LocalDate.now());
+        Exam form = examService.getExamById(examId);
+
+        examService.recordResult(examId, "Passed", 24);
+
+        // the form still says Scheduled without a result; saving it must not reopen the exam
+        form.setExamType("Practical");
+        assertThrows(IllegalArgumentException.class, () -> examService.updateExam(form));
+
+        Exam result = examService.getExamById(examId);
+        assertEquals("Completed", result.getStatus());
+        assertEquals("Passed", result.getResult());
+        assertEquals("Theoretical", result.getExamType());
+    }
+
+    private Integer createExam(LocalDate scheduledDate) {
+        Exam exam = new Exam();
+        exam.setExamType("Theoretical");
+        exam.setScheduledDate(scheduledDate);
+        exam.setStatus("Scheduled");
+        exam.setTraineeId(traineeId);
+        return examService.createExam(exam);
+    }
+
+    private Integer userId(String username) {
+        return jdbcTemplate.queryForObject("SELECT UserID FROM AppUser WHERE Username = ?", Integer.class, username);
+    }
+
+    private static void runAll(List<Callable<Void>> workers) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(workers.size());
+        try {
+            for (Future<Void> future : executor.invokeAll(workers)) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package com.drivingschool.service;
+
+import com.drivingschool.model.Session;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Concurrent session edits and status changes against an in-memory database
+ *
+ * Every successful write must be visible afterwards: the edits count themselves in the feedback
+ * text, so an edit that overwrote another one would leave the count behind the number of edits
+ * that reported success.
+ */
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:session-concurrency;MODE=MySQL;DB_CLOSE_DELAY=-1",
+        "spring.sql.init.mode=always",
+        "security.remember-me.key=session-concurrency-test-key",
+        "archive.directory=${java.io.tmpdir}/driving-school-test/archive",
+        "audit.directory=${java.io.tmpdir}/driving-school-test/audit",
+        "backup.directory=${java.io.tmpdir}/driving-school-test/backup"
+})
+class SessionServiceConcurrencyTest {
+
+    private static final int EDITORS = 4;
+    private static final int EDITS_PER_EDITOR = 25;
+    private static final int STATUS_CHANGERS = 2;
+    private static final int STATUS_CHANGES_PER_CHANGER = 25;
+
+    @Autowired
+    private SessionService sessionService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Integer instructorId;
+    private Integer traineeId;
+
+    @BeforeEach
+    void createInstructorAndTrainee() {
+        String suffix = String.valueOf(System.nanoTime());
+
+        jdbcTemplate.update("INSERT INTO AppUser (Username, Password, Email, Role) VALUES (?, 'x', ?, 'INSTRUCTOR')",
+                "instructor" + suffix, "instructor" + suffix + "@test.ro");
+        jdbcTemplate.update("INSERT INTO Instructor (UserID, FirstName, LastName, Phone, HireDate) VALUES (?, 'Ion', 'Popescu', '0712345678', CURRENT_DATE)",
+                userId("instructor" + suffix));
+        instructorId = jdbcTemplate.queryForObject("SELECT MAX(InstructorID) FROM Instructor", Integer.class);
+
+        jdbcTemplate.update("INSERT INTO AppUser (Username, Password, Email, Role) VALUES (?, 'x', ?, 'TRAINEE')",
+                "trainee" + suffix, "trainee" + suffix + "@test.ro");
+        jdbcTemplate.update("""
+                INSERT INTO Trainee (UserID, FirstName, LastName, SSN, Phone, EnrollmentDate, LicenseCategory, Status, AssignedInstructorID)
+                VALUES (?, 'Ana', 'Ionescu', ?, '0723456789', CURRENT_DATE, 'B', 'Active', ?)
+                """, userId("trainee" + suffix), suffix.substring(suffix.length() - 13), instructorId);
+        traineeId = jdbcTemplate.queryForObject("SELECT MAX(TraineeID) FROM Trainee", Integer.class);
+    }
+
+    @Test
+    void concurrentEditsAndStatusChangesLoseNothing() throws Exception {
+        Integer sessionId = createSession("edits=0");
+        int initialVersion = sessionService.getSessionById(sessionId).getVersion();
+
+        AtomicInteger edits = new AtomicInteger();
+        AtomicInteger statusChanges = new AtomicInteger();
+
+        List<Callable<Void>> workers = new ArrayList<>();
+        for (int i = 0; i < EDITORS; i++) {
+            workers.add(() -> {
+                for (int done = 0; done < EDITS_PER_EDITOR; ) {
+                    // what the edit form posts: the row as rendered, the feedback changed
+                    Session form = sessionService.getSessionById(sessionId);
+                    int count = Integer.parseInt(form.getInstructorFeedback().substring("edits=".length()));
+                    form.setInstructorFeedback("edits=" + (count + 1));
+                    form.setStatus("Scheduled".equals(form.getStatus()) ? "Completed" : "Scheduled");
+
+                    try {
+                        sessionService.updateSession(form, null);
+                        edits.incrementAndGet();
+                        done++;
+                    } catch (IllegalArgumentException e) {
+                        // changed since it was read: read it again and retry
+                    }
+                }
+                return null;
+            });
+        }
+
+        for (int i = 0; i < STATUS_CHANGERS; i++) {
+            workers.add(() -> {
+                for (int done = 0; done < STATUS_CHANGES_PER_CHANGER; ) {
+                    String current = sessionService.getSessionById(sessionId).getStatus();
+                    try {
+                        sessionService.changeStatus(sessionId, "Scheduled".equals(current) ? "Completed" : "Scheduled", null);
+                        statusChanges.incrementAndGet();
+                        done++;
+                    } catch (IllegalArgumentException e) {
+                        // changed since it was read: read it again and retry
+                    }
+                }
+                return null;
+            });
+        }
+
+        runAll(workers);
+
+        Session result = sessionService.getSessionById(sessionId);
+
+        assertEquals(EDITORS * EDITS_PER_EDITOR, edits.get());
+        assertEquals("edits=" + edits.get(), result.getInstructorFeedback());
+        assertEquals(initialVersion + edits.get() + statusChanges.get(), result.getVersion());
+
+        // edits never write the status, so only the status changes decide it
+        String expectedStatus = statusChanges.get() % 2 == 0 ? "Scheduled" : "Completed";
+        assertEquals(expectedStatus, result.getStatus());
+    }
+
+    @Test
+    void staleFormIsRejected() {
+        Integer sessionId = createSession("first");
+
+        Session stale = sessionService.getSessionById(sessionId);
+        Session fresh = sessionService.getSessionById(sessionId);
+
+        fresh.setInstructorFeedback("second");
+        sessionService.updateSession(fresh, null);
+
+        stale.setInstructorFeedback("lost");
+        IllegalArgumentException refused = assertThrows(IllegalArgumentException.class,
+                () -> sessionService.updateSession(stale, null));
+        assertEquals("Session " + sessionId + " was changed by someone else - reload and try again", refused.getMessage());
+
+        assertEquals("second", sessionService.getSessionById(sessionId).getInstructorFeedback());
+    }
+
+    private Integer createSession(String feedback) {
+        Session session = new Session();
+        session.setSessionType("Practical");
+        session.setStartDateTime(LocalDateTime.now().plusDays(7).withNano(0));
+        session.setEndDateTime(session.getStartDateTime().plusHours(2));
+        session.setStatus("Scheduled");
+        session.setInstructorFeedback(feedback);
+        session.setInstructorId(instructorId);
+        session.setTraineeId(traineeId);
+        return sessionService.createSession(session, null);
+    }
+
+    private Integer userId(String username) {
+        return jdbcTemplate.queryForObject("SELECT UserID FROM AppUser WHERE Username = ?", Integer.class, username);
+    }
+
+    private static void runAll(List<Callable<Void>> workers) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(workers.size());
+        try {
+            for (Future<Void> future : executor.invokeAll(workers)) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package com.drivingschool.service;
+
+import com.drivingschool.model.Trainee;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Concurrent trainee edits and status changes against an in-memory database
+ *
+ * The edits count themselves in the address, so an edit that overwrote another one would leave
+ * the count behind the number of edits that reported success.
+ */
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:trainee-concurrency;MODE=MySQL;DB_CLOSE_DELAY=-1",
+        "spring.sql.init.mode=always",
+        "security.remember-me.key=trainee-concurrency-test-key",
+        "archive.directory=${java.io.tmpdir}/driving-school-test/archive",
+        "audit.directory=${java.io.tmpdir}/driving-school-test/audit",
+        "backup.directory=${java.io.tmpdir}/driving-school-test/backup"
+})
+class TraineeServiceConcurrencyTest {
+
+    private static final int EDITORS = 4;
+    private static final int EDITS_PER_EDITOR = 25;
+    private static final int STATUS_CHANGERS = 2;
+    private static final int STATUS_CHANGES_PER_CHANGER = 25;
+
+    @Autowired
+    private TraineeService traineeService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Integer traineeId;
+
+    @BeforeEach
+    void createTrainee() {
+        String suffix = String.valueOf(System.nanoTime());
+
+        jdbcTemplate.update("INSERT INTO AppUser (Username, Password, Email, Role) VALUES (?, 'x', ?, 'INSTRUCTOR')",
+                "instructor" + suffix, "instructor" + suffix + "@test.ro");
+        jdbcTemplate.update("INSERT INTO Instructor (UserID, FirstName, LastName, Phone, HireDate) VALUES (?, 'Ion', 'Popescu', '0712345678', CURRENT_DATE)",
+                userId("instructor" + suffix));
+        Integer instructorId = jdbcTemplate.queryForObject("SELECT MAX(InstructorID) FROM Instructor", Integer.class);
+
+        jdbcTemplate.update("INSERT INTO AppUser (Username, Password, Email, Role) VALUES (?, 'x', ?, 'TRAINEE')",
+                "trainee" + suffix, "trainee" + suffix + "@test.ro");
+        jdbcTemplate.update("""
+                INSERT INTO Trainee (UserID, FirstName, LastName, SSN, Address, Phone, EnrollmentDate, LicenseCategory, Status, AssignedInstructorID)
+                VALUES (?, 'Ana', 'Ionescu', ?, 'edits=0', '0723456789', CURRENT_DATE, 'B', 'Active', ?)
+                """, userId("trainee" + suffix), suffix.substring(suffix.length() - 13), instructorId);
+        traineeId = jdbcTemplate.queryForObject("SELECT MAX(TraineeID) FROM Trainee", Integer.class);
+    }
+
+    @Test
+    void concurrentEditsAndStatusChangesLoseNothing() throws Exception {
+        int initialVersion = traineeService.getTraineeById(traineeId).getVersion();
+
+        AtomicInteger edits = new AtomicInteger();
+        AtomicInteger statusChanges = new AtomicInteger();
+
+        List<Callable<Void>> workers = new ArrayList<>();
+        for (int i = 0; i < EDITORS; i++) {
+            workers.add(() -> {
+                for (int done = 0; done < EDITS_PER_EDITOR; ) {
+                    // what the edit form posts: the row as rendered, the address changed
+                    Trainee form = traineeService.getTraineeById(traineeId);
+                    int count = Integer.parseInt(form.getAddress().substring("edits=".length()));
+                    form.setAddress("edits=" + (count + 1));
+                    form.setStatus("Active".equals(form.getStatus()) ? "Completed" : "Active");
+
+                    try {
+                        traineeService.updateTrainee(form);
+                        edits.incrementAndGet();
+                        done++;
+                    } catch (IllegalArgumentException e) {
+                        // changed since it was read: read it again and retry
+                    }
+                }
+                return null;
+            });
+        }
+
+        for (int i = 0; i < STATUS_CHANGERS; i++) {
+            workers.add(() -> {
+                for (int done = 0; done < STATUS_CHANGES_PER_CHANGER; ) {
+                    String current = traineeService.getTraineeById(traineeId).getStatus();
+                    try {
+                        traineeService.changeStatus(traineeId, "Active".equals(current) ? "Completed" : "Active", null);
+                        statusChanges.incrementAndGet();
+                        done++;
+                    } catch (IllegalArgumentException e) {
+                        // changed since it was read: read it again and retry
+                    }
+                }
+                return null;
+            });
+        }
+
+        runAll(workers);
+
+        Trainee result = traineeService.getTraineeById(traineeId);
+
+        assertEquals(EDITORS * EDITS_PER_EDITOR, edits.get());
+        assertEquals("edits=" + edits.get(), result.getAddress());
+        assertEquals(initialVersion + edits.get() + statusChanges.get(), result.getVersion());
+
+        // edits never write the status, so only the status changes decide it
+        String expectedStatus = statusChanges.get() % 2 == 0 ? "Active" : "Completed";
+        assertEquals(expectedStatus, result.getStatus());
+    }
+
+    @Test
+    void staleFormIsRejected() {
+        Trainee stale = traineeService.getTraineeById(traineeId);
+        Trainee fresh = traineeService.getTraineeById(traineeId);
+
+        fresh.setAddress("second");
+        traineeService.updateTrainee(fresh);
+
+        stale.setAddress("lost");
+        IllegalArgumentException refused = assertThrows(IllegalArgumentException.class,
+                () -> traineeService.updateTrainee(stale));
+        assertEquals("Trainee " + traineeId + " was changed by someone else - reload and try again", refused.getMessage());
+
+        assertEquals("second", traineeService.getTraineeById(traineeId).getAddress());
+    }
+
+    @Test
+    void formRenderedBeforeStatusChangeIsRejected() {
+        Trainee form = traineeService.getTraineeById(traineeId);
+
+        traineeService.changeStatus(traineeId, "Completed", form.getVersion());
+
+        // the form still says Active; saving it must not reactivate the trainee
+        form.setAddress("after completion");
+        assertThrows(IllegalArgumentException.class, () -> traineeService.updateTrainee(form));
+
+        Trainee result = traineeService.getTraineeById(traineeId);
+        assertEquals("Completed", result.getStatus());
+        assertEquals("edits=0", result.getAddress());
+    }
+
+    @Test
+    void reassignAfterAnEditIsRejected() {
+        Trainee form = traineeService.getTraineeById(traineeId);
+        Integer otherInstructorId = createInstructor("other" + System.nanoTime());
+
+        Trainee edit = traineeService.getTraineeById(traineeId);
+        edit.setAddress("edited");
+        traineeService.updateTrainee(edit);
+
+        assertThrows(IllegalArgumentException.class,
+                () -> traineeService.reassignInstructor(traineeId, otherInstructorId, form.getVersion()));
+
+        traineeService.reassignInstructor(traineeId, otherInstructorId, form.getVersion() + 1);
+
+        Trainee result = traineeService.getTraineeById(traineeId);
+        assertEquals(otherInstructorId, result.getAssignedInstructorId());
+        assertEquals("edited", result.getAddress());
+        assertEquals(form.getVersion() + 2, result.getVersion());
+    }
+
+    private Integer createInstructor(String username) {
+        jdbcTemplate.update("INSERT INTO AppUser (Username, Password, Email, Role) VALUES (?, 'x', ?, 'INSTRUCTOR')",
+                username, username + "@test.ro");
+        jdbcTemplate.update("INSERT INTO Instructor (UserID, FirstName, LastName, Phone, HireDate) VALUES (?, 'Dan', 'Marin', '0712345678', CURRENT_DATE)",
+                userId(username));
+        return jdbcTemplate.queryForObject("SELECT MAX(InstructorID) FROM Instructor", Integer.class);
+    }
+
+    private Integer userId(String username) {
+        return jdbcTemplate.queryForObject("SELECT UserID FROM AppUser WHERE Username = ?", Integer.class, username);
+    }
+
+    private static void runAll(List<Callable<Void>> workers) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(workers.size());
+        try {
+            for (Future<Void> future : executor.invokeAll(workers)) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}